@@ -1,5 +1,7 @@
 package components;
 
+import java.nio.ByteBuffer;
+
 import model.Flow;
 
 
@@ -42,6 +44,34 @@ public class Condenser extends CriticalComponent implements UpdatableComponent {
 		this.coolantPump = coolantPump;
 	}
 
+	@Override
+	public void reset() {
+		reset(DEFAULT_WATER_VOLUME);
+		this.steamInVolume = 0;
+		this.steamInTemperature = 0;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 8;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, steamInVolume);
+		buffer.putInt(offset + 4, steamInTemperature);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		this.steamInVolume = buffer.getInt(offset);
+		this.steamInTemperature = buffer.getInt(offset + 4);
+	}
+	
 	// ----------- Getters & Setters ---------------
 	
 	/**
@@ -130,7 +160,7 @@ public class Condenser extends CriticalComponent implements UpdatableComponent {
 	 */
 	private void updatePressure() {
 		int currentPressure;
-		currentPressure = (int) Math.round(new Double(getSteamVolume()) * VOL_TO_PRESSURE_MULTIPLIER);
+		currentPressure = (int) Math.round((double) getSteamVolume() * VOL_TO_PRESSURE_MULTIPLIER);
 		setPressure(currentPressure);
 	}
 	
@@ -173,7 +203,7 @@ public class Condenser extends CriticalComponent implements UpdatableComponent {
 	private int cooldownPerStep() {
 		int maxRpm = coolantPump.getMaxRpm();
 		int currRpm = coolantPump.getRpm();
-		return (int) Math.round(MAX_COOLDOWN_PER_STEP * new Double(currRpm)/maxRpm);
+		return (int) Math.round(MAX_COOLDOWN_PER_STEP * (double) currRpm / maxRpm);
 	}
 
 	/**
@@ -189,7 +219,7 @@ public class Condenser extends CriticalComponent implements UpdatableComponent {
 		}
 		
 		if (steamCondensed > getSteamVolume()) steamCondensed = getSteamVolume();
-		int waterCreated = (int) Math.ceil(steamCondensed * (1 / new Double(WATER_STEAM_RATIO)));
+		int waterCreated = (int) Math.ceil(steamCondensed * (1 / (double) WATER_STEAM_RATIO));
 		/*
 		 * Since we do a dodgy division above, to make sure we aren't losing / creating
 		 * water we remultiply out the waterCreated.
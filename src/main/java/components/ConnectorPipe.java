@@ -1,10 +1,10 @@
 package components;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.List;
-import java.util.Map.Entry;
 
 /**
  * ConnectorPipe class only really extends PlantComponent for consistency
@@ -20,13 +20,20 @@ public class ConnectorPipe extends PlantComponent {
 	
 	private static final long serialVersionUID = 4562191438219268556L;
 	
-	private List<PlantComponent> inputs;
-	private Map<PlantComponent, Boolean> outputs; // Boolean is true if that path is blocked.
+	private final static PlantComponent[] NO_COMPONENTS = new PlantComponent[0];
+	private final static int MAX_OUTPUTS = 32; // One bit of blockedOutputs per output.
+	
+	// Plain arrays and a bit mask keep a pipe small and let the flow be
+	// calculated without creating any iterators or boxed values.
+	private PlantComponent[] inputs;
+	private PlantComponent[] outputs;
+	private int blockedOutputs; // Bit i is set if the path to outputs[i] is blocked.
 	
 	public ConnectorPipe() {
 		super();
-		this.inputs = new ArrayList<PlantComponent>();
-		this.outputs = new HashMap<PlantComponent, Boolean>();
+		this.inputs = NO_COMPONENTS;
+		this.outputs = NO_COMPONENTS;
+		this.blockedOutputs = 0;
 	}
 	
 	/**
@@ -40,7 +47,7 @@ public class ConnectorPipe extends PlantComponent {
 		if (this.getInput() != null) {
 			this.setInput(input);
 		} else {
-			this.inputs.add(input);
+			this.inputs = append(this.inputs, input);
 		}
 	}
 	
@@ -52,7 +59,11 @@ public class ConnectorPipe extends PlantComponent {
 	 * 				 ConnectorPipe.
 	 */
 	public void addOutput(PlantComponent output) {
-		this.outputs.put(output, false);
+		if (indexOfOutput(output) >= 0) return;
+		if (this.outputs.length == MAX_OUTPUTS) {
+			throw new IllegalStateException("A connector pipe cannot have more than " + MAX_OUTPUTS + " outputs.");
+		}
+		this.outputs = append(this.outputs, output);
 	}
 	
 	/**
@@ -62,10 +73,28 @@ public class ConnectorPipe extends PlantComponent {
 	 * 		   to this ConnectorPipe.
 	 */
 	public ArrayList<PlantComponent> getInputs() {
-		ArrayList<PlantComponent> inputs = new ArrayList<PlantComponent>(this.inputs);
+		ArrayList<PlantComponent> inputs = new ArrayList<PlantComponent>(Arrays.asList(this.inputs));
 		if (this.getInput() != null) inputs.add(this.getInput());
 		return inputs;
 	}
+	
+	/**
+	 * 
+	 * @return the number of components connected as inputs to this ConnectorPipe
+	 */
+	public int getNumInputs() {
+		return (this.getInput() != null) ? inputs.length + 1 : inputs.length;
+	}
+	
+	/**
+	 * Allocation free alternative to getInputs().get(index).
+	 * 
+	 * @param index index of the input, in the order the inputs were added
+	 * @return the input at index
+	 */
+	public PlantComponent getInput(int index) {
+		return (index == inputs.length) ? this.getInput() : inputs[index];
+	}
 
 	/**
 	 * Use this method instead of getOutput().
@@ -74,15 +103,58 @@ public class ConnectorPipe extends PlantComponent {
 	 * 		   of this ConnectorPipe.
 	 */
 	public ArrayList<PlantComponent> getOutputs() {
-		return new ArrayList<PlantComponent>(this.outputs.keySet());
+		return new ArrayList<PlantComponent>(Arrays.asList(this.outputs));
 	}
 	
 	/**
+	 * 
+	 * @return the number of components connected to the output of this ConnectorPipe,
+	 * 		   blocked or not
+	 */
+	public int getNumAllOutputs() {
+		return outputs.length;
+	}
+	
+	/**
+	 * Allocation free alternative to getOutputs().get(index).
+	 * 
+	 * @param index index of the output, in the order the outputs were added
+	 * @return the output at index
+	 */
+	public PlantComponent getOutput(int index) {
+		return outputs[index];
+	}
+	
+	/**
+	 * 
+	 * @param index index of the output, in the order the outputs were added
+	 * @return true if the path to that output is blocked
+	 */
+	public boolean isOutputBlocked(int index) {
+		return (blockedOutputs & (1 << index)) != 0;
+	}
+	
+	/**
+	 * 
+	 * @param output a component connected to the output of this ConnectorPipe
+	 * @return true if the path to output is blocked
+	 */
+	public boolean isOutputBlocked(PlantComponent output) {
+		return isOutputBlocked(checkedIndexOfOutput(output));
+	}
+	
+	/**
+	 * Builds a map of the outputs and whether they are blocked. Changes to
+	 * the map are not reflected in the ConnectorPipe.
 	 * 
 	 * @return the outputs map of component & blocked boolean.
 	 */
 	public Map<PlantComponent, Boolean> getOutputsMap() {
-		return this.outputs;
+		Map<PlantComponent, Boolean> outputsMap = new LinkedHashMap<PlantComponent, Boolean>();
+		for (int i = 0; i < outputs.length; i++) {
+			outputsMap.put(outputs[i], isOutputBlocked(i));
+		}
+		return outputsMap;
 	}
 	
 	
@@ -91,13 +163,7 @@ public class ConnectorPipe extends PlantComponent {
 	 * @param blockedComponent 
 	 */
 	public void setComponentBlocked(PlantComponent blockedComponent) {
-		if (this.outputs.containsKey(blockedComponent)) {
-			this.outputs.put(blockedComponent, true);
-		} else {
-			throw new IllegalArgumentException("Attempt to block an output with a reference to a "
-											  +"component that is not an output to this connector "
-											  +"pipe.");
-		}
+		this.blockedOutputs |= 1 << checkedIndexOfOutput(blockedComponent);
 	}
 	
 	/**
@@ -105,19 +171,59 @@ public class ConnectorPipe extends PlantComponent {
 	 * @return the number of non-blocked outputs.
 	 */
 	public int numOutputs() {
-		int totalOutputs = 0;
-		for (PlantComponent pc : this.outputs.keySet()) {
-			if (!this.outputs.get(pc)) totalOutputs++; 
-		}
-		return totalOutputs;
+		return outputs.length - Integer.bitCount(blockedOutputs);
 	}
 	
 	/**
 	 * Reset's all the outputs to not-blocked.
 	 */
 	public void resetState() {
-		for (Entry<PlantComponent, Boolean> entry : outputs.entrySet()) {
-			entry.setValue(false);
+		this.blockedOutputs = 0;
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		resetState();
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 4;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		buffer.putInt(offset + super.getStateSize(), blockedOutputs);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		this.blockedOutputs = buffer.getInt(offset + super.getStateSize());
+	}
+	
+	private int indexOfOutput(PlantComponent output) {
+		for (int i = 0; i < outputs.length; i++) {
+			if (outputs[i] == output) return i;
+		}
+		return -1;
+	}
+	
+	private int checkedIndexOfOutput(PlantComponent output) {
+		int index = indexOfOutput(output);
+		if (index < 0) {
+			throw new IllegalArgumentException("Attempt to block an output with a reference to a "
+											  +"component that is not an output to this connector "
+											  +"pipe.");
 		}
+		return index;
+	}
+	
+	private static PlantComponent[] append(PlantComponent[] components, PlantComponent component) {
+		PlantComponent[] appended = Arrays.copyOf(components, components.length + 1);
+		appended[components.length] = component;
+		return appended;
 	}
 }
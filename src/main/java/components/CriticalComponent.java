@@ -1,5 +1,7 @@
 package components;
 
+import java.nio.ByteBuffer;
+
 /**
  * Critical components have health and can't be repaired. 
  * 
@@ -11,6 +13,9 @@ package components;
  *
  */
 public abstract class CriticalComponent extends PlantComponent {
+	private final static int DEFAULT_HEALTH = 100;
+	private final static int DEFAULT_TEMPERATURE = 50;
+	
 	private int health;
 	private int temperature;
 	private int pressure;
@@ -20,14 +25,55 @@ public abstract class CriticalComponent extends PlantComponent {
 	CriticalComponent(int waterVolume) {
 		super(true); //pressurised
 		
-		this.health = 100;
-		this.temperature = 50;
+		this.health = DEFAULT_HEALTH;
+		this.temperature = DEFAULT_TEMPERATURE;
 		this.pressure = 0;
 		this.steamVolume = 0;
 		
 		this.waterVolume = waterVolume;
 	}
 	
+	/**
+	 * Restores full health and the initial temperature, pressure and volumes.
+	 * 
+	 * @param waterVolume the initial volume of water of the component
+	 */
+	protected void reset(int waterVolume) {
+		super.reset();
+		this.health = DEFAULT_HEALTH;
+		this.temperature = DEFAULT_TEMPERATURE;
+		this.pressure = 0;
+		this.steamVolume = 0;
+		this.waterVolume = waterVolume;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 20;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, health);
+		buffer.putInt(offset + 4, temperature);
+		buffer.putInt(offset + 8, pressure);
+		buffer.putInt(offset + 12, waterVolume);
+		buffer.putInt(offset + 16, steamVolume);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		this.health = buffer.getInt(offset);
+		this.temperature = buffer.getInt(offset + 4);
+		this.pressure = buffer.getInt(offset + 8);
+		this.waterVolume = buffer.getInt(offset + 12);
+		this.steamVolume = buffer.getInt(offset + 16);
+	}
+	
 	public int getHealth() {
 		return health;
 	}
@@ -1,6 +1,13 @@
 package components;
 
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class implements the software component functionality of the plant.
@@ -16,6 +23,13 @@ import java.util.Random;
  * This class acts as a command storage location and its failure is implemented by
  * storing a wrong command or none.
  * 
+ * Commands are stored as immutable Command records in a bounded, lock-free queue, so
+ * commands given by several threads, or several commands given within one step, are
+ * all kept. A command given when the queue is full is refused. The controller drains
+ * the queue in one batch per step, on the thread that steps the plant: a failed
+ * software corrupts each command on its own while it is drained, so the plant's random
+ * numbers are only drawn by that thread.
+ * 
  * @author Velislav
  */
 public class OperatingSoftware extends RandomlyFailableComponent implements ForcedFailableComponent, UpdatableComponent {
@@ -34,19 +48,106 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
     public enum OperationRequest 
     {DoNothing, SetControlRods, SetPumpRpm, SetValve, RepairTurbine, RepairPump}
     
-    private OperationRequest requestedOperation = OperationRequest.DoNothing;
+    private final static OperationRequest[] OPERATION_REQUESTS = OperationRequest.values();
     
-    private int valveID;
-    private boolean open;
-    private int pumpID;
-    private boolean on;
-    private int rpm;
-    private int percentageLowered;
-	private int stepsUntilForceFailable;
- 
-    private Random random = new Random();
+    //the most commands that can wait for the controller at a time
+    public final static int COMMAND_QUEUE_CAPACITY = 64;
     
+    /**
+     * An immutable command stored by the operating software, with the data of its
+     * operation (the fields the operation does not use are 0 or false).
+     */
+    public static final class Command implements Serializable
+    {
+        private static final long serialVersionUID = 4105817256032874193L;
+        
+        private final static Command DO_NOTHING = new Command(OperationRequest.DoNothing, 0, false, 0, 0, 0);
+        
+        private final OperationRequest operation;
+        private final int valveID;
+        private final boolean open;
+        private final int pumpID;
+        private final int rpm;
+        private final int percentageLowered;
+        
+        private Command(OperationRequest operation, int valveID, boolean open, int pumpID, int rpm, int percentageLowered)
+        {
+            this.operation = operation;
+            this.valveID = valveID;
+            this.open = open;
+            this.pumpID = pumpID;
+            this.rpm = rpm;
+            this.percentageLowered = percentageLowered;
+        }
+        
+        public static Command setValve(int valveID, boolean open)
+        {
+            return new Command(OperationRequest.SetValve, valveID, open, 0, 0, 0);
+        }
+        
+        public static Command setPumpRpm(int pumpID, int rpm)
+        {
+            return new Command(OperationRequest.SetPumpRpm, 0, false, pumpID, rpm, 0);
+        }
+        
+        public static Command setControlRods(int percentageLowered)
+        {
+            return new Command(OperationRequest.SetControlRods, 0, false, 0, 0, percentageLowered);
+        }
+        
+        public static Command repairTurbine()
+        {
+            return new Command(OperationRequest.RepairTurbine, 0, false, 0, 0, 0);
+        }
+        
+        public static Command repairPump(int pumpID)
+        {
+            return new Command(OperationRequest.RepairPump, 0, false, pumpID, 0, 0);
+        }
+        
+        public OperationRequest getOperation()
+        {
+            return operation;
+        }
+        
+        public int getValveID()
+        {
+            return valveID;
+        }
+        
+        public boolean isOpen()
+        {
+            return open;
+        }
+        
+        public int getPumpID()
+        {
+            return pumpID;
+        }
+        
+        public int getRpm()
+        {
+            return rpm;
+        }
+        
+        public int getPercentageLowered()
+        {
+            return percentageLowered;
+        }
+    }
     
+    //the last command given, as it was given - only read by the getters
+    private volatile Command lastGiven = Command.DO_NOTHING;
+    //the last command drained, as it was executed (after any corruption)
+    private Command lastCommand = Command.DO_NOTHING;
+    //the pump of the last pump command drained - a corrupted pump rpm command uses it
+    private int lastPumpID;
+    private boolean on;
+	private int stepsUntilForceFailable;
+	
+	//the queue is not part of the saved state - it is drained at every step
+    private transient Queue<Command> commands;
+    private transient AtomicInteger queuedCommands;
     
 
     /**
@@ -56,61 +157,171 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
     public OperatingSoftware()
     {
         super(DEFAULT_FAILURE_RATE, DEFAULT_REPAIR_TIME, MAX_FAILURE_RATE);
+        initialiseQueue();
     }
     
+    private void initialiseQueue()
+    {
+        commands = new ConcurrentLinkedQueue<Command>();
+        queuedCommands = new AtomicInteger();
+    }
+    
+
+    /**
+     * Clears the stored commands and restores the default failure rate.
+     */
+    @Override
+    public void reset()
+    {
+        super.reset();
+        setFailureRate(DEFAULT_FAILURE_RATE);
+        while(commands.poll() != null)
+            queuedCommands.decrementAndGet();
+        lastGiven = Command.DO_NOTHING;
+        lastCommand = Command.DO_NOTHING;
+        lastPumpID = 0;
+        on = false;
+        stepsUntilForceFailable = 0;
+    }
+    
+    @Override
+    public int getStateSize()
+    {
+        return super.getStateSize() + 32;
+    }
+    
+    @Override
+    public void writeState(ByteBuffer buffer, int offset)
+    {
+        super.writeState(buffer, offset);
+        offset += super.getStateSize();
+        Command last = lastCommand;
+        buffer.putInt(offset, last.operation.ordinal());
+        buffer.putInt(offset + 4, last.valveID);
+        buffer.putInt(offset + 8, last.open ? 1 : 0);
+        buffer.putInt(offset + 12, lastPumpID);
+        buffer.putInt(offset + 16, on ? 1 : 0);
+        buffer.putInt(offset + 20, last.rpm);
+        buffer.putInt(offset + 24, last.percentageLowered);
+        buffer.putInt(offset + 28, stepsUntilForceFailable);
+    }
+    
+    @Override
+    public void readState(ByteBuffer buffer, int offset)
+    {
+        super.readState(buffer, offset);
+        offset += super.getStateSize();
+        OperationRequest operation = OPERATION_REQUESTS[buffer.getInt(offset)];
+        lastPumpID = buffer.getInt(offset + 12);
+        //only pump commands have a pump, and it is always the last pump
+        boolean pumpCommand = operation == OperationRequest.SetPumpRpm || operation == OperationRequest.RepairPump;
+        lastCommand = new Command(operation,
+                                  buffer.getInt(offset + 4),
+                                  buffer.getInt(offset + 8) != 0,
+                                  pumpCommand ? lastPumpID : 0,
+                                  buffer.getInt(offset + 20),
+                                  buffer.getInt(offset + 24));
+        lastGiven = lastCommand;
+        on = buffer.getInt(offset + 16) != 0;
+        stepsUntilForceFailable = buffer.getInt(offset + 28);
+    }
     
     /**
      *  If the operating software has failed, this method either stores no command or
-     *  stores a random command and generates its data.
+     *  stores a random command and generates its data. Called for each command drained
+     *  while the software has failed, on the thread that steps the plant.
+     *  
+     *  @return the command to execute instead of the one that was given
      */
-    private void failedSoftwareResponse()
+    private Command failedSoftwareResponse()
     {
+        Random random = getRandom();
         //if a random number is less than the DO_NOTHING_OR_DIFFERENT_COMMAND_LIMIT value
         if(random.nextInt(101)<DO_NOTHING_OR_DIFFERENT_COMMAND_LIMIT)
             //store no command
-            requestedOperation = OperationRequest.DoNothing;
+            return Command.DO_NOTHING;
         else
         {//else pick a command to swap with from the available ones
             int swapWith = 1 + random.nextInt(OperationRequest.values().length - 2);
             
             switch(OperationRequest.values()[swapWith])
-            {//set the value of the picked command and
-             //depending on it generate its data randomly 
+            {//pick the command and depending on it generate its data randomly 
                 
                 case SetControlRods: 
-                    requestedOperation = OperationRequest.SetControlRods;
-                    percentageLowered = random.nextInt(101);//random rods level generation
-                    break;
+                    return Command.setControlRods(random.nextInt(101));//random rods level generation
                     
                 case SetPumpRpm:
-                    requestedOperation = OperationRequest.SetPumpRpm;
-                    rpm = random.nextInt(1001);//random rpm generation
-                    break;
+                    return Command.setPumpRpm(lastPumpID, random.nextInt(1001));//random rpm generation
                     
                 case SetValve: 
-                    requestedOperation = OperationRequest.SetValve;
-                    valveID = 1 + random.nextInt(2);//random valve id generation
-                    open = random.nextBoolean();//random open state generation
-                    break;
+                    //random valve id and open state generation
+                    return Command.setValve(1 + random.nextInt(2), random.nextBoolean());
                     
                 case RepairTurbine:
-                    requestedOperation = OperationRequest.RepairTurbine;
-                    break;
+                    return Command.repairTurbine();
                     
                 case RepairPump:
-                    requestedOperation = OperationRequest.RepairPump;
-                    pumpID = 1 + random.nextInt(2);//random pump id generation
-                    break;
+                    return Command.repairPump(1 + random.nextInt(2));//random pump id generation
                     
                 default://if for some reason something goes wrong store no command
-                    requestedOperation = OperationRequest.DoNothing;
-                    break; 
+                    return Command.DO_NOTHING;
             }
         }
         
     }
     
+    /**
+     * Stores a command as it was given. May be called from any thread.
+     * 
+     * @return false if the queue was full and the command was refused
+     */
+    private boolean store(Command command)
+    {
+        lastGiven = command;
+        //reserves a place in the queue first, so it never holds more than its capacity
+        int queued;
+        do
+        {
+            queued = queuedCommands.get();
+            if(queued >= COMMAND_QUEUE_CAPACITY)
+                return false;
+        } while(!queuedCommands.compareAndSet(queued, queued + 1));
+        commands.offer(command);
+        return true;
+    }
+    
+    /**
+     * Removes the stored commands, in the order they were stored. If the software has
+     * failed, each command is replaced by a random one or by no command. Called by the
+     * controller once per step, on the thread that steps the plant.
+     * 
+     * @return the commands to execute
+     */
+    public List<Command> drainCommands()
+    {
+        List<Command> drained = new ArrayList<Command>();
+        Command command;
+        while((command = commands.poll()) != null)
+        {
+            queuedCommands.decrementAndGet();
+            if(!super.isOperational())
+                command = failedSoftwareResponse();
+            lastCommand = command;
+            if(command.operation == OperationRequest.SetPumpRpm || command.operation == OperationRequest.RepairPump)
+                lastPumpID = command.pumpID;
+            if(command.operation != OperationRequest.DoNothing)
+                drained.add(command);
+        }
+        return drained;
+    }
     
+    /**
+     * @return the number of commands waiting for the controller
+     */
+    public int getQueuedCommands()
+    {
+        return queuedCommands.get();
+    }
     
     /**
      * Update the state of the operating software.
@@ -141,18 +352,11 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
      * 
      * @param valveID 
      * @param open   state of the valve
+     * @return false if the command queue is full
      */
-    public synchronized void setValve(int valveID, boolean open)
+    public boolean setValve(int valveID, boolean open)
     {
-        if(super.isOperational())
-        {
-            requestedOperation = OperationRequest.SetValve;
-            this.valveID = valveID;
-            this.open = open;
-        }
-        else
-            {failedSoftwareResponse();}//!
-        
+        return store(Command.setValve(valveID, open));
     }
     
     /**
@@ -161,18 +365,11 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
      * 
      * @param pumpID
      * @param rpm    speed at which the pump is running
+     * @return false if the command queue is full
      */
-    public synchronized void setPumpRpm(int pumpID, int rpm)
+    public boolean setPumpRpm(int pumpID, int rpm)
     {
-        if(super.isOperational())
-        {
-            requestedOperation = OperationRequest.SetPumpRpm;
-            this.pumpID = pumpID;
-            this.rpm = rpm;
-        }
-        else
-            failedSoftwareResponse();
-        
+        return store(Command.setPumpRpm(pumpID, rpm));
     }
     
     /**
@@ -180,46 +377,33 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
      * otherwise calls the appropriate method.
      * 
      * @param percentageLowered  the level to which the rods should be set
+     * @return false if the command queue is full
      */
-    public synchronized void setControlRods(int percentageLowered)
+    public boolean setControlRods(int percentageLowered)
     {
-        if(super.isOperational())
-        {
-            requestedOperation = OperationRequest.SetControlRods;
-            this.percentageLowered = percentageLowered;
-        }
-        else
-            failedSoftwareResponse();
+        return store(Command.setControlRods(percentageLowered));
     }
     
     /**
      * Stores a turbine repair command if the software is working properly,
      * otherwise calls the appropriate method.
+     * 
+     * @return false if the command queue is full
      */
-    public synchronized void repairTurbine()
+    public boolean repairTurbine()
     {
-        if(super.isOperational())
-        {
-            requestedOperation = OperationRequest.RepairTurbine;
-        }
-        else
-            failedSoftwareResponse(); 
+        return store(Command.repairTurbine());
     }
     
     /**
      * Stores a pump repair command and id if the software is working properly,
      * otherwise calls the appropriate method.
+     * 
+     * @return false if the command queue is full
      */
-    public synchronized void repairPump(int pumpID)
+    public boolean repairPump(int pumpID)
     {
-        if(super.isOperational())
-        {
-            requestedOperation = OperationRequest.RepairPump;
-            this.pumpID = pumpID;
-        }
-        else
-            failedSoftwareResponse();
-        
+        return store(Command.repairPump(pumpID));
     }
     
     /* getters section */
@@ -257,41 +441,42 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
     }
 
     /**
-     * @return the requested Operation
+     * @return the operation of the last command given (before any corruption, which
+     *         only happens when the commands are drained)
      */
-    public synchronized OperationRequest getRequestedOperation()
+    public OperationRequest getRequestedOperation()
     {
-        return requestedOperation;
+        return lastGiven.operation;
     }
 
     /**
      * @return the valveID
      */
-    public synchronized int getValveID()
+    public int getValveID()
     {
-        return valveID;
+        return lastGiven.valveID;
     }
 
     /**
      * @return whether or not a valve is open
      */
-    public synchronized boolean isOpen()
+    public boolean isOpen()
     {
-        return open;
+        return lastGiven.open;
     }
 
     /**
      * @return the pumpID
      */
-    public synchronized int getPumpID()
+    public int getPumpID()
     {
-        return pumpID;
+        return lastGiven.pumpID;
     }
 
     /**
      * @return whether or not a pump is on
      */
-    public synchronized boolean isOn()
+    public boolean isOn()
     {
         return on;
     }
@@ -299,17 +484,17 @@ public class OperatingSoftware extends RandomlyFailableComponent implements Forc
     /**
      * @return the rpm of the pump
      */
-    public synchronized int getRpm()
+    public int getRpm()
     {
-        return rpm;
+        return lastGiven.rpm;
     }
 
     /**
      * @return the rod level
      */
-    public synchronized int getPercentageLowered()
+    public int getPercentageLowered()
     {
-        return percentageLowered;
+        return lastGiven.percentageLowered;
     }
     
 	@Override
@@ -1,6 +1,7 @@
 package components;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import model.Flow;
@@ -40,6 +41,52 @@ public abstract class PlantComponent implements Serializable {
 		this.flowOut = new Flow();
 	}
 		
+	/**
+	 * Restores the state of the component to the one it had when it was created,
+	 * keeping its connections to the other components. Used to start a new game
+	 * without building a new plant.
+	 */
+	public void reset() {
+		this.flowOut.reset();
+	}
+	
+	/**
+	 * The state of a component can be stored in a fixed size record in a ByteBuffer
+	 * (i.e. for off-heap storage and saving games). Only the mutable state is stored,
+	 * connections and constants come from the plant's topology.
+	 * 
+	 * Subclasses that add state override the three methods below and store their
+	 * fields after the ones of their superclass.
+	 * 
+	 * @return the number of bytes used by writeState()
+	 */
+	public int getStateSize() {
+		return 8;
+	}
+	
+	/**
+	 * Writes the state of the component using absolute puts (the position of the
+	 * buffer is not changed).
+	 * 
+	 * @param buffer the buffer to write to
+	 * @param offset index of the first byte of the component's record
+	 */
+	public void writeState(ByteBuffer buffer, int offset) {
+		buffer.putInt(offset, flowOut.getRate());
+		buffer.putInt(offset + 4, flowOut.getTemperature());
+	}
+	
+	/**
+	 * Restores the state of the component written by writeState().
+	 * 
+	 * @param buffer the buffer to read from
+	 * @param offset index of the first byte of the component's record
+	 */
+	public void readState(ByteBuffer buffer, int offset) {
+		flowOut.setRate(buffer.getInt(offset));
+		flowOut.setTemperature(buffer.getInt(offset + 4));
+	}
+	
 	/**
 	 * 
 	 * @return the component connected to the input of this component.
@@ -1,5 +1,7 @@
 package components;
 
+import java.nio.ByteBuffer;
+
 /**
  * Pump is a plant component that pumps some amount of water based on pump's "on"
  * state and its RPM. There is a chance that a pump fails randomly. 
@@ -37,6 +39,35 @@ public class Pump extends RandomlyFailableComponent implements ForcedFailableCom
 		stepsUntilForceFailable = 0;
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		setFailureRate(DEFAULT_FAILURE_RATE);
+		this.rpm = DEFAULT_RPM;
+		this.stepsUntilForceFailable = 0;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 8;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, rpm);
+		buffer.putInt(offset + 4, stepsUntilForceFailable);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		this.rpm = buffer.getInt(offset);
+		this.stepsUntilForceFailable = buffer.getInt(offset + 4);
+	}
+	
 	/**
 	 * 
 	 * @return the ID of this pump.
@@ -1,5 +1,6 @@
 package components;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 public abstract class RandomlyFailableComponent extends PlantComponent {
@@ -23,7 +24,37 @@ public abstract class RandomlyFailableComponent extends PlantComponent {
 		this.repairTime     = repairTime;
 		this.maxFailureRate = maxFailureRate;
 		this.operational = DEFAULT_OPERATIONAL;
-		random = new Random();
+	}
+	
+	/**
+	 * Makes the component operational again. Subclasses restore their
+	 * own failure rate as it is not known here.
+	 */
+	@Override
+	public void reset() {
+		super.reset();
+		this.operational = DEFAULT_OPERATIONAL;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 8;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, failureRate);
+		buffer.putInt(offset + 4, operational ? 1 : 0);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		this.failureRate = buffer.getInt(offset);
+		this.operational = buffer.getInt(offset + 4) != 0;
 	}
 	
 	/**
@@ -70,11 +101,32 @@ public abstract class RandomlyFailableComponent extends PlantComponent {
 		this.operational = operational;
 	}
 	
+	/**
+	 * 
+	 * @return the random number generator used for this component's failures
+	 */
+	protected Random getRandom() {
+		// Created on first use, components of a plant are given the plant's generator instead.
+		if (random == null) random = new Random();
+		return random;
+	}
+	
+	/**
+	 * Replaces the random number generator of the component. Used to share a
+	 * single seeded generator between all components of a plant so that a game
+	 * can be reproduced from its seed.
+	 * 
+	 * @param random the new random number generator
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
 	/**
 	 * Runs all checks for the component and changes it's operational state if needed. 
 	 */
 	public boolean hasFailed() {
-		int checkFailure = random.nextInt(1000);
+		int checkFailure = getRandom().nextInt(1000);
 		if(failureRate > checkFailure) {
 			return true;
 		}
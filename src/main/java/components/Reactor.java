@@ -1,6 +1,7 @@
 package components;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 import model.Flow;
 import model.FlowType;
@@ -52,6 +53,37 @@ public class Reactor extends CriticalComponent implements UpdatableComponent {
 		this.quenchAvailable = true;
 	}
 	
+	@Override
+	public void reset() {
+		reset(DEFAULT_WATER_VOLUME);
+		this.controlRod.setPercentageLowered(ControlRod.DEFAULT_PERCENTAGE);
+		this.waterPumpedIn = 0;
+		this.quenchAvailable = true;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 12;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, controlRod.getPercentageLowered());
+		buffer.putInt(offset + 4, waterPumpedIn);
+		buffer.putInt(offset + 8, quenchAvailable ? 1 : 0);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		controlRod.setPercentageLowered(buffer.getInt(offset));
+		this.waterPumpedIn = buffer.getInt(offset + 4);
+		this.quenchAvailable = buffer.getInt(offset + 8) != 0;
+	}
+	
 	// ----------- Getters & Setters ---------------
 	
 	public int getMaxTemperature() {
@@ -169,7 +201,7 @@ public class Reactor extends CriticalComponent implements UpdatableComponent {
 	 */
 	private void updatePressure() {
 		int currentPressure;
-		currentPressure = (int) Math.round(new Double(getSteamVolume()) * VOL_TO_PRESSURE_MULTIPLIER);
+		currentPressure = (int) Math.round((double) getSteamVolume() * VOL_TO_PRESSURE_MULTIPLIER);
 		setPressure(currentPressure);
 	}
 	
@@ -185,7 +217,7 @@ public class Reactor extends CriticalComponent implements UpdatableComponent {
 	private int cooldown(int waterTemperature, int pumpedIn) {
 		int waterInTempDiff = getTemperature() - waterTemperature; 
 		if (getWaterVolume() < 1) return 0; // stops a potential divide by 0 on the next line.
-		return (int) Math.round(waterInTempDiff * (1 - (new Double(getWaterVolume() - pumpedIn)/ getWaterVolume() )));
+		return (int) Math.round(waterInTempDiff * (1 - ((double) (getWaterVolume() - pumpedIn) / getWaterVolume())));
 		
 	}
 	
@@ -217,7 +249,7 @@ public class Reactor extends CriticalComponent implements UpdatableComponent {
 	 * @return percentage as a decimal.
 	 */
 	private double percentageToDecimal(int percentage) {
-		return new Double(percentage) / 100;
+		return (double) percentage / 100;
 	}
 	
 	/**
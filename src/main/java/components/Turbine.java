@@ -1,5 +1,7 @@
 package components;
 
+import java.nio.ByteBuffer;
+
 /**
  * The turbine is a class that makes the generator create power output.
  * The RPM is created based on the steam flow in. The turbine has a chance
@@ -30,6 +32,35 @@ public class Turbine extends RandomlyFailableComponent implements UpdatableCompo
 		this.rpm = 0;
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		setFailureRate(DEFAULT_FAILURE_RATE);
+		this.rpm = 0;
+		this.stepsUntilForceFailable = 0;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 8;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		offset += super.getStateSize();
+		buffer.putInt(offset, rpm);
+		buffer.putInt(offset + 4, stepsUntilForceFailable);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		offset += super.getStateSize();
+		this.rpm = buffer.getInt(offset);
+		this.stepsUntilForceFailable = buffer.getInt(offset + 4);
+	}
+	
 	/**
 	 * Update the state of the Turbine.
 	 * 
@@ -39,9 +70,9 @@ public class Turbine extends RandomlyFailableComponent implements UpdatableCompo
 	@Override
 	public void updateState() {
 		int steamFlowIn = this.getInput().getFlowOut().getRate();
-		// Need to create a couple of new doubles mid-calc here to make sure we get a decimal
-		double linearMultiplier = 1 - (new Double((this.maxSteamThroughput - steamFlowIn))/new Double(this.maxSteamThroughput)); 
-		int newRpm = (int) Math.round(new Double(MAX_TURBINE_RPM) * linearMultiplier);
+		// Cast to double mid-calc here to make sure we get a decimal
+		double linearMultiplier = 1 - ((double) (this.maxSteamThroughput - steamFlowIn) / this.maxSteamThroughput);
+		int newRpm = (int) Math.round((double) MAX_TURBINE_RPM * linearMultiplier);
 		this.rpm = (this.isOperational()) ? newRpm : 0;
 		
 		increaseFailureRate();
@@ -1,5 +1,7 @@
 package components;
 
+import java.nio.ByteBuffer;
+
 import model.FlowType;
 
 
@@ -33,6 +35,29 @@ public class Valve extends PlantComponent {
 		this.open = DEFAULT_OPEN_STATE;
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		this.open = DEFAULT_OPEN_STATE;
+	}
+	
+	@Override
+	public int getStateSize() {
+		return super.getStateSize() + 4;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer buffer, int offset) {
+		super.writeState(buffer, offset);
+		buffer.putInt(offset + super.getStateSize(), open ? 1 : 0);
+	}
+	
+	@Override
+	public void readState(ByteBuffer buffer, int offset) {
+		super.readState(buffer, offset);
+		this.open = buffer.getInt(offset + super.getStateSize()) != 0;
+	}
+	
 	/**
 	 *
 	 * @return ID of this valve
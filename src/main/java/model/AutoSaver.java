@@ -0,0 +1,212 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AutoSaver commits saved games to a file without blocking the thread that steps the game.
+ * 
+ * The stepping thread takes a snapshot of the game at a step boundary (the encoded save,
+ * a few hundred bytes) and hands it to saveInBackground(), which only queues it. A single
+ * background thread writes the snapshot with GameSaveFormat.writeAtomically(), so the save
+ * file always holds either the previous or the new save, never a torn one.
+ * 
+ * Snapshots are committed either to a file or to one slot of a SaveStore (together with
+ * the slot's metadata, which is taken with the snapshot).
+ * 
+ * Snapshots are coalesced: if the background thread is still busy when new snapshots
+ * arrive, only the newest one is written. Every snapshot gets a sequence number when it
+ * is handed over, and a snapshot is never committed over a newer one - a slow autosave
+ * finishing after an explicit save() cannot roll the file back.
+ * 
+ * @author Lamprey
+ */
+public class AutoSaver {
+	
+	private final File file;
+	private final SaveStore store;
+	private final String slot;
+	private final ExecutorService executor;
+	private final AtomicReference<Snapshot> pending;
+	private final AtomicLong sequence;
+	private final Object commitLock;
+	private long committedSequence; // guarded by commitLock
+	private volatile IOException lastError;
+	
+	/**
+	 * Creates an autosaver writing to file. Its background thread is a daemon thread,
+	 * so it does not keep the game running - call close() to wait for the last save.
+	 * 
+	 * @param file the save file
+	 */
+	public AutoSaver(File file) {
+		this(file, null, null);
+	}
+	
+	/**
+	 * Creates an autosaver writing to a slot of a save store.
+	 * 
+	 * @param store the save store
+	 * @param slot  the slot to save to
+	 */
+	public AutoSaver(SaveStore store, String slot) {
+		this(null, store, slot);
+	}
+	
+	private AutoSaver(File file, SaveStore store, String slot) {
+		this.file = file;
+		this.store = store;
+		this.slot = slot;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "AutoSaver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.pending = new AtomicReference<Snapshot>();
+		this.sequence = new AtomicLong();
+		this.commitLock = new Object();
+		this.committedSequence = 0;
+	}
+	
+	/**
+	 * Queues a snapshot to be committed on the background thread and returns immediately.
+	 * A snapshot still waiting to be written is replaced by this one.
+	 * 
+	 * @param save the encoded save; must not be modified afterwards
+	 */
+	public void saveInBackground(byte[] save) {
+		saveInBackground(null, save);
+	}
+	
+	/**
+	 * Queues a snapshot to be committed to a slot of the save store on the background thread.
+	 * 
+	 * @param info the metadata of the snapshot; ignored when saving to a file
+	 * @param save the encoded save; must not be modified afterwards
+	 */
+	public void saveInBackground(SaveSlotInfo info, byte[] save) {
+		Snapshot snapshot = new Snapshot(sequence.incrementAndGet(), checkInfo(info), save);
+		if (pending.getAndSet(snapshot) == null) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Snapshot next = pending.getAndSet(null);
+					if (next == null) return;
+					try {
+						commit(next);
+						lastError = null;
+					} catch (IOException e) {
+						lastError = e;
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Commits a snapshot on the calling thread, i.e. for an explicit save. Snapshots
+	 * queued earlier by saveInBackground() will not overwrite it.
+	 * 
+	 * @param save the encoded save
+	 * @throws IOException if the save could not be written; the previous save is kept
+	 */
+	public void save(byte[] save) throws IOException {
+		save(null, save);
+	}
+	
+	/**
+	 * Commits a snapshot to a slot of the save store on the calling thread.
+	 * 
+	 * @param info the metadata of the snapshot; ignored when saving to a file
+	 * @param save the encoded save
+	 * @throws IOException if the save could not be written; the previous save is kept
+	 */
+	public void save(SaveSlotInfo info, byte[] save) throws IOException {
+		commit(new Snapshot(sequence.incrementAndGet(), checkInfo(info), save));
+	}
+	
+	/**
+	 * Waits until every snapshot handed over so far has been committed (or failed).
+	 * 
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		// The executor runs tasks in order, so every queued save is done once this one runs.
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Writes the last pending snapshot and stops the background thread.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting for the last save
+	 */
+	public void close() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * 
+	 * @return the error of the last background save, or null if it succeeded
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+	
+	/**
+	 * 
+	 * @return the save file, or null when saving to a save store
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	private SaveSlotInfo checkInfo(SaveSlotInfo info) {
+		if (store != null && (info == null || !info.getSlot().equals(slot))) {
+			throw new IllegalArgumentException("AutoSaver: saving to a save store needs the metadata of slot " + slot + ".");
+		}
+		return info;
+	}
+	
+	private void commit(Snapshot snapshot) throws IOException {
+		synchronized (commitLock) {
+			if (snapshot.sequence <= committedSequence) return;
+			if (store != null) {
+				store.save(snapshot.info, snapshot.save);
+			} else {
+				GameSaveFormat.writeAtomically(file, snapshot.save);
+			}
+			committedSequence = snapshot.sequence;
+		}
+	}
+	
+	private final static class Snapshot {
+		final long sequence;
+		final SaveSlotInfo info;
+		final byte[] save;
+		
+		Snapshot(long sequence, SaveSlotInfo info, byte[] save) {
+			this.sequence = sequence;
+			this.info = info;
+			this.save = save;
+		}
+	}
+}
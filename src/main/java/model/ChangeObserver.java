@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * ChangeObserver is an Observer that is told what changed. MultiplayerModel notifies
+ * once per logical operation (a command, a step including any game over and player
+ * swap, a load) with the union of everything the operation changed, so an observer
+ * can refresh only those parts of itself. Plain Observers are still notified with
+ * update().
+ * 
+ * @author Lamprey
+ */
+public interface ChangeObserver extends Observer {
+	
+	public final static int SCORE = 1;
+	public final static int REACTOR = 1 << 1;		// Reactor values and control rods
+	public final static int CONDENSER = 1 << 2;
+	public final static int PUMPS = 1 << 3;			// RPM, failures and repairs of the pumps
+	public final static int VALVES = 1 << 4;
+	public final static int TURBINE = 1 << 5;
+	public final static int SOFTWARE = 1 << 6;		// The operating software
+	public final static int PLAYERS = 1 << 7;		// Names of the players, game over
+	public final static int PLAYER_SWAP = 1 << 8;	// The plant being played was replaced (swap, new game, load)
+	public final static int STEP = 1 << 9;			// One or more steps were played
+	public final static int ALL = (1 << 10) - 1;
+	
+	/**
+	 * Called once per operation on the model.
+	 * 
+	 * @param changes the union of the change flags of the operation
+	 */
+	public void update(int changes);
+	
+}
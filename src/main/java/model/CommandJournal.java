@@ -0,0 +1,711 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * CommandJournal is an append-only log of the commands given to a MultiplayerModel.
+ * A game is fully determined by the seed it was started with and the commands that
+ * followed, so a journal is a complete (and tiny) save of the game - JournalReplayer
+ * rebuilds the game at any step from it.
+ * 
+ * Every entry starts with its opcode and step stamp (the number of steps played in the
+ * journal before the command), followed by the arguments of the command:
+ * 		NEW_SINGLEPLAYER_GAME	long seed, name
+ * 		NEW_MULTIPLAYER_GAME	long seed, name, name
+ * 		SET_PLAYER_ONE_NAME		name
+ * 		SET_PLAYER_TWO_NAME		name
+ * 		SET_RANDOM_FAILURES		boolean
+ * 		STEP					int number of steps
+ * 		SET_CONTROL_RODS		int percentage lowered
+ * 		SET_PUMP_RPM			byte pump ID, int rpm
+ * 		SET_VALVE				byte valve ID, boolean open
+ * 		REPAIR_PUMP				byte pump ID
+ * 		FAIL_PUMP				byte pump ID
+ * 		RESTORE					int length, followed by a save (see GameSaveFormat)
+ * 		KEYFRAME				int length, followed by a save
+ * 		REPAIR_TURBINE, REPAIR_OPERATING_SOFTWARE, QUENCH_REACTOR, FAIL_TURBINE, FAIL_OS
+ * 								no arguments
+ * where a name is a boolean that is false for no name, or true followed by the name in
+ * modified UTF-8. A journal starts with a new game, or with RESTORE when the game was
+ * loaded from a save.
+ * 
+ * Every keyframeInterval steps the model records a KEYFRAME - a save of the whole game
+ * right after the step. Keyframes do not change the game when replayed, but let
+ * JournalReplayer.seek() start from the nearest keyframe instead of the beginning of the
+ * journal. A shorter interval makes seeking faster and the journal bigger (a keyframe of
+ * the standard plant is about 700 bytes). The journal keeps an index of its keyframes.
+ * 
+ * The journal is kept in memory, so it is bounded by maxSize: when a keyframe takes it
+ * past maxSize, the entries before a recent keyframe are dropped and that keyframe becomes
+ * the RESTORE the journal starts with (about half of maxSize is kept, so trimming is rare).
+ * The step stamps then count from the new start, like those of a loaded game. When the
+ * journal is over maxSize a keyframe is due even if keyframes are disabled.
+ * 
+ * A journal file holds FILE_MAGIC and the format version, followed by the entries.
+ * appendTo() only writes the entries recorded since the last call, so saving a journal
+ * is incremental. A torn entry at the end of a file (a crash while appending) is
+ * dropped when the file is read.
+ * 
+ * @author Lamprey
+ */
+public class CommandJournal {
+	
+	public final static int FILE_MAGIC = 0x52344A4E; // "R4JN"
+	public final static int FORMAT_VERSION = 1;
+	
+	public final static byte NEW_SINGLEPLAYER_GAME = 1;
+	public final static byte NEW_MULTIPLAYER_GAME = 2;
+	public final static byte SET_PLAYER_ONE_NAME = 3;
+	public final static byte SET_PLAYER_TWO_NAME = 4;
+	public final static byte SET_RANDOM_FAILURES = 5;
+	public final static byte STEP = 6;
+	public final static byte SET_CONTROL_RODS = 7;
+	public final static byte SET_PUMP_RPM = 8;
+	public final static byte SET_VALVE = 9;
+	public final static byte REPAIR_PUMP = 10;
+	public final static byte REPAIR_TURBINE = 11;
+	public final static byte REPAIR_OPERATING_SOFTWARE = 12;
+	public final static byte QUENCH_REACTOR = 13;
+	public final static byte FAIL_PUMP = 14;
+	public final static byte FAIL_TURBINE = 15;
+	public final static byte FAIL_OS = 16;
+	public final static byte RESTORE = 17;
+	public final static byte KEYFRAME = 18;
+	
+	public final static int DEFAULT_KEYFRAME_INTERVAL = 1000;
+	public final static int DEFAULT_MAX_SIZE = 1 << 20;
+	
+	private final static int HEADER_SIZE = 6;
+	
+	private final LogBuffer log;
+	private final DataOutputStream out;
+	private int step;
+	private int numCommands;
+	private File appendFile;
+	private int appendedLength;
+	private boolean recording;
+	private int keyframeInterval;
+	private int maxSize;
+	private int lastKeyframeStep;
+	private int numKeyframes;
+	private int[] keyframeOffsets;
+	private int[] keyframeSteps;
+	
+	/**
+	 * Creates an empty journal.
+	 */
+	public CommandJournal() {
+		this.log = new LogBuffer();
+		this.out = new DataOutputStream(log);
+		this.recording = true;
+		this.keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+		this.maxSize = DEFAULT_MAX_SIZE;
+		this.keyframeOffsets = new int[16];
+		this.keyframeSteps = new int[16];
+		clear();
+	}
+	
+	/**
+	 * Empties the journal, used when a new game is started. The next appendTo() rewrites
+	 * its file from the beginning.
+	 */
+	public void clear() {
+		log.reset();
+		step = 0;
+		numCommands = 0;
+		appendFile = null;
+		appendedLength = 0;
+		lastKeyframeStep = 0;
+		numKeyframes = 0;
+	}
+	
+	// ----------- Recording ---------------
+	
+	public void recordNewSingleplayerGame(long seed, String playerOneName) {
+		if (!recording) return;
+		try {
+			begin(NEW_SINGLEPLAYER_GAME);
+			out.writeLong(seed);
+			writeName(playerOneName);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordNewMultiplayerGame(long seed, String playerOneName, String playerTwoName) {
+		if (!recording) return;
+		try {
+			begin(NEW_MULTIPLAYER_GAME);
+			out.writeLong(seed);
+			writeName(playerOneName);
+			writeName(playerTwoName);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordSetPlayerName(int player, String name) {
+		if (!recording) return;
+		try {
+			begin(player == 1 ? SET_PLAYER_ONE_NAME : SET_PLAYER_TWO_NAME);
+			writeName(name);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordSetRandomFailures(boolean randomFailures) {
+		if (!recording) return;
+		try {
+			begin(SET_RANDOM_FAILURES);
+			out.writeBoolean(randomFailures);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordStep(int numSteps) {
+		if (!recording) return;
+		try {
+			begin(STEP);
+			out.writeInt(numSteps);
+			step += numSteps;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordSetControlRods(int percentageLowered) {
+		if (!recording) return;
+		try {
+			begin(SET_CONTROL_RODS);
+			out.writeInt(percentageLowered);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordSetPumpRpm(int pumpID, int rpm) {
+		if (!recording) return;
+		try {
+			begin(SET_PUMP_RPM);
+			out.writeByte(pumpID);
+			out.writeInt(rpm);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public void recordSetValve(int valveID, boolean open) {
+		if (!recording) return;
+		try {
+			begin(SET_VALVE);
+			out.writeByte(valveID);
+			out.writeBoolean(open);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Records a command on a single component.
+	 * 
+	 * @param opcode REPAIR_PUMP or FAIL_PUMP
+	 * @param id     ID of the pump
+	 */
+	public void recordComponentCommand(byte opcode, int id) {
+		if (!recording) return;
+		try {
+			begin(opcode);
+			out.writeByte(id);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Records a command without arguments.
+	 * 
+	 * @param opcode REPAIR_TURBINE, REPAIR_OPERATING_SOFTWARE, QUENCH_REACTOR, FAIL_TURBINE or FAIL_OS
+	 */
+	public void recordCommand(byte opcode) {
+		if (!recording) return;
+		try {
+			begin(opcode);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Empties the journal and starts it from a saved game, used when a game is loaded.
+	 * 
+	 * @param save the loaded game, written with GameSaveFormat
+	 */
+	public void recordRestore(byte[] save) {
+		if (!recording) return;
+		clear();
+		try {
+			begin(RESTORE);
+			out.writeInt(save.length);
+			out.write(save);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return true if a keyframe should be recorded after the step that was recorded last
+	 */
+	public boolean isKeyframeDue() {
+		if (!recording || step == lastKeyframeStep) return false;
+		return (keyframeInterval > 0 && step - lastKeyframeStep >= keyframeInterval)
+				|| (maxSize > 0 && log.size() > maxSize);
+	}
+	
+	/**
+	 * Records a keyframe of the game at the current step.
+	 * 
+	 * @param save the game, written with GameSaveFormat
+	 */
+	public void recordKeyframe(byte[] save) {
+		if (!recording) return;
+		int offset = log.size();
+		try {
+			begin(KEYFRAME);
+			out.writeInt(save.length);
+			out.write(save);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		addKeyframe(offset, step);
+		if (maxSize > 0 && log.size() > maxSize) {
+			trim();
+		}
+	}
+	
+	/**
+	 * Drops the entries before the oldest keyframe that leaves at most half of maxSize
+	 * (or before the last keyframe), turning that keyframe into a RESTORE. The next
+	 * appendTo() rewrites its file. Readers created before keep reading the old entries.
+	 */
+	private void trim() {
+		int first = 0;
+		while (first < numKeyframes - 1 && log.size() - keyframeOffsets[first] > maxSize / 2) {
+			first++;
+		}
+		int from = keyframeOffsets[first];
+		int fromStep = keyframeSteps[first];
+		log.discardBefore(from);
+		log.array()[0] = RESTORE;
+		
+		// Count the steps from the new start.
+		ByteBuffer stamps = ByteBuffer.wrap(log.array());
+		Reader reader = reader();
+		numCommands = 0;
+		try {
+			while (reader.hasNext()) {
+				int offset = reader.getPosition();
+				reader.next();
+				stamps.putInt(offset + 1, reader.step - fromStep);
+				numCommands++;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		// The keyframe is now the RESTORE, not a keyframe.
+		int kept = numKeyframes - first - 1;
+		for (int i = 0; i < kept; i++) {
+			keyframeOffsets[i] = keyframeOffsets[first + 1 + i] - from;
+			keyframeSteps[i] = keyframeSteps[first + 1 + i] - fromStep;
+		}
+		numKeyframes = kept;
+		step -= fromStep;
+		lastKeyframeStep -= fromStep;
+		appendFile = null;
+		appendedLength = 0;
+	}
+	
+	private void addKeyframe(int offset, int keyframeStep) {
+		if (numKeyframes == keyframeOffsets.length) {
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, numKeyframes * 2);
+			keyframeSteps = Arrays.copyOf(keyframeSteps, numKeyframes * 2);
+		}
+		keyframeOffsets[numKeyframes] = offset;
+		keyframeSteps[numKeyframes] = keyframeStep;
+		numKeyframes++;
+		lastKeyframeStep = keyframeStep;
+	}
+	
+	private void begin(byte opcode) throws IOException {
+		out.writeByte(opcode);
+		out.writeInt(step);
+		numCommands++;
+	}
+	
+	private void writeName(String name) throws IOException {
+		out.writeBoolean(name != null);
+		if (name != null) out.writeUTF(name);
+	}
+	
+	// ----------- Files ---------------
+	
+	/**
+	 * Appends the entries recorded since the last call to a file and forces them to the
+	 * disk. The first call (and the first call after clear(), or with another file) writes
+	 * the whole journal, replacing the file.
+	 * 
+	 * @param file the journal file
+	 * @throws IOException if the file could not be written
+	 */
+	public void appendTo(File file) throws IOException {
+		if (!file.equals(appendFile)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(FILE_MAGIC).putShort((short) FORMAT_VERSION);
+			byte[] content = new byte[HEADER_SIZE + log.size()];
+			System.arraycopy(header.array(), 0, content, 0, HEADER_SIZE);
+			System.arraycopy(log.array(), 0, content, HEADER_SIZE, log.size());
+			GameSaveFormat.writeAtomically(file, content);
+		} else if (appendedLength < log.size()) {
+			FileOutputStream fileOut = new FileOutputStream(file, true);
+			try {
+				fileOut.write(log.array(), appendedLength, log.size() - appendedLength);
+				fileOut.getChannel().force(false);
+			} finally {
+				fileOut.close();
+			}
+		}
+		appendFile = file;
+		appendedLength = log.size();
+	}
+	
+	/**
+	 * Reads a journal file. Entries appended later to the returned journal can be
+	 * appended to the same file.
+	 * 
+	 * @param file the journal file
+	 * @return the journal
+	 * @throws IOException if the file is not a journal of a supported version
+	 */
+	public static CommandJournal read(File file) throws IOException {
+		byte[] content = Files.readAllBytes(file.toPath());
+		ByteBuffer header = ByteBuffer.wrap(content);
+		if (content.length < HEADER_SIZE || header.getInt() != FILE_MAGIC) {
+			throw new IOException(file.getName() + " is not a command journal.");
+		}
+		int version = header.getShort() & 0xFFFF;
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Command journal version " + version + " is not supported.");
+		}
+		
+		CommandJournal journal = new CommandJournal();
+		journal.log.write(content, HEADER_SIZE, content.length - HEADER_SIZE);
+		// Find the last complete entry, dropping a torn one.
+		Reader reader = journal.reader();
+		int validLength = 0;
+		try {
+			while (reader.hasNext()) {
+				int offset = reader.getPosition();
+				reader.next();
+				if (reader.opcode == KEYFRAME) {
+					journal.addKeyframe(offset, reader.step);
+				}
+				validLength = reader.getPosition();
+				journal.numCommands++;
+				journal.step = reader.getStepAfter();
+			}
+		} catch (EOFException e) {
+			// Torn entry at the end.
+		}
+		journal.log.truncate(validLength);
+		if (validLength == content.length - HEADER_SIZE) {
+			journal.appendFile = file;
+			journal.appendedLength = validLength;
+		}
+		return journal;
+	}
+	
+	// ----------- Getters ---------------
+	
+	/**
+	 * 
+	 * @return the number of steps played in the journal
+	 */
+	public int getStep() {
+		return step;
+	}
+	
+	/**
+	 * 
+	 * @return the number of entries in the journal, keyframes included
+	 */
+	public int getNumCommands() {
+		return numCommands;
+	}
+	
+	public int getNumKeyframes() {
+		return numKeyframes;
+	}
+	
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+	
+	/**
+	 * Sets the number of steps between keyframes, trading the size of the journal for the
+	 * time it takes to seek in it.
+	 * 
+	 * @param keyframeInterval steps between keyframes, 0 to record no keyframes
+	 */
+	public void setKeyframeInterval(int keyframeInterval) {
+		if (keyframeInterval < 0) {
+			throw new IllegalArgumentException("CommandJournal: keyframeInterval must not be negative.");
+		}
+		this.keyframeInterval = keyframeInterval;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Sets the most bytes the journal keeps before it drops its oldest entries.
+	 * 
+	 * @param maxSize the size in bytes, 0 to keep every entry
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("CommandJournal: maxSize must not be negative.");
+		}
+		this.maxSize = maxSize;
+	}
+	
+	public boolean isRecording() {
+		return recording;
+	}
+	
+	/**
+	 * 
+	 * @param recording false to ignore all commands, i.e. for replayed games
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+	
+	/**
+	 * 
+	 * @param toStep a step
+	 * @return the index of the last keyframe at or before toStep, -1 if there is none
+	 */
+	int findKeyframe(int toStep) {
+		int low = 0;
+		int high = numKeyframes - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (keyframeSteps[mid] <= toStep) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+	
+	int getKeyframeStep(int index) {
+		return keyframeSteps[index];
+	}
+	
+	/**
+	 * 
+	 * @return the size of the recorded entries in bytes
+	 */
+	public int size() {
+		return log.size();
+	}
+	
+	/**
+	 * 
+	 * @return a reader over the entries recorded so far
+	 */
+	Reader reader() {
+		return new Reader(log.array(), log.size());
+	}
+	
+	/**
+	 * 
+	 * @param keyframe index of a keyframe
+	 * @return a reader positioned at the keyframe
+	 */
+	Reader readerAtKeyframe(int keyframe) {
+		Reader reader = reader();
+		reader.buffer.position(keyframeOffsets[keyframe]);
+		return reader;
+	}
+	
+	/**
+	 * Reader decodes the entries of a journal one after the other. The fields of the
+	 * entry that was read last are kept in the reader, so reading does not allocate
+	 * (except for names). Saves are not copied out of the journal, see saveInput().
+	 */
+	static final class Reader {
+		private final ByteBuffer buffer;
+		
+		byte opcode;
+		int step;
+		long seed;
+		int id;
+		int value;
+		boolean flag;
+		String name;
+		String otherName;
+		int saveOffset;
+		int saveLength;
+		
+		Reader(byte[] log, int length) {
+			this.buffer = ByteBuffer.wrap(log, 0, length);
+		}
+		
+		boolean hasNext() {
+			return buffer.hasRemaining();
+		}
+		
+		/**
+		 * Decodes the next entry into the fields of the reader.
+		 * 
+		 * @throws EOFException if the entry is torn
+		 * @throws IOException if the entry is not valid
+		 */
+		void next() throws IOException {
+			try {
+				opcode = buffer.get();
+				step = buffer.getInt();
+				switch (opcode) {
+					case NEW_SINGLEPLAYER_GAME:
+						seed = buffer.getLong();
+						name = readName();
+						break;
+					case NEW_MULTIPLAYER_GAME:
+						seed = buffer.getLong();
+						name = readName();
+						otherName = readName();
+						break;
+					case SET_PLAYER_ONE_NAME:
+					case SET_PLAYER_TWO_NAME:
+						name = readName();
+						break;
+					case SET_RANDOM_FAILURES:
+						flag = buffer.get() != 0;
+						break;
+					case STEP:
+					case SET_CONTROL_RODS:
+						value = buffer.getInt();
+						break;
+					case SET_PUMP_RPM:
+						id = buffer.get();
+						value = buffer.getInt();
+						break;
+					case SET_VALVE:
+						id = buffer.get();
+						flag = buffer.get() != 0;
+						break;
+					case REPAIR_PUMP:
+					case FAIL_PUMP:
+						id = buffer.get();
+						break;
+					case REPAIR_TURBINE:
+					case REPAIR_OPERATING_SOFTWARE:
+					case QUENCH_REACTOR:
+					case FAIL_TURBINE:
+					case FAIL_OS:
+						break;
+					case RESTORE:
+					case KEYFRAME:
+						saveLength = buffer.getInt();
+						if (saveLength < 0 || saveLength > buffer.remaining()) throw new EOFException();
+						saveOffset = buffer.position();
+						buffer.position(saveOffset + saveLength);
+						break;
+					default:
+						throw new IOException("Command journal holds an unknown command " + opcode + ".");
+				}
+			} catch (BufferUnderflowException e) {
+				throw new EOFException("Command journal ends inside a command.");
+			}
+		}
+		
+		/**
+		 * 
+		 * @return the save of the RESTORE or KEYFRAME entry that was read last
+		 */
+		DataInputStream saveInput() {
+			return new DataInputStream(new ByteArrayInputStream(buffer.array(), saveOffset, saveLength));
+		}
+		
+		/**
+		 * 
+		 * @return the step stamp after the entry that was read last
+		 */
+		int getStepAfter() {
+			return opcode == STEP ? step + value : step;
+		}
+		
+		/**
+		 * 
+		 * @return the offset of the next entry
+		 */
+		int getPosition() {
+			return buffer.position();
+		}
+		
+		private String readName() throws IOException {
+			if (buffer.get() == 0) return null;
+			int length = buffer.getShort() & 0xFFFF;
+			if (length > buffer.remaining()) throw new EOFException();
+			// Names are modified UTF-8; decode them like DataInputStream does.
+			byte[] bytes = new byte[length + 2];
+			bytes[0] = (byte) (length >> 8);
+			bytes[1] = (byte) length;
+			buffer.get(bytes, 2, length);
+			return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+		}
+	}
+	
+	/**
+	 * A ByteArrayOutputStream that gives access to its array without copying it.
+	 */
+	private final static class LogBuffer extends ByteArrayOutputStream {
+		
+		LogBuffer() {
+			super(1024);
+		}
+		
+		byte[] array() {
+			return buf;
+		}
+		
+		void truncate(int length) {
+			count = length;
+		}
+		
+		/**
+		 * Drops the bytes before offset, into a new array so readers of the old one are
+		 * not disturbed.
+		 */
+		void discardBefore(int offset) {
+			buf = Arrays.copyOfRange(buf, offset, offset + buf.length);
+			count -= offset;
+		}
+	}
+}
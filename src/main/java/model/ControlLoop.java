@@ -0,0 +1,164 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * ControlLoop is a single proportional-integral-derivative (PID) feedback loop.
+ * It is given a measured value once per time step and returns the actuator
+ * output that drives the measurement towards the setpoint.
+ *
+ * The loop only keeps primitive state, so updating it never allocates. The
+ * integral term is frozen while the output is saturated (conditional integration)
+ * so that the loop does not wind up when the actuator is at one of its limits.
+ *
+ * A direct acting loop raises its output when the measurement is below the setpoint
+ * (i.e. feed pumps and reactor water volume). A reverse acting loop raises its output
+ * when the measurement is above the setpoint (i.e. control rods and reactor temperature).
+ *
+ * @author Lamprey
+ */
+public class ControlLoop implements Serializable {
+	private static final long serialVersionUID = -2519632043734372411L;
+
+	private double setpoint;
+	private double kp;
+	private double ki;
+	private double kd;
+	private int minOutput;
+	private int maxOutput;
+	private boolean reverseActing;
+
+	private double integral;
+	private double previousError;
+	private boolean primed;
+
+	/**
+	 * Creates a new direct acting control loop.
+	 *
+	 * @param setpoint  the value the measurement should be held at
+	 * @param kp        proportional gain
+	 * @param ki        integral gain (per time step)
+	 * @param kd        derivative gain (per time step)
+	 * @param minOutput lowest output the actuator accepts
+	 * @param maxOutput highest output the actuator accepts
+	 */
+	public ControlLoop(double setpoint, double kp, double ki, double kd, int minOutput, int maxOutput) {
+		if (minOutput > maxOutput) {
+			throw new IllegalArgumentException("ControlLoop: minOutput must not be greater than maxOutput.");
+		}
+		this.setpoint = setpoint;
+		this.kp = kp;
+		this.ki = ki;
+		this.kd = kd;
+		this.minOutput = minOutput;
+		this.maxOutput = maxOutput;
+		this.reverseActing = false;
+		reset();
+	}
+
+	/**
+	 * Calculates the actuator output for this time step.
+	 *
+	 * @param measured the current value of the controlled variable
+	 * @return the new actuator output, clamped to [minOutput..maxOutput]
+	 */
+	public int update(int measured) {
+		double error = reverseActing ? measured - setpoint : setpoint - measured;
+		double derivative = primed ? error - previousError : 0;
+		previousError = error;
+		primed = true;
+
+		double unclamped = kp * error + ki * (integral + error) + kd * derivative;
+		double output = clamp(unclamped);
+		// Only integrate while the actuator is not saturated (anti-windup).
+		if (output == unclamped) {
+			integral += error;
+		}
+		return (int) Math.round(output);
+	}
+
+	/**
+	 * Clears the integral and derivative history of the loop.
+	 */
+	public void reset() {
+		this.integral = 0;
+		this.previousError = 0;
+		this.primed = false;
+	}
+
+	private double clamp(double value) {
+		if (value < minOutput) return minOutput;
+		if (value > maxOutput) return maxOutput;
+		return value;
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public double getSetpoint() {
+		return setpoint;
+	}
+
+	public void setSetpoint(double setpoint) {
+		this.setpoint = setpoint;
+	}
+
+	/**
+	 * Changes all three gains of the loop at once.
+	 *
+	 * @param kp proportional gain
+	 * @param ki integral gain
+	 * @param kd derivative gain
+	 */
+	public void setGains(double kp, double ki, double kd) {
+		this.kp = kp;
+		this.ki = ki;
+		this.kd = kd;
+	}
+
+	public double getKp() {
+		return kp;
+	}
+
+	public double getKi() {
+		return ki;
+	}
+
+	public double getKd() {
+		return kd;
+	}
+
+	public int getMinOutput() {
+		return minOutput;
+	}
+
+	public int getMaxOutput() {
+		return maxOutput;
+	}
+
+	/**
+	 *
+	 * @param maxOutput highest output the actuator accepts, not below the lowest
+	 */
+	public void setMaxOutput(int maxOutput) {
+		if (maxOutput < minOutput) {
+			throw new IllegalArgumentException("ControlLoop: maxOutput must not be less than minOutput.");
+		}
+		this.maxOutput = maxOutput;
+	}
+
+	/**
+	 *
+	 * @return true if the output rises as the measurement rises above the setpoint
+	 */
+	public boolean isReverseActing() {
+		return reverseActing;
+	}
+
+	/**
+	 *
+	 * @param reverseActing true if the output should rise as the measurement rises above the setpoint
+	 */
+	public void setReverseActing(boolean reverseActing) {
+		this.reverseActing = reverseActing;
+	}
+}
@@ -0,0 +1,140 @@
+package model;
+
+import java.io.Serializable;
+import java.util.List;
+
+import components.Pump;
+import components.Reactor;
+
+/**
+ * FeedbackController is the optional closed-loop control subsystem of the plant.
+ * When it is attached to a Plant it is evaluated inside Plant.step() before the
+ * flow is updated, and it adjusts the actuators the operator would otherwise set
+ * by hand:
+ * 		- Reactor temperature	-> control rods (reverse acting).
+ * 		- Reactor water volume	-> RPM of the feed pumps (the pumps in the water loop).
+ * 		- Condenser temperature	-> RPM of the condenser's coolant pump (reverse acting).
+ *
+ * The pump loops never ask for more RPM than the pumps they drive can run at:
+ * every step their highest output is limited to the lowest maximum RPM of those
+ * pumps (a lower limit given to a loop is kept).
+ *
+ * Any of the loops can be switched off by setting it to null. The controller acts
+ * on the components directly, like a hardware interlock, so it keeps working when
+ * the operating software has failed. Evaluating the controller does not allocate.
+ *
+ * @author Lamprey
+ */
+public class FeedbackController implements Serializable {
+	private static final long serialVersionUID = 6133853426787213417L;
+
+	// Default setpoints keep the reactor well inside its limits while producing rated power.
+	public final static int DEFAULT_REACTOR_TEMPERATURE = 700;
+	public final static int DEFAULT_REACTOR_WATER_VOLUME = 6000;
+	public final static int DEFAULT_CONDENSER_TEMPERATURE = 400;
+
+	private ControlLoop controlRodsLoop;
+	private ControlLoop feedPumpsLoop;
+	private ControlLoop coolantPumpLoop;
+
+	/**
+	 * Creates a controller with all three loops enabled and tuned to the default setpoints.
+	 */
+	public FeedbackController() {
+		this.controlRodsLoop = new ControlLoop(DEFAULT_REACTOR_TEMPERATURE, 0.2, 0.01, 0.5, 0, 100);
+		this.controlRodsLoop.setReverseActing(true);
+		// No upper limit of their own - control() limits them to the RPM of their pumps.
+		this.feedPumpsLoop = new ControlLoop(DEFAULT_REACTOR_WATER_VOLUME, 0.5, 0.01, 0, 0, Integer.MAX_VALUE);
+		this.coolantPumpLoop = new ControlLoop(DEFAULT_CONDENSER_TEMPERATURE, 5, 0.05, 0, 0, Integer.MAX_VALUE);
+		this.coolantPumpLoop.setReverseActing(true);
+	}
+
+	/**
+	 * Creates a controller from the given loops. Any of them may be null to leave
+	 * that actuator under manual control.
+	 *
+	 * @param controlRodsLoop  loop driving the control rods from the reactor temperature
+	 * @param feedPumpsLoop    loop driving the feed pumps from the reactor water volume
+	 * @param coolantPumpLoop  loop driving the coolant pump from the condenser temperature
+	 */
+	public FeedbackController(ControlLoop controlRodsLoop, ControlLoop feedPumpsLoop, ControlLoop coolantPumpLoop) {
+		this.controlRodsLoop = controlRodsLoop;
+		this.feedPumpsLoop = feedPumpsLoop;
+		this.coolantPumpLoop = coolantPumpLoop;
+	}
+
+	/**
+	 * Reads the controlled variables of the plant and sets the actuators for this step.
+	 *
+	 * @param plant the plant to control
+	 */
+	public void control(Plant plant) {
+		Reactor reactor = plant.getReactor();
+		Pump coolantPump = plant.getCondenser().getCoolantPump();
+		if (controlRodsLoop != null) {
+			reactor.setControlRods(controlRodsLoop.update(reactor.getTemperature()));
+		}
+		if (feedPumpsLoop != null) {
+			List<Pump> pumps = plant.getPumps();
+			// Indexed loops on purpose - no iterator is created per step.
+			for (int i = 0; i < pumps.size(); i++) {
+				Pump pump = pumps.get(i);
+				if (pump != coolantPump) limitToPump(feedPumpsLoop, pump);
+			}
+			int rpm = feedPumpsLoop.update(reactor.getWaterVolume());
+			for (int i = 0; i < pumps.size(); i++) {
+				Pump pump = pumps.get(i);
+				if (pump != coolantPump) pump.setRpm(rpm);
+			}
+		}
+		if (coolantPumpLoop != null) {
+			limitToPump(coolantPumpLoop, coolantPump);
+			coolantPump.setRpm(coolantPumpLoop.update(plant.getCondenser().getTemperature()));
+		}
+	}
+
+	/**
+	 * Lowers the highest output of a loop to the maximum RPM of a pump it drives.
+	 *
+	 * @param loop the loop driving the pump
+	 * @param pump the pump
+	 */
+	private void limitToPump(ControlLoop loop, Pump pump) {
+		if (loop.getMaxOutput() > pump.getMaxRpm()) loop.setMaxOutput(pump.getMaxRpm());
+	}
+
+	/**
+	 * Clears the history of all loops, used when a new game is started.
+	 */
+	public void reset() {
+		if (controlRodsLoop != null) controlRodsLoop.reset();
+		if (feedPumpsLoop != null) feedPumpsLoop.reset();
+		if (coolantPumpLoop != null) coolantPumpLoop.reset();
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public ControlLoop getControlRodsLoop() {
+		return controlRodsLoop;
+	}
+
+	public void setControlRodsLoop(ControlLoop controlRodsLoop) {
+		this.controlRodsLoop = controlRodsLoop;
+	}
+
+	public ControlLoop getFeedPumpsLoop() {
+		return feedPumpsLoop;
+	}
+
+	public void setFeedPumpsLoop(ControlLoop feedPumpsLoop) {
+		this.feedPumpsLoop = feedPumpsLoop;
+	}
+
+	public ControlLoop getCoolantPumpLoop() {
+		return coolantPumpLoop;
+	}
+
+	public void setCoolantPumpLoop(ControlLoop coolantPumpLoop) {
+		this.coolantPumpLoop = coolantPumpLoop;
+	}
+}
@@ -40,6 +40,15 @@ public class Flow implements Serializable {
 		this.temperature = DEFAULT_TEMPERATURE;
 	}
 	
+	/**
+	 * Restores the default rate and temperature. The type of the flow is
+	 * fixed by the component that owns it and is left unchanged.
+	 */
+	public void reset() {
+		this.rate = DEFAULT_RATE;
+		this.temperature = DEFAULT_TEMPERATURE;
+	}
+	
 	/**
 	 * 
 	 * @return rate of flow
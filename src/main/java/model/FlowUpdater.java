@@ -1,10 +1,8 @@
 package model;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import components.Condenser;
 import components.ConnectorPipe;
@@ -13,13 +11,26 @@ import components.Pump;
 import components.Reactor;
 import components.Valve;
 
+/**
+ * FlowUpdater calculates the flow of steam and water through a plant for one
+ * time step. It keeps no state of its own (everything it needs is in the plant,
+ * including its scratch space), so a single FlowUpdater is shared by all plants.
+ * 
+ * Updating the flow allocates nothing, so that stepping and resetting a plant
+ * produce no garbage: the lists of the plant are walked by index rather than with
+ * iterators.
+ * 
+ * @author Lamprey
+ */
 public class FlowUpdater implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
-	private Plant plant;
+	/**
+	 * The flow updater shared by all plants.
+	 */
+	public final static FlowUpdater INSTANCE = new FlowUpdater();
 	
-	public FlowUpdater(Plant plant) {
-		this.plant = plant;
+	private FlowUpdater() {
 	}
 	
 	/**
@@ -40,18 +51,18 @@ public class FlowUpdater implements Serializable {
 	 * 		- Transfer steam from the reactor into the condenser.
 	 * 		- Transfer water from the condenser into the reactor. 
 	 */
-	public void updateFlow() {
-		setAllConnectorPipesUnblocked();
-		blockFromValves();
-		blockFromConnectorPipes();
-		resetFlowAllComponents();
+	public void updateFlow(Plant plant) {
+		setAllConnectorPipesUnblocked(plant);
+		blockFromValves(plant);
+		blockFromConnectorPipes(plant);
+		resetFlowAllComponents(plant);
 		
-		propagateFlowFromReactor(); // Start propagation of steam flow.
-		propagateFlowFromPumpsToCondenser(); // Total up all pump flows at condenser
-		propagateFlowFromCondenser();	// Start propagation of water flow.
-		propagateFlowFromConnectorPipes();
-		moveSteam();
-		moveWater(); 
+		propagateFlowFromReactor(plant); // Start propagation of steam flow.
+		propagateFlowFromPumpsToCondenser(plant); // Total up all pump flows at condenser
+		propagateFlowFromCondenser(plant);	// Start propagation of water flow.
+		propagateFlowFromConnectorPipes(plant);
+		moveSteam(plant);
+		moveWater(plant); 
 	}
 	
 	/**
@@ -60,9 +71,10 @@ public class FlowUpdater implements Serializable {
 	 * before propagating the blockages since valves can change state between 
 	 * steps.
 	 */
-	private void setAllConnectorPipesUnblocked() {
-		for (ConnectorPipe cp : plant.getConnectorPipes()) {
-			cp.resetState();
+	private void setAllConnectorPipesUnblocked(Plant plant) {
+		List<ConnectorPipe> connectorPipes = plant.getConnectorPipes();
+		for (int i = 0; i < connectorPipes.size(); i++) {
+			connectorPipes.get(i).resetState();
 		}
 	}
 	
@@ -70,9 +82,10 @@ public class FlowUpdater implements Serializable {
 	 * Iterates through all valves in the system and if they are closed we
 	 * propagate the blockage through to the next preceding ConnectorPipe.
 	 */
-	private void blockFromValves() {
+	private void blockFromValves(Plant plant) {
 		List<Valve> valves = plant.getValves();
-		for (Valve v : valves) {
+		for (int i = 0; i < valves.size(); i++) {
+			Valve v = valves.get(i);
 			if (!v.isOpen()) blockToPrecedingConnectorPipe(v);
 		}
 	}
@@ -108,22 +121,22 @@ public class FlowUpdater implements Serializable {
 	 * 
 	 * This is done until all blocked ConnectorPipes have had their blockage propagated.
 	 */
-	private void blockFromConnectorPipes() {
+	private void blockFromConnectorPipes(Plant plant) {
 		boolean changed = true;
 		List<ConnectorPipe> connectorPipes = plant.getConnectorPipes();
-		Map<ConnectorPipe, Boolean> hasBeenPropagated = new HashMap<ConnectorPipe, Boolean>();
+		boolean[] hasBeenPropagated = plant.getBlockagePropagated();
+		Arrays.fill(hasBeenPropagated, 0, connectorPipes.size(), false);
 		while (changed) {
 			changed = false;
 			// iterate through all connector pipes and check if they're blocked up.
-			for (ConnectorPipe c : connectorPipes) {
-				// If we're not already keeping track of c, add it to the hashmap
-				if (!hasBeenPropagated.containsKey(c)) hasBeenPropagated.put(c, false);
+			for (int i = 0; i < connectorPipes.size(); i++) {
+				ConnectorPipe c = connectorPipes.get(i);
 				// If connectorPipe has all of it's outputs blocked
 				// And the blockage hasn't been propagated
-				if (isConnectorBlocking(c) && !hasBeenPropagated.get(c)) {
+				if (isConnectorBlocking(c) && !hasBeenPropagated[i]) {
 					// Block the path leading into it.
 					blockPrecedingFromConnectorPipe(c);
-					hasBeenPropagated.put(c, true);
+					hasBeenPropagated[i] = true;
 					changed = true;
 				}
 			}
@@ -136,10 +149,7 @@ public class FlowUpdater implements Serializable {
 	 * @return true if all outputs of a ConnectorPipe are blocked.
 	 */
 	private boolean isConnectorBlocking(ConnectorPipe cp) {
-		for(Boolean blocked : cp.getOutputsMap().values()) {	
-			if (!blocked) return false;
-		}
-		return true;
+		return cp.numOutputs() == 0;
 	}
 	
 	/**
@@ -152,8 +162,8 @@ public class FlowUpdater implements Serializable {
 	 * @param blockedConnector the blocked ConnectorPipe to start from
 	 */
 	private void blockPrecedingFromConnectorPipe(ConnectorPipe blockedConnector) {
-		List<PlantComponent> multipleInputs = ((ConnectorPipe) blockedConnector).getInputs();
-		for (PlantComponent pc : multipleInputs) {
+		for (int i = 0; i < blockedConnector.getNumInputs(); i++) {
+			PlantComponent pc = blockedConnector.getInput(i);
 			if (pc instanceof ConnectorPipe) {
 				((ConnectorPipe) pc).setComponentBlocked(blockedConnector);
 			} else {
@@ -166,8 +176,10 @@ public class FlowUpdater implements Serializable {
 	 * Resets the flow of all components back ready for the flow around the system to be
 	 * recalculated for the current state of the plant.
 	 */
-	private void resetFlowAllComponents() {
-		for (PlantComponent pc : plant.getPlantComponents()) {
+	private void resetFlowAllComponents(Plant plant) {
+		List<PlantComponent> plantComponents = plant.getPlantComponents();
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent pc = plantComponents.get(i);
 			pc.getFlowOut().setRate(0);
 			pc.getFlowOut().setTemperature(0);
 		}
@@ -177,9 +189,9 @@ public class FlowUpdater implements Serializable {
 	 * Start off propagation of the flow from the reactor to the next 
 	 * ConnectorPipe encountered.
 	 */
-	private void propagateFlowFromReactor()
+	private void propagateFlowFromReactor(Plant plant)
 	{
-		int flowRate = calcReactorFlowOut();
+		int flowRate = calcReactorFlowOut(plant);
 		Reactor reactor = plant.getReactor();
 		Condenser condenser = plant.getCondenser();
 		// If there's a clear path from the reactor to the condenser then calculate
@@ -187,7 +199,7 @@ public class FlowUpdater implements Serializable {
 		if (isPathToForwards(reactor, condenser)) {
 			reactor.getFlowOut().setRate(flowRate);
 			reactor.getFlowOut().setTemperature(reactor.getTemperature());
-			limitReactorFlowDueToValveMaxFlow(reactor);
+			limitReactorFlowDueToValveMaxFlow(plant, reactor);
 			propagateFlowToNextConnectorPipe(reactor);
 		} else {
 			// Otherwise, all paths are blocked & don't bother.
@@ -203,7 +215,7 @@ public class FlowUpdater implements Serializable {
 	 *  
 	 * @return rate of flow of steam out of the reactor
 	 */
-	private int calcReactorFlowOut() {
+	private int calcReactorFlowOut(Plant plant) {
 		int steamDifference = Math.abs(plant.getReactor().getSteamVolume() - plant.getCondenser().getSteamVolume());
 		return Math.min(steamDifference, Math.min(plant.getReactor().getSteamVolume(), Reactor.getMaxSteamFlowRate()));
 	}
@@ -228,14 +240,13 @@ public class FlowUpdater implements Serializable {
 			} else {
 				ConnectorPipe cp = (ConnectorPipe) start.getOutput();
 				// I say, I say, we've got ourselves a ConnectorPipe!
-				List<PlantComponent> possiblePaths = cp.getOutputs();
-				for (PlantComponent possibleNext : possiblePaths) {
+				for (int i = 0; i < cp.getNumAllOutputs(); i++) {
 					/* Check if we're moving forwards, check that the ConnectorPipe output
 					 * we're leaving from isn't blocked. If it is we don't move that way.
 					 */
-					if (!cp.getOutputsMap().get(possibleNext)) {
+					if (!cp.isOutputBlocked(i)) {
 						// return isPathTo(possibleNext1, ...) || ... || isPathTo(possibleNextN,...)
-						if (isPathToForwards(possibleNext, goal)) return true;
+						if (isPathToForwards(cp.getOutput(i), goal)) return true;
 					}
 				}
 				// All paths out of this connector pipe are blocked, no paths available :(
@@ -264,12 +275,12 @@ public class FlowUpdater implements Serializable {
 			} else {
 				ConnectorPipe cp = (ConnectorPipe) start.getInput();
 				//Check if this path back is blocked
-				if (cp.getOutputsMap().get(start)) {
+				if (cp.isOutputBlocked(start)) {
 					return false;
 				}
 				// I say, I say, we've got ourselves a ConnectorPipe!
-				List<PlantComponent> possiblePaths = cp.getInputs();
-				for (PlantComponent possibleNext : possiblePaths) {
+				for (int i = 0; i < cp.getNumInputs(); i++) {
+					PlantComponent possibleNext = cp.getInput(i);
 					/* Check if we're moving forwards, check that the ConnectorPipe output
 					 * we're leaving from isn't blocked. If it is we don't move that way.
 					 */
@@ -290,10 +301,12 @@ public class FlowUpdater implements Serializable {
 	 * 
 	 * @param reactor the reactor to limit
 	 */
-	private void limitReactorFlowDueToValveMaxFlow(Reactor reactor)
+	private void limitReactorFlowDueToValveMaxFlow(Plant plant, Reactor reactor)
 	{
 		int maxFlow = 0;
-		for (Valve v : plant.getValves()) {
+		List<Valve> valves = plant.getValves();
+		for (int i = 0; i < valves.size(); i++) {
+			Valve v = valves.get(i);
 			// If there is a path backwards from this valve to the reactor.
 			// Also implying that it is actually in front of the reactor.
 			if (isPathToBackwards(v, reactor)) {
@@ -336,14 +349,16 @@ public class FlowUpdater implements Serializable {
 	 * 
 	 * This method does not support multiple condensers.
 	 */
-	private void propagateFlowFromPumpsToCondenser()
+	private void propagateFlowFromPumpsToCondenser(Plant plant)
 	{
 		Condenser condenser = plant.getCondenser();
 		// Iterate through all pumps and start tracking back through the system
-		for (Pump p : plant.getPumps()) {
+		List<Pump> pumps = plant.getPumps();
+		for (int i = 0; i < pumps.size(); i++) {
+			Pump p = pumps.get(i);
 			// If the pump is broken, move onto the next one.
 			if (!plant.getFailedComponents().contains(p) && p.getInput() != null) {
-				increaseCondenserFlowOutFromPump(p);
+				increaseCondenserFlowOutFromPump(plant, p);
 			}
 		}
 		// Finally.. Make sure the flow out of the condenser will not take us into negative volume.
@@ -360,7 +375,7 @@ public class FlowUpdater implements Serializable {
 	 * 
 	 * @param p Pump to increase the flow out of the condenser
 	 */
-	private void increaseCondenserFlowOutFromPump(Pump p) {
+	private void increaseCondenserFlowOutFromPump(Plant plant, Pump p) {
 		int flowRate = calcFlowFromPumpRpm(p);
 		Condenser condenser = plant.getCondenser();
 		condenser.getFlowOut().setRate(condenser.getFlowOut().getRate() + flowRate);
@@ -376,14 +391,14 @@ public class FlowUpdater implements Serializable {
 	private int calcFlowFromPumpRpm(Pump pump)
 	{
 		int maxRpm = pump.getMaxRpm();
-		return (int) Math.round(Pump.getMaxWaterFlowRatePerPump() * (1 - (new Double((maxRpm - pump.getRpm())/new Double(maxRpm)))));
+		return (int) Math.round(Pump.getMaxWaterFlowRatePerPump() * (1 - ((double) (maxRpm - pump.getRpm()) / maxRpm)));
 	}
 	
 	/**
 	 * Set's off the propagation from the condenser to the next ConnectorPipe from 
 	 * it's output.
 	 */
-	private void propagateFlowFromCondenser()
+	private void propagateFlowFromCondenser(Plant plant)
 	{
 		Condenser condenser = plant.getCondenser();
 		condenser.getFlowOut().setTemperature(condenser.getTemperature());
@@ -396,7 +411,7 @@ public class FlowUpdater implements Serializable {
 	 * Do this until nothing in the system changes 
 	 * (Inspired by bubble sort's changed flag... "Good Ol' Bubble Sort!")
 	 */
-	private void propagateFlowFromConnectorPipes()
+	private void propagateFlowFromConnectorPipes(Plant plant)
 	{
 		boolean changed = true;
 		int oldRate;
@@ -404,7 +419,8 @@ public class FlowUpdater implements Serializable {
 		while (changed) {
 			changed = false;
 			// iterate through all connector pipes and update their rate.
-			for (ConnectorPipe c : connectorPipes) {
+			for (int i = 0; i < connectorPipes.size(); i++) {
+				ConnectorPipe c = connectorPipes.get(i);
 				oldRate = c.getFlowOut().getRate();
 				calcConnectorFlowOut(c);
 				if (oldRate != c.getFlowOut().getRate()) {
@@ -421,12 +437,12 @@ public class FlowUpdater implements Serializable {
 	 * @param connector the connector to update.
 	 */
 	private void calcConnectorFlowOut(ConnectorPipe connector) {
-		ArrayList<PlantComponent> inputs = connector.getInputs();
 		int totalFlow = 0;
 		int avgTemp = 0;
 		int numOutputs = connector.numOutputs();
 		int numInputs = 0;
-		for (PlantComponent input : inputs) {
+		for (int i = 0; i < connector.getNumInputs(); i++) {
+			PlantComponent input = connector.getInput(i);
 			if (input != null) {
 				totalFlow += input.getFlowOut().getRate();
 				avgTemp += input.getFlowOut().getTemperature();
@@ -446,10 +462,10 @@ public class FlowUpdater implements Serializable {
 	 * @param startConnectorPipe The ConnectorPipe to propagate flow onward from.
 	 */
 	private void propagateFlowFromConnectorPipe(ConnectorPipe startConnectorPipe) {
-		Map<PlantComponent, Boolean> outputs = startConnectorPipe.getOutputsMap();
-		for (PlantComponent pc : outputs.keySet()) {
+		for (int i = 0; i < startConnectorPipe.getNumAllOutputs(); i++) {
+			PlantComponent pc = startConnectorPipe.getOutput(i);
 			// If the output is not blocked.
-			if (!outputs.get(pc)) {
+			if (!startConnectorPipe.isOutputBlocked(i)) {
 				if (pc instanceof ConnectorPipe) {
 					propagateFlowFromConnectorPipe((ConnectorPipe) pc);
 				} else {
@@ -463,7 +479,7 @@ public class FlowUpdater implements Serializable {
 	 * Forcefully removes steam from the reactor and places it into the condenser.
 	 * Based upon the flow! :) 
 	 */
-	private void moveSteam()
+	private void moveSteam(Plant plant)
 	{
 		Reactor reactor = plant.getReactor();
 		Condenser condenser = plant.getCondenser();
@@ -475,7 +491,7 @@ public class FlowUpdater implements Serializable {
 	 * Moves water out of the condenser and into the reactor due to the flow in and
 	 * out of the components.
 	 */
-	private void moveWater()
+	private void moveWater(Plant plant)
 	{
 		Condenser condenser = plant.getCondenser();
 		Reactor reactor = plant.getReactor();
@@ -1,12 +1,27 @@
 package model;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface GamePersistence {
 	
-	public void saveGame();
+	public void saveGame() throws IOException;
 	
-	public void loadGame();
+	public void loadGame() throws IOException;
+	
+	public void saveGame(String slot) throws IOException;
+	
+	public void loadGame(String slot) throws IOException;
+	
+	public List<SaveSlotInfo> getSaves() throws IOException;
+	
+	public void deleteSave(String slot) throws IOException;
+	
+	/**
+	 * Takes a snapshot of the game and saves it without blocking the caller.
+	 * Has to be called at a step boundary.
+	 */
+	public void autosave();
 	
 	public void addHighScore(HighScore highScore);
 	
@@ -0,0 +1,332 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameSaveFormat is the binary format of saved games. Only the mutable state of
+ * the plants is stored, together with the ID of their topology - components,
+ * wiring and constants are rebuilt from the topology when a game is loaded.
+ * 
+ * A save file starts with a header:
+ * 		int		MAGIC
+ * 		short	format version
+ * 		byte	content (CONTENT_PLANT or CONTENT_MULTIPLAYER)
+ * followed by the content. A plant is stored as:
+ * 		int		topology ID
+ * 		name	operator name
+ * 		short	number of high scores, followed by (name, int score) per high score
+ * 		int		size of the plant's state record, followed by the record (see Plant.writeState())
+ * where a name is a boolean that is false for no name, or true followed by the name
+ * in modified UTF-8. The feedback controller of a plant is not saved.
+ * 
+ * Save files are replaced with writeAtomically(), so an interrupted save never
+ * destroys the previous one.
+ * 
+ * Every change to the layout has to increase CURRENT_VERSION and teach the read
+ * methods how to migrate the older versions. Games saved with Java serialization
+ * (before this format existed, in LEGACY_SAVE_FILE) cannot be migrated, as the classes
+ * they were made of have changed: they are recognised by isLegacy() and rejected, and
+ * never handed to an ObjectInputStream. High scores saved with Java serialization are
+ * only a list of HighScores, and are migrated by readLegacyHighScores(), which refuses
+ * every other class.
+ * 
+ * @author Lamprey
+ */
+public final class GameSaveFormat {
+	
+	public final static int MAGIC = 0x52345356; // "R4SV"
+	public final static int CURRENT_VERSION = 1;
+	
+	public final static int CONTENT_PLANT = 1;
+	public final static int CONTENT_MULTIPLAYER = 2;
+	
+	public final static String LEGACY_SAVE_FILE = "save.ser"; // Java serialization, before this format.
+	public final static String LEGACY_SAVE_MESSAGE = LEGACY_SAVE_FILE
+			+ " was saved by an older version of the game and cannot be loaded.";
+	
+	private final static int JAVA_SERIALIZATION_MAGIC = 0xACED;
+	
+	private GameSaveFormat() {
+	}
+	
+	/**
+	 * Saves a single plant into a file, replacing the file if it exists.
+	 * 
+	 * @param file  the file to write
+	 * @param plant the plant to save
+	 * @throws IOException if the file could not be written
+	 */
+	public static void savePlant(File file, Plant plant) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out, CONTENT_PLANT);
+		writePlant(out, plant);
+		writeAtomically(file, bytes.toByteArray());
+	}
+	
+	/**
+	 * Replaces the content of a file so that a crash at any point leaves either the old
+	 * or the new content, never a mix: the data is written to a temporary file in the
+	 * same folder, forced to the disk and then renamed over the file.
+	 * 
+	 * @param file the file to replace
+	 * @param data the new content
+	 * @throws IOException if the file could not be replaced; the old content is kept
+	 */
+	public static void writeAtomically(File file, byte[] data) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", folder);
+		boolean committed = false;
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(data);
+				out.getChannel().force(true);
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						   StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			committed = true;
+			forceFolder(folder);
+		} finally {
+			if (!committed) temp.delete();
+		}
+	}
+	
+	/**
+	 * Forces the rename of a file to the disk. Not every platform can open a folder,
+	 * so this is best effort - the rename itself is atomic either way.
+	 */
+	private static void forceFolder(File folder) {
+		try {
+			FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// Not supported on this platform.
+		}
+	}
+	
+	/**
+	 * Loads a plant saved by savePlant().
+	 * 
+	 * @param file the file to read
+	 * @return the loaded plant
+	 * @throws IOException if the file could not be read or is not a saved plant,
+	 *                     i.e. a save made with Java serialization
+	 */
+	public static Plant loadPlant(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			if (isLegacy(in)) {
+				throw new IOException("Saved game was made by an older version of the game and cannot be loaded.");
+			}
+			DataInputStream data = new DataInputStream(in);
+			int version = readHeader(data, CONTENT_PLANT);
+			Plant plant = new Plant();
+			readPlant(data, version, plant);
+			return plant;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Writes the header of a save.
+	 * 
+	 * @param out     the output to write to
+	 * @param content CONTENT_PLANT or CONTENT_MULTIPLAYER
+	 * @throws IOException if writing fails
+	 */
+	public static void writeHeader(DataOutput out, int content) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(CURRENT_VERSION);
+		out.writeByte(content);
+	}
+	
+	/**
+	 * Reads and checks the header of a save.
+	 * 
+	 * @param in      the input to read from
+	 * @param content the content the save should hold
+	 * @return the format version of the save
+	 * @throws IOException if the input is not a save of a supported version holding content
+	 */
+	public static int readHeader(DataInput in, int content) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a saved game.");
+		}
+		int version = in.readUnsignedShort();
+		if (version < 1 || version > CURRENT_VERSION) {
+			throw new IOException("Saved game version " + version + " is not supported (newest supported: "
+								  + CURRENT_VERSION + ").");
+		}
+		int savedContent = in.readUnsignedByte();
+		if (savedContent != content) {
+			throw new IOException("Saved game holds content " + savedContent + ", expected " + content + ".");
+		}
+		return version;
+	}
+	
+	/**
+	 * Writes a plant in the current format version.
+	 * 
+	 * @param out   the output to write to
+	 * @param plant the plant to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writePlant(DataOutput out, Plant plant) throws IOException {
+		out.writeInt(plant.getTopology().getId());
+		writeName(out, plant.getOperatorName());
+		
+		List<HighScore> highScores = plant.getHighScores();
+		out.writeShort(highScores.size());
+		for (HighScore highScore : highScores) {
+			writeName(out, highScore.getName());
+			out.writeInt(highScore.getHighScore());
+		}
+		
+		ByteBuffer state = ByteBuffer.allocate(plant.getStateSize());
+		plant.writeState(state, 0);
+		out.writeInt(state.capacity());
+		out.write(state.array());
+	}
+	
+	/**
+	 * Reads a plant written by writePlant() into an existing plant.
+	 * 
+	 * @param in      the input to read from
+	 * @param version the format version of the save
+	 * @param into    the plant to load the state into
+	 * @throws IOException if the input does not hold a plant of that version
+	 */
+	public static void readPlant(DataInput in, int version, Plant into) throws IOException {
+		switch (version) {
+			case 1:
+				readPlantVersion1(in, into);
+				break;
+			default:
+				throw new IOException("Saved game version " + version + " is not supported.");
+		}
+	}
+	
+	private static void readPlantVersion1(DataInput in, Plant into) throws IOException {
+		int topologyId = in.readInt();
+		if (topologyId != into.getTopology().getId()) {
+			throw new IOException("Saved plant has topology " + topologyId + ", expected "
+								  + into.getTopology().getId() + ".");
+		}
+		into.setOperatorName(readName(in));
+		
+		int numHighScores = in.readUnsignedShort();
+		List<HighScore> highScores = new ArrayList<HighScore>(numHighScores);
+		for (int i = 0; i < numHighScores; i++) {
+			String name = readName(in);
+			highScores.add(new HighScore(name, in.readInt()));
+		}
+		into.setHighScores(highScores);
+		
+		int stateSize = in.readInt();
+		if (stateSize != into.getStateSize()) {
+			throw new IOException("Saved plant state has " + stateSize + " bytes, expected "
+								  + into.getStateSize() + ".");
+		}
+		byte[] state = new byte[stateSize];
+		in.readFully(state);
+		try {
+			into.readState(ByteBuffer.wrap(state), 0);
+		} catch (RuntimeException e) {
+			throw new IOException("Saved plant state is corrupt.", e);
+		}
+	}
+	
+	private static void writeName(DataOutput out, String name) throws IOException {
+		out.writeBoolean(name != null);
+		if (name != null) out.writeUTF(name);
+	}
+	
+	private static String readName(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+	
+	/**
+	 * Checks if a stream holds a save made with Java serialization, without consuming it.
+	 * 
+	 * @param in a stream that supports mark/reset
+	 * @return true if the stream starts with the Java serialization header
+	 * @throws IOException if reading fails
+	 */
+	public static boolean isLegacy(InputStream in) throws IOException {
+		in.mark(2);
+		int magic = (in.read() << 8) | in.read();
+		in.reset();
+		return magic == JAVA_SERIALIZATION_MAGIC;
+	}
+	
+	/**
+	 * Reads the high scores older versions of the game saved with Java serialization: an
+	 * ArrayList of HighScores. Any other class in the stream is refused before it is
+	 * instantiated, so the file cannot make the game run code of its choosing.
+	 * 
+	 * @param in the stream to read from
+	 * @return the high scores
+	 * @throws IOException if the stream does not hold a list of high scores
+	 */
+	public static List<HighScore> readLegacyHighScores(InputStream in) throws IOException {
+		ObjectInputStream objects = new ObjectInputStream(in) {
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				String name = desc.getName();
+				if (!name.equals(ArrayList.class.getName()) && !name.equals(HighScore.class.getName())) {
+					throw new IOException("High scores of an older version hold a " + name + ".");
+				}
+				return super.resolveClass(desc);
+			}
+		};
+		Object saved;
+		try {
+			saved = objects.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("High scores of an older version cannot be read.", e);
+		}
+		if (!(saved instanceof List)) {
+			throw new IOException("High scores of an older version hold no list.");
+		}
+		List<HighScore> highScores = new ArrayList<HighScore>();
+		for (Object highScore : (List<?>) saved) {
+			if (!(highScore instanceof HighScore)) {
+				throw new IOException("High scores of an older version hold something else.");
+			}
+			highScores.add((HighScore) highScore);
+		}
+		return highScores;
+	}
+}
@@ -0,0 +1,263 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JournalReplayer rebuilds a game from its CommandJournal by giving the recorded
+ * commands to a fresh MultiplayerModel. The replayed model has no observers, does not
+ * autosave and does not touch the saved games or high scores on the disk, so a replay
+ * runs at full simulation speed.
+ * 
+ * replayTo() plays the journal forwards, starting over from the beginning of the journal
+ * when asked for an earlier step. seek() starts from the nearest keyframe instead, so it
+ * only re-simulates the steps after that keyframe.
+ * 
+ * @author Lamprey
+ */
+public class JournalReplayer {
+	
+	private final CommandJournal journal;
+	private MultiplayerModel model;
+	private CommandJournal.Reader reader;
+	private int step;
+	private boolean pending; // the reader holds a command that has not been replayed yet
+	private boolean pastStep; // commands given after the last replayed step have been replayed
+	
+	/**
+	 * Creates a replayer positioned before the first command of the journal. Commands
+	 * recorded in the journal after this point are not replayed.
+	 * 
+	 * @param journal the journal to replay
+	 */
+	public JournalReplayer(CommandJournal journal) {
+		this.journal = journal;
+		rewind();
+	}
+	
+	/**
+	 * Goes back to the beginning of the journal with a fresh model.
+	 */
+	public void rewind() {
+		this.model = new MultiplayerModel(new ReplayPersistence());
+		this.model.setAutosaveInterval(0);
+		this.model.getJournal().setRecording(false);
+		this.reader = journal.reader();
+		this.step = 0;
+		this.pending = false;
+		this.pastStep = false;
+	}
+	
+	/**
+	 * Replays the commands of the journal until the game has played toStep steps. The
+	 * replay stops right after that step, before the commands given after it (commands
+	 * given before the first step, which set the game up, are always replayed). It stops
+	 * earlier at the end of the journal, or if the next step command would go past toStep
+	 * - steps are replayed as they were recorded, so the replay can only stop between two
+	 * step commands.
+	 * 
+	 * @param toStep the step to replay to
+	 * @return the step the replay stopped at
+	 * @throws IOException if the journal is corrupt
+	 */
+	public int replayTo(int toStep) throws IOException {
+		if (toStep < step || (toStep == step && pastStep)) {
+			rewind();
+		}
+		while (pending || reader.hasNext()) {
+			if (!pending) {
+				reader.next();
+				pending = true;
+			}
+			boolean reached;
+			if (reader.opcode == CommandJournal.STEP) {
+				reached = reader.getStepAfter() > toStep;
+			} else if (reader.opcode == CommandJournal.KEYFRAME) {
+				reached = reader.step > toStep;
+			} else {
+				reached = reader.step >= toStep && reader.step > 0;
+			}
+			if (reached) break;
+			apply();
+			pending = false;
+		}
+		return step;
+	}
+	
+	/**
+	 * Moves the replay to toStep (see replayTo()) by loading the last keyframe at or before
+	 * toStep and replaying the commands after it. The keyframe is skipped if the replay is
+	 * already between the keyframe and toStep, so seeking forwards does not go back.
+	 * 
+	 * @param toStep the step to seek to
+	 * @return the step the replay stopped at
+	 * @throws IOException if the journal is corrupt
+	 */
+	public int seek(int toStep) throws IOException {
+		int keyframe = journal.findKeyframe(toStep);
+		if (keyframe >= 0) {
+			int keyframeStep = journal.getKeyframeStep(keyframe);
+			boolean behind = step < keyframeStep;
+			boolean ahead = toStep < step || (toStep == step && pastStep);
+			if (behind || ahead) {
+				reader = journal.readerAtKeyframe(keyframe);
+				reader.next();
+				restore();
+				step = keyframeStep;
+				pending = false;
+				pastStep = false;
+			}
+		}
+		return replayTo(toStep);
+	}
+	
+	/**
+	 * Replays the whole journal.
+	 * 
+	 * @return the step the replay stopped at
+	 * @throws IOException if the journal is corrupt
+	 */
+	public int replayAll() throws IOException {
+		return replayTo(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * 
+	 * @return the replayed model; only valid until the next rewind
+	 */
+	public MultiplayerModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * 
+	 * @return the number of steps replayed
+	 */
+	public int getStep() {
+		return step;
+	}
+	
+	private void apply() throws IOException {
+		CommandJournal.Reader r = reader;
+		switch (r.opcode) {
+			case CommandJournal.NEW_SINGLEPLAYER_GAME:
+				model.newSingleplayerGame(r.name, r.seed);
+				break;
+			case CommandJournal.NEW_MULTIPLAYER_GAME:
+				model.newMultiplayerGame(r.name, r.otherName, r.seed);
+				break;
+			case CommandJournal.SET_PLAYER_ONE_NAME:
+				model.setPlayerOneName(r.name);
+				break;
+			case CommandJournal.SET_PLAYER_TWO_NAME:
+				model.setPlayerTwoName(r.name);
+				break;
+			case CommandJournal.SET_RANDOM_FAILURES:
+				model.setRandomFailures(r.flag);
+				break;
+			case CommandJournal.STEP:
+				model.step(r.value);
+				break;
+			case CommandJournal.SET_CONTROL_RODS:
+				model.setControlRods(r.value);
+				break;
+			case CommandJournal.SET_PUMP_RPM:
+				model.setPumpRpm(r.id, r.value);
+				break;
+			case CommandJournal.SET_VALVE:
+				model.setValve(r.id, r.flag);
+				break;
+			case CommandJournal.REPAIR_PUMP:
+				model.repairPump(r.id);
+				break;
+			case CommandJournal.REPAIR_TURBINE:
+				model.repairTurbine();
+				break;
+			case CommandJournal.REPAIR_OPERATING_SOFTWARE:
+				model.repairOperatingSoftware();
+				break;
+			case CommandJournal.QUENCH_REACTOR:
+				model.quenchReactor();
+				break;
+			case CommandJournal.FAIL_PUMP:
+				model.failPump(r.id);
+				break;
+			case CommandJournal.FAIL_TURBINE:
+				model.failTurbine();
+				break;
+			case CommandJournal.FAIL_OS:
+				model.failOS();
+				break;
+			case CommandJournal.RESTORE:
+				restore();
+				break;
+			case CommandJournal.KEYFRAME:
+				// The replayed game is already in the state of the keyframe.
+				break;
+			default:
+				throw new IOException("Command journal holds an unknown command " + r.opcode + ".");
+		}
+		step = r.getStepAfter();
+		pastStep = r.opcode != CommandJournal.STEP && r.opcode != CommandJournal.KEYFRAME && r.step > 0;
+	}
+	
+	/**
+	 * Loads the save of the RESTORE or KEYFRAME entry the reader holds into the model.
+	 */
+	private void restore() throws IOException {
+		DataInputStream in = reader.saveInput();
+		int version = GameSaveFormat.readHeader(in, GameSaveFormat.CONTENT_MULTIPLAYER);
+		model.readGame(in, version);
+	}
+	
+	/**
+	 * Persistence of replayed models: nothing is saved and high scores are not recorded.
+	 */
+	private final static class ReplayPersistence implements GamePersistence {
+		
+		@Override
+		public void saveGame() throws IOException {
+			throw new IOException("Replays cannot be saved.");
+		}
+		
+		@Override
+		public void loadGame() throws IOException {
+			throw new IOException("Replays cannot load games.");
+		}
+		
+		@Override
+		public void saveGame(String slot) throws IOException {
+			saveGame();
+		}
+		
+		@Override
+		public void loadGame(String slot) throws IOException {
+			loadGame();
+		}
+		
+		@Override
+		public List<SaveSlotInfo> getSaves() {
+			return new ArrayList<SaveSlotInfo>();
+		}
+		
+		@Override
+		public void deleteSave(String slot) throws IOException {
+			throw new IOException("Replays cannot delete saves.");
+		}
+		
+		@Override
+		public void autosave() {
+		}
+		
+		@Override
+		public void addHighScore(HighScore highScore) {
+		}
+		
+		@Override
+		public List<HighScore> getHighScores() {
+			return new ArrayList<HighScore>();
+		}
+	}
+}
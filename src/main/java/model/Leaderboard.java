@@ -0,0 +1,527 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Leaderboard keeps the best high scores of all games, for single player
+ * (PlantController) and multiplayer (MultiplayerPersistenceManager) games alike.
+ * 
+ * The best capacity scores are kept in a min-heap, so adding a score takes O(log K)
+ * and a score that does not make it onto the leaderboard is rejected after a single
+ * comparison. Of two equal scores, the one added first ranks higher.
+ * 
+ * Accepted scores are appended to a log file as records of their own, instead of
+ * rewriting the whole leaderboard on every score. Once the log holds COMPACTION_FACTOR
+ * times more records than the leaderboard, it is compacted: rewritten atomically with
+ * only the scores that are still on the leaderboard. The log holds:
+ * 		int		MAGIC
+ * 		short	format version
+ * 		long	generation (not in version 1), increased by every compaction
+ * followed by one record per score: a name (a boolean that is false for no name, or
+ * true followed by the name in modified UTF-8) and an int score.
+ * 
+ * Several processes (and several leaderboards in one process) can share a log. Every
+ * access to the log happens under a FileChannel lock on a lock file next to it - shared
+ * for reading, exclusive for writing - and merges the records other processes appended
+ * since the last access (read-merge-write): new records are read through a read-only
+ * memory mapping of the part of the log that has not been read yet, and a changed
+ * generation means the log was compacted and is read again from the start. A torn
+ * record at the end of the log (a crash while appending) is ignored by readers and cut
+ * off by the next writer.
+ * 
+ * @author Lamprey
+ */
+public class Leaderboard {
+	
+	public final static String FILE = "highscores.dat";
+	public final static String LEGACY_FILE = "highscores.ser"; // Java serialization, before Leaderboard.
+	public final static String MIGRATED_EXTENSION = ".migrated";
+	public final static String LOCK_EXTENSION = ".lock";
+	public final static int DEFAULT_CAPACITY = 20;
+	
+	private final static int MAGIC = 0x52344853; // "R4HS"
+	private final static int FORMAT_VERSION = 2;
+	private final static int HEADER_SIZE = 14;
+	private final static int VERSION_1_HEADER_SIZE = 6;
+	private final static int COMPACTION_FACTOR = 4;
+	
+	// FileChannel locks are held by the whole process, so the leaderboards of one
+	// process sharing a log take turns on a monitor per log first.
+	private final static ConcurrentMap<String, Object> MONITORS = new ConcurrentHashMap<String, Object>();
+	
+	private final File file;
+	private final int capacity;
+	private final PriorityQueue<Entry> heap;
+	private long nextSequence;
+	private List<HighScore> sorted; // cached result of getHighScores(), null when out of date
+	
+	private final Object monitor;
+	private RandomAccessFile lockFile;
+	private long generation; // of the log the heap was read from, -1 if none yet
+	private long readOffset; // end of the last complete record read
+	private int logRecords;
+	
+	/**
+	 * Creates a leaderboard that is only kept in memory.
+	 * 
+	 * @param capacity the number of high scores kept
+	 */
+	public Leaderboard(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Leaderboard: capacity must be at least 1.");
+		}
+		this.file = null;
+		this.capacity = capacity;
+		this.heap = new PriorityQueue<Entry>(capacity + 1, WORST_FIRST);
+		this.monitor = new Object();
+	}
+	
+	/**
+	 * Opens the leaderboard stored in a log file, creating the file if it does not exist.
+	 * 
+	 * @param file     the log file
+	 * @param capacity the number of high scores kept
+	 * @throws IOException if the log cannot be read or created
+	 */
+	public Leaderboard(File file, int capacity) throws IOException {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Leaderboard: capacity must be at least 1.");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.heap = new PriorityQueue<Entry>(capacity + 1, WORST_FIRST);
+		this.generation = -1;
+		String path = file.getCanonicalPath();
+		MONITORS.putIfAbsent(path, new Object());
+		this.monitor = MONITORS.get(path);
+		
+		synchronized (monitor) {
+			FileLock lock = lock(false);
+			try {
+				if (!file.exists()) {
+					writeLog(0);
+				}
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				try {
+					int version = merge(channel, true);
+					if (version < FORMAT_VERSION || logRecords > capacity * COMPACTION_FACTOR) {
+						writeLog(generation + 1);
+					}
+				} finally {
+					channel.close();
+				}
+			} finally {
+				lock.release();
+			}
+		}
+	}
+	
+	/**
+	 * Opens the leaderboard of the game in the current folder. High scores saved by
+	 * older versions of the game (in LEGACY_FILE) are migrated once, see
+	 * migrateLegacy().
+	 * 
+	 * @return the leaderboard
+	 * @throws IOException if the leaderboard cannot be read or created
+	 */
+	public static Leaderboard openDefault() throws IOException {
+		Leaderboard leaderboard = new Leaderboard(new File(FILE), DEFAULT_CAPACITY);
+		try {
+			leaderboard.migrateLegacy(new File(LEGACY_FILE));
+		} catch (IOException e) {
+			System.err.println("Could not migrate the high scores of " + LEGACY_FILE + ": " + e.getMessage());
+		}
+		return leaderboard;
+	}
+	
+	/**
+	 * Adds the high scores an older version of the game saved with Java serialization
+	 * (see GameSaveFormat.readLegacyHighScores()). The file is renamed (with
+	 * MIGRATED_EXTENSION) first, so the scores are migrated once even if several games
+	 * start at the same time, and it is kept in case the migration fails.
+	 * 
+	 * @param legacyFile the high scores of the older version
+	 * @return the number of scores migrated, 0 if there was no file to migrate
+	 * @throws IOException if the file could not be read
+	 */
+	public int migrateLegacy(File legacyFile) throws IOException {
+		File migrated = new File(legacyFile.getPath() + MIGRATED_EXTENSION);
+		if (!legacyFile.exists() || migrated.exists() || !legacyFile.renameTo(migrated)) return 0;
+		List<HighScore> highScores;
+		InputStream in = new BufferedInputStream(new FileInputStream(migrated));
+		try {
+			highScores = GameSaveFormat.readLegacyHighScores(in);
+		} finally {
+			in.close();
+		}
+		for (HighScore highScore : highScores) {
+			add(highScore);
+		}
+		return highScores.size();
+	}
+	
+	/**
+	 * Adds a score to the leaderboard if it is positive and better than the worst
+	 * score on the leaderboard (or the leaderboard is not full). The scores other
+	 * processes added to the log are merged first.
+	 * 
+	 * @param highScore the score to add
+	 * @return true if the score made it onto the leaderboard
+	 * @throws ScoreNotSavedException if the score made it onto the leaderboard but could
+	 *         not be appended to the log
+	 * @throws IOException if the log could not be read; the score was not added
+	 */
+	public boolean add(HighScore highScore) throws IOException {
+		if (file == null) {
+			synchronized (this) {
+				return offer(highScore);
+			}
+		}
+		// Other processes only ever raise the bar, so a score that does not make it onto
+		// this leaderboard does not make it onto the log either.
+		if (!qualifies(highScore.getHighScore())) return false;
+		synchronized (monitor) {
+			FileLock lock = lock(false);
+			try {
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				try {
+					merge(channel, true);
+					synchronized (this) {
+						if (!offer(highScore)) return false;
+					}
+					try {
+						appendRecord(channel, highScore);
+					} catch (IOException e) {
+						throw new ScoreNotSavedException(e);
+					}
+				} finally {
+					channel.close();
+				}
+				if (logRecords > capacity * COMPACTION_FACTOR) {
+					try {
+						writeLog(generation + 1);
+					} catch (IOException e) {
+						// The score is in the log; the next add() compacts it again.
+						System.err.println("Could not compact the high score log: " + e.getMessage());
+					}
+				}
+				return true;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+	
+	/**
+	 * Merges the scores other processes added to the log since the last access.
+	 * 
+	 * @throws IOException if the log could not be read
+	 */
+	public void refresh() throws IOException {
+		if (file == null) return;
+		synchronized (monitor) {
+			FileLock lock = lock(true);
+			try {
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				try {
+					merge(channel, false);
+				} finally {
+					channel.close();
+				}
+			} finally {
+				lock.release();
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param score a score
+	 * @return true if the score would make it onto the leaderboard
+	 */
+	public synchronized boolean qualifies(int score) {
+		return score > 0 && (heap.size() < capacity || score > heap.peek().highScore.getHighScore());
+	}
+	
+	/**
+	 * Lists the leaderboard as of the last add() or refresh(). 
+	 * 
+	 * @return the high scores on the leaderboard, best first (unmodifiable)
+	 */
+	public synchronized List<HighScore> getHighScores() {
+		if (sorted == null) {
+			List<Entry> entries = new ArrayList<Entry>(heap);
+			Collections.sort(entries, Collections.reverseOrder(WORST_FIRST));
+			List<HighScore> highScores = new ArrayList<HighScore>(entries.size());
+			for (Entry entry : entries) {
+				highScores.add(entry.highScore);
+			}
+			sorted = Collections.unmodifiableList(highScores);
+		}
+		return sorted;
+	}
+	
+	public synchronized int size() {
+		return heap.size();
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Rewrites the log with only the scores on the leaderboard (after merging the
+	 * scores of other processes).
+	 * 
+	 * @throws IOException if the log could not be rewritten; the old log is kept
+	 */
+	public void compact() throws IOException {
+		if (file == null) return;
+		synchronized (monitor) {
+			FileLock lock = lock(false);
+			try {
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				try {
+					merge(channel, true);
+				} finally {
+					channel.close();
+				}
+				writeLog(generation + 1);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the lock file. The leaderboard can still be used, the lock file is reopened
+	 * when it is needed.
+	 * 
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		if (file == null) return;
+		synchronized (monitor) {
+			if (lockFile != null) {
+				RandomAccessFile closing = lockFile;
+				lockFile = null;
+				closing.close();
+			}
+		}
+	}
+	
+	private boolean offer(HighScore highScore) {
+		if (!qualifies(highScore.getHighScore())) return false;
+		heap.add(new Entry(highScore, nextSequence++));
+		if (heap.size() > capacity) {
+			heap.poll();
+		}
+		sorted = null;
+		return true;
+	}
+	
+	/**
+	 * Appends a record at the end of the last complete record. The read offset only moves
+	 * past the record once all of it is written; a partly written record is cut off
+	 * again, so the next record is not appended after torn bytes. Has to be called under
+	 * an exclusive lock.
+	 */
+	void appendRecord(FileChannel channel, HighScore highScore) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+		writeRecord(new DataOutputStream(bytes), highScore);
+		ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		long position = readOffset;
+		try {
+			while (record.hasRemaining()) {
+				position += channel.write(record, position);
+			}
+		} catch (IOException e) {
+			try {
+				channel.truncate(readOffset);
+			} catch (IOException truncateFailed) {
+				// The next writer cuts the torn record off when it merges.
+			}
+			throw e;
+		}
+		readOffset = position;
+		logRecords++;
+	}
+	
+	private FileLock lock(boolean shared) throws IOException {
+		if (lockFile == null) {
+			lockFile = new RandomAccessFile(file.getPath() + LOCK_EXTENSION, "rw");
+		}
+		return lockFile.getChannel().lock(0, Long.MAX_VALUE, shared);
+	}
+	
+	/**
+	 * Reads the records appended to the log since the last access onto the leaderboard,
+	 * or the whole log if it was compacted since. Has to be called under the lock.
+	 * 
+	 * @param channel  the log
+	 * @param truncate true to cut off a torn record at the end (needs an exclusive lock)
+	 * @return the format version of the log
+	 */
+	private int merge(FileChannel channel, boolean truncate) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+			// Keep reading, a positional read may return less than asked for.
+		}
+		header.flip();
+		if (header.remaining() < VERSION_1_HEADER_SIZE || header.getInt() != MAGIC) {
+			throw new IOException(file.getName() + " is not a high score log.");
+		}
+		int version = header.getShort() & 0xFFFF;
+		int headerSize;
+		long logGeneration;
+		if (version == 1) {
+			headerSize = VERSION_1_HEADER_SIZE;
+			logGeneration = 0;
+		} else if (version == FORMAT_VERSION && header.remaining() >= 8) {
+			headerSize = HEADER_SIZE;
+			logGeneration = header.getLong();
+		} else {
+			throw new IOException("High score log version " + version + " is not supported.");
+		}
+		
+		if (logGeneration != generation) {
+			synchronized (this) {
+				heap.clear();
+				sorted = null;
+			}
+			generation = logGeneration;
+			readOffset = headerSize;
+			logRecords = 0;
+		}
+		long size = channel.size();
+		if (size > readOffset) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, readOffset, size - readOffset);
+			synchronized (this) {
+				while (mapped.hasRemaining()) {
+					int start = mapped.position();
+					HighScore highScore = readRecord(mapped);
+					if (highScore == null) {
+						mapped.position(start);
+						break;
+					}
+					offer(highScore);
+					logRecords++;
+				}
+			}
+			readOffset += mapped.position();
+		}
+		if (truncate && size > readOffset) {
+			channel.truncate(readOffset);
+		}
+		return version;
+	}
+	
+	/**
+	 * Replaces the log with the scores on the leaderboard. Has to be called under an
+	 * exclusive lock.
+	 */
+	private void writeLog(long newGeneration) throws IOException {
+		List<HighScore> highScores = getHighScores();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + highScores.size() * 32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeLong(newGeneration);
+		for (HighScore highScore : highScores) {
+			writeRecord(out, highScore);
+		}
+		GameSaveFormat.writeAtomically(file, bytes.toByteArray());
+		generation = newGeneration;
+		readOffset = bytes.size();
+		logRecords = highScores.size();
+	}
+	
+	private static void writeRecord(DataOutputStream out, HighScore highScore) throws IOException {
+		out.writeBoolean(highScore.getName() != null);
+		if (highScore.getName() != null) out.writeUTF(highScore.getName());
+		out.writeInt(highScore.getHighScore());
+	}
+	
+	/**
+	 * Reads a record written by writeRecord().
+	 * 
+	 * @return the score, or null if the record is torn
+	 */
+	private static HighScore readRecord(ByteBuffer buffer) throws IOException {
+		try {
+			String name = null;
+			if (buffer.get() != 0) {
+				int length = buffer.getShort() & 0xFFFF;
+				if (length > buffer.remaining()) return null;
+				// Names are modified UTF-8; decode them like DataInputStream does.
+				byte[] bytes = new byte[length + 2];
+				bytes[0] = (byte) (length >> 8);
+				bytes[1] = (byte) length;
+				buffer.get(bytes, 2, length);
+				name = new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+			}
+			return new HighScore(name, buffer.getInt());
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Orders entries from the worst to the best: by score, and of equal scores the
+	 * one added last first.
+	 */
+	private final static Comparator<Entry> WORST_FIRST = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			int scoreA = a.highScore.getHighScore();
+			int scoreB = b.highScore.getHighScore();
+			if (scoreA != scoreB) return scoreA < scoreB ? -1 : 1;
+			return (a.sequence > b.sequence) ? -1 : (a.sequence < b.sequence) ? 1 : 0;
+		}
+	};
+	
+	/**
+	 * Thrown by add() when the score made it onto the leaderboard, but could not be
+	 * saved in the log: it is lost when the game ends.
+	 */
+	public static class ScoreNotSavedException extends IOException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		ScoreNotSavedException(IOException cause) {
+			super("The high score could not be saved: " + cause.getMessage(), cause);
+		}
+	}
+	
+	private final static class Entry {
+		final HighScore highScore;
+		final long sequence;
+		
+		Entry(HighScore highScore, long sequence) {
+			this.highScore = highScore;
+			this.sequence = sequence;
+		}
+	}
+}
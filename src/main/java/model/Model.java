@@ -1,5 +1,6 @@
 package model;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface Model {
@@ -10,9 +11,17 @@ public interface Model {
 	
 	public void newMultiplayerGame(String playerOneName, String playerTwoName);
 	
-	public void saveGame();
+	public void saveGame() throws IOException;
 	
-	public void loadGame();
+	public void loadGame() throws IOException;
+	
+	public void saveGame(String slot) throws IOException;
+	
+	public void loadGame(String slot) throws IOException;
+	
+	public List<SaveSlotInfo> getSaves() throws IOException;
+	
+	public void deleteSave(String slot) throws IOException;
 	
 	public void setPlayerOneName(String playerOneName);
 	
@@ -42,12 +51,18 @@ public interface Model {
 	
 	public void setRandomFailures(boolean randomFailuresOn);
 	
+	public boolean isPaused();
+	
+	public void setPaused(boolean paused);
+	
 	public List<HighScore> getHighScores();
 	
 	public void step(int numSteps);
 	
 	public int getStepsLeftOfTurn();
 	
+	public ModelSnapshot getSnapshot();
+	
 	//Methods controlling plant's components
 	
 	public void setControlRods(int percentageLowered);
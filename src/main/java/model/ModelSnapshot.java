@@ -0,0 +1,104 @@
+package model;
+
+/**
+ * ModelSnapshot is an immutable, versioned copy of the state of a game: the players and
+ * the plant of the current player. The model publishes a new snapshot whenever it
+ * notifies its observers, so readers on other threads (the GUI, the text UI, exporters)
+ * get a consistent state without locking the model and without stalling the stepping
+ * thread. See MultiplayerModel.getSnapshot().
+ *
+ * The version grows by one with every snapshot of a model; two snapshots with the same
+ * version are the same snapshot.
+ *
+ * @author Lamprey
+ */
+public final class ModelSnapshot {
+
+	private final long    version;
+	private final String  playerOneName;
+	private final String  playerTwoName;
+	private final int     playerOneScore;
+	private final int     playerTwoScore;
+	private final int     currentPlayerNumber;
+	private final boolean multiplayer;
+	private final int     stepsLeftOfTurn;
+	private final int     stepCount;
+	private final boolean paused;
+	private final PlantSnapshot plant;
+
+	ModelSnapshot(long version, MultiplayerModel model) {
+		this.version             = version;
+		this.playerOneName       = model.getPlayerOneName();
+		this.playerTwoName       = model.getPlayerTwoName();
+		this.playerOneScore      = model.getPlayerOneScore();
+		this.playerTwoScore      = model.getPlayerTwoScore();
+		this.currentPlayerNumber = model.getCurrentPlayerNumber();
+		this.multiplayer         = model.isMultiplayer();
+		this.stepsLeftOfTurn     = model.getStepsLeftOfTurn();
+		this.stepCount           = model.getStepCount();
+		this.paused              = model.isPaused();
+		this.plant               = model.snapshotCurrentPlant();
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public long getVersion() {
+		return version;
+	}
+
+	public String getPlayerOneName() {
+		return playerOneName;
+	}
+
+	public String getPlayerTwoName() {
+		return playerTwoName;
+	}
+
+	public int getPlayerOneScore() {
+		return playerOneScore;
+	}
+
+	public int getPlayerTwoScore() {
+		return playerTwoScore;
+	}
+
+	public int getCurrentPlayerNumber() {
+		return currentPlayerNumber;
+	}
+
+	public String getCurrentPlayerName() {
+		return plant.getOperatorName();
+	}
+
+	public boolean isMultiplayer() {
+		return multiplayer;
+	}
+
+	public boolean isGameOver() {
+		return plant.isGameOver();
+	}
+
+	public int getStepsLeftOfTurn() {
+		return stepsLeftOfTurn;
+	}
+
+	/**
+	 *
+	 * @return the steps played since the current player took the plant
+	 */
+	public int getStepCount() {
+		return stepCount;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 *
+	 * @return the plant of the current player
+	 */
+	public PlantSnapshot getPlant() {
+		return plant;
+	}
+}
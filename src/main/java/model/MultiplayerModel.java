@@ -1,8 +1,14 @@
 package model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import components.GameOverException;
 import components.OperatingSoftware;
@@ -15,6 +21,13 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 
 	private static final int MIN_STEPS_BETWEEN_FORCE_FAILS = 5;
 	
+	public static final int DEFAULT_AUTOSAVE_INTERVAL = 10; // Steps between autosaves, 0 disables autosave.
+	
+	// What a step can change - a turbine failing during a step also moves the valves and the control rods.
+	private static final int STEP_CHANGES = ChangeObserver.SCORE | ChangeObserver.REACTOR | ChangeObserver.CONDENSER
+											| ChangeObserver.PUMPS | ChangeObserver.VALVES | ChangeObserver.TURBINE
+											| ChangeObserver.SOFTWARE | ChangeObserver.STEP;
+	
 	private Plant plantOne;
 	private Plant plantTwo;
 	private Plant currentlyPlaying;
@@ -24,14 +37,33 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 	private int stepsSinceLastForcedFailure;
 	private int stepCount;
 	private boolean multiplayer;
+	private int autosaveInterval;
+	private int stepsSinceAutosave;
 	
 	private List<Observer> observers;
+	private transient CommandJournal journal;
+	private transient int pendingChanges;
+	private transient int changesDepth;
+	private transient volatile ModelSnapshot published;
+	private transient long snapshotVersion;
 	
 	public MultiplayerModel() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a model that uses the given persistence instead of saving to the disk,
+	 * i.e. for replays.
+	 * 
+	 * @param persistence the persistence of the model, null for the default one
+	 */
+	MultiplayerModel(GamePersistence persistence) {
 		plantOne = new Plant();
 		plantTwo = new Plant();
-		persistence = new MultiplayerPersistenceManager(this);
+		this.persistence = (persistence != null) ? persistence : new MultiplayerPersistenceManager(this);
 		observers = new ArrayList<Observer>();
+		autosaveInterval = DEFAULT_AUTOSAVE_INTERVAL;
+		journal = new CommandJournal();
 	}
 	
 	public void copy(MultiplayerModel model) {
@@ -42,53 +74,170 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 		this.stepCount = model.stepCount;
 		this.multiplayer = model.multiplayer;
 		
-		notifyObservers();
+		changed(ChangeObserver.ALL);
 	}
 
 	@Override
 	public void newSingleplayerGame(String playerOneName) {
+		newSingleplayerGame(playerOneName, new Random().nextLong());
+	}
+	
+	/**
+	 * Starts a single player game whose randomness is seeded with seed, so that it
+	 * can be reproduced from its command journal.
+	 * 
+	 * @param playerOneName name of the player
+	 * @param seed          seed of the game
+	 */
+	public void newSingleplayerGame(String playerOneName, long seed) {
 		plantOne.newGame(playerOneName);
+		plantOne.setSeed(seed);
+		// The second plant is not played, but is part of the game's state (and saves).
+		plantTwo.newGame(null);
+		plantTwo.setSeed(~seed);
 		currentlyPlaying = plantOne;
 		stepCount = 0;
 		stepsSinceLastForcedFailure = MIN_STEPS_BETWEEN_FORCE_FAILS;
+		stepsSinceAutosave = 0;
 		multiplayer = false;
 		currentlyPlaying.setRandomFailures(true);
-		notifyObservers();
+		getJournal().clear();
+		journal.recordNewSingleplayerGame(seed, playerOneName);
+		changed(ChangeObserver.ALL);
 	}
 
 	@Override
 	public void newMultiplayerGame(String playerOneName, String playerTwoName) {
+		newMultiplayerGame(playerOneName, playerTwoName, new Random().nextLong());
+	}
+	
+	/**
+	 * Starts a multiplayer game whose randomness is seeded with seed, so that it
+	 * can be reproduced from its command journal.
+	 * 
+	 * @param playerOneName name of player one
+	 * @param playerTwoName name of player two
+	 * @param seed          seed of the game
+	 */
+	public void newMultiplayerGame(String playerOneName, String playerTwoName, long seed) {
 		plantOne.newGame(playerOneName);
+		plantOne.setSeed(seed);
 		plantTwo.newGame(playerTwoName);
+		plantTwo.setSeed(~seed);
 		currentlyPlaying = plantOne;
 		stepCount = 0;
 		stepsSinceLastForcedFailure = MIN_STEPS_BETWEEN_FORCE_FAILS;
+		stepsSinceAutosave = 0;
 		multiplayer = true;
 		currentlyPlaying.setRandomFailures(false);
-		notifyObservers();
+		getJournal().clear();
+		journal.recordNewMultiplayerGame(seed, playerOneName, playerTwoName);
+		changed(ChangeObserver.ALL);
 	}
 
 	@Override
-	public void saveGame() {
+	public void saveGame() throws IOException {
 		persistence.saveGame();
 	}
 
 	@Override
-	public void loadGame() {
+	public void loadGame() throws IOException {
 		persistence.loadGame();
-		notifyObservers();
+		getJournal().recordRestore(snapshot());
+		changed(ChangeObserver.ALL);
+	}
+	
+	@Override
+	public void saveGame(String slot) throws IOException {
+		persistence.saveGame(slot);
+	}
+	
+	@Override
+	public void loadGame(String slot) throws IOException {
+		persistence.loadGame(slot);
+		getJournal().recordRestore(snapshot());
+		changed(ChangeObserver.ALL);
+	}
+	
+	@Override
+	public List<SaveSlotInfo> getSaves() throws IOException {
+		return persistence.getSaves();
+	}
+	
+	@Override
+	public void deleteSave(String slot) throws IOException {
+		persistence.deleteSave(slot);
+	}
+	
+	/**
+	 * Writes the game (both plants and whose turn it is) in the GameSaveFormat.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeGame(DataOutput out) throws IOException {
+		out.writeBoolean(multiplayer);
+		out.writeByte(currentlyPlaying == null ? 0 : getCurrentPlayerNumber());
+		out.writeInt(stepCount);
+		out.writeInt(stepsSinceLastForcedFailure);
+		GameSaveFormat.writePlant(out, plantOne);
+		GameSaveFormat.writePlant(out, plantTwo);
+	}
+	
+	/**
+	 * Encodes the whole game, header included, into a byte array.
+	 * 
+	 * @return the game in the GameSaveFormat
+	 */
+	byte[] snapshot() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+			DataOutputStream out = new DataOutputStream(bytes);
+			GameSaveFormat.writeHeader(out, GameSaveFormat.CONTENT_MULTIPLAYER);
+			writeGame(out);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			// Only writing to memory, cannot happen.
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Replaces the game with one written by writeGame(). The plants are loaded
+	 * in place, so references to them stay valid. Observers are not notified.
+	 * 
+	 * @param in      the input to read from
+	 * @param version the format version of the save
+	 * @throws IOException if the input does not hold a game
+	 */
+	void readGame(DataInput in, int version) throws IOException {
+		boolean multiplayer = in.readBoolean();
+		int currentPlayer = in.readUnsignedByte();
+		int stepCount = in.readInt();
+		int stepsSinceLastForcedFailure = in.readInt();
+		if (currentPlayer > 2) {
+			throw new IOException("Saved game has an invalid current player.");
+		}
+		GameSaveFormat.readPlant(in, version, plantOne);
+		GameSaveFormat.readPlant(in, version, plantTwo);
+		this.multiplayer = multiplayer;
+		this.currentlyPlaying = (currentPlayer == 0) ? null : (currentPlayer == 1) ? plantOne : plantTwo;
+		this.stepCount = stepCount;
+		this.stepsSinceLastForcedFailure = stepsSinceLastForcedFailure;
 	}
 	
 	@Override
 	public void setPlayerOneName(String playerOneName) {
 		plantOne.setOperatorName(playerOneName);
-		notifyObservers();
+		getJournal().recordSetPlayerName(1, playerOneName);
+		changed(ChangeObserver.PLAYERS);
 	}
 
 	@Override
 	public void setPlayerTwoName(String playerTwoName) {
 		plantTwo.setOperatorName(playerTwoName);
-		notifyObservers();
+		getJournal().recordSetPlayerName(2, playerTwoName);
+		changed(ChangeObserver.PLAYERS);
 	}
 	
 	@Override
@@ -147,6 +296,24 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 
 	public void setRandomFailures(boolean randomFailures) {
 		currentlyPlaying.setRandomFailures(randomFailures);
+		getJournal().recordSetRandomFailures(randomFailures);
+	}
+
+	@Override
+	public boolean isPaused() {
+		return currentlyPlaying.isPaused();
+	}
+
+	/**
+	 * Pauses/resumes the real-time mode for both players, so a swap does not resume it.
+	 * 
+	 * @param paused whether to pause or resume the game
+	 */
+	@Override
+	public void setPaused(boolean paused) {
+		plantOne.setPaused(paused);
+		if (plantTwo != null) plantTwo.setPaused(paused);
+		changed(ChangeObserver.PLAYERS);
 	}
 
 	@Override
@@ -156,7 +323,10 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 
 	@Override
 	public void step(int numSteps) {
+		getJournal().recordStep(numSteps);
 		stepCount += numSteps;
+		// A game over and a swap during the step are reported with it, in one notification.
+		beginChanges();
 		try {
 			currentlyPlaying.step(numSteps);
 			stepsSinceLastForcedFailure++;
@@ -164,84 +334,125 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 			gameOver();
 		} finally {
 			swapPlayers();
-			notifyObservers();
+			if (journal.isKeyframeDue()) {
+				journal.recordKeyframe(snapshot());
+			}
+			autosave(numSteps);
+			changed(STEP_CHANGES);
+			endChanges();
 		}
 	}
+	
+	/**
+	 * Autosaves the game every autosaveInterval steps. Called at the end of a step,
+	 * so the snapshot is consistent. Games that are over are not autosaved.
+	 */
+	private void autosave(int numSteps) {
+		if (autosaveInterval <= 0) return;
+		stepsSinceAutosave += numSteps;
+		if (stepsSinceAutosave >= autosaveInterval && !isGameOver()) {
+			stepsSinceAutosave = 0;
+			persistence.autosave();
+		}
+	}
+	
+	public int getAutosaveInterval() {
+		return autosaveInterval;
+	}
+	
+	/**
+	 * 
+	 * @param autosaveInterval number of steps between autosaves, 0 to disable autosave
+	 */
+	public void setAutosaveInterval(int autosaveInterval) {
+		this.autosaveInterval = autosaveInterval;
+	}
 
 	@Override
 	public void setControlRods(int percentageLowered) {
 		currentlyPlaying.setControlRods(percentageLowered);
-		notifyObservers();
+		getJournal().recordSetControlRods(percentageLowered);
+		changed(commandChanges(ChangeObserver.REACTOR));
 	}
 
 	@Override
 	public void setPumpRpm(int pumpID, int rpm) {
 		currentlyPlaying.setPumpRpm(pumpID, rpm);
-		notifyObservers();
+		getJournal().recordSetPumpRpm(pumpID, rpm);
+		changed(commandChanges(ChangeObserver.PUMPS));
 	}
 
 	@Override
 	public void setValve(int valveID, boolean open) {
 		currentlyPlaying.setValve(valveID, open);
-		notifyObservers();
+		getJournal().recordSetValve(valveID, open);
+		changed(commandChanges(ChangeObserver.VALVES));
 	}
 
 	@Override
 	public void repairPump(int pumpID) {
 		currentlyPlaying.repairPump(pumpID);
-		notifyObservers();
+		getJournal().recordComponentCommand(CommandJournal.REPAIR_PUMP, pumpID);
+		changed(commandChanges(ChangeObserver.PUMPS));
 	}
 
 	@Override
 	public void repairTurbine() {
 		currentlyPlaying.repairTurbine();
-		notifyObservers();
+		getJournal().recordCommand(CommandJournal.REPAIR_TURBINE);
+		changed(commandChanges(ChangeObserver.TURBINE));
 	}
 
 	@Override
 	public void repairOperatingSoftware() {
 		currentlyPlaying.repairOperatingSoftware();
-		notifyObservers();
+		getJournal().recordCommand(CommandJournal.REPAIR_OPERATING_SOFTWARE);
+		changed(commandChanges(ChangeObserver.SOFTWARE));
 	}
 
 	@Override
 	public void quenchReactor() {
 		currentlyPlaying.quenchReactor();
-		notifyObservers();
+		getJournal().recordCommand(CommandJournal.QUENCH_REACTOR);
+		changed(commandChanges(ChangeObserver.REACTOR));
 	}
 	
 	@Override
 	public void failPump(int pumpID) {
+		getJournal().recordComponentCommand(CommandJournal.FAIL_PUMP, pumpID);
 		if (!currentlyPlaying.isRandomFailures() && 
 			stepsSinceLastForcedFailure >= MIN_STEPS_BETWEEN_FORCE_FAILS) {
 			if (currentlyPlaying.getPump(pumpID).isForceFailable()) {
 				stepsSinceLastForcedFailure = 0;
 				currentlyPlaying.failPump(pumpID);
-				notifyObservers();
+				changed(ChangeObserver.PUMPS);
 			}
 		}
 	}
 
 	@Override
 	public void failTurbine() {
+		getJournal().recordCommand(CommandJournal.FAIL_TURBINE);
 		if (!currentlyPlaying.isRandomFailures() && 
 			stepsSinceLastForcedFailure >= MIN_STEPS_BETWEEN_FORCE_FAILS) {
 			if (currentlyPlaying.getTurbine().isForceFailable()) {
 				stepsSinceLastForcedFailure = 0;
 				currentlyPlaying.failTurbine();
-				notifyObservers();
+				// The safety feature opens the bypass and lowers the control rods.
+				changed(ChangeObserver.TURBINE | ChangeObserver.VALVES | ChangeObserver.REACTOR);
 			}
 		}
 	}
 
 	@Override
 	public void failOS() {
+		getJournal().recordCommand(CommandJournal.FAIL_OS);
 		if (!currentlyPlaying.isRandomFailures() && 
 			stepsSinceLastForcedFailure >= MIN_STEPS_BETWEEN_FORCE_FAILS) {
 			if (currentlyPlaying.getOS().isForceFailable()) {
 				stepsSinceLastForcedFailure = 0;
 				currentlyPlaying.failOS();
-				notifyObservers();
+				changed(ChangeObserver.SOFTWARE);
 			}
 		}
 	}
@@ -316,6 +527,20 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 		return currentlyPlaying.getCondenserHealth();
 	}
 	
+	/**
+	 * The journal records every command given to the model since the current game was
+	 * started or loaded. See JournalReplayer.
+	 * 
+	 * @return the command journal of the current game
+	 */
+	public CommandJournal getJournal() {
+		// Created lazily - the journal is not serialised with the model.
+		if (journal == null) {
+			journal = new CommandJournal();
+		}
+		return journal;
+	}
+	
 	@Override
 	public void addObserver(Observer o) {
 		observers.add(o);
@@ -326,17 +551,102 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 		observers.remove(o);
 	}
 
+	/**
+	 * Notifies all observers that anything may have changed.
+	 */
 	@Override
 	public void notifyObservers() {
+		notifyObservers(ChangeObserver.ALL);
+	}
+	
+	/**
+	 * Notifies all observers at once. ChangeObservers are told what changed.
+	 * 
+	 * @param changes the ChangeObserver flags of what changed
+	 */
+	public void notifyObservers(int changes) {
+		publish();
 		for (Observer o : observers) {
-			o.update();
+			if (o instanceof ChangeObserver) {
+				((ChangeObserver) o).update(changes);
+			} else {
+				o.update();
+			}
+		}
+	}
+	
+	/**
+	 * Readers on any thread get the state of the game from here instead of from the
+	 * getters, which read the live plant and may see it in the middle of a step.
+	 * 
+	 * @return the snapshot published with the last notification of the observers,
+	 * 		   null if no game has been started or loaded yet
+	 */
+	@Override
+	public ModelSnapshot getSnapshot() {
+		return published;
+	}
+	
+	/**
+	 * Publishes a snapshot of the game. Called on the stepping thread before the
+	 * observers are notified, so they see the snapshot of the change.
+	 */
+	private void publish() {
+		if (currentlyPlaying == null) return;
+		published = new ModelSnapshot(++snapshotVersion, this);
+	}
+	
+	PlantSnapshot snapshotCurrentPlant() {
+		return new PlantSnapshot(currentlyPlaying);
+	}
+	
+	/**
+	 * Starts an operation made of several changes (i.e. a controller applying a batch of
+	 * commands). Observers are not notified until the matching endChanges(), and are then
+	 * notified once with all changes. Operations may be nested.
+	 */
+	public void beginChanges() {
+		changesDepth++;
+	}
+	
+	/**
+	 * Ends an operation started with beginChanges(), notifying the observers if it was the
+	 * outermost one and anything changed.
+	 */
+	public void endChanges() {
+		if (changesDepth <= 0) {
+			throw new IllegalStateException("MultiplayerModel: endChanges() without beginChanges().");
+		}
+		if (--changesDepth == 0 && pendingChanges != 0) {
+			int changes = pendingChanges;
+			pendingChanges = 0;
+			notifyObservers(changes);
 		}
 	}
 	
+	/**
+	 * Records changes, notifying the observers right away unless an operation is running.
+	 */
+	private void changed(int changes) {
+		beginChanges();
+		pendingChanges |= changes;
+		endChanges();
+	}
+	
+	/**
+	 * 
+	 * @return the changes of a command: with the operating software failed, a command can
+	 * 		   be executed as a different one (see OperatingSoftware), moving any actuator.
+	 */
+	private int commandChanges(int changes) {
+		if (currentlyPlaying.isSoftwareOperational()) return changes;
+		return changes | ChangeObserver.REACTOR | ChangeObserver.PUMPS | ChangeObserver.VALVES;
+	}
+	
 	private void gameOver() {
 		HighScore highScore = new HighScore(currentlyPlaying.getOperatorName(), currentlyPlaying.getScore());
 		persistence.addHighScore(highScore);
-		notifyObservers();
+		changed(ChangeObserver.PLAYERS);
 	}
 	
 	private void swapPlayers() {
@@ -345,10 +655,10 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 			if (currentlyPlaying.equals(plantOne)) {
 				currentlyPlaying = plantTwo;
 				stepCount = 0;
-				notifyObservers();
+				changed(ChangeObserver.ALL);
 			} else {
 				currentlyPlaying.gameOver();
-				notifyObservers();
+				changed(ChangeObserver.PLAYERS);
 			}
 		} 
 	}
@@ -386,6 +696,14 @@ public class MultiplayerModel implements Model, Observable, Serializable {
 		return false;
 	}
 
+	/**
+	 * 
+	 * @return steps played in this game (in a multiplayer game: by the current player)
+	 */
+	int getStepCount() {
+		return stepCount;
+	}
+
 	public int getStepsLeftOfTurn() {
 		return STEPS_PER_PLAYER - stepCount;
 	}
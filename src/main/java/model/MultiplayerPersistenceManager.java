@@ -1,120 +1,194 @@
 package model;
 
-import java.io.EOFException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class MultiplayerPersistenceManager implements GamePersistence, Serializable {
+	public final static String SAVE_FOLDER = "saves";
+	public final static String DEFAULT_SLOT = "quicksave"; // Used by saveGame() and loadGame().
+	public final static String AUTOSAVE_SLOT = "autosave"; // Only written by autosave().
+	
+	private final static String SAVE_FILE = "save.dat"; // Single save, before SaveStore.
+	
 	private MultiplayerModel model;
-	private List<HighScore> highScores;
+	private transient File folder;
+	private transient Leaderboard leaderboard;
+	private transient SaveStore store;
+	private transient AutoSaver autoSaver;
 	
 	public MultiplayerPersistenceManager(MultiplayerModel model) {
+		this(model, new File(SAVE_FOLDER));
+	}
+	
+	/**
+	 * 
+	 * @param model  the model saved and loaded
+	 * @param folder the folder of the save store
+	 */
+	public MultiplayerPersistenceManager(MultiplayerModel model, File folder) {
 		this.model = model;
-		highScores = new ArrayList<HighScore>();
-		readHighScores();
+		this.folder = folder;
 	}
 
+	/**
+	 * Saves the game into the default slot on the calling thread. The slot is replaced
+	 * atomically. Autosaves go to a slot of their own, so they never overwrite this save.
+	 */
 	@Override
-	public void saveGame() {
-		try {
-			FileOutputStream fileOut = new FileOutputStream("save.ser");
-			ObjectOutputStream out = new ObjectOutputStream(fileOut);
-			out.writeObject(model);
-			out.close();
-			fileOut.close();
-		}
-		catch (IOException ex) {
+	public void saveGame() throws IOException {
+		saveGame(DEFAULT_SLOT);
+	}
+	
+	@Override
+	public void saveGame(String slot) throws IOException {
+		SaveSlotInfo info = info(slot);
+		if (AUTOSAVE_SLOT.equals(slot)) {
+			// An autosave still in progress will not overwrite this save.
+			getAutoSaver().save(info, model.snapshot());
+		} else {
+			getStore().save(info, model.snapshot());
 		}
 	}
-
+	
+	/**
+	 * Encodes the game into memory; the autosave slot is written from the autosave thread.
+	 * The slots of the player's own saves are never touched. An error of a previous
+	 * autosave is reported on the standard error stream.
+	 */
 	@Override
-	public void loadGame() {
+	public void autosave() {
 		try {
-			File f = new File("save.ser");
-			if(f.exists()) {
-				FileInputStream fileIn = new FileInputStream(f);
-				ObjectInputStream in = new ObjectInputStream(fileIn);
-				MultiplayerModel savedModel = (MultiplayerModel) in.readObject();
-				in.close();
-				fileIn.close();
-				this.model.copy(savedModel);
+			AutoSaver autoSaver = getAutoSaver();
+			IOException lastError = autoSaver.getLastError();
+			if (lastError != null) {
+				System.err.println("Autosave failed: " + lastError.getMessage());
 			}
+			autoSaver.saveInBackground(info(AUTOSAVE_SLOT), model.snapshot());
+		} catch (IOException e) {
+			// Opening the save store failed.
+			System.err.println("Autosave failed: " + e.getMessage());
 		}
-		catch (IOException io) {
+	}
+	
+	/**
+	 * Takes the metadata of the game for the save store's index.
+	 */
+	private SaveSlotInfo info(String slot) {
+		boolean multiplayer = model.isMultiplayer();
+		return new SaveSlotInfo(slot, multiplayer, model.getPlayerOneName(),
+								multiplayer ? model.getPlayerTwoName() : null,
+								model.getPlayerOneScore(), multiplayer ? model.getPlayerTwoScore() : 0,
+								model.getStepCount(), System.currentTimeMillis());
+	}
+	
+	private SaveStore getStore() throws IOException {
+		if (store == null) {
+			if (folder == null) {
+				folder = new File(SAVE_FOLDER); // Transient fields are not set by deserialization.
+			}
+			store = new SaveStore(folder);
 		}
-		catch (ClassNotFoundException c) {
+		return store;
+	}
+	
+	AutoSaver getAutoSaver() throws IOException {
+		if (autoSaver == null) {
+			autoSaver = new AutoSaver(getStore(), AUTOSAVE_SLOT);
 		}
+		return autoSaver;
 	}
 
+	/**
+	 * Loads the game saved in the default slot. If the slot is empty, the single save
+	 * file in the current folder (before SaveStore) is loaded. Nothing happens if there
+	 * is no saved game at all. The autosave is only loaded by loadGame(AUTOSAVE_SLOT).
+	 * 
+	 * @throws IOException if the only saved game was made with Java serialization
+	 *                     (GameSaveFormat.LEGACY_SAVE_FILE), which cannot be loaded
+	 */
 	@Override
-	public void addHighScore(HighScore highScore) {
-		if (highScore.getHighScore() > 0) {
-			for (int i=0; i < 20; i++) {
-				if (i < highScores.size()) {
-					HighScore oldHighScore = highScores.get(i);
-					if (oldHighScore.compareTo(highScore) < 0) {
-						highScores.add(i, highScore);
-						writeHighScores();
-						break;
-					}
-				}
-				else {
-					highScores.add(highScores.size(), highScore);
-					writeHighScores();
-					break;
-				}
+	public void loadGame() throws IOException {
+		File file = new File(SAVE_FILE);
+		if (getStore().contains(DEFAULT_SLOT)) {
+			loadGame(DEFAULT_SLOT);
+		} else if (file.exists()) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				readSave(in);
+			} finally {
+				in.close();
 			}
+		} else if (new File(GameSaveFormat.LEGACY_SAVE_FILE).exists()) {
+			throw new IOException(GameSaveFormat.LEGACY_SAVE_MESSAGE);
 		}
 	}
 
+	/**
+	 * Loads the game saved in a slot of the save store.
+	 * 
+	 * @throws FileNotFoundException if nothing is saved in the slot
+	 */
 	@Override
-	public List<HighScore> getHighScores() {
-		if(highScores.size() > 20) {
-			highScores = highScores.subList(0, 20); //Trims the high scores list to only the first 20 elements
-			writeHighScores();
-		}
-		return highScores;
+	public void loadGame(String slot) throws IOException {
+		readSave(new DataInputStream(new ByteArrayInputStream(getStore().open(slot))));
 	}
 	
 	/**
-	 * Loads all saved highscores from a file called "highscore.ser" to plant's highscores list.
+	 * Lists the saved games from the save store's index, without loading any of them.
 	 */
-	private void readHighScores() {
-		try {
-			File f = new File("highscores.ser");
-			if(f.exists()) {
-				FileInputStream fileIn = new FileInputStream(f);
-				ObjectInputStream in = new ObjectInputStream(fileIn);
-				List<HighScore> highScores = (List<HighScore>) in.readObject();
-				in.close();
-				fileIn.close();
-				this.highScores = highScores;
-			}	
-		} catch (EOFException eof) {
-		} catch (IOException io) {
-		} catch (ClassNotFoundException cnf) {
-		}
+	@Override
+	public List<SaveSlotInfo> getSaves() throws IOException {
+		return getStore().list();
+	}
+	
+	@Override
+	public void deleteSave(String slot) throws IOException {
+		getStore().delete(slot);
 	}
 	
+	private void readSave(DataInput in) throws IOException {
+		int version = GameSaveFormat.readHeader(in, GameSaveFormat.CONTENT_MULTIPLAYER);
+		model.readGame(in, version);
+	}
+
 	/**
-	 * Writes all highscores currently inside plant to a file called "highscores.ser".
+	 * Adds the score to the leaderboard. The game goes on if the leaderboard cannot be
+	 * written, so the error is only reported on the standard error stream.
 	 */
-	private void writeHighScores() {
+	@Override
+	public void addHighScore(HighScore highScore) {
 		try {
-			FileOutputStream fileOut = new FileOutputStream("highscores.ser");
-			ObjectOutputStream out = new ObjectOutputStream(fileOut);
-			out.writeObject(highScores);
-			out.close();
-			fileOut.close();
-		} catch (IOException io) {
+			getLeaderboard().add(highScore);
+		} catch (IOException e) {
+			System.err.println("Could not save the high score: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public List<HighScore> getHighScores() {
+		try {
+			Leaderboard leaderboard = getLeaderboard();
+			leaderboard.refresh(); // Scores of other games running at the same time.
+			return leaderboard.getHighScores();
+		} catch (IOException e) {
+			System.err.println("Could not read the high scores: " + e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+	
+	private Leaderboard getLeaderboard() throws IOException {
+		if (leaderboard == null) {
+			leaderboard = Leaderboard.openDefault();
 		}
+		return leaderboard;
 	}
 }
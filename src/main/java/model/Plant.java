@@ -1,11 +1,11 @@
 package model;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 import components.Condenser;
 import components.ConnectorPipe;
@@ -33,15 +33,16 @@ public class Plant implements Serializable {
 
 	private static final long serialVersionUID = 4799981348038802742L;
 	
-	private ComponentFactory factory;
-	private FlowUpdater flowUpdater;
+	// Shared by all plants - neither keeps any per-plant state.
+	private final static ComponentFactory FACTORY = new PlantComponentFactory(PlantTopology.STANDARD);
+	private final static FlowUpdater FLOW_UPDATER = FlowUpdater.INSTANCE;
 	
 	private String playerName;
 	private boolean gameOver;
 	private boolean randomFailures;
 	private int score;
 	private List<Repair> beingRepaired;
-	private boolean isPaused;
+	private volatile boolean isPaused; // Read by the real-time scheduler's thread.
 	private List<HighScore> highScores;
 	private List<PlantComponent> plantComponents;
 	private List<RandomlyFailableComponent> failedComponents;
@@ -53,38 +54,60 @@ public class Plant implements Serializable {
 	private Turbine turbine;
 	private Generator generator;
 	private OperatingSoftware operatingSoftware;
+	private FeedbackController feedbackController;
+	private transient TelemetryRecorder telemetryRecorder;
+	private transient boolean[] blockagePropagated; // Scratch space of the flow updater.
+	private PlantRandom random;
+	private PlantTopology topology;
 	
 	/**
 	 * This is the default constructor that is used 
 	 * when there is no saved game (i.e. new game)
 	 */
 	public Plant() {
-		this.factory = new PlantComponentFactory();
-		this.flowUpdater = new FlowUpdater(this);
-		
 		this.playerName = null;
 		this.gameOver = false;
 		this.score = 0;
 		this.beingRepaired = new ArrayList<Repair>();
 		this.isPaused = false;
 		this.highScores = new ArrayList<HighScore>();
-		this.plantComponents = factory.createPlantComponents();
+		this.topology = PlantTopology.STANDARD;
+		this.plantComponents = FACTORY.createPlantComponents();
 		assignComponentsToFields(this.plantComponents);
 		this.failedComponents = new ArrayList<RandomlyFailableComponent>();
+		this.blockagePropagated = new boolean[topology.getNumConnectorPipes()];
+		this.random = new PlantRandom();
+		shareRandom();
 	}
 	
 	public void newGame(String playerName) {
 		this.playerName = playerName;
+		this.highScores = new ArrayList<HighScore>();
+		reset();
+	}
+	
+	/**
+	 * Starts the game again on the existing components of the plant.
+	 * 
+	 * Every component is restored to the state the factory created it in, the score,
+	 * failures and repairs are cleared, while the operator name and the high scores are
+	 * kept. No new components are created and updating the flow reuses the scratch space
+	 * of the plant, so resetting produces no garbage - used by newGame() and for running
+	 * many episodes on the same plant (see PlantPool).
+	 */
+	public void reset() {
 		this.gameOver = false;
 		this.score = 0;
-		this.beingRepaired = new ArrayList<Repair>();
+		this.beingRepaired.clear();
 		this.isPaused = false;
-		this.highScores = new ArrayList<HighScore>();
-		this.plantComponents = factory.createPlantComponents();
-		assignComponentsToFields(this.plantComponents);
-		this.failedComponents = new ArrayList<RandomlyFailableComponent>();
+		this.failedComponents.clear();
+		List<PlantComponent> plantComponents = this.plantComponents;
+		for (int i = 0; i < plantComponents.size(); i++) {
+			plantComponents.get(i).reset();
+		}
+		if (feedbackController != null) feedbackController.reset();
 		
-		flowUpdater.updateFlow();
+		FLOW_UPDATER.updateFlow(this);
 		updatePlant();
 	}
 	
@@ -127,18 +150,24 @@ public class Plant implements Serializable {
 	 * Advance the game by a number of time steps.
 	 * 
 	 * If the game reaches a game over state before all steps are executed,
-	 * the game stops stepping.
+	 * the game stops stepping. The step that ended the game is still recorded
+	 * by the telemetry recorder.
 	 * 
 	 * @param numSteps number of timesteps to advance the game by.
 	 */
 	public void step(int numSteps) throws GameOverException {
 		for (int i = 0; i < numSteps; i++) {
 			if (!isGameOver()) {
-				updateBeingRepaired();
-				flowUpdater.updateFlow();
-				updatePlant();
-				updateCriticalComponentsHealth();
-				if (isRandomFailures()) updateRandomFailures();
+				try {
+					updateBeingRepaired();
+					if (feedbackController != null) feedbackController.control(this);
+					FLOW_UPDATER.updateFlow(this);
+					updatePlant();
+					updateCriticalComponentsHealth();
+					if (isRandomFailures()) updateRandomFailures();
+				} finally {
+					if (telemetryRecorder != null) telemetryRecorder.record(this);
+				}
 			}
 			else {
 				break;
@@ -177,7 +206,8 @@ public class Plant implements Serializable {
 	 */
 	private void updatePlant() {
 		List<PlantComponent> plantComponents = getPlantComponents();
-		for (PlantComponent plantComponent : plantComponents) {
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent plantComponent = plantComponents.get(i);
 			if (plantComponent instanceof UpdatableComponent)
 				((UpdatableComponent) plantComponent).updateState();
 		}
@@ -208,7 +238,6 @@ public class Plant implements Serializable {
 		
 		//Picks only one of all randomly failing components.
 		if(faults > 0) {
-			Random random = new Random();
 			int selection = random.nextInt(faults);
 			RandomlyFailableComponent failedComponent = failingComponents.get(selection);
 			
@@ -236,7 +265,8 @@ public class Plant implements Serializable {
 
 	/**
 	 * Checks if the game is paused.
-	 * Currently not used as the game is turn based. Makes creating a real time game easier.
+	 * Only the real-time mode (see simulator.RealTimeScheduler) stops while paused; step()
+	 * itself does not check it.
 	 * 
 	 * @return true if the game is paused
  	 */
@@ -245,8 +275,7 @@ public class Plant implements Serializable {
 	}
 
 	/**
-	 * Sets the paused state of the game.
-	 * Currently not used as the game is turn based. Makes creating a real time game easier.
+	 * Sets the paused state of the game. Can be called from any thread.
 	 * 
 	 * @param isPaused whether to pause or resume the game
 	 */
@@ -586,7 +615,8 @@ public class Plant implements Serializable {
 	 */
 	public List<HighScore> getHighScores() {
 		if(this.highScores.size() > 20) {
-			this.highScores = this.highScores.subList(0, 20); //Trims the high scores list to only the first 20 elements
+			// Trims the high scores list to only the first 20 elements (a copy, so the rest can be collected)
+			this.highScores = new ArrayList<HighScore>(this.highScores.subList(0, 20));
 		}
 		return this.highScores;
 	}
@@ -618,6 +648,20 @@ public class Plant implements Serializable {
 		return plantComponents;
 	}
 	
+	/**
+	 * The flow updater marks the connector pipes whose blockage it has propagated
+	 * here, so that updating the flow does not allocate.
+	 * 
+	 * @return a flag for every connector pipe of the plant, reused every step
+	 */
+	boolean[] getBlockagePropagated() {
+		// Not saved with the plant, so a deserialised plant creates it on first use.
+		if (blockagePropagated == null) {
+			blockagePropagated = new boolean[topology.getNumConnectorPipes()];
+		}
+		return blockagePropagated;
+	}
+	
 	public List<RandomlyFailableComponent> getRandomlyFailableComponents() {
 		ArrayList<RandomlyFailableComponent> failableComponents = new ArrayList<RandomlyFailableComponent>();
 		for (PlantComponent plantComponent : plantComponents) {
@@ -689,11 +733,158 @@ public class Plant implements Serializable {
 	}
 	
 	private void initialiseListFields() {
-		this.pumps = new ArrayList<Pump>();
-		this.valves = new ArrayList<Valve>();
-		this.connectorPipes = new ArrayList<ConnectorPipe>();
+		this.pumps = new ArrayList<Pump>(3);
+		this.valves = new ArrayList<Valve>(2);
+		this.connectorPipes = new ArrayList<ConnectorPipe>(4);
 	}
 
+	/**
+	 * 
+	 * @return the layout of the plant, shared with all other plants of the same layout
+	 */
+	public PlantTopology getTopology() {
+		return topology;
+	}
+	
+	/**
+	 * Seeds all randomness of the plant (random failures and the behaviour of failed
+	 * operating software) from a single generator, so that a game can be reproduced
+	 * from the seed and the sequence of commands given to the plant.
+	 * 
+	 * The generator is kept by reset() and newGame(), call this again to restart
+	 * the sequence.
+	 * 
+	 * @param seed the seed of the plant's random number generator
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+		shareRandom();
+	}
+	
+	/**
+	 * Gives the plant's random number generator to all components that fail randomly,
+	 * so that a plant only keeps one generator.
+	 */
+	private void shareRandom() {
+		for (PlantComponent plantComponent : plantComponents) {
+			if (plantComponent instanceof RandomlyFailableComponent) {
+				((RandomlyFailableComponent) plantComponent).setRandom(random);
+			}
+		}
+	}
+
+	/**
+	 * Plant state records hold the game state of a plant in a fixed size block of
+	 * a ByteBuffer - see writeState(). Layout:
+	 * 		0	int		score
+	 * 		4	int		flags (game over, paused, random failures)
+	 * 		8	long	state of the random number generator
+	 * 		16	int		failed components (bit i set if component i has failed)
+	 * 		20	byte[]	repairs, one byte per component (time steps remaining + 1, 0 if
+	 * 					the component is not being repaired), padded to a multiple of 4
+	 * 		..			the state of every component, in the order of the component list
+	 * The operator name, high scores and feedback controller are not part of the state.
+	 * The offsets are package visible so that PlantStateArena can read single fields.
+	 */
+	final static int STATE_SCORE = 0;
+	final static int STATE_FLAGS = 4;
+	final static int STATE_RANDOM = 8;
+	final static int STATE_FAILED = 16;
+	final static int STATE_REPAIRS = 20;
+	final static int FLAG_GAME_OVER = 1;
+	final static int FLAG_PAUSED = 2;
+	final static int FLAG_RANDOM_FAILURES = 4;
+	
+	/**
+	 * 
+	 * @return the number of bytes used by writeState(), the same for all plants with the same topology
+	 */
+	public int getStateSize() {
+		int size = componentsStateOffset();
+		for (int i = 0; i < plantComponents.size(); i++) {
+			size += plantComponents.get(i).getStateSize();
+		}
+		return size;
+	}
+	
+	/**
+	 * Writes the game state of the plant into a record of getStateSize() bytes. Uses
+	 * absolute puts only, so the position of the buffer is not changed, and does not
+	 * allocate.
+	 * 
+	 * @param buffer the buffer to write to
+	 * @param offset index of the first byte of the record
+	 */
+	public void writeState(ByteBuffer buffer, int offset) {
+		int flags = (gameOver ? FLAG_GAME_OVER : 0) | (isPaused ? FLAG_PAUSED : 0)
+					| (randomFailures ? FLAG_RANDOM_FAILURES : 0);
+		buffer.putInt(offset + STATE_SCORE, score);
+		buffer.putInt(offset + STATE_FLAGS, flags);
+		buffer.putLong(offset + STATE_RANDOM, random.getState());
+		
+		int failed = 0;
+		int repairsOffset = offset + STATE_REPAIRS;
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent component = plantComponents.get(i);
+			if (failedComponents.contains(component)) failed |= 1 << i;
+			buffer.put(repairsOffset + i, (byte) 0);
+		}
+		for (int i = 0; i < beingRepaired.size(); i++) {
+			Repair repair = beingRepaired.get(i);
+			int index = plantComponents.indexOf(repair.getPlantComponent());
+			buffer.put(repairsOffset + index, (byte) (repair.getTimeStepsRemaining() + 1));
+		}
+		buffer.putInt(offset + STATE_FAILED, failed);
+		
+		int componentOffset = offset + componentsStateOffset();
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent component = plantComponents.get(i);
+			component.writeState(buffer, componentOffset);
+			componentOffset += component.getStateSize();
+		}
+	}
+	
+	/**
+	 * Restores the game state of the plant from a record written by writeState(), reusing
+	 * the existing components. Only allocates if components are being repaired.
+	 * 
+	 * @param buffer the buffer to read from
+	 * @param offset index of the first byte of the record
+	 */
+	public void readState(ByteBuffer buffer, int offset) {
+		int flags = buffer.getInt(offset + STATE_FLAGS);
+		this.score = buffer.getInt(offset + STATE_SCORE);
+		this.gameOver = (flags & FLAG_GAME_OVER) != 0;
+		this.isPaused = (flags & FLAG_PAUSED) != 0;
+		this.randomFailures = (flags & FLAG_RANDOM_FAILURES) != 0;
+		this.random.setState(buffer.getLong(offset + STATE_RANDOM));
+		
+		int failed = buffer.getInt(offset + STATE_FAILED);
+		failedComponents.clear();
+		beingRepaired.clear();
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent component = plantComponents.get(i);
+			if ((failed & (1 << i)) != 0) {
+				failedComponents.add((RandomlyFailableComponent) component);
+			}
+			int repair = buffer.get(offset + STATE_REPAIRS + i);
+			if (repair > 0) {
+				beingRepaired.add(new Repair((RandomlyFailableComponent) component, repair - 1));
+			}
+		}
+		
+		int componentOffset = offset + componentsStateOffset();
+		for (int i = 0; i < plantComponents.size(); i++) {
+			PlantComponent component = plantComponents.get(i);
+			component.readState(buffer, componentOffset);
+			componentOffset += component.getStateSize();
+		}
+	}
+	
+	private int componentsStateOffset() {
+		return STATE_REPAIRS + ((plantComponents.size() + 3) & ~3);
+	}
+	
 	public void setRandomFailures(boolean randomFailures) {
 		this.randomFailures = randomFailures;
 	}
@@ -705,4 +896,41 @@ public class Plant implements Serializable {
 	public OperatingSoftware getOS() {
 		return this.operatingSoftware;
 	}
+
+	/**
+	 * 
+	 * @return the closed-loop controller of the plant, or null if the plant is under manual control
+	 */
+	public FeedbackController getFeedbackController() {
+		return feedbackController;
+	}
+
+	/**
+	 * Attaches a closed-loop controller to the plant. It is evaluated every step,
+	 * before the flow is updated. Pass null to return the plant to manual control.
+	 * 
+	 * @param feedbackController the controller to attach, or null
+	 */
+	public void setFeedbackController(FeedbackController feedbackController) {
+		this.feedbackController = feedbackController;
+	}
+
+	/**
+	 * 
+	 * @return the recorder sampling the plant's history, or null if it is not recorded
+	 */
+	public TelemetryRecorder getTelemetryRecorder() {
+		return telemetryRecorder;
+	}
+
+	/**
+	 * Attaches a telemetry recorder to the plant. It records the state of the plant
+	 * after every completed step. Pass null to stop recording. The recorder is not
+	 * part of the saved game.
+	 * 
+	 * @param telemetryRecorder the recorder to attach, or null
+	 */
+	public void setTelemetryRecorder(TelemetryRecorder telemetryRecorder) {
+		this.telemetryRecorder = telemetryRecorder;
+	}
 }
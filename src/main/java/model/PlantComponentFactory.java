@@ -14,85 +14,90 @@ import components.Reactor;
 import components.Turbine;
 import components.Valve;
 
+/**
+ * Creates the components of a plant and connects them as described by a
+ * PlantTopology. The factory keeps no state of its own, so one factory can
+ * build any number of plants.
+ * 
+ * @author Lamprey
+ */
 public class PlantComponentFactory implements ComponentFactory, Serializable {
 	private static final long serialVersionUID = 1L;
 	
-	private Reactor reactor;
-	private Condenser condenser;
-	private Turbine turbine;
-	private Generator generator;
-	private Valve steamValve1;
-	private Valve steamValve2;
-	private Pump pump1;
-	private Pump pump2;
-	private Pump coolantPump;
-	private ConnectorPipe connectorPipe1;
-	private ConnectorPipe connectorPipe2;
-	private ConnectorPipe connectorPipe3;
-	private ConnectorPipe connectorPipe4;
-	private OperatingSoftware operatingSoftware;
+	private final PlantTopology topology;
+	
+	/**
+	 * Creates a factory for the standard plant.
+	 */
+	public PlantComponentFactory() {
+		this(PlantTopology.STANDARD);
+	}
+	
+	/**
+	 * 
+	 * @param topology the layout of the plants built by this factory
+	 */
+	public PlantComponentFactory(PlantTopology topology) {
+		this.topology = topology;
+	}
+	
+	/**
+	 * 
+	 * @return the layout of the plants built by this factory
+	 */
+	public PlantTopology getTopology() {
+		return topology;
+	}
 	
 	@Override
 	public List<PlantComponent> createPlantComponents() {
-		createComponents();
-		setupComponentsReferences();
-		return makeComponentList();
+		PlantComponent[] components = createComponents();
+		setupComponentsReferences(components);
+		return makeComponentList(components);
 	}
 	
-	private void createComponents() {
-		steamValve1 = new Valve(1, FlowType.Steam);
-		steamValve2 = new Valve(2, FlowType.Steam);
-		turbine = new Turbine(steamValve1.getMaxSteamFlow());
-		generator = new Generator(turbine);
-		pump1 = new Pump(1);
-		pump2 = new Pump(2);
-		coolantPump = new Pump(3);
-		condenser = new Condenser(coolantPump);
-		reactor = new Reactor();
-		connectorPipe1 = new ConnectorPipe();
-		connectorPipe2 = new ConnectorPipe();
-		connectorPipe3 = new ConnectorPipe();
-		connectorPipe4 = new ConnectorPipe();
-		operatingSoftware = new OperatingSoftware();
+	/**
+	 * 
+	 * @return the components of a plant, indexed as in PlantTopology
+	 */
+	private PlantComponent[] createComponents() {
+		PlantComponent[] components = new PlantComponent[PlantTopology.NUM_COMPONENTS];
+		Valve steamValve1 = new Valve(1, FlowType.Steam);
+		Turbine turbine = new Turbine(steamValve1.getMaxSteamFlow());
+		Pump coolantPump = new Pump(3);
+		components[PlantTopology.REACTOR] = new Reactor();
+		components[PlantTopology.CONDENSER] = new Condenser(coolantPump);
+		components[PlantTopology.TURBINE] = turbine;
+		components[PlantTopology.GENERATOR] = new Generator(turbine);
+		components[PlantTopology.VALVE_1] = steamValve1;
+		components[PlantTopology.VALVE_2] = new Valve(2, FlowType.Steam);
+		components[PlantTopology.PUMP_1] = new Pump(1);
+		components[PlantTopology.PUMP_2] = new Pump(2);
+		components[PlantTopology.COOLANT_PUMP] = coolantPump;
+		components[PlantTopology.CONNECTOR_PIPE_1] = new ConnectorPipe();
+		components[PlantTopology.CONNECTOR_PIPE_2] = new ConnectorPipe();
+		components[PlantTopology.CONNECTOR_PIPE_3] = new ConnectorPipe();
+		components[PlantTopology.CONNECTOR_PIPE_4] = new ConnectorPipe();
+		components[PlantTopology.OPERATING_SOFTWARE] = new OperatingSoftware();
+		return components;
 	}
 	
-	private void setupComponentsReferences() {
-		setupInputOutputReferences(reactor, connectorPipe1);
-		setupInputOutputReferences(connectorPipe1, steamValve1);
-		setupInputOutputReferences(connectorPipe1, steamValve2);
-		setupInputOutputReferences(steamValve1, turbine);
-		setupInputOutputReferences(turbine, connectorPipe2);
-		setupInputOutputReferences(steamValve2, connectorPipe2); 
-		setupInputOutputReferences(connectorPipe2, condenser);
-		setupInputOutputReferences(condenser, connectorPipe3);
-		setupInputOutputReferences(connectorPipe3, pump1);
-		setupInputOutputReferences(connectorPipe3, pump2);
-		setupInputOutputReferences(pump1, connectorPipe4);
-		setupInputOutputReferences(pump2, connectorPipe4);
-		setupInputOutputReferences(connectorPipe4, reactor);
+	private void setupComponentsReferences(PlantComponent[] components) {
+		for (int i = 0; i < topology.getNumConnections(); i++) {
+			setupInputOutputReferences(components[topology.getFrom(i)], components[topology.getTo(i)]);
+		}
 	}
 	
 	/**
 	 * 
 	 * @return a list of the plant components
 	 */
-	private List<PlantComponent> makeComponentList()
+	private List<PlantComponent> makeComponentList(PlantComponent[] components)
 	{
-		List<PlantComponent> plantComponents = new ArrayList<PlantComponent>();
-		plantComponents.add(reactor);
-		plantComponents.add(condenser);
-		plantComponents.add(turbine); 
-		plantComponents.add(generator);
-		plantComponents.add(steamValve1);
-		plantComponents.add(steamValve2);
-		plantComponents.add(pump1);
-		plantComponents.add(pump2);
-		plantComponents.add(condenser.getCoolantPump());
-		plantComponents.add(connectorPipe1);
-		plantComponents.add(connectorPipe2);
-		plantComponents.add(connectorPipe3);
-		plantComponents.add(connectorPipe4);
-		plantComponents.add(operatingSoftware);
+		List<PlantComponent> plantComponents = new ArrayList<PlantComponent>(components.length);
+		for (PlantComponent component : components) {
+			plantComponents.add(component);
+		}
 		return plantComponents;
 	}
 	
@@ -0,0 +1,105 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * PlantPool keeps plants that are no longer used so that they can be handed out
+ * again instead of building a new plant (and component graph) every time.
+ * 
+ * Plants are reset when they are released, so a plant returned by acquire() is
+ * always in the state of a new game. Plant settings that are not part of the game
+ * state (random failures, feedback controller, operator name and high scores) are
+ * kept, and the pool never holds more than its capacity. Resetting a plant does
+ * not allocate, so releasing and acquiring plants produces no garbage once the
+ * pool is filled.
+ * 
+ * The pool is not thread safe - use one pool per thread.
+ * 
+ * @author Lamprey
+ */
+public class PlantPool {
+	
+	public final static int DEFAULT_CAPACITY = 64;
+	
+	private final int capacity;
+	private final Deque<Plant> freePlants;
+	
+	/**
+	 * Creates an empty pool that holds at most DEFAULT_CAPACITY plants.
+	 */
+	public PlantPool() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an empty pool.
+	 * 
+	 * @param capacity maximum number of free plants kept by the pool
+	 */
+	public PlantPool(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("PlantPool: capacity must not be negative.");
+		}
+		this.capacity = capacity;
+		this.freePlants = new ArrayDeque<Plant>(capacity);
+	}
+	
+	/**
+	 * Creates plants up front so that the first acquire() calls do not need to build any.
+	 * 
+	 * @param numPlants number of plants to add to the pool (limited by the capacity)
+	 */
+	public void preallocate(int numPlants) {
+		while (freePlants.size() < capacity && numPlants-- > 0) {
+			Plant plant = new Plant();
+			plant.reset();
+			freePlants.push(plant);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return a plant in the state of a new game, taken from the pool if there is one
+	 */
+	public Plant acquire() {
+		Plant plant = freePlants.poll();
+		if (plant == null) {
+			plant = new Plant();
+			plant.reset();
+		}
+		return plant;
+	}
+	
+	/**
+	 * Resets the plant and returns it to the pool. The plant must not be used by the
+	 * caller afterwards. If the pool is full the plant is left for the garbage collector.
+	 * 
+	 * @param plant the plant that is no longer needed
+	 */
+	public void release(Plant plant) {
+		if (plant == null) {
+			throw new IllegalArgumentException("PlantPool: cannot release null.");
+		}
+		if (freePlants.size() < capacity) {
+			plant.reset();
+			freePlants.push(plant);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of free plants currently in the pool
+	 */
+	public int size() {
+		return freePlants.size();
+	}
+	
+	/**
+	 * 
+	 * @return the maximum number of free plants kept by the pool
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,70 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * PlantRandom produces exactly the same numbers as java.util.Random, but its
+ * internal state can be read and restored. That allows the random number generator
+ * of a plant to be stored with the rest of the plant's state, so that a stored plant
+ * continues with the same random failures as the original would have.
+ * 
+ * Unlike java.util.Random it is not safe to share between threads, which is fine
+ * as a plant is only ever stepped by one thread at a time.
+ * 
+ * @author Lamprey
+ */
+public class PlantRandom extends Random {
+	private static final long serialVersionUID = -3207154843616370785L;
+	
+	// The linear congruential generator used by java.util.Random.
+	private final static long MULTIPLIER = 0x5DEECE66DL;
+	private final static long ADDEND = 0xBL;
+	private final static long MASK = (1L << 48) - 1;
+	
+	// No initialiser on purpose - Random's constructor sets it through setSeed().
+	private long state;
+	
+	/**
+	 * Creates a generator with a seed that is very likely to be different from
+	 * any other generator.
+	 */
+	public PlantRandom() {
+		super();
+	}
+	
+	/**
+	 * 
+	 * @param seed the initial seed
+	 */
+	public PlantRandom(long seed) {
+		super(seed);
+	}
+	
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		this.state = (seed ^ MULTIPLIER) & MASK;
+	}
+	
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+	
+	/**
+	 * 
+	 * @return the internal state of the generator (not the seed)
+	 */
+	public long getState() {
+		return state;
+	}
+	
+	/**
+	 * 
+	 * @param state an internal state previously returned by getState()
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+}
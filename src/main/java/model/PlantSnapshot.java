@@ -0,0 +1,340 @@
+package model;
+
+import java.util.List;
+
+import components.Condenser;
+import components.OperatingSoftware;
+import components.PlantComponent;
+import components.Pump;
+import components.Reactor;
+import components.Turbine;
+import components.Valve;
+
+/**
+ * PlantSnapshot is an immutable copy of everything a UI shows about a plant, taken at
+ * a step boundary. Unlike the plant and its components, a snapshot can be read from
+ * any thread once it has been published (i.e. through a volatile field, see
+ * MultiplayerModel.getSnapshot()).
+ *
+ * Pumps and valves are kept in the order of the plant's lists and looked up by ID, like
+ * the getters of the Plant. Flow rates are kept per component, by the component's index
+ * in the plant's topology (see PlantTopology).
+ *
+ * @author Lamprey
+ */
+public final class PlantSnapshot {
+
+	private final String  operatorName;
+	private final int     score;
+	private final boolean gameOver;
+	private final boolean randomFailures;
+
+	private final int     reactorHealth;
+	private final int     reactorTemperature;
+	private final int     reactorMaxTemperature;
+	private final int     reactorPressure;
+	private final int     reactorMaxPressure;
+	private final int     reactorWaterVolume;
+	private final int     reactorMinSafeWaterVolume;
+	private final int     controlRodsLevel;
+	private final boolean quenchAvailable;
+
+	private final int condenserHealth;
+	private final int condenserTemperature;
+	private final int condenserMaxTemperature;
+	private final int condenserPressure;
+	private final int condenserMaxPressure;
+	private final int condenserWaterVolume;
+
+	private final int     turbineRpm;
+	private final boolean turbineOperational;
+	private final boolean turbineBeingRepaired;
+	private final int     stepsUntilTurbineFailable;
+	private final int     powerOutput;
+
+	private final boolean softwareOperational;
+	private final boolean softwareBeingRepaired;
+	private final int     stepsUntilSoftwareFailable;
+
+	private final int[]     pumpIds;
+	private final int[]     pumpRpms;
+	private final boolean[] pumpsOperational;
+	private final boolean[] pumpsBeingRepaired;
+	private final int[]     stepsUntilPumpsFailable;
+
+	private final int[]     valveIds;
+	private final boolean[] valvesOpen;
+
+	private final int[] flowRates;
+
+	/**
+	 * Copies the state of a plant. Must be called by the thread stepping the plant, at a
+	 * step boundary.
+	 *
+	 * @param plant the plant to copy
+	 */
+	public PlantSnapshot(Plant plant) {
+		Reactor reactor = plant.getReactor();
+		Condenser condenser = plant.getCondenser();
+		Turbine turbine = plant.getTurbine();
+		OperatingSoftware software = plant.getOperatingSoftware();
+
+		this.operatorName   = plant.getOperatorName();
+		this.score          = plant.getScore();
+		this.gameOver       = plant.isGameOver();
+		this.randomFailures = plant.isRandomFailures();
+
+		this.reactorHealth             = reactor.getHealth();
+		this.reactorTemperature        = reactor.getTemperature();
+		this.reactorMaxTemperature     = reactor.getMaxTemperature();
+		this.reactorPressure           = reactor.getPressure();
+		this.reactorMaxPressure        = reactor.getMaxPressure();
+		this.reactorWaterVolume        = reactor.getWaterVolume();
+		this.reactorMinSafeWaterVolume = reactor.getMinSafeWaterVolume();
+		this.controlRodsLevel          = reactor.getPercentageLowered();
+		this.quenchAvailable           = reactor.isQuenchAvailable();
+
+		this.condenserHealth         = condenser.getHealth();
+		this.condenserTemperature    = condenser.getTemperature();
+		this.condenserMaxTemperature = condenser.getMaxTemperature();
+		this.condenserPressure       = condenser.getPressure();
+		this.condenserMaxPressure    = condenser.getMaxPressure();
+		this.condenserWaterVolume    = condenser.getWaterVolume();
+
+		List<Repair> repairs = plant.getBeingRepaired();
+		this.turbineRpm                 = turbine.getRpm();
+		this.turbineOperational         = turbine.isOperational();
+		this.turbineBeingRepaired       = isBeingRepaired(repairs, turbine);
+		this.stepsUntilTurbineFailable  = turbine.numStepsUntilFailable();
+		this.powerOutput                = plant.getGenerator().getPowerOutput();
+		this.softwareOperational        = software.isOperational();
+		this.softwareBeingRepaired      = isBeingRepaired(repairs, software);
+		this.stepsUntilSoftwareFailable = software.numStepsUntilFailable();
+
+		List<Pump> pumps = plant.getPumps();
+		this.pumpIds                 = new int[pumps.size()];
+		this.pumpRpms                = new int[pumps.size()];
+		this.pumpsOperational        = new boolean[pumps.size()];
+		this.pumpsBeingRepaired      = new boolean[pumps.size()];
+		this.stepsUntilPumpsFailable = new int[pumps.size()];
+		for (int i = 0; i < pumpIds.length; i++) {
+			Pump pump = pumps.get(i);
+			pumpIds[i]                 = pump.getID();
+			pumpRpms[i]                = pump.getRpm();
+			pumpsOperational[i]        = pump.isOperational();
+			pumpsBeingRepaired[i]      = isBeingRepaired(repairs, pump);
+			stepsUntilPumpsFailable[i] = pump.numStepsUntilFailable();
+		}
+
+		List<Valve> valves = plant.getValves();
+		this.valveIds   = new int[valves.size()];
+		this.valvesOpen = new boolean[valves.size()];
+		for (int i = 0; i < valveIds.length; i++) {
+			valveIds[i]   = valves.get(i).getID();
+			valvesOpen[i] = valves.get(i).isOpen();
+		}
+
+		List<PlantComponent> components = plant.getPlantComponents();
+		this.flowRates = new int[components.size()];
+		for (int i = 0; i < flowRates.length; i++) {
+			flowRates[i] = components.get(i).getFlowOut().getRate();
+		}
+	}
+
+	private static boolean isBeingRepaired(List<Repair> repairs, Object component) {
+		for (Repair repair : repairs) {
+			if (repair.getPlantComponent() == component) return true;
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return index of the pump in the snapshot
+	 * @throws IllegalArgumentException if the plant has no such pump
+	 */
+	private int pumpIndex(int pumpID) {
+		for (int i = 0; i < pumpIds.length; i++) {
+			if (pumpIds[i] == pumpID) return i;
+		}
+		throw new IllegalArgumentException("PlantSnapshot: no pump with ID " + pumpID + ".");
+	}
+
+	/**
+	 *
+	 * @return index of the valve in the snapshot
+	 * @throws IllegalArgumentException if the plant has no such valve
+	 */
+	private int valveIndex(int valveID) {
+		for (int i = 0; i < valveIds.length; i++) {
+			if (valveIds[i] == valveID) return i;
+		}
+		throw new IllegalArgumentException("PlantSnapshot: no valve with ID " + valveID + ".");
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public String getOperatorName() {
+		return operatorName;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	public boolean isRandomFailures() {
+		return randomFailures;
+	}
+
+	public int getReactorHealth() {
+		return reactorHealth;
+	}
+
+	public int getReactorTemperature() {
+		return reactorTemperature;
+	}
+
+	public int getReactorMaxTemperature() {
+		return reactorMaxTemperature;
+	}
+
+	public int getReactorPressure() {
+		return reactorPressure;
+	}
+
+	public int getReactorMaxPressure() {
+		return reactorMaxPressure;
+	}
+
+	public int getReactorWaterVolume() {
+		return reactorWaterVolume;
+	}
+
+	public int getReactorMinSafeWaterVolume() {
+		return reactorMinSafeWaterVolume;
+	}
+
+	public int getControlRodsLevel() {
+		return controlRodsLevel;
+	}
+
+	public boolean isQuenchAvailable() {
+		return quenchAvailable;
+	}
+
+	public int getCondenserHealth() {
+		return condenserHealth;
+	}
+
+	public int getCondenserTemperature() {
+		return condenserTemperature;
+	}
+
+	public int getCondenserMaxTemperature() {
+		return condenserMaxTemperature;
+	}
+
+	public int getCondenserPressure() {
+		return condenserPressure;
+	}
+
+	public int getCondenserMaxPressure() {
+		return condenserMaxPressure;
+	}
+
+	public int getCondenserWaterVolume() {
+		return condenserWaterVolume;
+	}
+
+	public int getTurbineRpm() {
+		return turbineRpm;
+	}
+
+	public boolean isTurbineOperational() {
+		return turbineOperational;
+	}
+
+	public boolean isTurbineBeingRepaired() {
+		return turbineBeingRepaired;
+	}
+
+	public int getNumStepsUntilTurbineFailable() {
+		return stepsUntilTurbineFailable;
+	}
+
+	public int getPowerOutput() {
+		return powerOutput;
+	}
+
+	public boolean isSoftwareOperational() {
+		return softwareOperational;
+	}
+
+	public boolean isSoftwareBeingRepaired() {
+		return softwareBeingRepaired;
+	}
+
+	public int getNumStepsUntilOSFailable() {
+		return stepsUntilSoftwareFailable;
+	}
+
+	public int getNumPumps() {
+		return pumpIds.length;
+	}
+
+	/**
+	 *
+	 * @param index index of the pump, 0 to getNumPumps() - 1
+	 * @return the ID of the pump
+	 */
+	public int getPumpID(int index) {
+		return pumpIds[index];
+	}
+
+	public int getPumpRpm(int pumpID) {
+		return pumpRpms[pumpIndex(pumpID)];
+	}
+
+	public boolean isPumpOperational(int pumpID) {
+		return pumpsOperational[pumpIndex(pumpID)];
+	}
+
+	public boolean isPumpBeingRepaired(int pumpID) {
+		return pumpsBeingRepaired[pumpIndex(pumpID)];
+	}
+
+	public int getNumStepsUntilPumpFailable(int pumpID) {
+		return stepsUntilPumpsFailable[pumpIndex(pumpID)];
+	}
+
+	public int getNumValves() {
+		return valveIds.length;
+	}
+
+	/**
+	 *
+	 * @param index index of the valve, 0 to getNumValves() - 1
+	 * @return the ID of the valve
+	 */
+	public int getValveID(int index) {
+		return valveIds[index];
+	}
+
+	public boolean isValveOpen(int valveID) {
+		return valvesOpen[valveIndex(valveID)];
+	}
+
+	/**
+	 *
+	 * @param component index of the component in the plant's topology, i.e.
+	 *                  PlantTopology.VALVE_1
+	 * @return the rate of the flow out of the component
+	 */
+	public int getFlowRate(int component) {
+		return flowRates[component];
+	}
+}
@@ -0,0 +1,325 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import components.GameOverException;
+
+/**
+ * PlantStateArena keeps the state of many plants outside of the Java heap, one fixed
+ * size record per plant (see Plant.writeState() for the record layout), in either a
+ * direct buffer or a memory mapped file. As the plants are not Java objects the
+ * garbage collector never has to trace them, however many there are.
+ * 
+ * Plants are stepped by a kernel: the record is loaded into a kernel plant (a single
+ * plant that is reused for every record), stepped with the normal game logic and
+ * written back. Stepping therefore behaves exactly like stepping a Plant object, and
+ * does not allocate unless components are being repaired. Kernel plants run without
+ * a feedback controller.
+ * 
+ * A Plant view of any record can be made with view() for inspection, and changes made
+ * to such a plant can be written back with store().
+ * 
+ * When the arena is mapped from a file the plants outlive the process: mapping the
+ * same file again continues with the stored plants. Changes are written to the file
+ * by the operating system, force() writes them straight away.
+ * 
+ * The methods of the arena are not thread safe. Several threads can step disjoint
+ * ranges of plants with step(from, to, numSteps, kernel) as long as each thread uses
+ * its own kernel plant.
+ * 
+ * @author Lamprey
+ */
+public class PlantStateArena implements Closeable {
+	
+	// File header: magic, format version, topology ID, record size, capacity.
+	private final static int MAGIC = 0x52344152; // "R4AR"
+	private final static int VERSION = 1;
+	private final static int HEADER_SIZE = 32;
+	private final static int HEADER_MAGIC = 0;
+	private final static int HEADER_VERSION = 4;
+	private final static int HEADER_TOPOLOGY = 8;
+	private final static int HEADER_RECORD_SIZE = 12;
+	private final static int HEADER_CAPACITY = 16;
+	
+	private final ByteBuffer buffer;
+	private final FileChannel channel;
+	private final int capacity;
+	private final int recordSize;
+	private final Plant kernel;
+	
+	private PlantStateArena(ByteBuffer buffer, FileChannel channel, int capacity, Plant kernel) {
+		this.buffer = buffer;
+		this.channel = channel;
+		this.capacity = capacity;
+		this.recordSize = recordSize(kernel);
+		this.kernel = kernel;
+	}
+	
+	/**
+	 * Creates an arena in a direct buffer. All plants start in the state of a new game.
+	 * 
+	 * @param capacity number of plants in the arena
+	 * @return the new arena
+	 */
+	public static PlantStateArena allocateDirect(int capacity) {
+		Plant kernel = new Plant();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(byteSize(capacity, recordSize(kernel)));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		PlantStateArena arena = new PlantStateArena(buffer, null, capacity, kernel);
+		arena.initialise();
+		return arena;
+	}
+	
+	/**
+	 * Maps an arena from a file. If the file holds an arena with the same capacity
+	 * its plants are kept, otherwise a new arena is created in the file with all
+	 * plants in the state of a new game.
+	 * 
+	 * @param file     the file holding the arena
+	 * @param capacity number of plants in the arena
+	 * @return the mapped arena
+	 * @throws IOException if the file cannot be mapped, or holds an arena that does
+	 * 		   not match the plant layout or capacity
+	 */
+	public static PlantStateArena map(File file, int capacity) throws IOException {
+		Plant kernel = new Plant();
+		int recordSize = recordSize(kernel);
+		int size = byteSize(capacity, recordSize);
+		boolean existing = file.length() > 0;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		FileChannel channel = raf.getChannel();
+		try {
+			if (existing && channel.size() != size) {
+				throw new IOException("PlantStateArena: " + file + " does not hold an arena of " + capacity + " plants.");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			PlantStateArena arena = new PlantStateArena(buffer, channel, capacity, kernel);
+			if (existing) {
+				arena.checkHeader(file);
+			} else {
+				arena.initialise();
+			}
+			return arena;
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of plants in the arena
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * 
+	 * @return the size of a plant's record in bytes
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+	
+	/**
+	 * Starts a new game on a plant.
+	 * 
+	 * @param index          index of the plant
+	 * @param seed           seed of the plant's random number generator
+	 * @param randomFailures true if the plant's components should fail randomly
+	 */
+	public void reset(int index, long seed, boolean randomFailures) {
+		int offset = offset(index);
+		kernel.reset();
+		kernel.setSeed(seed);
+		kernel.setRandomFailures(randomFailures);
+		kernel.writeState(buffer, offset);
+	}
+	
+	/**
+	 * Advances a plant by a number of time steps.
+	 * 
+	 * @param index    index of the plant
+	 * @param numSteps number of time steps
+	 * @return true if the game of the plant is over
+	 */
+	public boolean step(int index, int numSteps) {
+		return stepRecord(kernel, offset(index), numSteps);
+	}
+	
+	/**
+	 * Advances all plants whose game is not over by a number of time steps.
+	 * 
+	 * @param numSteps number of time steps
+	 * @return the number of plants whose game is over
+	 */
+	public int stepAll(int numSteps) {
+		return step(0, capacity, numSteps, kernel);
+	}
+	
+	/**
+	 * Advances the plants from index from (inclusive) to index to (exclusive) using
+	 * the given kernel plant. Threads stepping disjoint ranges at the same time must
+	 * each use their own kernel.
+	 * 
+	 * @param from     index of the first plant
+	 * @param to       index after the last plant
+	 * @param numSteps number of time steps
+	 * @param kernel   the plant used to step the records, its own state is overwritten
+	 * @return the number of plants in the range whose game is over
+	 */
+	public int step(int from, int to, int numSteps, Plant kernel) {
+		if (from < 0 || to > capacity || from > to) {
+			throw new IndexOutOfBoundsException("PlantStateArena: invalid range [" + from + ".." + to + ").");
+		}
+		int gameOver = 0;
+		for (int i = from; i < to; i++) {
+			if (stepRecord(kernel, HEADER_SIZE + i * recordSize, numSteps)) gameOver++;
+		}
+		return gameOver;
+	}
+	
+	/**
+	 * Creates a new Plant with the state of a plant in the arena. The plant is a copy,
+	 * changes to it only reach the arena through store().
+	 * 
+	 * @param index index of the plant
+	 * @return a plant with the stored state
+	 */
+	public Plant view(int index) {
+		Plant plant = new Plant();
+		load(index, plant);
+		return plant;
+	}
+	
+	/**
+	 * Loads the state of a plant in the arena into an existing plant.
+	 * 
+	 * @param index index of the plant
+	 * @param into  the plant to load into
+	 */
+	public void load(int index, Plant into) {
+		into.readState(buffer, offset(index));
+	}
+	
+	/**
+	 * Writes the state of a plant into the arena.
+	 * 
+	 * @param index index of the plant to replace
+	 * @param plant the plant to store
+	 */
+	public void store(int index, Plant plant) {
+		plant.writeState(buffer, offset(index));
+	}
+	
+	/**
+	 * 
+	 * @param index index of the plant
+	 * @return the score of the plant, read straight from its record
+	 */
+	public int getScore(int index) {
+		return buffer.getInt(offset(index) + Plant.STATE_SCORE);
+	}
+	
+	/**
+	 * 
+	 * @param index index of the plant
+	 * @return true if the game of the plant is over
+	 */
+	public boolean isGameOver(int index) {
+		return (buffer.getInt(offset(index) + Plant.STATE_FLAGS) & Plant.FLAG_GAME_OVER) != 0;
+	}
+	
+	/**
+	 * Writes all changes of a mapped arena to its file. Does nothing for a direct arena.
+	 * 
+	 * @throws IOException if the changes could not be written
+	 */
+	public void force() throws IOException {
+		if (channel != null) {
+			((MappedByteBuffer) buffer).force();
+		}
+	}
+	
+	/**
+	 * Writes all changes of a mapped arena to its file and closes the file. The arena
+	 * must not be used afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			force();
+			channel.close();
+		}
+	}
+	
+	private boolean stepRecord(Plant kernel, int offset, int numSteps) {
+		kernel.readState(buffer, offset);
+		if (!kernel.isGameOver()) {
+			try {
+				kernel.step(numSteps);
+			} catch (GameOverException e) {
+				// The plant has recorded that its game is over.
+			}
+			kernel.writeState(buffer, offset);
+		}
+		return kernel.isGameOver();
+	}
+	
+	private void initialise() {
+		buffer.putInt(HEADER_MAGIC, MAGIC);
+		buffer.putInt(HEADER_VERSION, VERSION);
+		buffer.putInt(HEADER_TOPOLOGY, kernel.getTopology().getId());
+		buffer.putInt(HEADER_RECORD_SIZE, recordSize);
+		buffer.putInt(HEADER_CAPACITY, capacity);
+		kernel.reset();
+		for (int i = 0; i < capacity; i++) {
+			kernel.writeState(buffer, offset(i));
+		}
+	}
+	
+	private void checkHeader(File file) throws IOException {
+		if (buffer.getInt(HEADER_MAGIC) != MAGIC
+				|| buffer.getInt(HEADER_VERSION) != VERSION
+				|| buffer.getInt(HEADER_TOPOLOGY) != kernel.getTopology().getId()
+				|| buffer.getInt(HEADER_RECORD_SIZE) != recordSize
+				|| buffer.getInt(HEADER_CAPACITY) != capacity) {
+			throw new IOException("PlantStateArena: " + file + " does not hold a compatible arena.");
+		}
+	}
+	
+	private int offset(int index) {
+		if (index < 0 || index >= capacity) {
+			throw new IndexOutOfBoundsException("PlantStateArena: no plant with index " + index + ".");
+		}
+		return HEADER_SIZE + index * recordSize;
+	}
+	
+	/**
+	 * Records are aligned to 8 bytes so that the long in the plant's record is aligned.
+	 */
+	private static int recordSize(Plant plant) {
+		return (plant.getStateSize() + 7) & ~7;
+	}
+	
+	private static int byteSize(int capacity, int recordSize) {
+		long size = HEADER_SIZE + (long) capacity * recordSize;
+		if (capacity < 0 || size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("PlantStateArena: capacity must be in range [0.."
+											   + (Integer.MAX_VALUE - HEADER_SIZE) / recordSize + "].");
+		}
+		return (int) size;
+	}
+}
@@ -0,0 +1,149 @@
+package model;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * PlantTopology describes how the components of a plant are connected. It is
+ * immutable and a single instance is shared by all plants with the same layout
+ * (flyweight), so the wiring is described once instead of once per plant.
+ * 
+ * Components are addressed by their index in the plant's component list (see the
+ * constants below). A connection goes from the output of one component to the
+ * input of another, in the direction of the flow.
+ * 
+ * The layout of the standard plant is:
+ * 		reactor -> connector pipe 1 -> valve 1 -> turbine -> connector pipe 2 -> condenser
+ * 		                            -> valve 2 ------------>
+ * 		condenser -> connector pipe 3 -> pump 1 -> connector pipe 4 -> reactor
+ * 		                              -> pump 2 ->
+ * The coolant pump of the condenser, the generator and the operating software are
+ * not part of the flow.
+ * 
+ * @author Lamprey
+ */
+public final class PlantTopology implements Serializable {
+	private static final long serialVersionUID = -6730183504786385617L;
+	
+	// Indexes of the components in the plant's component list.
+	public final static int REACTOR = 0;
+	public final static int CONDENSER = 1;
+	public final static int TURBINE = 2;
+	public final static int GENERATOR = 3;
+	public final static int VALVE_1 = 4;
+	public final static int VALVE_2 = 5;
+	public final static int PUMP_1 = 6;
+	public final static int PUMP_2 = 7;
+	public final static int COOLANT_PUMP = 8;
+	public final static int CONNECTOR_PIPE_1 = 9;
+	public final static int CONNECTOR_PIPE_2 = 10;
+	public final static int CONNECTOR_PIPE_3 = 11;
+	public final static int CONNECTOR_PIPE_4 = 12;
+	public final static int OPERATING_SOFTWARE = 13;
+	public final static int NUM_COMPONENTS = 14;
+	public final static int NUM_CONNECTOR_PIPES = 4;
+	
+	public final static int STANDARD_ID = 1;
+	
+	/**
+	 * The topology of the standard plant, shared by all plants.
+	 */
+	public final static PlantTopology STANDARD = new PlantTopology(STANDARD_ID, new int[][] {
+		{REACTOR, CONNECTOR_PIPE_1},
+		{CONNECTOR_PIPE_1, VALVE_1},
+		{CONNECTOR_PIPE_1, VALVE_2},
+		{VALVE_1, TURBINE},
+		{TURBINE, CONNECTOR_PIPE_2},
+		{VALVE_2, CONNECTOR_PIPE_2},
+		{CONNECTOR_PIPE_2, CONDENSER},
+		{CONDENSER, CONNECTOR_PIPE_3},
+		{CONNECTOR_PIPE_3, PUMP_1},
+		{CONNECTOR_PIPE_3, PUMP_2},
+		{PUMP_1, CONNECTOR_PIPE_4},
+		{PUMP_2, CONNECTOR_PIPE_4},
+		{CONNECTOR_PIPE_4, REACTOR}
+	});
+	
+	private final int id;
+	private final int[] from;
+	private final int[] to;
+	
+	private PlantTopology(int id, int[][] connections) {
+		this.id = id;
+		this.from = new int[connections.length];
+		this.to = new int[connections.length];
+		for (int i = 0; i < connections.length; i++) {
+			this.from[i] = connections[i][0];
+			this.to[i] = connections[i][1];
+		}
+	}
+	
+	/**
+	 * Looks up a topology by its ID, i.e. when a saved game is loaded.
+	 * 
+	 * @param id the ID of the topology
+	 * @return the topology with that ID
+	 * @throws IllegalArgumentException if there is no topology with that ID
+	 */
+	public static PlantTopology forId(int id) {
+		if (id == STANDARD_ID) return STANDARD;
+		throw new IllegalArgumentException("PlantTopology: unknown topology ID " + id + ".");
+	}
+	
+	/**
+	 * 
+	 * @return the ID that identifies this topology
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * 
+	 * @return the number of components in a plant with this topology
+	 */
+	public int getNumComponents() {
+		return NUM_COMPONENTS;
+	}
+	
+	/**
+	 * 
+	 * @return the number of connector pipes in a plant with this topology
+	 */
+	public int getNumConnectorPipes() {
+		return NUM_CONNECTOR_PIPES;
+	}
+	
+	/**
+	 * 
+	 * @return the number of connections between components
+	 */
+	public int getNumConnections() {
+		return from.length;
+	}
+	
+	/**
+	 * 
+	 * @param connection index of the connection
+	 * @return index of the component the flow of the connection comes out of
+	 */
+	public int getFrom(int connection) {
+		return from[connection];
+	}
+	
+	/**
+	 * 
+	 * @param connection index of the connection
+	 * @return index of the component the flow of the connection goes into
+	 */
+	public int getTo(int connection) {
+		return to[connection];
+	}
+	
+	/**
+	 * Keeps a single shared instance per topology when plants are deserialised.
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return forId(id);
+	}
+}
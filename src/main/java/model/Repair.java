@@ -30,6 +30,16 @@ public class Repair implements Serializable {
 		this.timeStepsRemaining = componentToRepair.getRepairTime();
 	}
 	
+	/**
+	 * 
+	 * @param componentToRepair  component that needs repairing
+	 * @param timeStepsRemaining number of time steps until the repair is finished
+	 */
+	public Repair (RandomlyFailableComponent componentToRepair, int timeStepsRemaining) {
+		this.failableComponent  = componentToRepair;
+		this.timeStepsRemaining = timeStepsRemaining;
+	}
+	
 	/**
 	 * Decrements the time remaining until the component is repaired 
 	 */
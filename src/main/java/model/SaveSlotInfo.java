@@ -0,0 +1,138 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * SaveSlotInfo is the metadata of a saved game - enough to list the saves in a
+ * save store without loading any of them. Instances are immutable.
+ * 
+ * @author Lamprey
+ */
+public final class SaveSlotInfo {
+	
+	private final String slot;
+	private final boolean multiplayer;
+	private final String playerOneName;
+	private final String playerTwoName;
+	private final int playerOneScore;
+	private final int playerTwoScore;
+	private final int stepCount;
+	private final long timestamp;
+	
+	/**
+	 * 
+	 * @param slot           name of the slot the game is saved in
+	 * @param multiplayer    true for a multiplayer game
+	 * @param playerOneName  name of player one
+	 * @param playerTwoName  name of player two, null in a single player game
+	 * @param playerOneScore score of player one
+	 * @param playerTwoScore score of player two, 0 in a single player game
+	 * @param stepCount      steps played (in a multiplayer game: by the current player)
+	 * @param timestamp      time the game was saved, in milliseconds since the epoch
+	 */
+	public SaveSlotInfo(String slot, boolean multiplayer, String playerOneName, String playerTwoName,
+						int playerOneScore, int playerTwoScore, int stepCount, long timestamp) {
+		SaveStore.checkSlotName(slot);
+		this.slot = slot;
+		this.multiplayer = multiplayer;
+		this.playerOneName = playerOneName;
+		this.playerTwoName = playerTwoName;
+		this.playerOneScore = playerOneScore;
+		this.playerTwoScore = playerTwoScore;
+		this.stepCount = stepCount;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Writes the metadata in the layout used by the save store's index and slot files.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if writing fails
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeUTF(slot);
+		out.writeBoolean(multiplayer);
+		writeName(out, playerOneName);
+		writeName(out, playerTwoName);
+		out.writeInt(playerOneScore);
+		out.writeInt(playerTwoScore);
+		out.writeInt(stepCount);
+		out.writeLong(timestamp);
+	}
+	
+	/**
+	 * Reads metadata written by write().
+	 * 
+	 * @param in the input to read from
+	 * @return the metadata
+	 * @throws IOException if the input does not hold valid metadata
+	 */
+	static SaveSlotInfo read(DataInput in) throws IOException {
+		String slot = in.readUTF();
+		boolean multiplayer = in.readBoolean();
+		String playerOneName = readName(in);
+		String playerTwoName = readName(in);
+		int playerOneScore = in.readInt();
+		int playerTwoScore = in.readInt();
+		int stepCount = in.readInt();
+		long timestamp = in.readLong();
+		try {
+			return new SaveSlotInfo(slot, multiplayer, playerOneName, playerTwoName,
+									playerOneScore, playerTwoScore, stepCount, timestamp);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Saved game has an invalid slot name.", e);
+		}
+	}
+	
+	private static void writeName(DataOutput out, String name) throws IOException {
+		out.writeBoolean(name != null);
+		if (name != null) out.writeUTF(name);
+	}
+	
+	private static String readName(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+	
+	// ----------- Getters ---------------
+	
+	public String getSlot() {
+		return slot;
+	}
+	
+	public boolean isMultiplayer() {
+		return multiplayer;
+	}
+	
+	public String getPlayerOneName() {
+		return playerOneName;
+	}
+	
+	public String getPlayerTwoName() {
+		return playerTwoName;
+	}
+	
+	public int getPlayerOneScore() {
+		return playerOneScore;
+	}
+	
+	public int getPlayerTwoScore() {
+		return playerTwoScore;
+	}
+	
+	public int getStepCount() {
+		return stepCount;
+	}
+	
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	@Override
+	public String toString() {
+		return slot + (multiplayer ? " (multiplayer: " + playerOneName + " " + playerOneScore + ", "
+										+ playerTwoName + " " + playerTwoScore + ")"
+								   : " (" + playerOneName + " " + playerOneScore + ")");
+	}
+}
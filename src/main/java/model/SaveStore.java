@@ -0,0 +1,270 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * SaveStore keeps saved games in named slots inside a folder. Every slot is a file of
+ * its own, and a small index file holds the metadata (SaveSlotInfo) of all slots, so
+ * the saves can be listed without reading any of them. A saved game is only read when
+ * its slot is opened.
+ * 
+ * A slot file holds:
+ * 		int		SLOT_MAGIC
+ * 		short	slot format version
+ * 		info	the slot's metadata (see SaveSlotInfo.write())
+ * 		int		length of the save, followed by the save (see GameSaveFormat)
+ * The index holds INDEX_MAGIC, the index format version, the number of slots and their
+ * metadata. The index is a cache of the metadata in the slot files: if it is missing or
+ * cannot be read, it is rebuilt from the beginning of every slot file.
+ * 
+ * All files are replaced with GameSaveFormat.writeAtomically(). Saving and opening
+ * may be called from several threads, but a slot must not be saved by two threads at
+ * the same time (see AutoSaver).
+ * 
+ * @author Lamprey
+ */
+public class SaveStore {
+	
+	public final static String INDEX_FILE = "index.dat";
+	public final static String SLOT_EXTENSION = ".sav";
+	
+	private final static int INDEX_MAGIC = 0x52344958; // "R4IX"
+	private final static int SLOT_MAGIC = 0x5234534C; // "R4SL"
+	private final static int FORMAT_VERSION = 1;
+	
+	private final static Pattern SLOT_NAME = Pattern.compile("[A-Za-z0-9_\\-]{1,64}");
+	
+	private final File folder;
+	private final Map<String, SaveSlotInfo> index; // guarded by this
+	
+	/**
+	 * Opens the store in a folder, creating the folder if needed.
+	 * 
+	 * @param folder the folder of the store
+	 * @throws IOException if the folder cannot be created or its slots cannot be read
+	 */
+	public SaveStore(File folder) throws IOException {
+		this.folder = folder;
+		this.index = new HashMap<String, SaveSlotInfo>();
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Could not create the save folder " + folder + ".");
+		}
+		try {
+			readIndex();
+		} catch (IOException e) {
+			rebuildIndex();
+		}
+	}
+	
+	/**
+	 * Checks that a slot name can be used as a file name on every platform.
+	 * 
+	 * @param slot the slot name
+	 * @throws IllegalArgumentException if the slot name is not 1-64 letters, digits, '_' or '-'
+	 */
+	public static void checkSlotName(String slot) {
+		if (slot == null || !SLOT_NAME.matcher(slot).matches()) {
+			throw new IllegalArgumentException("SaveStore: invalid slot name '" + slot + "'.");
+		}
+	}
+	
+	/**
+	 * Lists the slots from the index, without reading any saved game.
+	 * 
+	 * @return the metadata of all slots, the most recent save first
+	 */
+	public synchronized List<SaveSlotInfo> list() {
+		List<SaveSlotInfo> slots = new ArrayList<SaveSlotInfo>(index.values());
+		Collections.sort(slots, new Comparator<SaveSlotInfo>() {
+			@Override
+			public int compare(SaveSlotInfo a, SaveSlotInfo b) {
+				if (a.getTimestamp() != b.getTimestamp()) {
+					return a.getTimestamp() > b.getTimestamp() ? -1 : 1;
+				}
+				return a.getSlot().compareTo(b.getSlot());
+			}
+		});
+		return slots;
+	}
+	
+	/**
+	 * 
+	 * @param slot the slot name
+	 * @return the metadata of the slot, or null if nothing is saved in it
+	 */
+	public synchronized SaveSlotInfo getInfo(String slot) {
+		return index.get(slot);
+	}
+	
+	public synchronized boolean contains(String slot) {
+		return index.containsKey(slot);
+	}
+	
+	/**
+	 * Saves a game into the slot named by its metadata, replacing what was saved there.
+	 * 
+	 * @param info the metadata of the save
+	 * @param save the saved game
+	 * @throws IOException if the slot or the index could not be written
+	 */
+	public void save(SaveSlotInfo info, byte[] save) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(save.length + 128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(SLOT_MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		info.write(out);
+		out.writeInt(save.length);
+		out.write(save);
+		GameSaveFormat.writeAtomically(getSlotFile(info.getSlot()), bytes.toByteArray());
+		
+		synchronized (this) {
+			index.put(info.getSlot(), info);
+			writeIndex();
+		}
+	}
+	
+	/**
+	 * Reads the game saved in a slot.
+	 * 
+	 * @param slot the slot name
+	 * @return the saved game, to be read with GameSaveFormat
+	 * @throws FileNotFoundException if nothing is saved in the slot
+	 * @throws IOException if the slot cannot be read
+	 */
+	public byte[] open(String slot) throws IOException {
+		DataInputStream in = openSlot(getSlotFile(slot));
+		try {
+			SaveSlotInfo.read(in);
+			int length = in.readInt();
+			if (length < 0) {
+				throw new IOException("Save slot " + slot + " is corrupt.");
+			}
+			byte[] save = new byte[length];
+			in.readFully(save);
+			return save;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Deletes a slot. Nothing happens if nothing is saved in it.
+	 * 
+	 * @param slot the slot name
+	 * @throws IOException if the slot could not be deleted
+	 */
+	public synchronized void delete(String slot) throws IOException {
+		File file = getSlotFile(slot);
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Could not delete save slot " + slot + ".");
+		}
+		if (index.remove(slot) != null) {
+			writeIndex();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param slot the slot name
+	 * @return the file the slot is stored in
+	 */
+	public File getSlotFile(String slot) {
+		checkSlotName(slot);
+		return new File(folder, slot + SLOT_EXTENSION);
+	}
+	
+	public File getFolder() {
+		return folder;
+	}
+	
+	private DataInputStream openSlot(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != SLOT_MAGIC) {
+				throw new IOException(file.getName() + " is not a save slot.");
+			}
+			int version = in.readUnsignedShort();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Save slot version " + version + " is not supported.");
+			}
+			return in;
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+	
+	private void readIndex() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(new File(folder, INDEX_FILE))));
+		try {
+			if (in.readInt() != INDEX_MAGIC || in.readUnsignedShort() != FORMAT_VERSION) {
+				throw new IOException("Save index is not supported.");
+			}
+			int numSlots = in.readInt();
+			for (int i = 0; i < numSlots; i++) {
+				SaveSlotInfo info = SaveSlotInfo.read(in);
+				index.put(info.getSlot(), info);
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Recreates the index from the metadata at the beginning of every slot file.
+	 * Slot files that cannot be read are left out.
+	 */
+	private void rebuildIndex() throws IOException {
+		index.clear();
+		File[] files = folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SLOT_EXTENSION);
+			}
+		});
+		if (files != null) {
+			for (File file : files) {
+				try {
+					DataInputStream in = openSlot(file);
+					try {
+						SaveSlotInfo info = SaveSlotInfo.read(in);
+						index.put(info.getSlot(), info);
+					} finally {
+						in.close();
+					}
+				} catch (IOException e) {
+					// Not a readable slot, skip it.
+				}
+			}
+		}
+		writeIndex();
+	}
+	
+	private void writeIndex() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + index.size() * 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(INDEX_MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeInt(index.size());
+		for (SaveSlotInfo info : index.values()) {
+			info.write(out);
+		}
+		GameSaveFormat.writeAtomically(new File(folder, INDEX_FILE), bytes.toByteArray());
+	}
+}
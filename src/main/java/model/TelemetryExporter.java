@@ -0,0 +1,316 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import components.GameOverException;
+
+/**
+ * TelemetryExporter writes per-step plant state for external analysis tools, either
+ * from a telemetry file (see TelemetryRecorder) or straight from a running plant.
+ *
+ * Rows are streamed: they go through a fixed size buffer into a FileChannel (through
+ * GZIP when compression is on), so the memory used does not depend on the length of
+ * the run. Two formats are supported:
+ *
+ * 		CSV:      a header line with the column names, then one line per row.
+ * 		COLUMNAR: a compact typed format, big endian:
+ * 				  header: int MAGIC, short VERSION, short numColumns, numColumns column
+ * 						  names (DataOutput.writeUTF)
+ * 				  block:  int rows (1..BLOCK_ROWS), then per column: byte width, int base
+ * 						  and rows values of width bytes; value = base + unsigned stored value
+ * 				  end:    int 0
+ * 		The width of a column is chosen per block from its range: 0 (every value is the
+ * 		base), 1, 2 or 4 bytes. Most columns of a block fit in 0-2 bytes.
+ *
+ * @author Lamprey
+ */
+public class TelemetryExporter implements Closeable {
+
+	public enum Format { CSV, COLUMNAR }
+
+	public final static int MAGIC = 0x52344358; // "R4CX"
+	public final static short VERSION = 1;
+	public final static int BLOCK_ROWS = 4096;
+
+	private final static int BUFFER_SIZE = 1 << 16;
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final FileChannel file;
+	private final WritableByteChannel out;
+	private final Format format;
+	private final int numColumns;
+	private final ByteBuffer buffer;
+	private final int[] block;
+	private int blockRows;
+	private long rows;
+	private boolean closed;
+
+	/**
+	 * Creates the export file and writes its header.
+	 *
+	 * @param file        the export file; an existing file is overwritten
+	 * @param format      the format of the export
+	 * @param compress    true to GZIP the export
+	 * @param columnNames names of the columns of the rows that will be written
+	 * @throws IOException if the file could not be created
+	 */
+	public TelemetryExporter(File file, Format format, boolean compress, String[] columnNames) throws IOException {
+		this.format = format;
+		this.numColumns = columnNames.length;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.block = format == Format.COLUMNAR ? new int[numColumns * BLOCK_ROWS] : null;
+		this.file = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			this.out = compress
+					? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(this.file), BUFFER_SIZE))
+					: this.file;
+			writeHeader(columnNames);
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Exports a whole telemetry file, one segment at a time.
+	 *
+	 * @param telemetry the telemetry file
+	 * @param export    the export file
+	 * @param format    the format of the export
+	 * @param compress  true to GZIP the export
+	 * @return the number of rows exported
+	 * @throws IOException if the telemetry could not be read or the export written
+	 */
+	public static long export(File telemetry, File export, Format format, boolean compress) throws IOException {
+		TelemetryReader reader = new TelemetryReader(telemetry);
+		try {
+			String[] columnNames = new String[reader.getNumColumns()];
+			for (int c = 0; c < columnNames.length; c++) {
+				columnNames[c] = reader.getColumnName(c);
+			}
+			TelemetryExporter exporter = new TelemetryExporter(export, format, compress, columnNames);
+			try {
+				int[] row = new int[columnNames.length];
+				while (reader.next()) {
+					for (int r = 0; r < reader.getRows(); r++) {
+						for (int c = 0; c < row.length; c++) {
+							row[c] = reader.get(c, r);
+						}
+						exporter.write(row);
+					}
+				}
+			} finally {
+				exporter.close();
+			}
+			return exporter.getRows();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Steps a plant and exports its state as it goes, without a telemetry file in between.
+	 * Stepping stops early if the game is over; the step that ended the game is always
+	 * exported, whether it falls on the sample interval or not.
+	 *
+	 * @param plant          the plant to step
+	 * @param steps          number of steps, at most TelemetryRecorder.MAX_STEPS
+	 * @param sampleInterval a row is exported every sampleInterval steps
+	 * @param export         the export file
+	 * @param format         the format of the export
+	 * @param compress       true to GZIP the export
+	 * @return the number of rows exported
+	 * @throws IOException if the export could not be written
+	 */
+	public static long exportLive(Plant plant, long steps, int sampleInterval, File export, Format format, boolean compress) throws IOException {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("TelemetryExporter: sampleInterval must be positive.");
+		}
+		if (steps > TelemetryRecorder.MAX_STEPS) {
+			throw new IllegalArgumentException("TelemetryExporter: at most " + TelemetryRecorder.MAX_STEPS + " steps can be exported.");
+		}
+		TelemetryExporter exporter = new TelemetryExporter(export, format, compress, TelemetryRecorder.getColumnNames());
+		int[] row = new int[TelemetryRecorder.NUM_COLUMNS];
+		long step = 0;
+		try {
+			while (step < steps) {
+				step++;
+				plant.step(1);
+				if (step % sampleInterval == 0) {
+					TelemetryRecorder.sample(plant, step, row, 0, 1);
+					exporter.write(row);
+				}
+			}
+		} catch (GameOverException e) {
+			// The run is over - the step that ended it is exported last.
+			TelemetryRecorder.sample(plant, step, row, 0, 1);
+			exporter.write(row);
+		} finally {
+			exporter.close();
+		}
+		return exporter.getRows();
+	}
+
+	/**
+	 * Writes one row.
+	 *
+	 * @param row the values of all columns
+	 * @throws IOException if the export could not be written
+	 */
+	public void write(int[] row) throws IOException {
+		if (row.length != numColumns) {
+			throw new IllegalArgumentException("TelemetryExporter: a row must have " + numColumns + " values.");
+		}
+		if (format == Format.CSV) {
+			writeLine(row);
+		} else {
+			for (int c = 0; c < numColumns; c++) {
+				block[c * BLOCK_ROWS + blockRows] = row[c];
+			}
+			if (++blockRows == BLOCK_ROWS) writeBlock();
+		}
+		rows++;
+	}
+
+	/**
+	 * Writes the buffered rows, finishes the compression and closes the file.
+	 *
+	 * @throws IOException if the export could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			if (format == Format.COLUMNAR) {
+				if (blockRows > 0) writeBlock();
+				ensure(4);
+				buffer.putInt(0);
+			}
+			drain();
+			if (out != file) out.close();
+		} finally {
+			file.close();
+		}
+	}
+
+	private void writeHeader(String[] columnNames) throws IOException {
+		if (format == Format.CSV) {
+			for (int c = 0; c < columnNames.length; c++) {
+				byte[] name = columnNames[c].getBytes(UTF_8);
+				ensure(name.length + 1);
+				buffer.put(name);
+				buffer.put((byte) (c == columnNames.length - 1 ? '\n' : ','));
+			}
+		} else {
+			ensure(8);
+			buffer.putInt(MAGIC);
+			buffer.putShort(VERSION);
+			buffer.putShort((short) columnNames.length);
+			for (String column : columnNames) {
+				byte[] name = column.getBytes(UTF_8);
+				ensure(name.length + 2);
+				buffer.putShort((short) name.length);
+				buffer.put(name);
+			}
+		}
+	}
+
+	/**
+	 * Formats the row into the buffer without creating any strings.
+	 */
+	private void writeLine(int[] row) throws IOException {
+		// Every value takes at most 11 characters plus the separator.
+		ensure(numColumns * 12);
+		for (int c = 0; c < numColumns; c++) {
+			putDecimal(row[c]);
+			buffer.put((byte) (c == numColumns - 1 ? '\n' : ','));
+		}
+	}
+
+	private void putDecimal(int value) {
+		long v = value;
+		if (v < 0) {
+			buffer.put((byte) '-');
+			v = -v;
+		}
+		long divisor = 1;
+		while (divisor * 10 <= v) divisor *= 10;
+		for (; divisor > 0; divisor /= 10) {
+			buffer.put((byte) ('0' + v / divisor % 10));
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		ensure(4);
+		buffer.putInt(blockRows);
+		for (int c = 0; c < numColumns; c++) {
+			int start = c * BLOCK_ROWS;
+			int end = start + blockRows;
+			int min = block[start];
+			int max = min;
+			for (int i = start + 1; i < end; i++) {
+				if (block[i] < min) min = block[i];
+				if (block[i] > max) max = block[i];
+			}
+			long range = (long) max - min;
+			int width = range == 0 ? 0 : range < 1 << 8 ? 1 : range < 1 << 16 ? 2 : 4;
+			ensure(5 + blockRows * width);
+			buffer.put((byte) width);
+			buffer.putInt(min);
+			switch (width) {
+			case 1:
+				for (int i = start; i < end; i++) buffer.put((byte) (block[i] - min));
+				break;
+			case 2:
+				for (int i = start; i < end; i++) buffer.putShort((short) (block[i] - min));
+				break;
+			case 4:
+				for (int i = start; i < end; i++) buffer.putInt(block[i] - min);
+				break;
+			default:
+				break;
+			}
+		}
+		blockRows = 0;
+	}
+
+	/**
+	 * Makes room for bytes in the buffer, writing it out if needed.
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (buffer.remaining() < bytes) drain();
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 *
+	 * @return number of rows written so far
+	 */
+	public long getRows() {
+		return rows;
+	}
+}
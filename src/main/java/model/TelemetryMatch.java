@@ -0,0 +1,67 @@
+package model;
+
+import java.io.File;
+
+/**
+ * TelemetryMatch is one recorded step that matched a TelemetryQuery, together with
+ * the values of all columns of the telemetry file at that step.
+ * 
+ * @author Lamprey
+ */
+public class TelemetryMatch {
+	
+	private final File file;
+	private final long step;
+	private final String[] columnNames;
+	private final int[] values;
+	
+	TelemetryMatch(File file, long step, String[] columnNames, int[] values) {
+		this.file = file;
+		this.step = step;
+		this.columnNames = columnNames;
+		this.values = values;
+	}
+	
+	/**
+	 * 
+	 * @param column index of the column in the file, i.e. a TelemetryRecorder column
+	 * @return the value of the column at this step
+	 */
+	public int get(int column) {
+		return values[column];
+	}
+	
+	/**
+	 * 
+	 * @param name name of the column
+	 * @return the value of the column at this step
+	 */
+	public int get(String name) {
+		for (int c = 0; c < columnNames.length; c++) {
+			if (columnNames[c].equals(name)) return values[c];
+		}
+		throw new IllegalArgumentException("TelemetryMatch: no column " + name + " in " + file + ".");
+	}
+	
+	// ----------- Getters & Setters ---------------
+	
+	/**
+	 * 
+	 * @return the telemetry file the step was recorded in
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	public long getStep() {
+		return step;
+	}
+	
+	public int getNumColumns() {
+		return values.length;
+	}
+	
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+}
@@ -0,0 +1,76 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TelemetryQuery selects the recorded steps of telemetry files: a step matches when
+ * every condition of the query holds for it. A condition restricts one column to an
+ * inclusive range of values, so "reactor pressure above p while valve 1 is closed" is
+ * 
+ * 		new TelemetryQuery().greaterThan(TelemetryRecorder.REACTOR_PRESSURE, p)
+ * 							.equalTo(TelemetryRecorder.VALVE_1_OPEN, 0)
+ * 
+ * A query without conditions matches every step. Columns are looked up by name in
+ * each file, and a file that lacks one of the columns has no matches.
+ * 
+ * @author Lamprey
+ */
+public class TelemetryQuery {
+	
+	private final List<String> columns;
+	private final List<int[]> ranges;
+	
+	public TelemetryQuery() {
+		this.columns = new ArrayList<String>();
+		this.ranges = new ArrayList<int[]>();
+	}
+	
+	/**
+	 * Adds a condition: the column must be within [min..max].
+	 * 
+	 * @param column name of the column
+	 * @param min    smallest matching value
+	 * @param max    largest matching value
+	 * @return this query
+	 */
+	public TelemetryQuery where(String column, int min, int max) {
+		columns.add(column);
+		ranges.add(new int[] { min, max });
+		return this;
+	}
+	
+	public TelemetryQuery where(int column, int min, int max) {
+		return where(TelemetryRecorder.getColumnName(column), min, max);
+	}
+	
+	public TelemetryQuery greaterThan(int column, int value) {
+		return value == Integer.MAX_VALUE ? where(column, 1, 0) : where(column, value + 1, Integer.MAX_VALUE);
+	}
+	
+	public TelemetryQuery lessThan(int column, int value) {
+		return value == Integer.MIN_VALUE ? where(column, 1, 0) : where(column, Integer.MIN_VALUE, value - 1);
+	}
+	
+	public TelemetryQuery equalTo(int column, int value) {
+		return where(column, value, value);
+	}
+	
+	// ----------- Getters & Setters ---------------
+	
+	int getNumConditions() {
+		return columns.size();
+	}
+	
+	String getColumn(int condition) {
+		return columns.get(condition);
+	}
+	
+	int getMin(int condition) {
+		return ranges.get(condition)[0];
+	}
+	
+	int getMax(int condition) {
+		return ranges.get(condition)[1];
+	}
+}
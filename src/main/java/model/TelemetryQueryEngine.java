@@ -0,0 +1,223 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TelemetryQueryEngine answers a TelemetryQuery over any number of telemetry files
+ * (i.e. a whole archive of recorded runs) without loading them into the heap.
+ * 
+ * The files are scanned in parallel, one file per task on a fixed pool of daemon
+ * threads. Each file is memory-mapped read-only, and before the rows of a segment are
+ * looked at, its zone map (the min and max of each column) is checked against the
+ * conditions of the query - a segment that cannot hold a match is skipped without
+ * touching its columns. The matches are streamed back through TelemetryQueryResults.
+ * 
+ * Version 1 files have no zone maps, so all their segments are scanned.
+ * 
+ * @author Lamprey
+ */
+public class TelemetryQueryEngine {
+	
+	public final static int DEFAULT_QUEUE_CAPACITY = 1024;
+	
+	// Files are mapped in windows of at most this many bytes; a segment always fits in one.
+	private final static long MAX_WINDOW = 1 << 30;
+	private final static int FILE_HEADER_SIZE = 16;
+	
+	private final ExecutorService executor;
+	private final int queueCapacity;
+	
+	/**
+	 * Creates an engine with one thread per processor.
+	 */
+	public TelemetryQueryEngine() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	/**
+	 * 
+	 * @param threads       number of files scanned at the same time
+	 * @param queueCapacity number of matches buffered for the caller of a query
+	 */
+	public TelemetryQueryEngine(int threads, int queueCapacity) {
+		if (threads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("TelemetryQueryEngine: threads and queueCapacity must be positive.");
+		}
+		this.queueCapacity = queueCapacity;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "TelemetryQueryEngine");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Starts a query over the files and returns immediately.
+	 * 
+	 * @param files the telemetry files to scan
+	 * @param query the query
+	 * @return the results, to be read as the scan goes on
+	 */
+	public TelemetryQueryResults query(List<File> files, final TelemetryQuery query) {
+		final TelemetryQueryResults results = new TelemetryQueryResults(files.size(), queueCapacity);
+		for (final File file : files) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					IOException error = null;
+					try {
+						scan(file, query, results);
+					} catch (IOException e) {
+						error = e;
+					} catch (RuntimeException e) {
+						// i.e. a header cut short - the file must still count as done
+						error = new IOException("Could not scan telemetry file " + file, e);
+					} catch (InterruptedException e) {
+						return;
+					}
+					try {
+						results.fileDone(error);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			});
+		}
+		return results;
+	}
+	
+	/**
+	 * Stops the threads of the engine. Running queries are abandoned.
+	 */
+	public void close() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	private void scan(File file, TelemetryQuery query, TelemetryQueryResults results) throws IOException, InterruptedException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < FILE_HEADER_SIZE) {
+				throw new IOException("Not a telemetry file: " + file);
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_WINDOW));
+			if (map.getInt() != TelemetryRecorder.MAGIC) {
+				throw new IOException("Not a telemetry file: " + file);
+			}
+			short version = map.getShort();
+			if (version != TelemetryRecorder.VERSION && version != TelemetryRecorder.VERSION_WITHOUT_ZONE_MAPS) {
+				throw new IOException("Unsupported telemetry version " + version + ": " + file);
+			}
+			boolean zoneMaps = version != TelemetryRecorder.VERSION_WITHOUT_ZONE_MAPS;
+			String[] columnNames = new String[map.getShort()];
+			int segmentRows = map.getInt();
+			int sampleInterval = map.getInt();
+			for (int c = 0; c < columnNames.length; c++) {
+				columnNames[c] = readName(map);
+			}
+			
+			int numConditions = query.getNumConditions();
+			int[] columns = new int[numConditions];
+			int[] min = new int[numConditions];
+			int[] max = new int[numConditions];
+			for (int i = 0; i < numConditions; i++) {
+				columns[i] = indexOf(columnNames, query.getColumn(i));
+				if (columns[i] < 0) return;
+				min[i] = query.getMin(i);
+				max[i] = query.getMax(i);
+			}
+			
+			int numColumns = columnNames.length;
+			int zoneMapSize = zoneMaps ? numColumns * TelemetryRecorder.ZONE_SIZE : 0;
+			long windowStart = 0;
+			int position = map.position();
+			while (!results.isClosed()) {
+				long segmentStart = windowStart + position;
+				if (size - segmentStart < TelemetryRecorder.SEGMENT_HEADER_SIZE) break;
+				if (position + TelemetryRecorder.SEGMENT_HEADER_SIZE > map.limit()) {
+					windowStart = segmentStart;
+					map = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAX_WINDOW));
+					position = 0;
+				}
+				int rows = map.getInt(position);
+				if (rows < 1 || rows > segmentRows) break;
+				long segmentSize = TelemetryRecorder.SEGMENT_HEADER_SIZE + zoneMapSize + (long) numColumns * rows * 4;
+				if (segmentStart + segmentSize > size) break; // torn last segment
+				if (segmentSize > MAX_WINDOW) {
+					throw new IOException("Telemetry segment too large to map: " + file);
+				}
+				if (position + segmentSize > map.limit()) {
+					windowStart = segmentStart;
+					map = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAX_WINDOW));
+					position = 0;
+				}
+				long firstStep = map.getLong(position + 4);
+				if (zoneMaps && !mayMatch(map, position + TelemetryRecorder.SEGMENT_HEADER_SIZE, columns, min, max)) {
+					results.segmentSkipped();
+				} else {
+					results.segmentScanned();
+					int data = position + TelemetryRecorder.SEGMENT_HEADER_SIZE + zoneMapSize;
+					for (int row = 0; row < rows; row++) {
+						if (!matches(map, data, rows, row, columns, min, max)) continue;
+						int[] values = new int[numColumns];
+						for (int c = 0; c < numColumns; c++) {
+							values[c] = map.getInt(data + (c * rows + row) * 4);
+						}
+						TelemetryMatch match = new TelemetryMatch(file, firstStep + (long) row * sampleInterval, columnNames, values);
+						if (!results.add(match)) return;
+					}
+				}
+				position += (int) segmentSize;
+			}
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return false if the zone map at offset rules out a match in its segment
+	 */
+	private boolean mayMatch(ByteBuffer map, int offset, int[] columns, int[] min, int[] max) {
+		for (int i = 0; i < columns.length; i++) {
+			int zone = offset + columns[i] * TelemetryRecorder.ZONE_SIZE;
+			if (map.getInt(zone + 4) < min[i] || map.getInt(zone) > max[i]) return false;
+		}
+		return true;
+	}
+	
+	private boolean matches(ByteBuffer map, int data, int rows, int row, int[] columns, int[] min, int[] max) {
+		for (int i = 0; i < columns.length; i++) {
+			int value = map.getInt(data + (columns[i] * rows + row) * 4);
+			if (value < min[i] || value > max[i]) return false;
+		}
+		return true;
+	}
+	
+	private String readName(ByteBuffer map) throws IOException {
+		byte[] name = new byte[map.getShort() & 0xffff];
+		map.get(name);
+		return new String(name, "UTF-8");
+	}
+	
+	private int indexOf(String[] columnNames, String name) {
+		for (int c = 0; c < columnNames.length; c++) {
+			if (columnNames[c].equals(name)) return c;
+		}
+		return -1;
+	}
+}
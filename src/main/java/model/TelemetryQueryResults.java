@@ -0,0 +1,128 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TelemetryQueryResults streams the matches of a running query from the threads of a
+ * TelemetryQueryEngine to the caller. The matches wait in a bounded queue, so a slow
+ * caller holds the scan back instead of the matches piling up in memory.
+ * 
+ * Matches of different files arrive interleaved; the matches of one file arrive in
+ * step order. Closing the results early stops the scan.
+ * 
+ * @author Lamprey
+ */
+public class TelemetryQueryResults implements Closeable {
+	
+	// Queued after the matches of the last file.
+	private final static TelemetryMatch END = new TelemetryMatch(null, 0, null, null);
+	
+	private final static long OFFER_TIMEOUT_MS = 100;
+	
+	private final ArrayBlockingQueue<TelemetryMatch> queue;
+	private final AtomicInteger remainingFiles;
+	private final AtomicLong scannedSegments;
+	private final AtomicLong skippedSegments;
+	private volatile boolean closed;
+	private volatile IOException error;
+	private boolean finished;
+	
+	TelemetryQueryResults(int numFiles, int capacity) {
+		this.queue = new ArrayBlockingQueue<TelemetryMatch>(capacity);
+		this.remainingFiles = new AtomicInteger(numFiles);
+		this.scannedSegments = new AtomicLong();
+		this.skippedSegments = new AtomicLong();
+		if (numFiles == 0) queue.add(END);
+	}
+	
+	/**
+	 * Waits for the next match.
+	 * 
+	 * @return the next match, or null once all files have been scanned
+	 * @throws IOException if a file could not be scanned; its error is reported
+	 * 					   after the matches of all other files
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public TelemetryMatch next() throws IOException, InterruptedException {
+		if (finished || closed) return null;
+		TelemetryMatch match = queue.take();
+		if (match == END) {
+			finished = true;
+			if (error != null) throw error;
+			return null;
+		}
+		return match;
+	}
+	
+	/**
+	 * Stops the scan. Matches that were not taken yet are discarded.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		queue.clear();
+	}
+	
+	/**
+	 * Queues a match, waiting while the queue is full.
+	 * 
+	 * @return false if the results were closed and the scan should stop
+	 */
+	boolean add(TelemetryMatch match) throws InterruptedException {
+		while (!closed) {
+			if (queue.offer(match, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Called once per file when its scan is over.
+	 * 
+	 * @param e the error of the scan, or null if it succeeded
+	 */
+	void fileDone(IOException e) throws InterruptedException {
+		if (e != null) {
+			synchronized (this) {
+				if (error == null) error = e;
+			}
+		}
+		if (remainingFiles.decrementAndGet() == 0) {
+			add(END);
+		}
+	}
+	
+	void segmentScanned() {
+		scannedSegments.incrementAndGet();
+	}
+	
+	void segmentSkipped() {
+		skippedSegments.incrementAndGet();
+	}
+	
+	boolean isClosed() {
+		return closed;
+	}
+	
+	// ----------- Getters & Setters ---------------
+	
+	/**
+	 * 
+	 * @return number of segments whose rows were scanned so far
+	 */
+	public long getScannedSegments() {
+		return scannedSegments.get();
+	}
+	
+	/**
+	 * 
+	 * @return number of segments skipped so far because their zone map ruled out a match
+	 */
+	public long getSkippedSegments() {
+		return skippedSegments.get();
+	}
+}
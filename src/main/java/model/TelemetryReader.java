@@ -0,0 +1,228 @@
+package model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TelemetryReader reads a telemetry file written by TelemetryRecorder one segment at
+ * a time, so reading a run of any length only needs the memory of a single segment.
+ *
+ * A segment that was cut short (i.e. the game was killed while it was written) ends
+ * the file, like a torn entry ends a command journal. Version 1 files have no zone
+ * maps; the zone map of their segments is computed while reading.
+ *
+ * @author Lamprey
+ */
+public class TelemetryReader implements Closeable {
+
+	private final FileChannel channel;
+	private final String[] columnNames;
+	private final int segmentRows;
+	private final int sampleInterval;
+	private final boolean zoneMaps;
+	private final ByteBuffer buffer;
+	private final int[] data;
+	private final int[] min;
+	private final int[] max;
+	private int rows;
+	private long firstStep;
+
+	/**
+	 * Opens a telemetry file and reads its header.
+	 *
+	 * @param file the telemetry file
+	 * @throws IOException if the file could not be read or is not a telemetry file
+	 */
+	public TelemetryReader(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			readFully(header);
+			if (header.getInt(0) != TelemetryRecorder.MAGIC) {
+				throw new IOException("Not a telemetry file: " + file);
+			}
+			short version = header.getShort(4);
+			if (version != TelemetryRecorder.VERSION && version != TelemetryRecorder.VERSION_WITHOUT_ZONE_MAPS) {
+				throw new IOException("Unsupported telemetry version " + version + ": " + file);
+			}
+			this.zoneMaps = version != TelemetryRecorder.VERSION_WITHOUT_ZONE_MAPS;
+			this.columnNames = new String[header.getShort(6)];
+			this.segmentRows = header.getInt(8);
+			this.sampleInterval = header.getInt(12);
+			if (columnNames.length < 1 || segmentRows < 1) {
+				throw new IOException("Corrupt telemetry header: " + file);
+			}
+			ByteBuffer length = ByteBuffer.allocate(2);
+			for (int c = 0; c < columnNames.length; c++) {
+				length.clear();
+				readFully(length);
+				ByteBuffer name = ByteBuffer.allocate(length.getShort(0) & 0xffff);
+				readFully(name);
+				columnNames[c] = new String(name.array(), "UTF-8");
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.buffer = ByteBuffer.allocateDirect(TelemetryRecorder.SEGMENT_HEADER_SIZE
+				+ columnNames.length * (TelemetryRecorder.ZONE_SIZE + segmentRows * 4));
+		this.data = new int[columnNames.length * segmentRows];
+		this.min = new int[columnNames.length];
+		this.max = new int[columnNames.length];
+	}
+
+	/**
+	 * Reads the next segment of the file.
+	 *
+	 * @return false at the end of the file
+	 * @throws IOException if the file could not be read
+	 */
+	public boolean next() throws IOException {
+		rows = 0;
+		buffer.clear();
+		buffer.limit(TelemetryRecorder.SEGMENT_HEADER_SIZE);
+		if (!read(buffer)) return false;
+		int segmentSize = buffer.getInt(0);
+		if (segmentSize < 1 || segmentSize > segmentRows) return false;
+		long step = buffer.getLong(4);
+		int zoneMapSize = zoneMaps ? columnNames.length * TelemetryRecorder.ZONE_SIZE : 0;
+		buffer.clear();
+		buffer.limit(zoneMapSize + columnNames.length * segmentSize * 4);
+		if (!read(buffer)) return false;
+		buffer.flip();
+		if (zoneMaps) {
+			for (int c = 0; c < columnNames.length; c++) {
+				min[c] = buffer.getInt();
+				max[c] = buffer.getInt();
+			}
+		}
+		for (int c = 0; c < columnNames.length; c++) {
+			int start = c * segmentRows;
+			buffer.asIntBuffer().get(data, start, segmentSize);
+			buffer.position(buffer.position() + segmentSize * 4);
+			if (!zoneMaps) {
+				min[c] = max[c] = data[start];
+				for (int i = start + 1; i < start + segmentSize; i++) {
+					min[c] = Math.min(min[c], data[i]);
+					max[c] = Math.max(max[c], data[i]);
+				}
+			}
+		}
+		this.rows = segmentSize;
+		this.firstStep = step;
+		return true;
+	}
+
+	/**
+	 *
+	 * @param column index of the column
+	 * @param row    row of the current segment
+	 * @return the value of the column in that row
+	 */
+	public int get(int column, int row) {
+		if (row >= rows) {
+			throw new IndexOutOfBoundsException("TelemetryReader: row " + row + " of a segment with " + rows + " rows.");
+		}
+		return data[column * segmentRows + row];
+	}
+
+	/**
+	 *
+	 * @param column index of the column
+	 * @return the smallest value of the column in the current segment
+	 */
+	public int getMin(int column) {
+		return min[column];
+	}
+
+	/**
+	 *
+	 * @param column index of the column
+	 * @return the largest value of the column in the current segment
+	 */
+	public int getMax(int column) {
+		return max[column];
+	}
+
+	/**
+	 * Copies a column of the current segment.
+	 *
+	 * @param column index of the column
+	 * @param into   array of at least getRows() ints
+	 */
+	public void copyColumn(int column, int[] into) {
+		System.arraycopy(data, column * segmentRows, into, 0, rows);
+	}
+
+	/**
+	 *
+	 * @param name name of a column
+	 * @return index of the column in this file, or -1 if the file has no such column
+	 */
+	public int getColumn(String name) {
+		for (int c = 0; c < columnNames.length; c++) {
+			if (columnNames[c].equals(name)) return c;
+		}
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Fills the buffer up to its limit.
+	 *
+	 * @return false if the file ended first
+	 */
+	private boolean read(ByteBuffer into) throws IOException {
+		while (into.hasRemaining()) {
+			if (channel.read(into) < 0) return false;
+		}
+		return true;
+	}
+
+	private void readFully(ByteBuffer into) throws IOException {
+		if (!read(into)) throw new EOFException("Telemetry header is cut short.");
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public int getNumColumns() {
+		return columnNames.length;
+	}
+
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+
+	public int getSegmentRows() {
+		return segmentRows;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 *
+	 * @return number of rows in the current segment
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 *
+	 * @return step of the first row of the current segment
+	 */
+	public long getFirstStep() {
+		return firstStep;
+	}
+}
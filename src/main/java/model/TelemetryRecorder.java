@@ -0,0 +1,436 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import components.Condenser;
+import components.Pump;
+import components.Reactor;
+import components.Valve;
+
+/**
+ * TelemetryRecorder keeps the history of a plant: it samples the state of the plant
+ * every step (or every Nth step) into a telemetry file that can be read back with
+ * TelemetryReader.
+ *
+ * Samples are stored in columns of ints, one column per recorded value (see the column
+ * constants below). The stepping thread only copies the values into preallocated
+ * segments - a segment holds segmentRows samples, column after column - and hands
+ * full segments over to a background thread that writes them out with a FileChannel.
+ * Recording a step neither allocates nor locks; a segment is handed over once every
+ * segmentRows samples.
+ *
+ * The number of segments is fixed. If the background thread falls so far behind that
+ * no free segment is left, samples are dropped (and counted) rather than stalling the
+ * game.
+ *
+ * The step column holds the step as an int, like every other column, so a recorder
+ * records at most MAX_STEPS steps; the samples of later steps are dropped (and counted)
+ * too. The step of a row is also kept exactly, as the long step of its segment.
+ *
+ * File layout (big endian):
+ * 		header:  int MAGIC, short VERSION, short numColumns, int segmentRows,
+ * 				 int sampleInterval, numColumns column names (DataOutput.writeUTF)
+ * 		segment: int rows, long step of the first row, the zone map (int min and
+ * 				 int max of every column), then numColumns blocks of rows ints
+ * Segments are full except possibly those written by flush() and close(). The zone
+ * maps are computed on the background thread and let TelemetryQueryEngine skip the
+ * segments that cannot match a query. Version 1 files have no zone maps.
+ *
+ * @author Lamprey
+ */
+public class TelemetryRecorder {
+
+	public final static int MAGIC = 0x5234544d; // "R4TM"
+	public final static short VERSION = 2;
+	final static short VERSION_WITHOUT_ZONE_MAPS = 1;
+
+	public final static int DEFAULT_SEGMENT_ROWS = 4096;
+	public final static int DEFAULT_SEGMENTS = 4;
+
+	// The most steps a recorder records - the step column holds ints.
+	public final static long MAX_STEPS = Integer.MAX_VALUE;
+
+	// Columns of the telemetry file. Booleans are recorded as 0/1.
+	public final static int STEP = 0;
+	public final static int SCORE = 1;
+	public final static int REACTOR_TEMPERATURE = 2;
+	public final static int REACTOR_PRESSURE = 3;
+	public final static int REACTOR_WATER_VOLUME = 4;
+	public final static int REACTOR_HEALTH = 5;
+	public final static int CONTROL_RODS = 6;
+	public final static int CONDENSER_TEMPERATURE = 7;
+	public final static int CONDENSER_PRESSURE = 8;
+	public final static int CONDENSER_WATER_VOLUME = 9;
+	public final static int CONDENSER_HEALTH = 10;
+	public final static int PUMP_1_RPM = 11;
+	public final static int PUMP_2_RPM = 12;
+	public final static int COOLANT_PUMP_RPM = 13;
+	public final static int VALVE_1_OPEN = 14;
+	public final static int VALVE_2_OPEN = 15;
+	public final static int REACTOR_FLOW_RATE = 16;
+	public final static int CONDENSER_FLOW_RATE = 17;
+	public final static int TURBINE_RPM = 18;
+	public final static int POWER_OUTPUT = 19;
+	public final static int NUM_COLUMNS = 20;
+
+	private final static String[] COLUMN_NAMES = {
+		"step", "score",
+		"reactorTemperature", "reactorPressure", "reactorWaterVolume", "reactorHealth", "controlRods",
+		"condenserTemperature", "condenserPressure", "condenserWaterVolume", "condenserHealth",
+		"pump1Rpm", "pump2Rpm", "coolantPumpRpm", "valve1Open", "valve2Open",
+		"reactorFlowRate", "condenserFlowRate", "turbineRpm", "powerOutput"
+	};
+
+	final static int SEGMENT_HEADER_SIZE = 12;
+	final static int ZONE_SIZE = 8;
+
+	// Handed to the writer thread by close() to stop it.
+	private final static Segment END = new Segment(0);
+
+	private final File file;
+	private final FileChannel channel;
+	private final int segmentRows;
+	private final int sampleInterval;
+	private final ArrayBlockingQueue<Segment> free;
+	private final ArrayBlockingQueue<Segment> full;
+	private final Thread writer;
+	private final Object writtenLock;
+
+	// Only touched by the stepping thread.
+	private Segment current;
+	private long step;
+	private int countdown;
+	private long submitted;
+	private long droppedRows;
+	private boolean closed;
+
+	private long written; // guarded by writtenLock
+	private volatile IOException lastError;
+
+	/**
+	 * Creates a recorder that samples every step into file, with the default segments.
+	 *
+	 * @param file the telemetry file; an existing file is overwritten
+	 * @throws IOException if the file could not be created
+	 */
+	public TelemetryRecorder(File file) throws IOException {
+		this(file, 1, DEFAULT_SEGMENT_ROWS, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Creates a recorder and writes the header of the telemetry file.
+	 *
+	 * @param file           the telemetry file; an existing file is overwritten
+	 * @param sampleInterval a sample is taken every sampleInterval steps
+	 * @param segmentRows    number of samples per segment
+	 * @param numSegments    number of preallocated segments (at least 2)
+	 * @throws IOException if the file could not be created
+	 */
+	public TelemetryRecorder(File file, int sampleInterval, int segmentRows, int numSegments) throws IOException {
+		if (sampleInterval < 1 || segmentRows < 1 || numSegments < 2) {
+			throw new IllegalArgumentException("TelemetryRecorder: sampleInterval and segmentRows must be positive and there must be at least 2 segments.");
+		}
+		this.file = file;
+		this.sampleInterval = sampleInterval;
+		this.segmentRows = segmentRows;
+		this.free = new ArrayBlockingQueue<Segment>(numSegments);
+		this.full = new ArrayBlockingQueue<Segment>(numSegments + 1);
+		for (int i = 0; i < numSegments; i++) {
+			free.add(new Segment(NUM_COLUMNS * segmentRows));
+		}
+		this.writtenLock = new Object();
+		this.countdown = 1;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			writeFully(ByteBuffer.wrap(header()));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeSegments();
+			}
+		}, "TelemetryRecorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Records the state of the plant after a step. Called by Plant.step() once per step
+	 * while the recorder is attached to the plant, including the step that ended the
+	 * game. Only every sampleInterval-th call takes a sample, and none after MAX_STEPS.
+	 *
+	 * @param plant the plant that has just been stepped
+	 */
+	public void record(Plant plant) {
+		long step = ++this.step;
+		if (--countdown > 0) return;
+		countdown = sampleInterval;
+		if (step > MAX_STEPS) {
+			droppedRows++;
+			return;
+		}
+		Segment segment = current;
+		if (segment == null) {
+			segment = free.poll();
+			if (segment == null) {
+				droppedRows++;
+				return;
+			}
+			segment.rows = 0;
+			segment.firstStep = step;
+			current = segment;
+		}
+		int row = segment.rows;
+		sample(plant, step, segment.data, row, segmentRows);
+		segment.rows = ++row;
+		if (row == segmentRows) {
+			handOver(segment);
+		}
+	}
+
+	/**
+	 * Copies the values of all columns of the plant into data, column c of the sample
+	 * going to data[c * stride + row].
+	 *
+	 * @param plant  the plant to sample
+	 * @param step   the step the sample is taken at, at most MAX_STEPS
+	 * @param data   array of NUM_COLUMNS * stride ints
+	 * @param row    row of the sample
+	 * @param stride distance between the columns in data; 1 for a single row
+	 */
+	static void sample(Plant plant, long step, int[] data, int row, int stride) {
+		Reactor reactor = plant.getReactor();
+		Condenser condenser = plant.getCondenser();
+		List<Pump> pumps = plant.getPumps();
+		List<Valve> valves = plant.getValves();
+		data[STEP * stride + row] = (int) step;
+		data[SCORE * stride + row] = plant.getScore();
+		data[REACTOR_TEMPERATURE * stride + row] = reactor.getTemperature();
+		data[REACTOR_PRESSURE * stride + row] = reactor.getPressure();
+		data[REACTOR_WATER_VOLUME * stride + row] = reactor.getWaterVolume();
+		data[REACTOR_HEALTH * stride + row] = reactor.getHealth();
+		data[CONTROL_RODS * stride + row] = reactor.getPercentageLowered();
+		data[CONDENSER_TEMPERATURE * stride + row] = condenser.getTemperature();
+		data[CONDENSER_PRESSURE * stride + row] = condenser.getPressure();
+		data[CONDENSER_WATER_VOLUME * stride + row] = condenser.getWaterVolume();
+		data[CONDENSER_HEALTH * stride + row] = condenser.getHealth();
+		data[PUMP_1_RPM * stride + row] = pumps.get(0).getRpm();
+		data[PUMP_2_RPM * stride + row] = pumps.get(1).getRpm();
+		data[COOLANT_PUMP_RPM * stride + row] = pumps.get(2).getRpm();
+		data[VALVE_1_OPEN * stride + row] = valves.get(0).isOpen() ? 1 : 0;
+		data[VALVE_2_OPEN * stride + row] = valves.get(1).isOpen() ? 1 : 0;
+		data[REACTOR_FLOW_RATE * stride + row] = reactor.getFlowOut().getRate();
+		data[CONDENSER_FLOW_RATE * stride + row] = condenser.getFlowOut().getRate();
+		data[TURBINE_RPM * stride + row] = plant.getTurbine().getRpm();
+		data[POWER_OUTPUT * stride + row] = plant.getGenerator().getPowerOutput();
+	}
+
+	/**
+	 * Hands over the current, partly filled segment and waits until everything recorded
+	 * so far has been written. Must be called from the thread that records.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		if (closed) return;
+		if (current != null && current.rows > 0) {
+			handOver(current);
+		}
+		synchronized (writtenLock) {
+			while (written < submitted) {
+				writtenLock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining samples, stops the background thread and closes the file.
+	 * Must be called from the thread that records; the recorder should be detached
+	 * from the plant first.
+	 *
+	 * @throws IOException if writing the telemetry failed at any point
+	 * @throws InterruptedException if interrupted while waiting for the background thread
+	 */
+	public void close() throws IOException, InterruptedException {
+		if (closed) return;
+		if (current != null && current.rows > 0) {
+			handOver(current);
+		}
+		closed = true;
+		full.add(END);
+		writer.join();
+		channel.close();
+		if (lastError != null) throw lastError;
+	}
+
+	/**
+	 *
+	 * @param column one of the column constants
+	 * @return the name of the column in the telemetry file
+	 */
+	public static String getColumnName(int column) {
+		return COLUMN_NAMES[column];
+	}
+
+	/**
+	 *
+	 * @return the names of all columns, in column order
+	 */
+	public static String[] getColumnNames() {
+		return COLUMN_NAMES.clone();
+	}
+
+	/**
+	 *
+	 * @param name name of a column in the telemetry file
+	 * @return the column constant, or -1 if there is no such column
+	 */
+	public static int getColumn(String name) {
+		for (int i = 0; i < COLUMN_NAMES.length; i++) {
+			if (COLUMN_NAMES[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	private void handOver(Segment segment) {
+		current = null;
+		submitted++;
+		// Never full - it has room for every segment plus END.
+		full.add(segment);
+	}
+
+	private void writeSegments() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_HEADER_SIZE + NUM_COLUMNS * (ZONE_SIZE + segmentRows * 4));
+		while (true) {
+			Segment segment;
+			try {
+				segment = full.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (segment == END) return;
+			if (lastError == null) {
+				try {
+					writeSegment(segment, buffer);
+				} catch (IOException e) {
+					lastError = e;
+				}
+			}
+			free.add(segment);
+			synchronized (writtenLock) {
+				written++;
+				writtenLock.notifyAll();
+			}
+		}
+	}
+
+	private void writeSegment(Segment segment, ByteBuffer buffer) throws IOException {
+		int rows = segment.rows;
+		buffer.clear();
+		buffer.putInt(rows);
+		buffer.putLong(segment.firstStep);
+		int[] data = segment.data;
+		for (int c = 0; c < NUM_COLUMNS; c++) {
+			int start = c * segmentRows;
+			int min = data[start];
+			int max = min;
+			for (int i = start + 1; i < start + rows; i++) {
+				int value = data[i];
+				if (value < min) min = value;
+				if (value > max) max = value;
+			}
+			buffer.putInt(min);
+			buffer.putInt(max);
+		}
+		IntBuffer ints = buffer.asIntBuffer();
+		for (int c = 0; c < NUM_COLUMNS; c++) {
+			ints.put(data, c * segmentRows, rows);
+		}
+		buffer.position(SEGMENT_HEADER_SIZE + NUM_COLUMNS * (ZONE_SIZE + rows * 4));
+		buffer.flip();
+		writeFully(buffer);
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private byte[] header() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(NUM_COLUMNS);
+		out.writeInt(segmentRows);
+		out.writeInt(sampleInterval);
+		for (String name : COLUMN_NAMES) {
+			out.writeUTF(name);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	public int getSegmentRows() {
+		return segmentRows;
+	}
+
+	/**
+	 *
+	 * @return number of steps seen by the recorder, sampled or not
+	 */
+	public long getStepCount() {
+		return step;
+	}
+
+	/**
+	 *
+	 * @return number of samples dropped because no free segment was left, or because
+	 *         the recorder had recorded MAX_STEPS steps
+	 */
+	public long getDroppedRows() {
+		return droppedRows;
+	}
+
+	/**
+	 *
+	 * @return the first error of the background thread, or null if all segments were written
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	private final static class Segment {
+		final int[] data;
+		int rows;
+		long firstStep;
+
+		Segment(int size) {
+			this.data = new int[size];
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram counts latencies (in nanoseconds) in log-linear buckets: every power
+ * of two is split into SUB_BUCKETS buckets, so a percentile is within about 3% of the
+ * real value whatever its size. Recording is lock-free and does not allocate, so it can
+ * be done on every tick of a real-time loop while other threads read the percentiles.
+ *
+ * @author Lamprey
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 5;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong max;
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * Records a latency. Negative latencies are counted as 0.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		long previous;
+		while (nanos > (previous = max.get()) && !max.compareAndSet(previous, nanos)) {
+			// Another thread recorded a new maximum - try again against it.
+		}
+	}
+
+	/**
+	 *
+	 * @param percentile the percentile, 0 to 100
+	 * @return the latency (the upper bound of its bucket) below which percentile percent
+	 *         of the recorded latencies are, 0 if none were recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("LatencyHistogram: percentile must be between 0 and 100.");
+		}
+		long total = count.get();
+		if (total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clears the recorded latencies. Latencies recorded while resetting may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		max.set(0);
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS));
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	/**
+	 *
+	 * @return number of latencies recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 *
+	 * @return the largest latency recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+}
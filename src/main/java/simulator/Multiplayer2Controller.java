@@ -1,5 +1,6 @@
 package simulator;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 
@@ -7,8 +8,10 @@ import components.OperatingSoftware.OperationRequest;
 
 import model.HighScore;
 import model.Model;
+import model.ModelSnapshot;
 import model.Observable;
 import model.Observer;
+import model.SaveSlotInfo;
 
 public class Multiplayer2Controller {
 	private Model model;
@@ -25,14 +28,30 @@ public class Multiplayer2Controller {
 		model.newMultiplayerGame(playerOneName, playerTwoName);
 	}
 	
-	public void saveGame() {
+	public void saveGame() throws IOException {
 		model.saveGame();
 	}
 	
-	public void loadGame() {
+	public void loadGame() throws IOException {
 		model.loadGame();
 	}
 	
+	public void saveGame(String slot) throws IOException {
+		model.saveGame(slot);
+	}
+	
+	public void loadGame(String slot) throws IOException {
+		model.loadGame(slot);
+	}
+	
+	public List<SaveSlotInfo> getSaves() throws IOException {
+		return model.getSaves();
+	}
+	
+	public void deleteSave(String slot) throws IOException {
+		model.deleteSave(slot);
+	}
+	
 	public int getCurrentPlayerNumber() {
 		return model.getCurrentPlayerNumber();
 	}
@@ -95,6 +114,18 @@ public class Multiplayer2Controller {
 		return model.isGameOver();
 	}
 	
+	public boolean isPaused() {
+		return model.isPaused();
+	}
+	
+	/**
+	 * Pauses/resumes the game on call. Only the real-time mode stops while paused
+	 * (see StepRunner.startRealTime).
+	 */
+	public void togglePaused() {
+		model.setPaused(!model.isPaused());
+	}
+	
 	public List<HighScore> getHighScores() {
 		return model.getHighScores();
 	}
@@ -107,6 +138,14 @@ public class Multiplayer2Controller {
 		return model.getStepsLeftOfTurn();
 	}
 	
+	/**
+	 * 
+	 * @return the last published state of the game, safe to read on any thread
+	 */
+	public ModelSnapshot getSnapshot() {
+		return model.getSnapshot();
+	}
+	
 	public void setControlRods(int percentageLowered) {
 		if (model.isSoftwareOperational()) {
 			model.setControlRods(percentageLowered);
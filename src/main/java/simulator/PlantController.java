@@ -1,12 +1,7 @@
 package simulator;
 
-import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,7 +21,9 @@ import components.UpdatableComponent;
 import components.Valve;
 
 
+import model.GameSaveFormat;
 import model.HighScore;
+import model.Leaderboard;
 import model.Plant;
 import model.Repair;
 
@@ -40,17 +37,31 @@ import model.Repair;
  * @author Lamprey
  */
 public class PlantController {
+	final static String SAVE_FILE = "save.dat";
+	
 
 	private Plant plant;
 	private UIData uidata;
+	private Leaderboard leaderboard;
 	
 	/**
 	 * 
 	 * @param utils the utilities for the game
 	 */
 	public PlantController(Plant plant)
+	{
+		this(plant, openLeaderboard());
+	}
+	
+	/**
+	 * 
+	 * @param plant       the plant to control
+	 * @param leaderboard the leaderboard the scores of finished games are added to
+	 */
+	public PlantController(Plant plant, Leaderboard leaderboard)
 	{
 		this.plant = plant;
+		this.leaderboard = leaderboard;
 		readHighScores();
 		uidata = new UIData(plant);
 	}
@@ -61,27 +72,33 @@ public class PlantController {
 	 */
 	
 	/**
-	 * Executes the command that is stored in the operatingSoftware object
+	 * Executes the commands that are stored in the operatingSoftware object, in the
+	 * order they were stored. Called at the start of every step, so the commands given
+	 * since the last step are executed in one batch.
 	 */
 	public void executeStoredCommand()
 	{
-	    //obtains reference to the object
-	    OperatingSoftware operatingSoftware = plant.getOperatingSoftware();
-	    
-	    switch(operatingSoftware.getRequestedOperation())
+	    for (OperatingSoftware.Command command : plant.getOperatingSoftware().drainCommands())
+	    {
+	        execute(command);
+	    }
+	}
+	
+	private void execute(OperatingSoftware.Command command)
+	{
+	    switch(command.getOperation())
 	    {//checks what is the command that has to be executed and calls the
-	     //appropriate method with the required information obtained from the
-	     //operating software
+	     //appropriate method with the required information stored in the command
 	        case SetControlRods: 
-                setControlRods(operatingSoftware.getPercentageLowered());
+                setControlRods(command.getPercentageLowered());
                 break;
                 
             case SetPumpRpm:
-                setPumpRpm(operatingSoftware.getPumpID(),operatingSoftware.getRpm());
+                setPumpRpm(command.getPumpID(), command.getRpm());
                 break;
                 
             case SetValve: 
-                setValve(operatingSoftware.getValveID(),operatingSoftware.isOpen());
+                setValve(command.getValveID(), command.isOpen());
                 break;
                 
             case RepairTurbine:
@@ -89,14 +106,13 @@ public class PlantController {
                 break;
                 
             case RepairPump:
-                repairPump(operatingSoftware.getPumpID());
+                repairPump(command.getPumpID());
                 break;
                 
             default:
                 //execute no command
                 break; 
 	    }
-	    
 	}
 	
 	/**
@@ -113,19 +129,13 @@ public class PlantController {
 	}
 	
 	/**
-	 * Saves the state of the current game (plant) into a file called "save.ser" inside the current folder.
+	 * Saves the state of the current game (plant) into a file called "save.dat" inside the current folder.
 	 * 
 	 * @return true if saving a game was successful, false otherwise
 	 */
 	public boolean saveGame(){
-		FileOutputStream fileOut = null;
-		ObjectOutputStream out   = null;
 		try {
-			fileOut = new FileOutputStream("save.ser");
-			out =     new ObjectOutputStream(fileOut);
-			out.writeObject(plant);
-			out.close();
-			fileOut.close();
+			GameSaveFormat.savePlant(new File(SAVE_FILE), plant);
 			return true;
 		}
 		catch (IOException ex) {
@@ -135,46 +145,36 @@ public class PlantController {
 	}
 	
 	/**
-	 * Loads the state of the current game (plant) from a file called "save.ser" inside the current folder.
+	 * Loads the state of the current game (plant) from a file called "save.dat" inside the current folder.
 	 * If the file does not exist, the load will not be successful (nothing will happen).
+	 * Games saved by older versions of the game ("save.ser") cannot be loaded; the player
+	 * is told so.
 	 * 
 	 * @return true if loading a game was successful, false otherwise
 	 */
 	public boolean loadGame() {
-		Plant plant = null;
-		FileInputStream fileIn  = null;
-		ObjectInputStream in = null;
-		try {
-			File f = new File("save.ser");
-			if(f.exists()) {
-				fileIn = new FileInputStream(f);
-				in = new ObjectInputStream(fileIn);
-				plant = (Plant) in.readObject();
-				in.close();
-				fileIn.close();
-				this.plant = plant;
-				uidata = new UIData(plant);
-				return true;
-			}
-			else {
-				return false;
+		File f = new File(SAVE_FILE);
+		if (!f.exists()) {
+			if (new File(GameSaveFormat.LEGACY_SAVE_FILE).exists()) {
+				System.err.println(GameSaveFormat.LEGACY_SAVE_MESSAGE);
 			}
+			return false;
+		}
+		try {
+			this.plant = GameSaveFormat.loadPlant(f);
+			uidata = new UIData(plant);
+			return true;
 		}
 		catch (IOException io) {
 			io.printStackTrace();
 			return false;
 		}
-		catch (ClassNotFoundException c) {
-			c.printStackTrace();
-			return false;
-		}
 	}
 	
 	/**
 	 * Pauses/resumes the game on call.
 	 * 
-	 * Currently not in used as the game is turn based. Gives the possibility
-	 * to easily create a real-time game.
+	 * Stops/restarts the ticks of the real-time mode (see startRealTime).
 	 */
 	public void togglePaused() {
 		this.plant.setPaused(!this.plant.isPaused());
@@ -186,36 +186,32 @@ public class PlantController {
 	 * @return list of highscores.
 	 */
 	public List<HighScore> getHighScores() {
+		readHighScores();
 		return plant.getHighScores();
 	}
 	
 	/**
-	 * Adds a new score to high scores if the new score is in the top 10 of all scores.
+	 * Adds a new score to the leaderboard if it is one of the best scores.
 	 * 
 	 * @param newHighScore the score to add
-	 * @return true if adding was successful and the new score is in top 10, false otherwise
+	 * @return true if the new score made it onto the leaderboard, false otherwise
 	 */
 	public boolean addHighScore(HighScore newHighScore) {
-		List<HighScore> highScores = plant.getHighScores();
-		int size = highScores.size();
-		if (newHighScore.getHighScore() > 0) {
-			for (int i=0; i < 20; i++) {
-				if (i < size) {
-					HighScore oldHighScore = highScores.get(i);
-					if (oldHighScore.compareTo(newHighScore) < 0) {
-						highScores.add(i, newHighScore);
-						writeHighScores();
-						return true;
-					}
-				}
-				else {
-					highScores.add(size, newHighScore);
-					writeHighScores();
-					return true;
-				}
-			}
+		boolean added;
+		try {
+			added = leaderboard.add(newHighScore);
+		} catch (Leaderboard.ScoreNotSavedException ex) {
+			// The score is on the leaderboard, it just has not been saved.
+			System.err.println(ex.getMessage());
+			added = true;
+		} catch (IOException ex) {
+			System.err.println("Could not add the high score: " + ex.getMessage());
+			added = false;
+		}
+		if (added) {
+			readHighScores();
 		}
-		return false;
+		return added;
 	}
 	
 	/**
@@ -318,12 +314,14 @@ public class PlantController {
 	/**
 	 * Advance the game by a number of time steps.
 	 * 
+	 * The commands stored in the operating software are executed first.
 	 * If the game reaches a game over state before all steps are executed,
 	 * the game stops stepping.
 	 * 
 	 * @param numSteps number of timesteps to advance the game by.
 	 */
 	public void step(int numSteps) {
+		executeStoredCommand();
 		try {
 			plant.step(numSteps);
 		} catch (GameOverException e) {
@@ -331,6 +329,43 @@ public class PlantController {
 		}
 	}
 	
+	/**
+	 * Starts the real-time mode: the plant is stepped once per tick, at ticksPerSecond
+	 * ticks per second, on the scheduler's own thread until the game is over or the
+	 * scheduler is stopped. Other threads should then send their commands through the
+	 * queue of the plant's OperatingSoftware, which every tick drains, and may pause the
+	 * game with togglePaused; the other methods must not be called until the scheduler
+	 * has been stopped.
+	 * 
+	 * @param ticksPerSecond the tick rate
+	 * @return the running scheduler, for its statistics and to stop it
+	 */
+	public RealTimeScheduler startRealTime(double ticksPerSecond) {
+		RealTimeScheduler scheduler = new RealTimeScheduler(new RealTimeScheduler.Simulation() {
+			@Override
+			public void tick() {
+				step(1);
+			}
+			
+			@Override
+			public boolean isPaused() {
+				return plant.isPaused();
+			}
+			
+			@Override
+			public boolean isOver() {
+				return plant.isGameOver();
+			}
+			
+			@Override
+			public void idle() {
+				// Commands wait in the operating software's queue for the next tick.
+			}
+		}, ticksPerSecond);
+		scheduler.start();
+		return scheduler;
+	}
+	
 	// ----------------		Methods used in systemText (TextUI class)	----------------
 	/**
 	 * 
@@ -351,51 +386,31 @@ public class PlantController {
 	// ----------------		Internal helper methods ------------------
 	
 	/**
-	 * Writes all highscores currently inside plant to a file called "highscores.ser".
+	 * Opens the leaderboard in the current folder, or an empty one that is only kept in
+	 * memory if it cannot be opened.
 	 */
-	private void writeHighScores() {
-		List<HighScore> highScores = plant.getHighScores();
-		FileOutputStream fileOut   = null;
-		ObjectOutputStream out = null;
+	private static Leaderboard openLeaderboard() {
 		try {
-			fileOut = new FileOutputStream("highscores.ser");
-			out = new ObjectOutputStream(fileOut);
-			out.writeObject(highScores);
-			out.close();
-			fileOut.close();
+			return Leaderboard.openDefault();
 		}
 		catch (IOException ex) {
 			ex.printStackTrace();
+			return new Leaderboard(Leaderboard.DEFAULT_CAPACITY);
 		}
 	}
 	
 	/**
-	 * Loads all saved highscores from a file called "highscore.ser" to plant's highscores list.
+	 * Copies the high scores of the leaderboard (including the scores of other games
+	 * running at the same time) to plant's highscores list.
 	 */
 	private void readHighScores() {
-		List<HighScore> highScores = null;
-		FileInputStream fileIn  = null;
-		ObjectInputStream in = null;
 		try {
-			File f = new File("highscores.ser");
-			if(f.exists()) {
-				fileIn = new FileInputStream(f);
-				in = new ObjectInputStream(fileIn);
-				highScores = (List<HighScore>) in.readObject();
-				in.close();
-				fileIn.close();
-				plant.setHighScores(highScores);
-			}
-		}
-
-		catch (EOFException e)
-		{}
-		catch (IOException io) {
-			io.printStackTrace();
+			leaderboard.refresh();
 		}
-		catch (ClassNotFoundException c) {
-			c.printStackTrace();
+		catch (IOException ex) {
+			ex.printStackTrace();
 		}
+		plant.setHighScores(new ArrayList<HighScore>(leaderboard.getHighScores()));
 	}
 	
 	/**
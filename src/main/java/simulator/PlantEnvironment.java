@@ -0,0 +1,263 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import components.GameOverException;
+import components.Pump;
+import components.Valve;
+
+import model.Plant;
+
+/**
+ * PlantEnvironment is a reinforcement learning style environment over a vector
+ * of independent plants. Every call to step() applies one action vector per plant,
+ * advances each plant by a single time step and reports the reward and termination
+ * flag of each plant.
+ *
+ * Observations and actions are flat float arrays, plant after plant. Observations
+ * are written into buffers provided by the caller and the environment allocates no
+ * arrays of its own per step, so a training loop can reuse the same arrays/buffers for
+ * its whole run. (Stepping a plant still makes a few short-lived objects, i.e. the
+ * lists of repairs and failures of Plant.step().)
+ *
+ * Observation layout (OBSERVATION_SIZE floats per plant):
+ * 		 0 reactor temperature		 1 reactor pressure		 2 reactor water volume
+ * 		 3 reactor health			 4 control rods lowered (%)
+ * 		 5 condenser temperature	 6 condenser pressure	 7 condenser water volume
+ * 		 8 condenser health
+ * 		 9-11 RPM of pumps 1..3		12-14 pumps 1..3 operational (0/1)
+ * 		15-16 valves 1..2 open (0/1)
+ * 		17 turbine operational (0/1)	18 operating software operational (0/1)
+ * 		19 power output
+ *
+ * Action layout (ACTION_SIZE floats per plant):
+ * 		0 control rods lowered (%, 0..100)
+ * 		1-3 RPM of pumps 1..3 (0..MAX_RPM)
+ * 		4-5 valves 1..2 (>= 0.5 opens the valve, < 0.5 closes it)
+ * Out of range actions are clamped.
+ *
+ * The reward of a step is the increase of the plant's score (see Plant.calcScore()),
+ * and a plant is done once it throws a GameOverException. A done plant is not stepped
+ * again until it is reset.
+ *
+ * @author Lamprey
+ */
+public class PlantEnvironment {
+
+	public final static int OBSERVATION_SIZE = 20;
+	public final static int ACTION_SIZE = 6;
+
+	private final static int NUM_PUMPS = 3;
+	private final static int NUM_VALVES = 2;
+	private final static int MAX_CONTROL_RODS = 100;
+
+	private Plant[] plants;
+	private boolean[] done;
+	private boolean randomFailures;
+
+	/**
+	 * Creates an environment with numPlants independent plants. The plants need to be
+	 * reset before they are stepped for the first time.
+	 *
+	 * @param numPlants number of plants in the environment
+	 */
+	public PlantEnvironment(int numPlants) {
+		if (numPlants < 1) {
+			throw new IllegalArgumentException("PlantEnvironment: numPlants must be at least 1.");
+		}
+		this.plants = new Plant[numPlants];
+		this.done = new boolean[numPlants];
+		for (int i = 0; i < numPlants; i++) {
+			plants[i] = new Plant();
+		}
+		this.randomFailures = false;
+	}
+
+	/**
+	 *
+	 * @return the number of plants in the environment
+	 */
+	public int getNumPlants() {
+		return plants.length;
+	}
+
+	/**
+	 *
+	 * @param index index of the plant
+	 * @return the plant at index, for inspection
+	 */
+	public Plant getPlant(int index) {
+		return plants[index];
+	}
+
+	/**
+	 * Enables or disables random failures of the plants. Takes effect on the next reset.
+	 *
+	 * @param randomFailures true if components should fail randomly
+	 */
+	public void setRandomFailures(boolean randomFailures) {
+		this.randomFailures = randomFailures;
+	}
+
+	/**
+	 * Starts a new episode on all plants. Plant i is seeded with seed + i.
+	 *
+	 * @param seed the seed of the first plant
+	 */
+	public void reset(long seed) {
+		for (int i = 0; i < plants.length; i++) {
+			reset(i, seed + i);
+		}
+	}
+
+	/**
+	 * Starts a new episode on a single plant. The plant is reset in place, so
+	 * resetting does not allocate.
+	 *
+	 * @param index index of the plant
+	 * @param seed  seed of the plant's random number generator
+	 */
+	public void reset(int index, long seed) {
+		Plant plant = plants[index];
+		plant.reset();
+		plant.setSeed(seed);
+		plant.setRandomFailures(randomFailures);
+		done[index] = false;
+	}
+
+	/**
+	 * Applies one action vector per plant and advances every plant that is not done
+	 * by one time step.
+	 *
+	 * @param actions numPlants * ACTION_SIZE actions
+	 * @param rewards receives the reward of each plant
+	 * @param dones   receives true for each plant whose game is over
+	 */
+	public void step(float[] actions, float[] rewards, boolean[] dones) {
+		checkLength(actions.length, ACTION_SIZE, "actions");
+		checkLength(rewards.length, 1, "rewards");
+		checkLength(dones.length, 1, "dones");
+		for (int i = 0; i < plants.length; i++) {
+			Plant plant = plants[i];
+			if (done[i]) {
+				rewards[i] = 0;
+				dones[i] = true;
+				continue;
+			}
+			applyAction(plant, actions, i * ACTION_SIZE);
+			int scoreBefore = plant.getScore();
+			try {
+				plant.step(1);
+			} catch (GameOverException e) {
+				done[i] = true;
+			}
+			rewards[i] = plant.getScore() - scoreBefore;
+			dones[i] = done[i];
+		}
+	}
+
+	/**
+	 * Writes the observation of every plant into a float array.
+	 *
+	 * @param into array of at least numPlants * OBSERVATION_SIZE floats
+	 */
+	public void observe(float[] into) {
+		checkLength(into.length, OBSERVATION_SIZE, "into");
+		for (int i = 0; i < plants.length; i++) {
+			int offset = i * OBSERVATION_SIZE;
+			Plant plant = plants[i];
+			List<Pump> pumps = plant.getPumps();
+			List<Valve> valves = plant.getValves();
+			into[offset]      = plant.getReactorTemperature();
+			into[offset + 1]  = plant.getReactorPressure();
+			into[offset + 2]  = plant.getReactorWaterVolume();
+			into[offset + 3]  = plant.getReactorHealth();
+			into[offset + 4]  = plant.getControlRodsLevel();
+			into[offset + 5]  = plant.getCondenserTemperature();
+			into[offset + 6]  = plant.getCondenserPressure();
+			into[offset + 7]  = plant.getCondenserWaterVolume();
+			into[offset + 8]  = plant.getCondenserHealth();
+			for (int p = 0; p < NUM_PUMPS; p++) {
+				Pump pump = pumps.get(p);
+				into[offset + 9 + p]  = pump.getRpm();
+				into[offset + 12 + p] = pump.isOperational() ? 1 : 0;
+			}
+			for (int v = 0; v < NUM_VALVES; v++) {
+				into[offset + 15 + v] = valves.get(v).isOpen() ? 1 : 0;
+			}
+			into[offset + 17] = plant.isTurbineOperational() ? 1 : 0;
+			into[offset + 18] = plant.isSoftwareOperational() ? 1 : 0;
+			into[offset + 19] = plant.getGenerator().getPowerOutput();
+		}
+	}
+
+	/**
+	 * Writes the observation of every plant into a (typically direct) buffer, starting at
+	 * its current position and using its byte order. The position is advanced past the
+	 * written floats.
+	 *
+	 * @param into buffer with at least numPlants * OBSERVATION_SIZE floats remaining
+	 */
+	public void observe(ByteBuffer into) {
+		if (into.remaining() < plants.length * OBSERVATION_SIZE * 4) {
+			throw new IllegalArgumentException("PlantEnvironment: buffer too small for the observations.");
+		}
+		for (int i = 0; i < plants.length; i++) {
+			Plant plant = plants[i];
+			List<Pump> pumps = plant.getPumps();
+			List<Valve> valves = plant.getValves();
+			into.putFloat(plant.getReactorTemperature());
+			into.putFloat(plant.getReactorPressure());
+			into.putFloat(plant.getReactorWaterVolume());
+			into.putFloat(plant.getReactorHealth());
+			into.putFloat(plant.getControlRodsLevel());
+			into.putFloat(plant.getCondenserTemperature());
+			into.putFloat(plant.getCondenserPressure());
+			into.putFloat(plant.getCondenserWaterVolume());
+			into.putFloat(plant.getCondenserHealth());
+			for (int p = 0; p < NUM_PUMPS; p++) {
+				into.putFloat(pumps.get(p).getRpm());
+			}
+			for (int p = 0; p < NUM_PUMPS; p++) {
+				into.putFloat(pumps.get(p).isOperational() ? 1 : 0);
+			}
+			for (int v = 0; v < NUM_VALVES; v++) {
+				into.putFloat(valves.get(v).isOpen() ? 1 : 0);
+			}
+			into.putFloat(plant.isTurbineOperational() ? 1 : 0);
+			into.putFloat(plant.isSoftwareOperational() ? 1 : 0);
+			into.putFloat(plant.getGenerator().getPowerOutput());
+		}
+	}
+
+	/**
+	 * Sets the actuators of a plant from its slice of the action vector.
+	 * Pumps and valves are addressed by position, which matches their IDs.
+	 */
+	private void applyAction(Plant plant, float[] actions, int offset) {
+		plant.setControlRods(clamp(actions[offset], MAX_CONTROL_RODS));
+		List<Pump> pumps = plant.getPumps();
+		for (int p = 0; p < NUM_PUMPS; p++) {
+			Pump pump = pumps.get(p);
+			pump.setRpm(clamp(actions[offset + 1 + p], pump.getMaxRpm()));
+		}
+		List<Valve> valves = plant.getValves();
+		for (int v = 0; v < NUM_VALVES; v++) {
+			valves.get(v).setOpen(actions[offset + 4 + v] >= 0.5f);
+		}
+	}
+
+	private int clamp(float value, int max) {
+		if (value <= 0) return 0;
+		if (value >= max) return max;
+		return Math.round(value);
+	}
+
+	private void checkLength(int length, int perPlant, String name) {
+		if (length < plants.length * perPlant) {
+			throw new IllegalArgumentException("PlantEnvironment: " + name + " must hold "
+											   + perPlant + " value(s) per plant.");
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package simulator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RealTimeScheduler advances a simulation at a fixed tick rate instead of when the player
+ * presses the step button, i.e. for time pressure in operator training and for a steady
+ * cadence in soak tests.
+ *
+ * Ticks are scheduled against absolute deadlines (start + n * period) rather than by
+ * sleeping a period after every tick, so the time taken by the ticks and the sleeping
+ * error do not add up: the rate does not drift. A tick that finishes after the deadline
+ * of the next tick counts as a missed deadline, and the next tick runs right away to
+ * catch up. After falling more than MAX_CATCH_UP_TICKS behind, the lost ticks are skipped
+ * rather than run in a burst.
+ *
+ * While the simulation is paused no ticks are run, and the time spent paused is not
+ * caught up on resume. The scheduler stops by itself when the simulation is over.
+ * Between ticks (and while paused) it sleeps, waking up at the next deadline, every
+ * period while paused, or when woken up (see wakeUp).
+ *
+ * The latency of a tick is the time from its deadline until it has finished; it is
+ * recorded in a LatencyHistogram for the percentiles.
+ *
+ * @author Lamprey
+ */
+public class RealTimeScheduler {
+
+	public final static int MAX_CATCH_UP_TICKS = 5;
+
+	/**
+	 * The simulation driven by the scheduler. Its methods are called on the thread
+	 * running the scheduler only.
+	 */
+	public interface Simulation {
+
+		/**
+		 * Advances the simulation by one tick.
+		 */
+		public void tick();
+
+		/**
+		 * @return true while the simulation is paused
+		 */
+		public boolean isPaused();
+
+		/**
+		 * @return true when the simulation has ended, i.e. the game is over
+		 */
+		public boolean isOver();
+
+		/**
+		 * Called whenever the scheduler has woken up between ticks, i.e. to run commands
+		 * that should not wait for the next tick or for the game to be resumed.
+		 */
+		public void idle();
+	}
+
+	/**
+	 * The time source of the scheduler, replaced by a fake clock in the tests so they do
+	 * not depend on the timing of the machine.
+	 */
+	interface Clock {
+
+		/**
+		 * @return the current time in nanoseconds, see System.nanoTime()
+		 */
+		public long nanoTime();
+
+		/**
+		 * Sleeps for at most nanos nanoseconds, or until the thread is unparked.
+		 */
+		public void sleep(Object blocker, long nanos);
+	}
+
+	final static Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep(Object blocker, long nanos) {
+			LockSupport.parkNanos(blocker, nanos);
+		}
+	};
+
+	private final Simulation simulation;
+	private final Clock clock;
+	private final LatencyHistogram latencies;
+	private final AtomicLong ticks;
+	private final AtomicLong missedDeadlines;
+	private final AtomicLong skippedTicks;
+	private volatile long periodNanos;
+	private volatile boolean stopped;
+	private volatile Thread thread;
+	private Thread ownThread;
+
+	/**
+	 *
+	 * @param simulation     the simulation to advance
+	 * @param ticksPerSecond the tick rate
+	 */
+	public RealTimeScheduler(Simulation simulation, double ticksPerSecond) {
+		this(simulation, ticksPerSecond, SYSTEM_CLOCK);
+	}
+
+	RealTimeScheduler(Simulation simulation, double ticksPerSecond, Clock clock) {
+		this.simulation = simulation;
+		this.clock = clock;
+		this.latencies = new LatencyHistogram();
+		this.ticks = new AtomicLong();
+		this.missedDeadlines = new AtomicLong();
+		this.skippedTicks = new AtomicLong();
+		setTicksPerSecond(ticksPerSecond);
+	}
+
+	/**
+	 * Runs the scheduler on a new daemon thread and returns immediately.
+	 *
+	 * @throws IllegalStateException if the scheduler has already been started
+	 */
+	public synchronized void start() {
+		if (ownThread != null || thread != null) {
+			throw new IllegalStateException("RealTimeScheduler: already started.");
+		}
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				RealTimeScheduler.this.run();
+			}
+		}, "RealTimeScheduler");
+		t.setDaemon(true);
+		ownThread = t;
+		t.start();
+	}
+
+	/**
+	 * Runs the ticks on the calling thread until the scheduler is stopped or the
+	 * simulation is over, i.e. on a thread that is already the only one allowed to change
+	 * the game (see StepRunner.startRealTime).
+	 */
+	public void run() {
+		thread = Thread.currentThread();
+		long deadline = clock.nanoTime() + periodNanos;
+		while (!stopped && !simulation.isOver()) {
+			long now = clock.nanoTime();
+			if (now < deadline) {
+				clock.sleep(this, deadline - now);
+				simulation.idle();
+				continue;
+			}
+			long period = periodNanos;
+			if (simulation.isPaused()) {
+				// Check again in a period; the time spent paused is not caught up.
+				deadline = now + period;
+				continue;
+			}
+			simulation.tick();
+			long done = clock.nanoTime();
+			latencies.record(done - deadline);
+			ticks.incrementAndGet();
+			deadline += period;
+			if (done > deadline) {
+				missedDeadlines.incrementAndGet();
+				long behind = (done - deadline) / period;
+				if (behind > MAX_CATCH_UP_TICKS) {
+					skippedTicks.addAndGet(behind);
+					deadline += behind * period;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wakes the scheduler up if it is sleeping, so it calls Simulation.idle() right away.
+	 */
+	public void wakeUp() {
+		Thread t = thread;
+		if (t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * Asks the scheduler to stop after its current tick and returns immediately.
+	 */
+	public void stop() {
+		stopped = true;
+		wakeUp();
+	}
+
+	/**
+	 * Stops the scheduler and, if it was started on its own thread, waits for it.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void close() throws InterruptedException {
+		stop();
+		Thread t;
+		synchronized (this) {
+			t = ownThread;
+		}
+		if (t != null && t != Thread.currentThread()) t.join();
+	}
+
+	/**
+	 *
+	 * @param percentile the percentile, 0 to 100
+	 * @return the tick latency in nanoseconds below which percentile percent of the ticks are
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return latencies.getPercentile(percentile);
+	}
+
+	/**
+	 * Clears the recorded latencies and the tick, missed deadline and skipped tick counts.
+	 */
+	public void resetStatistics() {
+		latencies.reset();
+		ticks.set(0);
+		missedDeadlines.set(0);
+		skippedTicks.set(0);
+	}
+
+	/**
+	 *
+	 * @return the rate, latency percentiles and missed deadlines, for logging
+	 */
+	public String getStatistics() {
+		return String.format("%.1f ticks/s: %d ticks, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms, "
+				+ "%d missed deadlines, %d ticks skipped", getTicksPerSecond(), getTicks(),
+				getLatencyPercentile(50) / 1e6, getLatencyPercentile(99) / 1e6, latencies.getMax() / 1e6,
+				getMissedDeadlines(), getSkippedTicks());
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public double getTicksPerSecond() {
+		return (double) TimeUnit.SECONDS.toNanos(1) / periodNanos;
+	}
+
+	/**
+	 * Changes the tick rate; it applies from the next deadline on.
+	 *
+	 * @param ticksPerSecond the tick rate
+	 */
+	public void setTicksPerSecond(double ticksPerSecond) {
+		if (!(ticksPerSecond > 0) || ticksPerSecond > TimeUnit.SECONDS.toNanos(1)) {
+			throw new IllegalArgumentException("RealTimeScheduler: ticksPerSecond must be positive and at most 10^9.");
+		}
+		this.periodNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / ticksPerSecond);
+	}
+
+	/**
+	 *
+	 * @return number of ticks run
+	 */
+	public long getTicks() {
+		return ticks.get();
+	}
+
+	/**
+	 *
+	 * @return number of ticks that finished after the deadline of the next tick
+	 */
+	public long getMissedDeadlines() {
+		return missedDeadlines.get();
+	}
+
+	/**
+	 *
+	 * @return number of ticks skipped after falling more than MAX_CATCH_UP_TICKS behind
+	 */
+	public long getSkippedTicks() {
+		return skippedTicks.get();
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+}
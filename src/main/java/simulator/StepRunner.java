@@ -0,0 +1,308 @@
+package simulator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * StepRunner advances the game by a batch of steps on its own simulation thread, so the
+ * thread that asked for the batch (i.e. the Swing event dispatch thread) is not blocked.
+ *
+ * The batch is run in chunks of at most CHUNK_STEPS steps, the most the GUI could issue
+ * in a single step before, so failures and repairs behave as if the player had kept
+ * pressing the step button. A batch stops early when the game is over, when the players
+ * are swapped in a multiplayer game, or when it is cancelled.
+ *
+ * The listener is called on the simulation thread: with the progress at most every
+ * PROGRESS_INTERVAL_MS milliseconds, and once when the batch has finished. The model
+ * notifies its observers on the simulation thread as well while a batch runs.
+ *
+ * The simulation thread is the only thread that changes the game. Commands from any
+ * thread (the GUI, the player two keys, tools) are submitted to a lock-free queue and
+ * run by the simulation thread in the order they were submitted: between the chunks of
+ * a running batch, otherwise as soon as possible. Their results come back as futures.
+ *
+ * Instead of a batch, the simulation thread can run the game in real time (see
+ * startRealTime): one step per tick of a RealTimeScheduler, with the commands run before
+ * every tick and as soon as they are submitted while the scheduler waits for a tick.
+ *
+ * @author Lamprey
+ */
+public class StepRunner {
+
+	public final static int CHUNK_STEPS = 10;
+	public final static long PROGRESS_INTERVAL_MS = 50;
+
+	/**
+	 * Receives the progress of a batch.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param stepsDone number of steps done so far
+		 * @param numSteps  number of steps of the batch
+		 */
+		public void progress(long stepsDone, long numSteps);
+
+		/**
+		 * @param stepsDone number of steps done
+		 * @param cancelled true if the batch was cancelled before it was complete
+		 */
+		public void finished(long stepsDone, boolean cancelled);
+	}
+
+	private final Multiplayer2Controller controller;
+	private final ExecutorService executor;
+	private final Queue<FutureTask<?>> commands;
+	private final AtomicBoolean drainScheduled;
+	private final Runnable drain;
+	private volatile Thread simulationThread;
+	private volatile boolean running;
+	private volatile boolean cancelled;
+	private volatile RealTimeScheduler realTime;
+
+	public StepRunner(Multiplayer2Controller controller) {
+		this.controller = controller;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Simulation");
+				thread.setDaemon(true);
+				simulationThread = thread;
+				return thread;
+			}
+		});
+		this.commands = new ConcurrentLinkedQueue<FutureTask<?>>();
+		this.drainScheduled = new AtomicBoolean();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				// Cleared first, so a command submitted while draining schedules another drain.
+				drainScheduled.set(false);
+				runCommands();
+			}
+		};
+	}
+
+	/**
+	 * Queues a command to be run on the simulation thread and returns immediately.
+	 *
+	 * @param command the command, i.e. a call to the controller
+	 * @return the result of the command; it throws what the command threw
+	 */
+	public <T> Future<T> submit(Callable<T> command) {
+		FutureTask<T> task = new FutureTask<T>(command);
+		commands.offer(task);
+		RealTimeScheduler scheduler = realTime;
+		if (scheduler != null) scheduler.wakeUp();
+		// Only the first command of a burst goes through the executor's (locking) queue.
+		if (drainScheduled.compareAndSet(false, true)) {
+			executor.execute(drain);
+		}
+		return task;
+	}
+
+	/**
+	 * Queues a command to be run on the simulation thread and returns immediately.
+	 *
+	 * @param command the command, i.e. a call to the controller
+	 * @return completes when the command has run
+	 */
+	public Future<?> submit(Runnable command) {
+		return submit(Executors.callable(command));
+	}
+
+	/**
+	 * Runs a command on the simulation thread after the commands already queued and
+	 * waits for it, i.e. for loading and saving, which report their errors. Called on
+	 * the simulation thread, the command is run right away.
+	 *
+	 * @param command the command
+	 * @return the result of the command
+	 * @throws IOException if the command threw it, or if interrupted while waiting
+	 */
+	public <T> T execute(Callable<T> command) throws IOException {
+		if (Thread.currentThread() == simulationThread) {
+			try {
+				return command.call();
+			} catch (IOException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+		Future<T> result = submit(command);
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("StepRunner: interrupted while waiting for a command.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Starts a batch in the background and returns immediately.
+	 *
+	 * @param numSteps number of steps of the batch
+	 * @param listener receives the progress of the batch, may be null
+	 * @return false if a batch is already running; the new one is not started
+	 */
+	public synchronized boolean start(final long numSteps, final Listener listener) {
+		if (numSteps < 1) {
+			throw new IllegalArgumentException("StepRunner: numSteps must be positive.");
+		}
+		if (running) return false;
+		running = true;
+		cancelled = false;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				long stepsDone = 0;
+				try {
+					stepsDone = runBatch(numSteps, listener);
+				} finally {
+					running = false;
+					if (listener != null) listener.finished(stepsDone, stepsDone < numSteps && cancelled);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Starts the real-time mode in the background and returns immediately: the game is
+	 * stepped once per tick, at ticksPerSecond ticks per second, until it is over, the
+	 * players are swapped in a multiplayer game, or it is cancelled. No steps are done while the game is paused (see
+	 * Multiplayer2Controller.togglePaused), but commands are still run.
+	 *
+	 * @param ticksPerSecond the tick rate
+	 * @param listener       told the number of ticks when the real-time mode has finished,
+	 *                       may be null; progress is not reported
+	 * @return the scheduler, for its statistics and its tick rate, null if a batch or the
+	 *         real-time mode is already running
+	 */
+	public synchronized RealTimeScheduler startRealTime(double ticksPerSecond, final Listener listener) {
+		if (running) return null;
+		// The player when the real-time mode starts, read on the simulation thread.
+		final int[] player = new int[1];
+		final RealTimeScheduler scheduler = new RealTimeScheduler(new RealTimeScheduler.Simulation() {
+			@Override
+			public void tick() {
+				runCommands();
+				if (!controller.isGameOver()) controller.step(1);
+			}
+
+			@Override
+			public boolean isPaused() {
+				return controller.isPaused();
+			}
+
+			@Override
+			public boolean isOver() {
+				return cancelled || controller.isGameOver() || controller.getCurrentPlayerNumber() != player[0];
+			}
+
+			@Override
+			public void idle() {
+				runCommands();
+			}
+		}, ticksPerSecond);
+		running = true;
+		cancelled = false;
+		realTime = scheduler;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					player[0] = controller.getCurrentPlayerNumber();
+					scheduler.run();
+				} finally {
+					realTime = null;
+					running = false;
+					if (listener != null) listener.finished(scheduler.getTicks(), cancelled);
+				}
+			}
+		});
+		return scheduler;
+	}
+
+	/**
+	 * Asks the running batch to stop after its current chunk, or the real-time mode after
+	 * its current tick.
+	 */
+	public void cancel() {
+		cancelled = true;
+		RealTimeScheduler scheduler = realTime;
+		if (scheduler != null) scheduler.stop();
+	}
+
+	/**
+	 *
+	 * @return true while a batch or the real-time mode is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Cancels the running batch and waits for the simulation thread to stop.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void close() throws InterruptedException {
+		cancel();
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	private long runBatch(long numSteps, Listener listener) {
+		int player = controller.getCurrentPlayerNumber();
+		long progressInterval = TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MS);
+		long lastProgress = System.nanoTime();
+		long stepsDone = 0;
+		while (stepsDone < numSteps && !cancelled && !controller.isGameOver()
+			   && controller.getCurrentPlayerNumber() == player) {
+			runCommands();
+			long chunk = Math.min(numSteps - stepsDone, CHUNK_STEPS);
+			if (controller.isMultiplayer()) {
+				chunk = Math.max(1, Math.min(chunk, controller.numberOfStepsUntilSwap()));
+			}
+			controller.step((int) chunk);
+			stepsDone += chunk;
+			long now = System.nanoTime();
+			if (listener != null && now - lastProgress >= progressInterval) {
+				lastProgress = now;
+				listener.progress(stepsDone, numSteps);
+			}
+		}
+		return stepsDone;
+	}
+
+	/**
+	 * Runs the queued commands. Called on the simulation thread only.
+	 */
+	private void runCommands() {
+		FutureTask<?> command;
+		while ((command = commands.poll()) != null) {
+			command.run();
+		}
+	}
+}
@@ -25,10 +25,10 @@ import components.PlantComponent;
 import components.Pump;
 import components.Turbine;
 import components.UpdatableComponent;
-import components.Valve;
 
 
 import model.HighScore;
+import model.PlantSnapshot;
 
 
 
@@ -305,18 +305,19 @@ public class TextUI extends JFrame implements KeyListener
         	reactorInfo += "Pressure: "         + uidata.getCondenserPressure()    + " \t\t| Max: "               + uidata.getCondenserMaxPressure()        + "\n";
         	reactorInfo += "Water Volume: "     + uidata.getCondenserWaterVolume() + "\n\n";
         	
-        	List<Valve> valves = uidata.getValves();
-        	for (Valve v : valves) {
-        		reactorInfo += "VALVE ID: " + v.getID() + " | ";
-        		reactorInfo += "POSITION: " + (v.isOpen() ? "OPEN\n" : "CLOSED\n");
+        	PlantSnapshot snapshot = uidata.getSnapshot();
+        	for (int i = 0; i < snapshot.getNumValves(); i++) {
+        		int valveID = snapshot.getValveID(i);
+        		reactorInfo += "VALVE ID: " + valveID + " | ";
+        		reactorInfo += "POSITION: " + (snapshot.isValveOpen(valveID) ? "OPEN\n" : "CLOSED\n");
         	}
         	reactorInfo += "\n";
         	
-        	List<Pump> pump = uidata.getPumps();
-        	for (Pump p : pump) {
-        		reactorInfo += "PUMP ID: " + p.getID() + "  | ";
-        		reactorInfo += "STATUS: " + ((p.isOperational()) ? "FUNCTIONAL | " : "BROKEN | ");
-        		reactorInfo += "RPM: " + p.getRpm() + "\n";
+        	for (int i = 0; i < snapshot.getNumPumps(); i++) {
+        		int pumpID = snapshot.getPumpID(i);
+        		reactorInfo += "PUMP ID: " + pumpID + "  | ";
+        		reactorInfo += "STATUS: " + ((snapshot.isPumpOperational(pumpID)) ? "FUNCTIONAL | " : "BROKEN | ");
+        		reactorInfo += "RPM: " + snapshot.getPumpRpm(pumpID) + "\n";
         	}
         	reactorInfo += "\n";
         	
@@ -4,11 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import components.PlantComponent;
-import components.Pump;
-import components.Valve;
 
 
 import model.Plant;
+import model.PlantSnapshot;
 
 
 
@@ -21,105 +20,33 @@ import model.Plant;
 public class UIData {
 	private Plant plant;
 	
-	private String  operatorName;
-	private int     score;
-	private boolean gameOver;
+	private PlantSnapshot snapshot;
 	private boolean multiplayer;
 	
-	private int reactorHealth;
-	private int reactorTemperature;
-	private int reactorMaxTemperature;
-	private int reactorPressure;
-	private int reactorMaxPressure;
-	private int reactorWaterVolume;
-	private int reactorMinSafeWaterVolume;
-	
-	private int condenserHealth;
-	private int condenserTemperature;
-	private int condenserMaxTemperature;
-	private int condenserPressure;
-	private int condenserMaxPressure;
-	private int condenserWaterVolume;
-	
-	private int turbineRpm;
-	private boolean turbineFunctional;
-	private boolean operatingSoftwareFunctional;
-	private int powerOutput;
-	
-	private int controlRods;
-	
-	private List<Valve> valves;
-	private List<Pump>  pumps;
-	
 	private List<PlantComponent> brokenOnStep;
 	
 	UIData(Plant plant) {
 		this.plant = plant;
-		
-		this.operatorName = plant.getOperatorName();
-		this.score        = plant.getScore();
-		this.gameOver     = plant.isGameOver();
-		
-		this.turbineRpm			= plant.getTurbine().getRpm();
-		this.turbineFunctional	= plant.getTurbine().isOperational();
-		this.operatingSoftwareFunctional = plant.getOperatingSoftware().isOperational();
-		this.powerOutput  		= plant.getGenerator().getPowerOutput();
-		
-		this.reactorHealth             = plant.getReactor().getHealth();
-		this.reactorTemperature        = plant.getReactor().getTemperature();
-		this.reactorMaxTemperature     = plant.getReactor().getMaxTemperature();
-		this.reactorPressure           = plant.getReactor().getPressure();
-		this.reactorMaxPressure        = plant.getReactor().getMaxPressure();
-		this.reactorWaterVolume        = plant.getReactor().getWaterVolume();
-		this.reactorMinSafeWaterVolume = plant.getReactor().getMinSafeWaterVolume();
-		
-		this.condenserHealth         = plant.getCondenser().getHealth();
-	    this.condenserTemperature    = plant.getCondenser().getTemperature();
-	    this.condenserMaxTemperature = plant.getCondenser().getMaxTemperature();
-	    this.condenserPressure       = plant.getCondenser().getPressure();
-	    this.condenserMaxPressure    = plant.getCondenser().getMaxPressure();
-	    this.condenserWaterVolume    = plant.getCondenser().getWaterVolume();
-	    
-	    this.controlRods = plant.getReactor().getPercentageLowered();
-	    
-	    this.valves = plant.getValves();
-	    this.pumps  = plant.getPumps();
-	    
+		this.snapshot = new PlantSnapshot(plant);
 	    this.brokenOnStep = new ArrayList<PlantComponent>();
 	}
 	
 	/**
 	 * Updates all necessary information for its internal fields from Plant.
+	 * 
+	 * The information is taken as one PlantSnapshot, so it stays consistent (and safe
+	 * to read on another thread) until the next update.
 	 */
 	public void updateUIData() {
-		this.operatorName = plant.getOperatorName();
-		this.score        = plant.getScore();
-		this.gameOver     = plant.isGameOver();
-		
-		this.turbineRpm			= plant.getTurbine().getRpm();
-		this.turbineFunctional	= plant.getTurbine().isOperational();
-		this.operatingSoftwareFunctional = plant.getOperatingSoftware().isOperational();
-		this.powerOutput  		= plant.getGenerator().getPowerOutput();
-		
-		this.reactorHealth             = plant.getReactor().getHealth();
-		this.reactorTemperature        = plant.getReactor().getTemperature();
-		this.reactorMaxTemperature     = plant.getReactor().getMaxTemperature();
-		this.reactorPressure           = plant.getReactor().getPressure();
-		this.reactorMaxPressure        = plant.getReactor().getMaxPressure();
-		this.reactorWaterVolume        = plant.getReactor().getWaterVolume();
-		this.reactorMinSafeWaterVolume = plant.getReactor().getMinSafeWaterVolume();
-		
-		this.condenserHealth         = plant.getCondenser().getHealth();
-	    this.condenserTemperature    = plant.getCondenser().getTemperature();
-	    this.condenserMaxTemperature = plant.getCondenser().getMaxTemperature();
-	    this.condenserPressure       = plant.getCondenser().getPressure();
-	    this.condenserMaxPressure    = plant.getCondenser().getMaxPressure();
-	    this.condenserWaterVolume    = plant.getCondenser().getWaterVolume();
-	    
-	    this.controlRods = plant.getReactor().getPercentageLowered();
-	    
-	    this.valves = plant.getValves();
-	    this.pumps  = plant.getPumps();
+		this.snapshot = new PlantSnapshot(plant);
+	}
+	
+	/**
+	 * 
+	 * @return the state of the plant at the last update
+	 */
+	public PlantSnapshot getSnapshot() {
+		return snapshot;
 	}
 	
 	/**
@@ -127,151 +54,135 @@ public class UIData {
 	 * @return 
 	 */
 	public String getOperatorName() {
-		return operatorName;
+		return snapshot.getOperatorName();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getScore() {
-		return score;
+		return snapshot.getScore();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public boolean isGameOver() {
-		return gameOver;
+		return snapshot.isGameOver();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorHealth() {
-		return reactorHealth;
+		return snapshot.getReactorHealth();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorTemperature() {
-		return reactorTemperature;
+		return snapshot.getReactorTemperature();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorMaxTemperature() {
-		return reactorMaxTemperature;
+		return snapshot.getReactorMaxTemperature();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorPressure() {
-		return reactorPressure;
+		return snapshot.getReactorPressure();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorMaxPressure() {
-		return reactorMaxPressure;
+		return snapshot.getReactorMaxPressure();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorWaterVolume() {
-		return reactorWaterVolume;
+		return snapshot.getReactorWaterVolume();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getReactorMinSafeWaterVolume() {
-		return reactorMinSafeWaterVolume;
+		return snapshot.getReactorMinSafeWaterVolume();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserHealth() {
-		return condenserHealth;
+		return snapshot.getCondenserHealth();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserTemperature() {
-		return condenserTemperature;
+		return snapshot.getCondenserTemperature();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserMaxTemperature() {
-		return condenserMaxTemperature;
+		return snapshot.getCondenserMaxTemperature();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserPressure() {
-		return condenserPressure;
+		return snapshot.getCondenserPressure();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserMaxPressure() {
-		return condenserMaxPressure;
+		return snapshot.getCondenserMaxPressure();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getCondenserWaterVolume() {
-		return condenserWaterVolume;
+		return snapshot.getCondenserWaterVolume();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
 	public int getControlRodsPercentage() {
-		return controlRods;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public List<Valve> getValves() {
-		return valves;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public List<Pump> getPumps() {
-		return pumps;
+		return snapshot.getControlRodsLevel();
 	}
 
 	/**
@@ -279,7 +190,7 @@ public class UIData {
 	 * @return
 	 */
 	public int getTurbineRpm() {
-		return turbineRpm;
+		return snapshot.getTurbineRpm();
 	}
 
 	/**
@@ -287,7 +198,7 @@ public class UIData {
 	 * @return
 	 */
 	public int getPowerOutput() {
-		return powerOutput;
+		return snapshot.getPowerOutput();
 	}
 
 	/**
@@ -295,18 +206,17 @@ public class UIData {
 	 * @return
 	 */
 	public boolean isTurbineFunctional() {
-		return turbineFunctional;
+		return snapshot.isTurbineOperational();
 	}
-	
+
 	/**
 	 * 
 	 * @return
 	 */
-	public boolean isOperatingSoftwareFunctional()
-	{
-		return operatingSoftwareFunctional;
+	public boolean isOperatingSoftwareFunctional() {
+		return snapshot.isSoftwareOperational();
 	}
-	
+
 	/**
 	 * Adds a broken component to list brokenOnStep.
 	 * 
@@ -0,0 +1,110 @@
+package swing;
+
+/**
+ * GaugeInterpolator moves a set of gauge values smoothly from the values shown to the
+ * values of the latest state, so the gauges glide between steps instead of jumping.
+ *
+ * A move takes as long as the time between the last states (averaged), at most
+ * MAX_MOVE_MS, so a gauge reaches a value about when the next one arrives. When states
+ * arrive faster than the display is refreshed the moves are shorter than a frame: the
+ * gauges show the latest values and the states in between are never shown.
+ *
+ * Times are in nanoseconds, i.e. from System.nanoTime(). Not thread safe - it is used on
+ * the event dispatch thread only.
+ *
+ * @author Lamprey
+ */
+public class GaugeInterpolator {
+
+	public final static long MAX_MOVE_MS = 250;
+
+	private final static long MAX_MOVE_NANOS = MAX_MOVE_MS * 1000000;
+
+	private final double[] from;
+	private final double[] to;
+	private boolean hasTarget;
+	private long moveStart;
+	private long moveNanos;
+	private long lastTarget;
+	private double averageInterval;
+
+	/**
+	 *
+	 * @param numGauges number of gauge values
+	 */
+	public GaugeInterpolator(int numGauges) {
+		this.from = new double[numGauges];
+		this.to = new double[numGauges];
+	}
+
+	/**
+	 * Starts moving towards new values from wherever the gauges are now.
+	 *
+	 * @param values the values of the latest state, one per gauge
+	 * @param now    the time the state was sampled
+	 */
+	public void setTarget(int[] values, long now) {
+		if (values.length != to.length) {
+			throw new IllegalArgumentException("GaugeInterpolator: expected " + to.length + " values.");
+		}
+		if (!hasTarget) {
+			// Nothing shown yet - the first values are shown as they are.
+			jumpTo(values, now);
+			return;
+		}
+		long interval = Math.min(now - lastTarget, MAX_MOVE_NANOS);
+		averageInterval = averageInterval == 0 ? interval : 0.75 * averageInterval + 0.25 * interval;
+		for (int i = 0; i < to.length; i++) {
+			from[i] = get(i, now);
+			to[i] = values[i];
+		}
+		moveStart = now;
+		moveNanos = (long) averageInterval;
+		lastTarget = now;
+	}
+
+	/**
+	 * Shows values without moving towards them, i.e. after a new game or a load.
+	 *
+	 * @param values the values, one per gauge
+	 * @param now    the time the state was sampled
+	 */
+	public void jumpTo(int[] values, long now) {
+		for (int i = 0; i < to.length; i++) {
+			from[i] = values[i];
+			to[i] = values[i];
+		}
+		hasTarget = true;
+		moveStart = now;
+		moveNanos = 0;
+		lastTarget = now;
+		averageInterval = 0;
+	}
+
+	/**
+	 *
+	 * @param gauge index of the gauge
+	 * @param now   the time of the frame
+	 * @return the value to show in the frame
+	 */
+	public double get(int gauge, long now) {
+		double fraction = fraction(now);
+		return from[gauge] + (to[gauge] - from[gauge]) * fraction;
+	}
+
+	/**
+	 *
+	 * @param now the time of the frame
+	 * @return true while the gauges are still moving
+	 */
+	public boolean isMoving(long now) {
+		return fraction(now) < 1;
+	}
+
+	private double fraction(long now) {
+		long elapsed = now - moveStart;
+		if (elapsed >= moveNanos) return 1;
+		if (elapsed <= 0) return 0;
+		return (double) elapsed / moveNanos;
+	}
+}
@@ -19,6 +19,9 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -27,10 +30,12 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JLayeredPane;
 import javax.swing.JOptionPane;
-import javax.swing.JProgressBar;
 import javax.swing.JSlider;
 import javax.swing.JTextField;
+import javax.swing.JToggleButton;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -40,12 +45,18 @@ import components.Reactor;
 import components.Turbine;
 
 
-import model.Observer;
+import model.ChangeObserver;
+import model.ModelSnapshot;
+import model.MultiplayerPersistenceManager;
+import model.PlantSnapshot;
 import model.Repair;
+import model.SaveSlotInfo;
 
 import simulator.Multiplayer2Controller;
 import simulator.MultiplayerController;
 import simulator.PlantController;
+import simulator.RealTimeScheduler;
+import simulator.StepRunner;
 
 
 /**
@@ -57,7 +68,7 @@ import simulator.PlantController;
  * When the game is over the EndGame class is instantiated which has its own gui.
  * @author 
  */
-public class MainGUI implements Observer
+public class MainGUI implements ChangeObserver
 {
 	// Quench button tooltip
 	private static final String quenchToolTip = "Quench!:\n Quench the reactor with a burst of cool water. Use it wisely,\n you only have enough spare water to use it once.";
@@ -70,6 +81,9 @@ public class MainGUI implements Observer
 	private static final int FAIL_OS = KeyEvent.VK_5; // 5
 	private static final int TOGGLE_RANDOM_FAILURES = KeyEvent.VK_6; //6
 	
+	private static final Color QUENCH_AVAILABLE_COLOUR = new Color(30,255,30); // Green
+	private static final Color QUENCH_USED_COLOUR = new Color(255,30,30); // Red
+	
 	// the string that is shown initially in the player name field
     private String initialNameValue = "";
     
@@ -88,10 +102,12 @@ public class MainGUI implements Observer
     private JButton btnSave;
     private JButton btnShowManual;
     private JButton btnShowScores;
+    private JButton btnShowTrends;
     private JButton btnQuenchReactor;
     
     //make a number of steps
     private JButton btnStep;
+    private JToggleButton btnRealTime;
     private JButton btnRepairOperatingSoftware;
     
     //the affect of those buttons is dependent on the state of the operating software
@@ -120,16 +136,9 @@ public class MainGUI implements Observer
     
     private JLabel lblRandomFailures;
     
-    //progress bars showing the temperature, pressure, water level and
-    //health of the reactor and the condenser
-    private JProgressBar progressBarReactorTemperature;
-    private JProgressBar progressBarReactorPressure;
-    private JProgressBar progressBarReactorHealth;
-    private JProgressBar progressBarCondenserTemperature;
-    private JProgressBar progressBarCondenserPressure;    
-    private JProgressBar progressBarCondenserHealth;
-    private JProgressBar progressBarReactorWaterLevel;
-    private JProgressBar progressBarCondenserWaterLevel;
+    //the plant with the gauges showing the temperature, pressure, water level and
+    //health of the reactor and the condenser, and the flow along the pipes
+    private PlantDiagram diagram;
     
     
     //sliders controlling the rpm of the pumps, the level of the
@@ -159,9 +168,15 @@ public class MainGUI implements Observer
     //with them when they cannot be used - this variable prevents them from being used
     //when they are 'disabled'
     private boolean controlButtonsEnabled = true;
+    //true while the GUI sets its sliders from the model, so they do not issue commands
+    private boolean updatingGUI;
 
-    //a temporary value which has different usages 
-    private int tempValue;
+    //the snapshot of the game the gui shows, null if it shows none yet
+    private ModelSnapshot shownSnapshot;
+    //the controls of the pumps, by pump ID - 1
+    private JSlider[] pumpSliders;
+    private JLabel[] pumpStateLabels;
+    private JButton[] pumpRepairButtons;
 
 	private boolean displayedSwapDialog;
 	private boolean displayedEndGameDialog;
@@ -175,6 +190,34 @@ public class MainGUI implements Observer
 
 	private ImageIcon multiGameImageIcon;
 	
+	// The step sizes the number of steps slider can be set to (slider value 1 = first size).
+	private static final int[] STEP_SIZES = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 20, 50, 100, 200, 500,
+											  1000, 2000, 5000, 10000, 100000, 1000000 };
+	
+	// Runs the steps off the event dispatch thread.
+	private StepRunner stepRunner;
+	// True while a batch of steps runs - games cannot be started, loaded or saved until it is over.
+	private boolean batchRunning;
+	
+	// The tick rates the number of steps slider can be set to in the real-time mode.
+	private static final int[] TICK_RATES = { 1, 2, 3, 4, 5, 10, 20, 50 };
+	// The running real-time mode, null when the game is stepped with the step button.
+	private RealTimeScheduler realTime;
+	// Changes reported by the simulation thread that the gui has not shown yet.
+	private final AtomicInteger pendingChanges = new AtomicInteger();
+	
+	// The gui is refreshed at most FRAMES_PER_SECOND times a second, however fast the game is stepped.
+	private static final int FRAMES_PER_SECOND = 60;
+	private Timer renderTimer;
+	// The gauges of the diagram glide between steps - see GaugeInterpolator.
+	private int[] gaugeMaxima;
+	private int[] gaugeValues;
+	private GaugeInterpolator gauges;
+	
+	// The history of the game shown by the trend charts, recorded on every step.
+	private final TrendHistory trends = new TrendHistory(TrendsGUI.NUM_SERIES, TrendsGUI.HISTORY_CAPACITY);
+	private TrendsGUI trendsGUI;
+	
     /**
      * The constructor sets the controller object, initialises the gui
      * and makes it visible.
@@ -183,6 +226,7 @@ public class MainGUI implements Observer
     public MainGUI(Multiplayer2Controller controller)
     {
         this.controller = controller;
+        this.stepRunner = new StepRunner(controller);
         initialize();
         frame.setVisible(true);
         initGame();
@@ -232,10 +276,8 @@ public class MainGUI implements Observer
         //loads and sets the background image
         java.net.URL imageURL = this.getClass().getClassLoader().getResource("plantBackground.png");
         ImageIcon backgroundImageIcon = new ImageIcon(imageURL);
-        JLabel backgroundImageLabel = new JLabel(backgroundImageIcon);
-        backgroundImageLabel.setBackground(new Color(0, 153, 0));
-        backgroundImageLabel.setBounds(0, 0, 1040, 709);
-        layeredPane.add(backgroundImageLabel);
+        diagram = new PlantDiagram(backgroundImageIcon.getImage());
+        layeredPane.add(diagram);
 
         //loads all the images that are required for the image labels
         //the path is relative to the project
@@ -311,7 +353,7 @@ public class MainGUI implements Observer
         lblNumberOfSteps = new JLabel("1");
         lblNumberOfSteps.setHorizontalAlignment(SwingConstants.RIGHT);
         lblNumberOfSteps.setFont(new Font("Tahoma", Font.PLAIN, 30));
-        lblNumberOfSteps.setBounds(369, 499, 40, 40);
+        lblNumberOfSteps.setBounds(339, 499, 80, 40);
         lblNumberOfSteps.setBackground(new Color(18, 140, 0));
         lblNumberOfSteps.setOpaque(false);
         layeredPane.setLayer(lblNumberOfSteps, 1);
@@ -401,49 +443,6 @@ public class MainGUI implements Observer
         layeredPane.setLayer(lblOSFailable, 2);
         layeredPane.add(lblOSFailable);
         
-        //creation and instantiation of the progress bars
-        //change state listeners added at the end of this method
-        progressBarReactorTemperature = new JProgressBar();
-        progressBarReactorTemperature.setBounds(781, 168, 234, 14);
-        layeredPane.setLayer(progressBarReactorTemperature, 1);
-        layeredPane.add(progressBarReactorTemperature);
-        
-        progressBarReactorPressure = new JProgressBar();
-        progressBarReactorPressure.setBounds(781, 203, 234, 14);
-        layeredPane.setLayer(progressBarReactorPressure, 1);
-        layeredPane.add(progressBarReactorPressure);
-        
-        progressBarReactorHealth = new JProgressBar();
-        progressBarReactorHealth.setBounds(781, 273, 234, 14);
-        layeredPane.setLayer(progressBarReactorHealth, 1);
-        layeredPane.add(progressBarReactorHealth);
-        
-        progressBarReactorWaterLevel = new JProgressBar();
-        progressBarReactorWaterLevel.setBounds(781, 237, 234, 14);
-        layeredPane.setLayer(progressBarReactorWaterLevel, 1);
-        layeredPane.add(progressBarReactorWaterLevel);
-        
-        progressBarCondenserTemperature = new JProgressBar();
-        progressBarCondenserTemperature.setBounds(781, 359, 234, 14);
-        layeredPane.setLayer(progressBarCondenserTemperature, 1);
-        layeredPane.add(progressBarCondenserTemperature);
-        
-        progressBarCondenserPressure = new JProgressBar();
-        progressBarCondenserPressure.setBounds(781, 394, 234, 14);
-        layeredPane.setLayer(progressBarCondenserPressure, 1);
-        layeredPane.add(progressBarCondenserPressure);
-        
-        progressBarCondenserHealth = new JProgressBar();
-        progressBarCondenserHealth.setBounds(781, 468, 234, 14);
-        layeredPane.setLayer(progressBarCondenserHealth, 1);
-        layeredPane.add(progressBarCondenserHealth);
-        
-        progressBarCondenserWaterLevel = new JProgressBar();
-        progressBarCondenserWaterLevel.setBounds(781, 430, 234, 14);
-        progressBarCondenserWaterLevel.setForeground(new Color(0, 255, 0));
-        layeredPane.setLayer(progressBarCondenserWaterLevel, 1);
-        layeredPane.add(progressBarCondenserWaterLevel);
-        
         //creation and instantiation of the sliders
         //every slider calls the appropriate method in the OperatingSoftware
         //requests its execution from the controller
@@ -456,9 +455,14 @@ public class MainGUI implements Observer
         sliderPump1RPM.setValue(0);
         sliderPump1RPM.addChangeListener(new ChangeListener() {
             public void stateChanged(ChangeEvent arg0) {
-                if (controller.isPumpOperational(1) && controlButtonsEnabled) {
-                	controller.setPumpRpm(1, sliderPump1RPM.getValue());
-                    updateGUI();
+                PlantSnapshot plant = latestPlant();
+                if (plant != null && plant.isPumpOperational(1) && controlButtonsEnabled && !updatingGUI) {
+                	final int rpm = sliderPump1RPM.getValue();
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.setPumpRpm(1, rpm);
+                		}
+                	});
                 }
             }
         });
@@ -473,9 +477,14 @@ public class MainGUI implements Observer
         sliderPump2RPM.setMaximum(1000);
         sliderPump2RPM.addChangeListener(new ChangeListener() {
             public void stateChanged(ChangeEvent arg0) {
-                if (controller.isPumpOperational(2) && controlButtonsEnabled) {
-                	controller.setPumpRpm(2, sliderPump2RPM.getValue());
-                    updateGUI();
+                PlantSnapshot plant = latestPlant();
+                if (plant != null && plant.isPumpOperational(2) && controlButtonsEnabled && !updatingGUI) {
+                	final int rpm = sliderPump2RPM.getValue();
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.setPumpRpm(2, rpm);
+                		}
+                	});
                 }
             }
         });
@@ -490,9 +499,14 @@ public class MainGUI implements Observer
         sliderPump3RPM.setValue(0);
         sliderPump3RPM.addChangeListener(new ChangeListener() {
             public void stateChanged(ChangeEvent arg0) {
-                if (controller.isPumpOperational(3) && controlButtonsEnabled) {
-                	controller.setPumpRpm(3, sliderPump3RPM.getValue());
-                    updateGUI();
+                PlantSnapshot plant = latestPlant();
+                if (plant != null && plant.isPumpOperational(3) && controlButtonsEnabled && !updatingGUI) {
+                	final int rpm = sliderPump3RPM.getValue();
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.setPumpRpm(3, rpm);
+                		}
+                	});
                 }
             }
         });
@@ -506,10 +520,14 @@ public class MainGUI implements Observer
         sliderRodsLevel.setValue(0);
         sliderRodsLevel.addChangeListener(new ChangeListener() {
             public void stateChanged(ChangeEvent e) {
-                if(controlButtonsEnabled)
+                if(controlButtonsEnabled && !updatingGUI)
                 {
-                    controller.setControlRods(100-sliderRodsLevel.getValue());
-                    updateGUI();
+                    final int percentageLowered = 100-sliderRodsLevel.getValue();
+                    stepRunner.submit(new Runnable() {
+                    	public void run() {
+                    		controller.setControlRods(percentageLowered);
+                    	}
+                    });
                 }
                 
             }
@@ -518,14 +536,20 @@ public class MainGUI implements Observer
         layeredPane.add(sliderRodsLevel);
         
         sliderNumberOfSteps = new JSlider();
-        sliderNumberOfSteps.setBounds(46, 508, 305, 23);
+        sliderNumberOfSteps.setBounds(46, 508, 290, 23);
         sliderNumberOfSteps.setOpaque(false);
         sliderNumberOfSteps.setValue(0);
         sliderNumberOfSteps.setMinimum(1);
-        sliderNumberOfSteps.setMaximum(10);
+        sliderNumberOfSteps.setMaximum(STEP_SIZES.length);
         sliderNumberOfSteps.addChangeListener(new ChangeListener() {
             public void stateChanged(ChangeEvent arg0) {
-                lblNumberOfSteps.setText("" + sliderNumberOfSteps.getValue());
+                if (realTime != null)
+                {
+                    realTime.setTicksPerSecond(getTicksPerSecond());
+                    lblNumberOfSteps.setText(getTicksPerSecond() + "/s");
+                }
+                else
+                    lblNumberOfSteps.setText(formatSteps(getNumberOfSteps()));
             }
         });
         layeredPane.setLayer(sliderNumberOfSteps, 1);
@@ -541,6 +565,7 @@ public class MainGUI implements Observer
         btnNewSingleplayerGame.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnNewSingleplayerGame.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent arg0) {
+                if (batchRunning) return;
                 btnNewSingleplayerGame.setEnabled(false);
                 startNewSingleplayerGame();
                 btnNewSingleplayerGame.setEnabled(true);
@@ -558,6 +583,7 @@ public class MainGUI implements Observer
         btnNewMultiplayerGame.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnNewMultiplayerGame.addActionListener(new ActionListener() {
         	public void actionPerformed(ActionEvent arg0) {
+        		if (batchRunning) return;
         		btnNewMultiplayerGame.setEnabled(false);
                 startNewMultiplayerGame();
                 btnNewMultiplayerGame.setEnabled(true);
@@ -570,6 +596,7 @@ public class MainGUI implements Observer
         
         
         //loads the saved game and updates the gui
+        //if there is an autosave, the player chooses between it and the saved game
         btnLoad = new JButton(loadGameImageIcon);
         btnLoad.setToolTipText("Load Game");
         btnLoad.setMargin(new Insets(0,0,0,0));
@@ -577,7 +604,22 @@ public class MainGUI implements Observer
         btnLoad.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnLoad.addActionListener(new ActionListener() {
         	public void actionPerformed(ActionEvent arg0) {
-        		controller.loadGame();
+        		if (batchRunning) return;
+        		final String slot = chooseSaveToLoad();
+        		if (slot == null) return;
+        		try {
+        			stepRunner.execute(new Callable<Void>() {
+        				public Void call() throws IOException {
+        					if (slot.equals(MultiplayerPersistenceManager.AUTOSAVE_SLOT))
+        						controller.loadGame(slot);
+        					else
+        						controller.loadGame();
+        					return null;
+        				}
+        			});
+        		} catch (IOException e) {
+        			showPersistenceError("Could not load the game", e);
+        		}
         		updateGUI();
         	}
         });
@@ -594,9 +636,21 @@ public class MainGUI implements Observer
         btnSave.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnSave.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
+                if (batchRunning) return;
                 btnSave.setEnabled(false);
-                if(!controller.isGameOver())
-                	controller.saveGame();
+                ModelSnapshot snapshot = controller.getSnapshot();
+                if(snapshot != null && !snapshot.isGameOver()) {
+                	try {
+                		stepRunner.execute(new Callable<Void>() {
+                			public Void call() throws IOException {
+                				controller.saveGame();
+                				return null;
+                			}
+                		});
+                	} catch (IOException ex) {
+                		showPersistenceError("Could not save the game", ex);
+                	}
+                }
                 btnSave.setEnabled(true);
             }
         });
@@ -619,6 +673,21 @@ public class MainGUI implements Observer
         layeredPane.setLayer(btnShowScores, 1);
         layeredPane.add(btnShowScores);
         
+        //shows the trend charts of the game so far
+        btnShowTrends = new JButton(TrendsGUI.createIcon());
+        btnShowTrends.setToolTipText("Trends");
+        btnShowTrends.setMargin(new Insets(0,0,0,0));
+        btnShowTrends.setBorder(null);
+        btnShowTrends.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        btnShowTrends.addActionListener(new ActionListener() {
+        	public void actionPerformed(ActionEvent arg0) {
+        		showTrends();
+        	}
+        });
+        btnShowTrends.setBounds(699, 17, 40, 40);
+        layeredPane.setLayer(btnShowTrends, 1);
+        layeredPane.add(btnShowTrends);
+        
         //displays the user manual by opening it with its default program
         btnShowManual = new JButton(viewManualImageIcon);
         btnShowManual.addActionListener(new ActionListener() {
@@ -654,13 +723,37 @@ public class MainGUI implements Observer
         btnStep.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnStep.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent arg0) {
-            	controller.step(sliderNumberOfSteps.getValue());
-            	updateGUI();
-                detectSwapAndNotify();
+            	if (realTime != null)
+            		togglePaused();
+            	else if (batchRunning)
+            		stepRunner.cancel();
+            	else
+            		startSteps(getNumberOfSteps());
             }
         });
         layeredPane.setLayer(btnStep, 1);
         layeredPane.add(btnStep);
+        
+        //runs the game in real time, one step per tick at the rate of the slider,
+        //until it is pressed again or the game is over
+        btnRealTime = new JToggleButton("Real time");
+        btnRealTime.setToolTipText("Step in real time");
+        btnRealTime.setFont(new Font("Tahoma", Font.BOLD, 12));
+        btnRealTime.setBounds(339, 541, 136, 22);
+        btnRealTime.setFocusable(false);
+        btnRealTime.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        btnRealTime.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent arg0) {
+            	if (realTime != null)
+            		stepRunner.cancel();
+            	else if (batchRunning)
+            		btnRealTime.setSelected(false);
+            	else
+            		startRealTime();
+            }
+        });
+        layeredPane.setLayer(btnRealTime, 1);
+        layeredPane.add(btnRealTime);
 
 
         //used to open and close the first valve
@@ -671,17 +764,12 @@ public class MainGUI implements Observer
             public void actionPerformed(ActionEvent e) {
                 if (controlButtonsEnabled)
                 {
-                	//checks if the valve 1 state and alternates it
-                    if (controller.isValveOpen(1))
-                    {
-                    	controller.setValve(1, false);
-                        updateGUI();
-                        
-                    } else
-                    {
-                    	controller.setValve(1, true);
-                        updateGUI();
-                    }
+                	//alternates the valve 1 state, as it is when the command runs
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.setValve(1, !controller.isValveOpen(1));
+                		}
+                	});
                 }
             }
         });
@@ -696,17 +784,12 @@ public class MainGUI implements Observer
             public void actionPerformed(ActionEvent e) {
                 if (controlButtonsEnabled)
                 {
-                	//checks if the valve 1 state and alternates it
-                    if (controller.isValveOpen(2))
-                    {
-                    	controller.setValve(2, false);
-                        updateGUI();
-                        
-                    } else
-                    {
-                    	controller.setValve(2, true);
-                        updateGUI();
-                    }
+                	//alternates the valve 2 state, as it is when the command runs
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.setValve(2, !controller.isValveOpen(2));
+                		}
+                	});
                 }
             }
         });
@@ -716,14 +799,17 @@ public class MainGUI implements Observer
         
         // issues a repair command to pump 3 if it is not operational
         btnQuenchReactor = new JButton("Quench!");
-        btnQuenchReactor.setBackground(new Color(30,255,30)); // Green
+        btnQuenchReactor.setBackground(QUENCH_AVAILABLE_COLOUR);
         btnQuenchReactor.setToolTipText(quenchToolTip);
         btnQuenchReactor.setBounds(38, 440, 100, 38);
         btnQuenchReactor.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnQuenchReactor.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                controller.quenchReactor();
-                updateGUI();
+                stepRunner.submit(new Runnable() {
+                	public void run() {
+                		controller.quenchReactor();
+                	}
+                });
             }
         });
         layeredPane.setLayer(btnQuenchReactor, 1);
@@ -735,11 +821,14 @@ public class MainGUI implements Observer
         btnRepairPump1.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRepairPump1.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(!controller.isPumpOperational(1) && controlButtonsEnabled)
+                PlantSnapshot plant = latestPlant();
+                if(plant != null && !plant.isPumpOperational(1) && controlButtonsEnabled)
                 {
-                	controller.repairPump(1);
-                    updateGUI();
-                    
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.repairPump(1);
+                		}
+                	});
                 } 
             }
         });
@@ -754,11 +843,14 @@ public class MainGUI implements Observer
         btnRepairPump2.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRepairPump2.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(!controller.isPumpOperational(2) && controlButtonsEnabled)
+                PlantSnapshot plant = latestPlant();
+                if(plant != null && !plant.isPumpOperational(2) && controlButtonsEnabled)
                 {
-                	controller.repairPump(2);
-                    updateGUI();
-                    
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.repairPump(2);
+                		}
+                	});
                 } 
             }
         });
@@ -773,11 +865,14 @@ public class MainGUI implements Observer
         btnRepairPump3.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRepairPump3.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(!controller.isPumpOperational(3) && controlButtonsEnabled)
+                PlantSnapshot plant = latestPlant();
+                if(plant != null && !plant.isPumpOperational(3) && controlButtonsEnabled)
                 {
-                	controller.repairPump(3);
-                    updateGUI();
-                    
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.repairPump(3);
+                		}
+                	});
                 } 
             }
         });
@@ -794,11 +889,14 @@ public class MainGUI implements Observer
         btnRepairTurbine.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRepairTurbine.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(!controller.isTurbineOperational()  && controlButtonsEnabled)
+                PlantSnapshot plant = latestPlant();
+                if(plant != null && !plant.isTurbineOperational() && controlButtonsEnabled)
                 {
-                	controller.repairTurbine();
-                    updateGUI();
-                    
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.repairTurbine();
+                		}
+                	});
                 } 
             }
         });
@@ -815,56 +913,34 @@ public class MainGUI implements Observer
         btnRepairOperatingSoftware.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRepairOperatingSoftware.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(!controller.isSoftwareOperational())
+                PlantSnapshot plant = latestPlant();
+                if(plant != null && !plant.isSoftwareOperational())
                 {
-                    controller.repairOperatingSoftware();
-                    updateGUI();
-                    
+                	stepRunner.submit(new Runnable() {
+                		public void run() {
+                			controller.repairOperatingSoftware();
+                		}
+                	});
                 } 
             }
         });
         layeredPane.setLayer(btnRepairOperatingSoftware, 1);
         layeredPane.add(btnRepairOperatingSoftware);
       
-        //adds change listeners to the progress bars. Every time a bar's value is changed,
-        //the colour of the bar changes depending on what is its value
-        //temperature and pressure bars change colour smoothly from blue to red
-        //health pressure bars change colour smoothly from red to green
-        progressBarCondenserHealth.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarRedToGreen(progressBarCondenserHealth);
-            }
-        });
-        progressBarCondenserPressure.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarBlueToRed(progressBarCondenserPressure);
-            }
-        });
-        progressBarCondenserTemperature.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarBlueToRed(progressBarCondenserTemperature);
-            }
-        });
-        progressBarReactorWaterLevel.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarRedToGreen(progressBarReactorWaterLevel);
-            }
-        });
-        progressBarReactorHealth.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarRedToGreen(progressBarReactorHealth);
-            }
-        });
-        progressBarReactorPressure.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarBlueToRed(progressBarReactorPressure);
-            }
-        });
-        progressBarReactorTemperature.addChangeListener(new ChangeListener() {
-            public void stateChanged(ChangeEvent e) {
-                colourProgressBarBlueToRed(progressBarReactorTemperature);
+        pumpSliders = new JSlider[] {sliderPump1RPM, sliderPump2RPM, sliderPump3RPM};
+        pumpStateLabels = new JLabel[] {lblPump1State, lblPump2State, lblPump3State};
+        pumpRepairButtons = new JButton[] {btnRepairPump1, btnRepairPump2, btnRepairPump3};
+        //in the order of the PlantDiagram gauges
+        gaugeMaxima = new int[] {100, 3000, 2000, 10000, 100, 2000, 2000, 10000};
+        gaugeValues = new int[PlantDiagram.NUM_GAUGES];
+        gauges = new GaugeInterpolator(PlantDiagram.NUM_GAUGES);
+        
+        renderTimer = new Timer(1000 / FRAMES_PER_SECOND, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                renderFrame();
             }
         });
+        renderTimer.setInitialDelay(0);
         
         //after everything but the name is set the gui is updates so it
         //synchronises with the plant
@@ -877,235 +953,217 @@ public class MainGUI implements Observer
     
     
     /**
-     * This method takes a progress bar, gets its value and based on it
-     * sets the bars colour, from blue to red, the calculations involved
-     * give the desired colour
-     * @param pb
+     * Shows the whole state of the game again, i.e. after the gui changed on its own.
      */
-    private void colourProgressBarBlueToRed(JProgressBar pb)
+    private void updateGUI()
     {
-        int pbv = pb.getValue();
-        
-        //red green and blue colour components
-        //used to create the new colour
-        int r=0,g=0,b=255;
-        
-        if(pbv>0 && pbv<=20)
-        {
-            g=(int) (pbv*12.75);
-            //casting is needed because of the new Colour()
-            //constructor type - takes int values
-        }
-        else if(pbv>20 && pbv<=45)
-        {
-            r=0;g=255;b=(int) (255-((pbv-20)*10.2));
-        }
-        else if(pbv>45 && pbv<=65)
-        {
-            r= (int) ((pbv-45)*12.75);g=255;b=0;
-        }
-        else if(pbv>65 && pbv<=90)
-        {
-            r=255;g=(int) (255-((pbv-65)*10.2));b=0;
-        }
-        else if(pbv>90 && pbv<=100)
-        {
-            r=255;g=0;b=0;
-        }
-        pb.setForeground(new Color(r, g, b));
-        
+        updateGUI(ChangeObserver.ALL);
     }
-
+    
     /**
-     * This method takes a progress bar, gets its value and based on it
-     * sets the bars colour, from red to green, the calculations involved
-     * give the desired colour
-     * @param pb
+     * Updates only the parts of the gui that show what has changed: the latest snapshot
+     * of the game is compared with the one shown before, and only the properties that
+     * differ are set, so unchanged widgets are not laid out and repainted again.
+     * 
+     * @param changes the ChangeObserver flags of what changed in the plant; with ALL
+     *                (a new game, a load, a swap) everything is shown again
      */
-    private void colourProgressBarRedToGreen(JProgressBar pb)
+    private void updateGUI(int changes)
     {
-        int pbv = pb.getValue();
-        int r=255,g=0,b=0;
-        
-        if(pbv>0 && pbv<=20)
+        if (changes == ChangeObserver.ALL)
+            shownSnapshot = null;
+        ModelSnapshot snapshot = controller.getSnapshot();
+        if (snapshot == null || snapshot == shownSnapshot)
+            return;
+        updatingGUI = true;
+        try
         {
-            r=255; g=0; b=0;
-        }
-        else if(pbv>20 && pbv<=60)
+            updateSections(snapshot, shownSnapshot);
+            updateGauges(snapshot.getPlant(), shownSnapshot == null);
+            shownSnapshot = snapshot;
+        } finally
         {
-            r=255;g = (int) ((pbv-20)*6.375);
+            updatingGUI = false;
         }
-        else if(pbv>60 && pbv<=90)
+    }
+    
+    /**
+     * Shows the changes the simulation thread has reported since the last frame, and
+     * moves the gauges and the flow of the diagram. Only the latest snapshot is shown, so
+     * the states in between are skipped when the game is stepped faster than the frame
+     * rate. The timer stops when there is nothing left to show or animate, and update(int)
+     * starts it again.
+     */
+    private void renderFrame()
+    {
+        int changes = pendingChanges.getAndSet(0);
+        if (changes != 0)
         {
-            r= (int) (255-((pbv-60)*8.5));g=255;b=0;
+            if (!batchRunning)
+                checkEndGameAndHandleIt();
+            updateGUI(changes);
+            if (trendsGUI != null && trendsGUI.isShowing())
+                trendsGUI.refresh(controller.getSnapshot());
         }
-        else if(pbv>90 && pbv<=100)
+        long now = System.nanoTime();
+        showGauges(now);
+        diagram.animate(now);
+        if (changes == 0 && !gauges.isMoving(now) && !diagram.isAnimating())
+            renderTimer.stop();
+    }
+    
+    /**
+     * Starts moving the gauges to the values of the plant, and sets the flow of the diagram.
+     * 
+     * @param jump true to show the values right away, i.e. for a new game or a load
+     */
+    private void updateGauges(PlantSnapshot plant, boolean jump)
+    {
+        int[] values = {plant.getReactorHealth(), plant.getReactorTemperature(),
+                        plant.getReactorPressure(), plant.getReactorWaterVolume(),
+                        plant.getCondenserHealth(), plant.getCondenserTemperature(),
+                        plant.getCondenserPressure(), plant.getCondenserWaterVolume()};
+        long now = System.nanoTime();
+        if (jump)
+            gauges.jumpTo(values, now);
+        else if (!Arrays.equals(values, gaugeValues))
+            gauges.setTarget(values, now);
+        gaugeValues = values;
+        diagram.setFlows(plant);
+        showGauges(now);
+        if ((gauges.isMoving(now) || diagram.isAnimating()) && !renderTimer.isRunning())
+            renderTimer.start();
+    }
+    
+    /**
+     * Sets the gauges of the diagram to their values scaled to 100. Values above the
+     * maximum fill a gauge, negative values leave it as it is.
+     */
+    private void showGauges(long now)
+    {
+        for (int i = 0; i < PlantDiagram.NUM_GAUGES; i++)
         {
-            r=0;g=255;b=0;
+            double value = gauges.get(i, now);
+            if (value >= 0)
+                diagram.setGauge(i, Math.min(100, value * 100 / gaugeMaxima[i]));
         }
-        pb.setForeground(new Color(r, g, b));
     }
-
+    
     /**
-     * This method updates the appearance of the gui
-     * synchronising it with the plant
+     * @param previous the snapshot shown before, null to show everything
      */
-    private void updateGUI()
+    private void updateSections(ModelSnapshot snapshot, ModelSnapshot previous)
     {
-        //restores the state of the control buttons and sliderRodsLevel variables to true
-        controlButtonsEnabled = true;
-        sliderRodsLevel.setEnabled(true);
+        PlantSnapshot plant = snapshot.getPlant();
+        PlantSnapshot before = (previous == null) ? null : previous.getPlant();
+        boolean all = before == null;
         
         //updates the operators name that is shown to that that is stored,
         //useful when a game is being loaded
-        nameTextField.setText(controller.getCurrentPlayerName());
+        if (all || !equal(plant.getOperatorName(), before.getOperatorName()))
+            nameTextField.setText(plant.getOperatorName());
         
-        //updates the score and enables the buttons the control the valves
-        //they can be disabled if the operatingSoftware is being repaired
-        lblScore.setText(""+controller.getCurrentPlayerScore());
-        btnValve1.setEnabled(true);
-        btnValve2.setEnabled(true);
+        if (all || plant.getScore() != before.getScore())
+            lblScore.setText(""+plant.getScore());
         
         //sets the button valve icons appropriately
-        if(controller.isValveOpen(1))
-            btnValve1.setIcon(valveOpenedImageIcon);
-        else
-            btnValve1.setIcon(valveClosedImageIcon);
+        if (all || plant.isValveOpen(1) != before.isValveOpen(1))
+            btnValve1.setIcon(plant.isValveOpen(1) ? valveOpenedImageIcon : valveClosedImageIcon);
         
-        if(controller.isValveOpen(2))
-            btnValve2.setIcon(valveOpenedImageIcon);
-        else
-            btnValve2.setIcon(valveClosedImageIcon);
+        if (all || plant.isValveOpen(2) != before.isValveOpen(2))
+            btnValve2.setIcon(plant.isValveOpen(2) ? valveOpenedImageIcon : valveClosedImageIcon);
+        
+        updateReactor(plant, before);
+        updateComponentStates(plant, before);
+        updateMultiplayerLabels(snapshot, previous);
+    }
+    
+    private void updateReactor(PlantSnapshot plant, PlantSnapshot before)
+    {
+        boolean all = before == null;
         
         //sets the level of the control rods appropriately 
-        tempValue = controller.getControlRodsLevel();
-        if(tempValue >=0 && tempValue <= 100)
-        	
-        	//it is 100 - tempValue because in the plant it is shown how much
-        	//the control rods are inside the rods while in the gui it shows how
-        	//much the control rods are out of the rods
-            sliderRodsLevel.setValue(100 - tempValue);
+        //it is 100 - level because in the plant it is shown how much
+        //the control rods are inside the rods while in the gui it shows how
+        //much the control rods are out of the rods
+        updateSlider(sliderRodsLevel, 100 - plant.getControlRodsLevel(),
+                     all ? -1 : 100 - before.getControlRodsLevel(), plant);
 
-        //sets the values of the progress bars by scaling the value to 100
-        tempValue = controller.getReactorHealth();
-        if(tempValue >=0 && tempValue <= 100)
-            progressBarReactorHealth.setValue(tempValue);
-        
-        tempValue = controller.getCondenserHealth();
-        if(tempValue >=0 && tempValue <= 100)
-            progressBarCondenserHealth.setValue(tempValue);
-        
-        tempValue = controller.getReactorTemperature();
-        if(tempValue >=0 && tempValue <= 3000)
-            progressBarReactorTemperature.setValue((int) tempValue/30);
-        else if(tempValue > 3000)
-        		progressBarReactorTemperature.setValue(100);
-        
-        tempValue = controller.getCondenserTemperature();
-        if(tempValue >=0 && tempValue <= 2000)
-            progressBarCondenserTemperature.setValue((int) tempValue/20);
-        else if(tempValue > 2000)
-    		progressBarCondenserTemperature.setValue(100);
-        
-        tempValue = controller.getReactorPressure();
-        if(tempValue >=0 && tempValue <= 2000)
-            progressBarReactorPressure.setValue((int) tempValue/20);
-        else if(tempValue > 2000)
-    		progressBarReactorPressure.setValue(100);
-        
-        tempValue = controller.getCondenserPressure();
-        if(tempValue >=0 && tempValue <= 2000)
-            progressBarCondenserPressure.setValue((int) tempValue/20);
-        else if(tempValue > 2000)
-    		progressBarCondenserPressure.setValue(100);
-        
-        tempValue = controller.getReactorWaterVolume();
-        if(tempValue >=0 && tempValue <= 10000)
-            progressBarReactorWaterLevel.setValue((int) tempValue/100);  
+        //the progress bars are moved by updateGauges
         
-        tempValue = controller.getCondenserWaterVolume();
-        if(tempValue >=0 && tempValue <= 10000)
-            progressBarCondenserWaterLevel.setValue((int) tempValue/100);
-        
-        tempValue = controller.getControlRodsLevel();
-        if(tempValue >=0 && tempValue <= 100)
-            sliderRodsLevel.setValue((int) 100 - tempValue);
+        // Quench button color.
+        if (all || plant.isQuenchAvailable() != before.isQuenchAvailable())
+            btnQuenchReactor.setBackground(plant.isQuenchAvailable() ? QUENCH_AVAILABLE_COLOUR : QUENCH_USED_COLOUR);
+    }
+    
+    /**
+     * Moves a slider to the plant's value when that value has changed. The player may
+     * have moved the slider since, with the command still on its way to the plant, so
+     * an unchanged value does not move it back - unless the operating software has
+     * failed, when the command may have done something else entirely.
+     */
+    private void updateSlider(JSlider slider, int value, int previousValue, PlantSnapshot plant)
+    {
+        if (value != previousValue || !plant.isSoftwareOperational())
+            slider.setValue(value);
+    }
+    
+    /**
+     * Updates the pumps, the turbine and the operating software, and enables
+     * the controls the operating software allows.
+     */
+    private void updateComponentStates(PlantSnapshot plant, PlantSnapshot before)
+    {
+        boolean all = before == null;
+        for (int pumpID = 1; pumpID <= 3; pumpID++)
+            updateSlider(pumpSliders[pumpID - 1], plant.getPumpRpm(pumpID),
+                         all ? -1 : before.getPumpRpm(pumpID), plant);
         
-        tempValue = controller.getPumpRpm(1);
-        if(tempValue >=0 && tempValue <= 1000)
-            sliderPump1RPM.setValue((int) tempValue);
+        //the lights and the enabled controls only change with the state of the components
+        if (!all && !componentStatesChanged(plant, before))
+            return;
         
-        tempValue = controller.getPumpRpm(2);
-        if(tempValue >=0 && tempValue <= 1000)
-            sliderPump2RPM.setValue((int) tempValue);
+        //restores the state of the control buttons and sliderRodsLevel variables to true
+        controlButtonsEnabled = true;
+        sliderRodsLevel.setEnabled(true);
         
-        tempValue = controller.getPumpRpm(3);
-        if(tempValue >=0 && tempValue <= 1000)
-            sliderPump3RPM.setValue((int) tempValue);
+        //enables the buttons the control the valves
+        //they can be disabled if the operatingSoftware is being repaired
+        btnValve1.setEnabled(true);
+        btnValve2.setEnabled(true);
         
         //checks which components are being repaired and updates the gui in an appropriate way
         //if a component is being repaired its controls are disabled and a yellow light is showing
-        if(controller.isPumpBeingRepaired(1))
+        for (int pumpID = 1; pumpID <= 3; pumpID++)
         {
-            lblPump1State.setIcon(stateBeingRepairedImageIcon);
-            sliderPump1RPM.setEnabled(false);
-            btnRepairPump1.setIcon(repairButtonDisabledImageIcon);
-        }//if a component has failed and is not repaired its controls are disabled and red light is showing
-        else if(!controller.isPumpOperational(1))
-        {
-            lblPump1State.setIcon(stateBrokenImageIcon);
-            sliderPump1RPM.setEnabled(false);
-            btnRepairPump1.setIcon(repairButtonEnabledImageIcon);
-        }else//the component is in its normal safe operating state
-        	 //its controls are enabled and green light is showing
-        {
-            lblPump1State.setIcon(stateSafeImageIcon);
-            sliderPump1RPM.setEnabled(true);
-            sliderPump1RPM.setValue(controller.getPumpRpm(1));
-            btnRepairPump1.setIcon(repairButtonDisabledImageIcon);
-        }
-        
-        if(controller.isPumpBeingRepaired(2))
-        {
-            lblPump2State.setIcon(stateBeingRepairedImageIcon);
-            sliderPump2RPM.setEnabled(false);
-            btnRepairPump2.setIcon(repairButtonDisabledImageIcon);
-        }else if(!controller.isPumpOperational(2))
-        {
-            lblPump2State.setIcon(stateBrokenImageIcon);
-            sliderPump2RPM.setEnabled(false);
-            btnRepairPump2.setIcon(repairButtonEnabledImageIcon);
-        }else
-        {
-            lblPump2State.setIcon(stateSafeImageIcon);
-            sliderPump2RPM.setEnabled(true);
-            sliderPump2RPM.setValue(controller.getPumpRpm(2));
-            btnRepairPump2.setIcon(repairButtonDisabledImageIcon);
-        }
-        
-        if(controller.isPumpBeingRepaired(3))
-        {   lblPump3State.setIcon(stateBeingRepairedImageIcon);
-            sliderPump3RPM.setEnabled(false);
-            btnRepairPump3.setIcon(repairButtonDisabledImageIcon);
-        }else if(!controller.isPumpOperational(3))
-        {   
-            lblPump3State.setIcon(stateBrokenImageIcon);
-            sliderPump3RPM.setEnabled(false);
-            btnRepairPump3.setIcon(repairButtonEnabledImageIcon);
-        }else
-        {
-           
-            lblPump3State.setIcon(stateSafeImageIcon);
-            sliderPump3RPM.setEnabled(true);
-            sliderPump3RPM.setValue(controller.getPumpRpm(3));
-            btnRepairPump3.setIcon(repairButtonDisabledImageIcon);
+            JLabel lblPumpState = pumpStateLabels[pumpID - 1];
+            JSlider sliderPumpRPM = pumpSliders[pumpID - 1];
+            JButton btnRepairPump = pumpRepairButtons[pumpID - 1];
+            if(plant.isPumpBeingRepaired(pumpID))
+            {
+                lblPumpState.setIcon(stateBeingRepairedImageIcon);
+                sliderPumpRPM.setEnabled(false);
+                btnRepairPump.setIcon(repairButtonDisabledImageIcon);
+            }//if a component has failed and is not repaired its controls are disabled and red light is showing
+            else if(!plant.isPumpOperational(pumpID))
+            {
+                lblPumpState.setIcon(stateBrokenImageIcon);
+                sliderPumpRPM.setEnabled(false);
+                btnRepairPump.setIcon(repairButtonEnabledImageIcon);
+            }else//the component is in its normal safe operating state
+            	 //its controls are enabled and green light is showing
+            {
+                lblPumpState.setIcon(stateSafeImageIcon);
+                sliderPumpRPM.setEnabled(true);
+                btnRepairPump.setIcon(repairButtonDisabledImageIcon);
+            }
         }
         
-        if(controller.isTurbineBeingRepaired())
+        if(plant.isTurbineBeingRepaired())
         {
             lblTurbineState.setIcon(stateBeingRepairedImageIcon);
             btnRepairTurbine.setIcon(repairButtonDisabledImageIcon);
-        }else if(!controller.isTurbineOperational())
+        }else if(!plant.isTurbineOperational())
         {
             lblTurbineState.setIcon(stateBrokenImageIcon);
             btnRepairTurbine.setIcon(repairButtonEnabledImageIcon);
@@ -1117,7 +1175,7 @@ public class MainGUI implements Observer
         
         //if the operating software is being repaired all components that rely on it for their commands to
         //be executed are disabled
-        if(controller.isSoftwareBeingRepaired())
+        if(plant.isSoftwareBeingRepaired())
         {
             lblOperatingSoftwareState.setIcon(stateBeingRepairedImageIcon);
             btnRepairOperatingSoftware.setIcon(repairButtonDisabledImageIcon);
@@ -1132,7 +1190,7 @@ public class MainGUI implements Observer
             btnRepairTurbine.setIcon(repairButtonDisabledImageIcon);
             btnValve1.setEnabled(false);
             btnValve2.setEnabled(false);
-        }else if(!controller.isSoftwareOperational())
+        }else if(!plant.isSoftwareOperational())
         {
         	//otherwise just set its light to show red and enable its repair button
             lblOperatingSoftwareState.setIcon(stateBrokenImageIcon);
@@ -1142,23 +1200,45 @@ public class MainGUI implements Observer
             lblOperatingSoftwareState.setIcon(stateSafeImageIcon);
             btnRepairOperatingSoftware.setIcon(repairButtonDisabledImageIcon);
         }
-        
-        // Quench button color.
-        if (controller.isQuenchAvailable()) {
-        	btnQuenchReactor.setBackground(new Color(30,255,30)); // Green
-        } else {
-        	btnQuenchReactor.setBackground(new Color(255,30,30)); // Red
+    }
+    
+    private boolean componentStatesChanged(PlantSnapshot plant, PlantSnapshot before)
+    {
+        for (int pumpID = 1; pumpID <= 3; pumpID++)
+        {
+            if (plant.isPumpOperational(pumpID) != before.isPumpOperational(pumpID)
+                || plant.isPumpBeingRepaired(pumpID) != before.isPumpBeingRepaired(pumpID))
+                return true;
         }
-        
-        if (controller.isMultiplayer()) {
+        return plant.isTurbineOperational() != before.isTurbineOperational()
+               || plant.isTurbineBeingRepaired() != before.isTurbineBeingRepaired()
+               || plant.isSoftwareOperational() != before.isSoftwareOperational()
+               || plant.isSoftwareBeingRepaired() != before.isSoftwareBeingRepaired();
+    }
+    
+    private void updateMultiplayerLabels(ModelSnapshot snapshot, ModelSnapshot previous)
+    {
+        PlantSnapshot plant = snapshot.getPlant();
+        PlantSnapshot before = (previous == null) ? null : previous.getPlant();
+        if (previous != null && previous.isMultiplayer() == snapshot.isMultiplayer()
+            && plant.isRandomFailures() == before.isRandomFailures()
+            && previous.getStepsLeftOfTurn() == snapshot.getStepsLeftOfTurn()
+            && plant.getNumStepsUntilPumpFailable(1) == before.getNumStepsUntilPumpFailable(1)
+            && plant.getNumStepsUntilPumpFailable(2) == before.getNumStepsUntilPumpFailable(2)
+            && plant.getNumStepsUntilPumpFailable(3) == before.getNumStepsUntilPumpFailable(3)
+            && plant.getNumStepsUntilTurbineFailable() == before.getNumStepsUntilTurbineFailable()
+            && plant.getNumStepsUntilOSFailable() == before.getNumStepsUntilOSFailable())
+            return;
+        
+        if (snapshot.isMultiplayer()) {
         	lblRandomFailures.setText("Random Failures : " + 
-        							  (controller.isRandomFailures() ? "On!" : "Off"));
-        	lblStepsUntilSwap.setText(zeroToBlankString(controller.numberOfStepsUntilSwap()));
-        	lblPump1Failable.setText(zeroToBlankString(controller.getNumStepsUntilPumpFailable(1)));
-        	lblPump2Failable.setText(zeroToBlankString(controller.getNumStepsUntilPumpFailable(2)));
-        	lblPump3Failable.setText(zeroToBlankString(controller.getNumStepsUntilPumpFailable(3)));
-        	lblTurbineFailable.setText(zeroToBlankString(controller.getNumStepsUntilTurbineFailable()));
-        	lblOSFailable.setText(zeroToBlankString(controller.getNumStepsUntilOSFailable()));
+        							  (plant.isRandomFailures() ? "On!" : "Off"));
+        	lblStepsUntilSwap.setText(zeroToBlankString(snapshot.getStepsLeftOfTurn()));
+        	lblPump1Failable.setText(zeroToBlankString(plant.getNumStepsUntilPumpFailable(1)));
+        	lblPump2Failable.setText(zeroToBlankString(plant.getNumStepsUntilPumpFailable(2)));
+        	lblPump3Failable.setText(zeroToBlankString(plant.getNumStepsUntilPumpFailable(3)));
+        	lblTurbineFailable.setText(zeroToBlankString(plant.getNumStepsUntilTurbineFailable()));
+        	lblOSFailable.setText(zeroToBlankString(plant.getNumStepsUntilOSFailable()));
         } else { 
         	lblStepsUntilSwap.setText("");
         	lblRandomFailures.setText("");
@@ -1171,29 +1251,46 @@ public class MainGUI implements Observer
         
     }
     
+    /**
+     * The event dispatch thread never reads the live model, which the simulation thread
+     * changes - it reads the latest snapshot instead.
+     * 
+     * @return the latest snapshot of the plant, null before the first game
+     */
+    private PlantSnapshot latestPlant()
+    {
+        ModelSnapshot snapshot = controller.getSnapshot();
+        return (snapshot == null) ? null : snapshot.getPlant();
+    }
+    
+    private static boolean equal(String a, String b) {
+    	return (a == null) ? b == null : a.equals(b);
+    }
+    
     private String zeroToBlankString(int i) {
     	return (i == 0) ? "" : "" + i;
     }
     
     private void checkEndGameAndHandleIt()
     {
-    	if (controller.isGameOver() && !displayedEndGameDialog) {
-	    	if (controller.isMultiplayer()) {
+    	ModelSnapshot snapshot = controller.getSnapshot();
+    	if (snapshot != null && snapshot.isGameOver() && !displayedEndGameDialog) {
+	    	if (snapshot.isMultiplayer()) {
 	    		System.out.println("1");
-	    		if (controller.getCurrentPlayerNumber() == 1) { 
+	    		if (snapshot.getCurrentPlayerNumber() == 1) { 
 	    			// Swapped!
 	    			System.out.println("2");
 	    		} else {
 	    			// Player 2 must've died... 
 	    			System.out.println("3");
 	    			updateGUI();
-	    			showMultiplayerEndGameDialog();
+	    			showMultiplayerEndGameDialog(snapshot);
 	    			initGame();
 	    		}
 	    	} else {
 	    		// Single player
 	    		updateGUI();
-	    		showSingleplayerEndGameDialog();
+	    		showSingleplayerEndGameDialog(snapshot);
 	    		//EndGameGUI endGameGui = new EndGameGUI(this, controller.getPlayerOneScore());
 	    	}
 			sliderNumberOfSteps.setValue(1);
@@ -1219,11 +1316,43 @@ public class MainGUI implements Observer
     	ScoresGUI scoresGui = new ScoresGUI(this, controller);
     }
     
+    /**
+     * called when the trends should be shown - creates a TrendsGUI over the history recorded
+     * so far, or brings the one already open to the front
+     */
+    private void showTrends()
+    {
+    	if (trendsGUI != null && trendsGUI.isShowing())
+    	{
+    		trendsGUI.toFront();
+    		return;
+    	}
+    	trendsGUI = new TrendsGUI(this, trends);
+    	trendsGUI.refresh(controller.getSnapshot());
+    }
+    
+    /**
+     * Records the plant in the trend history when it has stepped, at the step it has
+     * reached, so the history stays a time axis however many steps a notification covers.
+     * A new game, a load or a swap of the players starts the history again.
+     * Called on the thread that changed the game.
+     */
+    private void recordTrends(int changes)
+    {
+    	if ((changes & ChangeObserver.PLAYER_SWAP) != 0)
+    		trends.clear();
+    	if ((changes & ChangeObserver.STEP) == 0)
+    		return;
+    	ModelSnapshot snapshot = controller.getSnapshot();
+    	if (snapshot != null)
+    		trends.record(snapshot.getStepCount(), TrendsGUI.sample(snapshot.getPlant()));
+    }
+    
 
-    private void showSingleplayerEndGameDialog() {
-		String messageText = controller.getPlayerOneName() + 
+    private void showSingleplayerEndGameDialog(ModelSnapshot snapshot) {
+		String messageText = snapshot.getPlayerOneName() + 
 							 ", you scored:\n" +
-							 controller.getPlayerOneScore() +
+							 snapshot.getPlayerOneScore() +
 							 "\n\nWhat would you like to do now?";
 		Object[] options = {"Play again", "Play 2-player",  "Show Highscores", "Exit" };
     	String titleText = "Nice score!";		
@@ -1248,47 +1377,226 @@ public class MainGUI implements Observer
     	
 	}
     
-    private void showMultiplayerEndGameDialog() {
-    	String messageText = controller.getPlayerOneName() + 
+    private void showMultiplayerEndGameDialog(ModelSnapshot snapshot) {
+    	String messageText = snapshot.getPlayerOneName() + 
     						 " finished with a score of:\n" +
-    						 controller.getPlayerOneScore() + "\n" +
-    						 controller.getPlayerTwoName() + 
+    						 snapshot.getPlayerOneScore() + "\n" +
+    						 snapshot.getPlayerTwoName() + 
     						 " finished with a score of:\n" +
-    						 controller.getPlayerTwoScore() + "\n\n";
+    						 snapshot.getPlayerTwoScore() + "\n\n";
     	String titleText;
-    	if (controller.getPlayerOneScore() > controller.getPlayerTwoScore()) {
+    	if (snapshot.getPlayerOneScore() > snapshot.getPlayerTwoScore()) {
     		// Player 1 wins!
-    		messageText += controller.getPlayerOneName() + " wins!";
-    		titleText = controller.getPlayerOneName() + " won!";
+    		messageText += snapshot.getPlayerOneName() + " wins!";
+    		titleText = snapshot.getPlayerOneName() + " won!";
     	} else {
     		// Player 2 wins!
-    		messageText += controller.getPlayerTwoName() + " wins!";
-    		titleText = controller.getPlayerTwoName() + " won!";
+    		messageText += snapshot.getPlayerTwoName() + " wins!";
+    		titleText = snapshot.getPlayerTwoName() + " won!";
     	}
 		displayedEndGameDialog = true;
     	JOptionPane.showMessageDialog(null, messageText, titleText, JOptionPane.PLAIN_MESSAGE);
     }
 
+    
+    /**
+     * Tells the player that saving or loading the game failed and why.
+     */
+    /**
+     * Asks whether to load the saved game or the autosave, when there is an autosave.
+     * 
+     * @return the slot to load, or null if loading was cancelled
+     */
+    private String chooseSaveToLoad() {
+    	boolean hasAutosave = false;
+    	try {
+    		for (SaveSlotInfo save : controller.getSaves())
+    			if (save.getSlot().equals(MultiplayerPersistenceManager.AUTOSAVE_SLOT))
+    				hasAutosave = true;
+    	} catch (IOException e) {
+    		// The saved game is loaded as before; loading reports the error if there is one.
+    	}
+    	if (!hasAutosave)
+    		return MultiplayerPersistenceManager.DEFAULT_SLOT;
+    	Object[] options = {"Saved game", "Autosave", "Cancel"};
+    	int opt = JOptionPane.showOptionDialog(frame, "Which game would you like to load?", "Load Game",
+    			JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+    	switch (opt) {
+    		case 0:
+    			return MultiplayerPersistenceManager.DEFAULT_SLOT;
+    		case 1:
+    			return MultiplayerPersistenceManager.AUTOSAVE_SLOT;
+    		default:
+    			return null;
+    	}
+    }
+    
+    private void showPersistenceError(String titleText, IOException e) {
+    	JOptionPane.showMessageDialog(null, titleText + ":\n" + e.getMessage(), titleText, JOptionPane.ERROR_MESSAGE);
+    }
+
 
 	@Override
 	public void update() {
+		update(ALL);
+	}
+	
+	/**
+	 * Called by the model. Changes made on the simulation thread are collected and shown
+	 * by the next frame of the render loop (see renderFrame), so however many steps are
+	 * done between two frames, the gui is updated once.
+	 */
+	@Override
+	public void update(int changes) {
+		recordTrends(changes);
+		if (SwingUtilities.isEventDispatchThread()) {
+			checkEndGameAndHandleIt();
+			updateGUI(changes);
+			return;
+		}
+		int previous;
+		do {
+			previous = pendingChanges.get();
+		} while (!pendingChanges.compareAndSet(previous, previous | changes));
+		// The first change since the last frame makes sure the render loop is running.
+		if (previous == 0) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if (!renderTimer.isRunning()) renderTimer.start();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Starts stepping in the background. While the steps run, the step button cancels
+	 * them and the number of steps label counts down.
+	 */
+	private void startSteps(final long numSteps) {
+		batchRunning = true;
+		if (!stepRunner.start(numSteps, new StepRunner.Listener() {
+			@Override
+			public void progress(final long stepsDone, final long numSteps) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						lblNumberOfSteps.setText(formatSteps(numSteps - stepsDone));
+					}
+				});
+			}
+			
+			@Override
+			public void finished(long stepsDone, boolean cancelled) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						finishSteps();
+					}
+				});
+			}
+		})) {
+			batchRunning = false;
+			return;
+		}
+		btnStep.setToolTipText("Cancel");
+		sliderNumberOfSteps.setEnabled(false);
+	}
+	
+	private void finishSteps() {
+		batchRunning = false;
+		btnStep.setToolTipText("Step");
+		sliderNumberOfSteps.setEnabled(true);
+		lblNumberOfSteps.setText(formatSteps(getNumberOfSteps()));
 		checkEndGameAndHandleIt();
 		updateGUI();
+		detectSwapAndNotify();
+	}
+	
+	/**
+	 * Starts the real-time mode. While it runs, the step button pauses and resumes it and
+	 * the number of steps slider sets its tick rate.
+	 */
+	private void startRealTime() {
+		ModelSnapshot snapshot = controller.getSnapshot();
+		if (snapshot != null && snapshot.isPaused())
+			togglePaused();
+		sliderNumberOfSteps.setMaximum(TICK_RATES.length);
+		realTime = stepRunner.startRealTime(getTicksPerSecond(), new StepRunner.Listener() {
+			@Override
+			public void progress(long stepsDone, long numSteps) {
+			}
+			
+			@Override
+			public void finished(long stepsDone, boolean cancelled) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						finishRealTime();
+					}
+				});
+			}
+		});
+		if (realTime == null) {
+			sliderNumberOfSteps.setMaximum(STEP_SIZES.length);
+			btnRealTime.setSelected(false);
+			return;
+		}
+		batchRunning = true;
+		btnRealTime.setSelected(true);
+		btnStep.setToolTipText("Pause");
+		lblNumberOfSteps.setText(getTicksPerSecond() + "/s");
+	}
+	
+	private void finishRealTime() {
+		realTime = null;
+		btnRealTime.setSelected(false);
+		sliderNumberOfSteps.setMaximum(STEP_SIZES.length);
+		finishSteps();
+	}
+	
+	/**
+	 * Pauses/resumes the real-time mode; the command runs on the simulation thread.
+	 */
+	private void togglePaused() {
+		stepRunner.submit(new Runnable() {
+			public void run() {
+				controller.togglePaused();
+			}
+		});
+	}
+	
+	private int getTicksPerSecond() {
+		return TICK_RATES[Math.min(sliderNumberOfSteps.getValue(), TICK_RATES.length) - 1];
+	}
+	
+	private int getNumberOfSteps() {
+		return STEP_SIZES[sliderNumberOfSteps.getValue() - 1];
+	}
+	
+	/**
+	 * @return the number of steps in at most 4 characters, i.e. 20k for 20000
+	 */
+	private String formatSteps(long steps) {
+		if (steps >= 1000000 && steps % 1000000 == 0) return (steps / 1000000) + "M";
+		if (steps >= 10000) return (steps / 1000) + "k";
+		return "" + steps;
 	}
  
 	public void detectSwapAndNotify() {
-		if (controller.isMultiplayer()) {
-			if (controller.getCurrentPlayerNumber() == 2) { // Swapped!
+		ModelSnapshot snapshot = controller.getSnapshot();
+		if (snapshot != null && snapshot.isMultiplayer()) {
+			if (snapshot.getCurrentPlayerNumber() == 2) { // Swapped!
 				if (!displayedSwapDialog) { // Need to notify players of swap 
 					displayedSwapDialog = true;
-					JOptionPane.showMessageDialog(null, controller.getPlayerOneName() +
+					JOptionPane.showMessageDialog(null, snapshot.getPlayerOneName() +
 														" finished with a score of:\n" +
-														controller.getPlayerOneScore() + "\n" +
+														snapshot.getPlayerOneScore() + "\n" +
 														"Please swap controls. " +  
-														"Try to beat that, " + controller.getPlayerTwoName() 
+														"Try to beat that, " + snapshot.getPlayerTwoName() 
 														+ ".");
-					lblOtherPlayerScore.setText(controller.getPlayerOneName() + " : " + 
-												controller.getPlayerOneScore());
+					lblOtherPlayerScore.setText(snapshot.getPlayerOneName() + " : " + 
+												snapshot.getPlayerOneScore());
 					sliderNumberOfSteps.setValue(1);
 				}
 				
@@ -1297,22 +1605,26 @@ public class MainGUI implements Observer
 	}
 	
 	private void startNewSingleplayerGame() {
-		String playerName = JOptionPane.showInputDialog(null,
+		final String playerName = JOptionPane.showInputDialog(null,
 				  "Please enter your name",
 				  "Enter your name",
 				  JOptionPane.QUESTION_MESSAGE);
-		controller.newSingleplayerGame(playerName);
 		displayedSwapDialog = false;
 		displayedEndGameDialog = false;
-		updateGUI();
+		// The model notifies the GUI once the game has started.
+		stepRunner.submit(new Runnable() {
+			public void run() {
+				controller.newSingleplayerGame(playerName);
+			}
+		});
 	}
 	
 	private void startNewMultiplayerGame() {
-		String playerOneName = JOptionPane.showInputDialog(null,
+		final String playerOneName = JOptionPane.showInputDialog(null,
 		        "Player 1, please enter your name",
 		        "Enter your name",
 		        JOptionPane.QUESTION_MESSAGE);
-		String playerTwoName = JOptionPane.showInputDialog(null,
+		final String playerTwoName = JOptionPane.showInputDialog(null,
 		      	"Player 2, please enter your name",
 		      	"Enter your name",
 		      	JOptionPane.QUESTION_MESSAGE);
@@ -1335,10 +1647,13 @@ public class MainGUI implements Observer
 		      				 playerTwoName + " will attempt\nto set a higher score." ;
 		
 		JOptionPane.showMessageDialog(null, messageText);
-		controller.newMultiplayerGame(playerOneName, playerTwoName);
 		displayedSwapDialog = false;
 		displayedEndGameDialog = false;
-		updateGUI();
+		stepRunner.submit(new Runnable() {
+			public void run() {
+				controller.newMultiplayerGame(playerOneName, playerTwoName);
+			}
+		});
 	}
     
 	
@@ -1363,12 +1678,25 @@ public class MainGUI implements Observer
 
 		/**
 		 * Acts upon KeyEvents that it is passed. ie fails the relevant component.
+		 * The component is failed on the simulation thread.
 		 * 
 		 * @param event KeyEvent
 		 */
 		private void keyPressActionHandler(KeyEvent event) {
+			final int keyCode = event.getKeyCode();
+			ModelSnapshot snapshot = controller.getSnapshot();
+			if (snapshot != null && snapshot.isMultiplayer()) {
+				stepRunner.submit(new Runnable() {
+					public void run() {
+						failComponent(keyCode);
+					}
+				});
+			}
+		}
+		
+		private void failComponent(int keyCode) {
 			if (controller.isMultiplayer()) {
-				switch (event.getKeyCode()) {
+				switch (keyCode) {
 				case FAIL_PUMP_1:
 					controller.failPump(1);
 					break;
@@ -1386,7 +1714,8 @@ public class MainGUI implements Observer
 					break;
 				case TOGGLE_RANDOM_FAILURES:
 					controller.toggleRandomFailures();
-					updateGUI();
+					// Not a change the model reports - refreshes the multiplayer labels.
+					update(PLAYERS);
 				default:
 					break;
 				}
@@ -0,0 +1,358 @@
+package swing;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.Transparency;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+import model.PlantSnapshot;
+import model.PlantTopology;
+
+/**
+ * PlantDiagram paints the plant in a single component: the background picture, the
+ * water in the reactor and the condenser, the flow along the pipes and the gauges of
+ * the reactor and the condenser. The interactive controls stay separate components on
+ * top of it.
+ *
+ * The parts that never change (the background and the empty gauges) are painted once
+ * into a cached image, and every repaint copies just the clipped part of it. A change
+ * repaints only the region of what changed: a gauge, a vessel, or the pipes that carry a
+ * flow. The flow is drawn as dashes moving along a pipe at a speed that grows with the
+ * rate of the flow out of the component the pipe belongs to; pipes without flow are
+ * not repainted at all.
+ *
+ * Everything is done on the event dispatch thread. The owner moves the gauges with
+ * setGauge, sets the flow rates with setFlows, and calls animate every frame while
+ * isAnimating is true.
+ *
+ * @author Lamprey
+ */
+public class PlantDiagram extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	// Indexes of the gauges.
+	public final static int REACTOR_HEALTH = 0;
+	public final static int REACTOR_TEMPERATURE = 1;
+	public final static int REACTOR_PRESSURE = 2;
+	public final static int REACTOR_WATER = 3;
+	public final static int CONDENSER_HEALTH = 4;
+	public final static int CONDENSER_TEMPERATURE = 5;
+	public final static int CONDENSER_PRESSURE = 6;
+	public final static int CONDENSER_WATER = 7;
+	public final static int NUM_GAUGES = 8;
+
+	public final static int WIDTH = 1040;
+	public final static int HEIGHT = 709;
+
+	// Speed of the dashes in pixels a second per unit of flow rate, and the fastest speed.
+	private final static double FLOW_SPEED = 0.4;
+	private final static double MAX_FLOW_SPEED = 160;
+	private final static float DASH_LENGTH = 6;
+	private final static float DASH_PERIOD = 16;
+
+	private final static Color GAUGE_TRACK_COLOUR = new Color(225, 225, 225);
+	private final static Color GAUGE_BORDER_COLOUR = new Color(140, 140, 140);
+	private final static Color CONDENSER_WATER_COLOUR = new Color(0, 255, 0);
+	private final static Color VESSEL_WATER_COLOUR = new Color(40, 120, 255, 70);
+	private final static Color STEAM_COLOUR = new Color(235, 235, 235);
+	private final static Color WATER_COLOUR = new Color(80, 160, 255);
+
+	private final static Color[] BLUE_TO_RED_COLOURS = new Color[101];
+	private final static Color[] RED_TO_GREEN_COLOURS = new Color[101];
+
+	static {
+		for (int i = 0; i <= 100; i++) {
+			BLUE_TO_RED_COLOURS[i] = blueToRed(i);
+			RED_TO_GREEN_COLOURS[i] = redToGreen(i);
+		}
+	}
+
+	private final static Rectangle[] GAUGE_BOUNDS = {
+		new Rectangle(781, 273, 234, 14), new Rectangle(781, 168, 234, 14),
+		new Rectangle(781, 203, 234, 14), new Rectangle(781, 237, 234, 14),
+		new Rectangle(781, 468, 234, 14), new Rectangle(781, 359, 234, 14),
+		new Rectangle(781, 394, 234, 14), new Rectangle(781, 430, 234, 14)
+	};
+
+	// The colours of a gauge by its value: null for CONDENSER_WATER_COLOUR.
+	private final static Color[][] GAUGE_COLOURS = {
+		RED_TO_GREEN_COLOURS, BLUE_TO_RED_COLOURS, BLUE_TO_RED_COLOURS, RED_TO_GREEN_COLOURS,
+		RED_TO_GREEN_COLOURS, BLUE_TO_RED_COLOURS, BLUE_TO_RED_COLOURS, null
+	};
+
+	// The inside of the vessels, filled up to the water level.
+	private final static Rectangle REACTOR_VESSEL = new Rectangle(45, 170, 190, 255);
+	private final static Rectangle CONDENSER_VESSEL = new Rectangle(531, 217, 136, 270);
+
+	/**
+	 * A pipe of the background picture: the centre line of the pipe, in the direction of
+	 * the flow, and the component whose flow out goes through it.
+	 */
+	private static final class Pipe {
+		final int component;
+		final boolean steam;
+		final Path2D.Float path;
+		final Rectangle bounds;
+		double offset;
+		int shownOffset; // -1 while no dashes are shown
+
+		Pipe(int component, boolean steam, int... points) {
+			this.component = component;
+			this.steam = steam;
+			this.path = new Path2D.Float();
+			path.moveTo(points[0], points[1]);
+			for (int i = 2; i < points.length; i += 2) {
+				path.lineTo(points[i], points[i + 1]);
+			}
+			Rectangle r = path.getBounds();
+			r.grow(3, 3);
+			this.bounds = r;
+			this.shownOffset = -1;
+		}
+	}
+
+	private final Image background;
+	private final Pipe[] pipes;
+	private final int[] gaugeWidths;
+	private final Color[] gaugeColours;
+	private final int[] waterHeights;
+	private final double[] flowSpeeds;
+	private BufferedImage staticLayer;
+	private GraphicsConfiguration staticLayerConfiguration;
+	private long lastAnimation;
+
+	/**
+	 *
+	 * @param background the picture of the plant
+	 */
+	public PlantDiagram(Image background) {
+		this.background = background;
+		this.pipes = new Pipe[] {
+			new Pipe(PlantTopology.REACTOR, true, 139, 147, 139, 71, 295, 71),
+			new Pipe(PlantTopology.VALVE_1, true, 295, 71, 335, 71),
+			new Pipe(PlantTopology.VALVE_1, true, 380, 71, 470, 71),
+			new Pipe(PlantTopology.VALVE_2, true, 295, 71, 295, 166, 335, 166),
+			new Pipe(PlantTopology.VALVE_2, true, 380, 166, 605, 166),
+			new Pipe(PlantTopology.TURBINE, true, 605, 108, 605, 166),
+			new Pipe(PlantTopology.CONNECTOR_PIPE_2, true, 605, 166, 605, 212),
+			new Pipe(PlantTopology.CONDENSER, false, 527, 415, 420, 415),
+			new Pipe(PlantTopology.PUMP_1, false, 420, 415, 420, 300, 370, 300),
+			new Pipe(PlantTopology.PUMP_1, false, 335, 300, 295, 300),
+			new Pipe(PlantTopology.PUMP_2, false, 420, 415, 370, 415),
+			new Pipe(PlantTopology.PUMP_2, false, 335, 415, 295, 415, 295, 300),
+			new Pipe(PlantTopology.CONNECTOR_PIPE_4, false, 295, 300, 237, 300)
+		};
+		this.gaugeWidths = new int[NUM_GAUGES];
+		this.gaugeColours = new Color[NUM_GAUGES];
+		this.waterHeights = new int[2];
+		this.flowSpeeds = new double[pipes.length];
+		for (int i = 0; i < NUM_GAUGES; i++) {
+			gaugeColours[i] = colour(i, 0);
+		}
+		setBounds(0, 0, WIDTH, HEIGHT);
+		setOpaque(true);
+		setDoubleBuffered(true);
+	}
+
+	/**
+	 * Moves a gauge, repainting it only if the bar has changed by a pixel or more. The
+	 * water gauges also fill their vessel.
+	 *
+	 * @param gauge   index of the gauge, i.e. REACTOR_TEMPERATURE
+	 * @param percent the value of the gauge, 0 to 100
+	 */
+	public void setGauge(int gauge, double percent) {
+		percent = Math.max(0, Math.min(100, percent));
+		Rectangle bounds = GAUGE_BOUNDS[gauge];
+		int width = (int) Math.round(percent * (bounds.width - 2) / 100);
+		Color colour = colour(gauge, (int) Math.round(percent));
+		if (width != gaugeWidths[gauge] || !colour.equals(gaugeColours[gauge])) {
+			gaugeWidths[gauge] = width;
+			gaugeColours[gauge] = colour;
+			repaint(bounds);
+		}
+		if (gauge == REACTOR_WATER) setWaterHeight(0, REACTOR_VESSEL, percent);
+		if (gauge == CONDENSER_WATER) setWaterHeight(1, CONDENSER_VESSEL, percent);
+	}
+
+	/**
+	 * Sets the speed of the flow along every pipe from the flow rates of the plant.
+	 *
+	 * @param plant the plant shown
+	 */
+	public void setFlows(PlantSnapshot plant) {
+		for (int i = 0; i < pipes.length; i++) {
+			int rate = plant.getFlowRate(pipes[i].component);
+			flowSpeeds[i] = Math.min(MAX_FLOW_SPEED, Math.max(0, rate) * FLOW_SPEED);
+		}
+	}
+
+	/**
+	 *
+	 * @return true while something flows, i.e. while animate needs to be called
+	 */
+	public boolean isAnimating() {
+		for (double speed : flowSpeeds) {
+			if (speed > 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the flow along the pipes, repainting only the pipes whose dashes have moved.
+	 *
+	 * @param now the time of the frame, from System.nanoTime()
+	 */
+	public void animate(long now) {
+		double seconds = lastAnimation == 0 ? 0 : Math.min(0.1, (now - lastAnimation) / 1e9);
+		lastAnimation = now;
+		for (int i = 0; i < pipes.length; i++) {
+			Pipe pipe = pipes[i];
+			if (flowSpeeds[i] == 0) {
+				if (pipe.shownOffset >= 0) {
+					// The flow has stopped - clears the dashes.
+					pipe.shownOffset = -1;
+					repaint(pipe.bounds);
+				}
+				continue;
+			}
+			pipe.offset = (pipe.offset + flowSpeeds[i] * seconds) % DASH_PERIOD;
+			int offset = (int) pipe.offset;
+			if (offset != pipe.shownOffset) {
+				pipe.shownOffset = offset;
+				repaint(pipe.bounds);
+			}
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+		g.drawImage(staticLayer(), 0, 0, null);
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			paintWater(g2, clip, REACTOR_VESSEL, waterHeights[0]);
+			paintWater(g2, clip, CONDENSER_VESSEL, waterHeights[1]);
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			for (Pipe pipe : pipes) {
+				if (pipe.shownOffset >= 0 && pipe.bounds.intersects(clip)) paintFlow(g2, pipe);
+			}
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+			for (int i = 0; i < NUM_GAUGES; i++) {
+				Rectangle bounds = GAUGE_BOUNDS[i];
+				if (gaugeWidths[i] > 0 && bounds.intersects(clip)) {
+					g2.setColor(gaugeColours[i]);
+					g2.fillRect(bounds.x + 1, bounds.y + 1, gaugeWidths[i], bounds.height - 2);
+				}
+			}
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	/**
+	 * Paints the parts that never change into an image compatible with the screen, once
+	 * per screen the component is shown on.
+	 */
+	private BufferedImage staticLayer() {
+		GraphicsConfiguration configuration = getGraphicsConfiguration();
+		if (staticLayer != null && configuration == staticLayerConfiguration) return staticLayer;
+		BufferedImage image = configuration != null
+				? configuration.createCompatibleImage(WIDTH, HEIGHT, Transparency.OPAQUE)
+				: new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.drawImage(background, 0, 0, null);
+			for (Rectangle bounds : GAUGE_BOUNDS) {
+				g.setColor(GAUGE_TRACK_COLOUR);
+				g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+				g.setColor(GAUGE_BORDER_COLOUR);
+				g.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+			}
+		} finally {
+			g.dispose();
+		}
+		staticLayer = image;
+		staticLayerConfiguration = configuration;
+		return image;
+	}
+
+	private void paintWater(Graphics2D g, Rectangle clip, Rectangle vessel, int height) {
+		if (height <= 0) return;
+		Rectangle water = new Rectangle(vessel.x, vessel.y + vessel.height - height, vessel.width, height);
+		if (!water.intersects(clip)) return;
+		g.setColor(VESSEL_WATER_COLOUR);
+		g.fill(water);
+	}
+
+	private void paintFlow(Graphics2D g, Pipe pipe) {
+		Stroke stroke = new BasicStroke(3, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+				new float[] {DASH_LENGTH, DASH_PERIOD - DASH_LENGTH}, DASH_PERIOD - pipe.shownOffset);
+		g.setStroke(stroke);
+		g.setColor(pipe.steam ? STEAM_COLOUR : WATER_COLOUR);
+		g.draw(pipe.path);
+	}
+
+	private void setWaterHeight(int vessel, Rectangle bounds, double percent) {
+		int height = (int) Math.round(percent * bounds.height / 100);
+		if (height == waterHeights[vessel]) return;
+		// Only the band between the old and the new level changes.
+		int top = bounds.y + bounds.height - Math.max(height, waterHeights[vessel]);
+		repaint(bounds.x, top, bounds.width, Math.abs(height - waterHeights[vessel]));
+		waterHeights[vessel] = height;
+	}
+
+	private static Color colour(int gauge, int percent) {
+		Color[] colours = GAUGE_COLOURS[gauge];
+		return colours == null ? CONDENSER_WATER_COLOUR : colours[Math.max(0, Math.min(100, percent))];
+	}
+
+	/**
+	 * Blue for low values, through green, to red for high values.
+	 */
+	private static Color blueToRed(int pbv) {
+		int r = 0, g = 0, b = 255;
+		if (pbv > 0 && pbv <= 20) {
+			g = (int) (pbv * 12.75);
+		} else if (pbv > 20 && pbv <= 45) {
+			r = 0; g = 255; b = (int) (255 - ((pbv - 20) * 10.2));
+		} else if (pbv > 45 && pbv <= 65) {
+			r = (int) ((pbv - 45) * 12.75); g = 255; b = 0;
+		} else if (pbv > 65 && pbv <= 90) {
+			r = 255; g = (int) (255 - ((pbv - 65) * 10.2)); b = 0;
+		} else if (pbv > 90 && pbv <= 100) {
+			r = 255; g = 0; b = 0;
+		}
+		return new Color(r, g, b);
+	}
+
+	/**
+	 * Red for low values, through yellow, to green for high values.
+	 */
+	private static Color redToGreen(int pbv) {
+		int r = 255, g = 0, b = 0;
+		if (pbv > 0 && pbv <= 20) {
+			r = 255; g = 0; b = 0;
+		} else if (pbv > 20 && pbv <= 60) {
+			r = 255; g = (int) ((pbv - 20) * 6.375);
+		} else if (pbv > 60 && pbv <= 90) {
+			r = (int) (255 - ((pbv - 60) * 8.5)); g = 255; b = 0;
+		} else if (pbv > 90 && pbv <= 100) {
+			r = 0; g = 255; b = 0;
+		}
+		return new Color(r, g, b);
+	}
+}
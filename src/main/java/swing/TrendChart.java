@@ -0,0 +1,189 @@
+package swing;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+
+import javax.swing.JComponent;
+
+/**
+ * TrendChart draws some series of a TrendHistory over the whole game, with a dashed line
+ * for the limit of every series (i.e. the maximum temperature of the reactor).
+ *
+ * The buckets of a series are reduced to one lowest and highest value per pixel column
+ * (see TrendHistory.downsample) and every column is drawn as a vertical line joined to
+ * the next, so painting takes the same time after a minute or after hours of play, and
+ * short spikes stay visible. The buffers are allocated once, not per paint.
+ *
+ * @author Lamprey
+ */
+public class TrendChart extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final static Color BACKGROUND_COLOUR = new Color(51, 51, 51);
+	private final static Color GRID_COLOUR = new Color(75, 75, 75);
+	private final static Color TEXT_COLOUR = new Color(20, 220, 0);
+	private final static Font TITLE_FONT = new Font("Tahoma", Font.BOLD, 12);
+	private final static Font LABEL_FONT = new Font("Tahoma", Font.PLAIN, 10);
+	private final static Stroke LIMIT_STROKE = new BasicStroke(1, BasicStroke.CAP_BUTT,
+			BasicStroke.JOIN_MITER, 10, new float[] {4, 4}, 0);
+	private final static int MARGIN_LEFT = 44;
+	private final static int MARGIN_TOP = 20;
+	private final static int MARGIN_RIGHT = 8;
+	private final static int MARGIN_BOTTOM = 8;
+	private final static int GRID_LINES = 4;
+
+	private final String title;
+	private final TrendHistory history;
+	private final int[] series;
+	private final String[] names;
+	private final Color[] colours;
+	private final int[] limits;
+	private final int[] bucketMin;
+	private final int[] bucketMax;
+	private int[] columnMin;
+	private int[] columnMax;
+
+	/**
+	 *
+	 * @param title   the title of the chart
+	 * @param history the history the series are in
+	 * @param series  indexes of the series drawn
+	 * @param names   names of the series, for the legend
+	 * @param colours colours of the series
+	 */
+	public TrendChart(String title, TrendHistory history, int[] series, String[] names, Color[] colours) {
+		this.title = title;
+		this.history = history;
+		this.series = series;
+		this.names = names;
+		this.colours = colours;
+		this.limits = new int[series.length];
+		this.bucketMin = new int[history.getCapacity()];
+		this.bucketMax = new int[history.getCapacity()];
+		this.columnMin = new int[0];
+		this.columnMax = new int[0];
+		setOpaque(true);
+	}
+
+	/**
+	 * Sets the limit drawn for a series, 0 for none. The chart is scaled to show it.
+	 *
+	 * @param index index of the series in this chart
+	 * @param limit the limit
+	 */
+	public void setLimit(int index, int limit) {
+		if (limits[index] != limit) {
+			limits[index] = limit;
+			repaint();
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		int width = getWidth();
+		int height = getHeight();
+		int plotWidth = Math.max(1, width - MARGIN_LEFT - MARGIN_RIGHT);
+		int plotHeight = Math.max(1, height - MARGIN_TOP - MARGIN_BOTTOM);
+		if (columnMin.length < plotWidth) {
+			columnMin = new int[plotWidth];
+			columnMax = new int[plotWidth];
+		}
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			g2.setColor(BACKGROUND_COLOUR);
+			g2.fillRect(0, 0, width, height);
+
+			// The scale fits the limits and the highest value of every series.
+			int top = 1;
+			for (int i = 0; i < series.length; i++) {
+				top = Math.max(top, limits[i]);
+				int n = history.copy(series[i], bucketMin, bucketMax);
+				for (int b = 0; b < n; b++) {
+					top = Math.max(top, bucketMax[b]);
+				}
+			}
+			top = niceCeiling(top);
+
+			paintGrid(g2, top, plotWidth, plotHeight);
+			for (int i = 0; i < series.length; i++) {
+				paintSeries(g2, i, top, plotWidth, plotHeight);
+			}
+			paintLegend(g2, width);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	private void paintGrid(Graphics2D g, int top, int plotWidth, int plotHeight) {
+		g.setFont(LABEL_FONT);
+		for (int line = 0; line <= GRID_LINES; line++) {
+			int y = MARGIN_TOP + plotHeight - line * plotHeight / GRID_LINES;
+			g.setColor(GRID_COLOUR);
+			g.drawLine(MARGIN_LEFT, y, MARGIN_LEFT + plotWidth, y);
+			g.setColor(TEXT_COLOUR);
+			String label = "" + (long) top * line / GRID_LINES;
+			g.drawString(label, MARGIN_LEFT - 4 - g.getFontMetrics().stringWidth(label), y + 4);
+		}
+		g.setFont(TITLE_FONT);
+		g.drawString(title, MARGIN_LEFT, 14);
+	}
+
+	private void paintSeries(Graphics2D g, int index, int top, int plotWidth, int plotHeight) {
+		int n = history.copy(series[index], bucketMin, bucketMax);
+		int columns = TrendHistory.downsample(bucketMin, bucketMax, n, plotWidth, columnMin, columnMax);
+		g.setColor(colours[index]);
+		// Few buckets are spread over the width, many are one column each.
+		int previousX = -1, previousY = 0;
+		for (int c = 0; c < columns; c++) {
+			int x = MARGIN_LEFT + (columns < plotWidth && columns > 1 ? c * (plotWidth - 1) / (columns - 1) : c);
+			int yLow = y(columnMin[c], top, plotHeight);
+			int yHigh = y(columnMax[c], top, plotHeight);
+			if (previousX >= 0) g.drawLine(previousX, previousY, x, (yLow + yHigh) / 2);
+			g.drawLine(x, yLow, x, yHigh);
+			previousX = x;
+			previousY = (yLow + yHigh) / 2;
+		}
+		if (limits[index] > 0) {
+			Stroke stroke = g.getStroke();
+			g.setStroke(LIMIT_STROKE);
+			int y = y(limits[index], top, plotHeight);
+			g.drawLine(MARGIN_LEFT, y, MARGIN_LEFT + plotWidth, y);
+			g.setStroke(stroke);
+		}
+	}
+
+	private void paintLegend(Graphics2D g, int width) {
+		g.setFont(LABEL_FONT);
+		int x = width - MARGIN_RIGHT;
+		for (int i = series.length - 1; i >= 0; i--) {
+			x -= g.getFontMetrics().stringWidth(names[i]);
+			g.setColor(colours[i]);
+			g.drawString(names[i], x, 14);
+			x -= 12;
+		}
+	}
+
+	private static int y(int value, int top, int plotHeight) {
+		value = Math.max(0, Math.min(top, value));
+		return MARGIN_TOP + plotHeight - (int) ((long) value * plotHeight / top);
+	}
+
+	/**
+	 *
+	 * @return the smallest of 1, 2 or 5 times a power of ten that is not below value
+	 */
+	private static int niceCeiling(int value) {
+		int power = 1;
+		while (power * 10L <= value) power *= 10;
+		if (value <= power) return power;
+		if (value <= 2 * power) return 2 * power;
+		if (value <= 5 * power) return 5 * power;
+		return 10 * power;
+	}
+}
@@ -0,0 +1,204 @@
+package swing;
+
+/**
+ * TrendHistory keeps the history of a few values of a game (i.e. the reactor
+ * temperature) for the trend charts, in a fixed amount of memory however long the game
+ * has run.
+ *
+ * Each series is a ring of at most capacity buckets, each bucket holding the lowest and
+ * the highest value of the samples it covers. Samples are recorded with the step they
+ * were taken at and every bucket covers the same number of steps (the stride), so the
+ * buckets are a time axis however often samples arrive: a batch reports a sample every
+ * few steps, the real-time mode one per step. The buckets of the steps between two
+ * samples hold the value of the earlier sample, the last value known. When a sample
+ * falls past the end of the ring, neighbouring buckets are merged in pairs and the
+ * stride doubles, so older history is kept at a coarser resolution but its extremes (a
+ * temperature spike lasting a single step) are never lost.
+ *
+ * Samples are recorded by one thread (the simulation thread) and read by another (the
+ * event dispatch thread); both hold the lock of the history for O(capacity) at most.
+ *
+ * @author Lamprey
+ */
+public class TrendHistory {
+
+	private final int numSeries;
+	private final int capacity;
+	private final int[][] min;
+	private final int[][] max;
+	private final int[] lastValues;
+	private int numBuckets;
+	private long stride;
+	private long firstStep;
+	private long lastStep;
+	private long numSamples;
+
+	/**
+	 *
+	 * @param numSeries number of values recorded per sample
+	 * @param capacity  the most buckets kept per series, an even number
+	 */
+	public TrendHistory(int numSeries, int capacity) {
+		if (capacity < 2 || capacity % 2 != 0) {
+			throw new IllegalArgumentException("TrendHistory: capacity must be even and at least 2.");
+		}
+		this.numSeries = numSeries;
+		this.capacity = capacity;
+		this.min = new int[numSeries][capacity];
+		this.max = new int[numSeries][capacity];
+		this.lastValues = new int[numSeries];
+		clear();
+	}
+
+	/**
+	 * Records a sample. Several samples of the same step go into the same bucket, and a
+	 * sample of an earlier step than the last one starts the history again.
+	 *
+	 * @param step   the step the sample was taken at
+	 * @param values the value of every series
+	 */
+	public synchronized void record(long step, int[] values) {
+		if (values.length != numSeries) {
+			throw new IllegalArgumentException("TrendHistory: expected " + numSeries + " values.");
+		}
+		if (numSamples > 0 && step < lastStep) clear();
+		if (numSamples == 0) firstStep = step;
+		numSamples++;
+		lastStep = step;
+		long bucket = (step - firstStep) / stride;
+		while (bucket >= capacity) {
+			compact();
+			bucket = (step - firstStep) / stride;
+		}
+		int b = (int) bucket;
+		// The steps since the last sample hold the last value known.
+		for (; numBuckets <= b; numBuckets++) {
+			boolean held = firstStep + numBuckets * stride < step;
+			for (int s = 0; s < numSeries; s++) {
+				min[s][numBuckets] = held ? lastValues[s] : values[s];
+				max[s][numBuckets] = min[s][numBuckets];
+			}
+		}
+		for (int s = 0; s < numSeries; s++) {
+			if (values[s] < min[s][b]) min[s][b] = values[s];
+			if (values[s] > max[s][b]) max[s][b] = values[s];
+			lastValues[s] = values[s];
+		}
+	}
+
+	/**
+	 * Forgets every sample, i.e. when a new game starts.
+	 */
+	public synchronized void clear() {
+		numBuckets = 0;
+		stride = 1;
+		firstStep = 0;
+		lastStep = 0;
+		numSamples = 0;
+	}
+
+	/**
+	 * Copies the buckets of a series, oldest first.
+	 *
+	 * @param series index of the series
+	 * @param minOut receives the lowest value of every bucket, at least capacity long
+	 * @param maxOut receives the highest value of every bucket, at least capacity long
+	 * @return the number of buckets copied
+	 */
+	public synchronized int copy(int series, int[] minOut, int[] maxOut) {
+		System.arraycopy(min[series], 0, minOut, 0, numBuckets);
+		System.arraycopy(max[series], 0, maxOut, 0, numBuckets);
+		return numBuckets;
+	}
+
+	/**
+	 * Merges the buckets in pairs and doubles the stride. With an odd number of buckets
+	 * the last one has no pair.
+	 */
+	private void compact() {
+		int merged = (numBuckets + 1) / 2;
+		for (int s = 0; s < numSeries; s++) {
+			int[] lows = min[s];
+			int[] highs = max[s];
+			for (int i = 0; i < merged; i++) {
+				if (2 * i + 1 < numBuckets) {
+					lows[i] = Math.min(lows[2 * i], lows[2 * i + 1]);
+					highs[i] = Math.max(highs[2 * i], highs[2 * i + 1]);
+				} else {
+					lows[i] = lows[2 * i];
+					highs[i] = highs[2 * i];
+				}
+			}
+		}
+		numBuckets = merged;
+		stride *= 2;
+	}
+
+	/**
+	 * Reduces buckets to one lowest and highest value per pixel column, so a chart draws
+	 * width vertical lines whatever the number of buckets, and every extreme stays visible.
+	 * With fewer buckets than columns, every bucket gets a column of its own.
+	 *
+	 * @param min     the lowest values of the buckets
+	 * @param max     the highest values of the buckets
+	 * @param n       number of buckets
+	 * @param width   number of columns available
+	 * @param minOut  receives the lowest value of every column
+	 * @param maxOut  receives the highest value of every column
+	 * @return the number of columns used
+	 */
+	public static int downsample(int[] min, int[] max, int n, int width, int[] minOut, int[] maxOut) {
+		if (n <= width) {
+			System.arraycopy(min, 0, minOut, 0, n);
+			System.arraycopy(max, 0, maxOut, 0, n);
+			return n;
+		}
+		for (int c = 0; c < width; c++) {
+			int from = (int) ((long) c * n / width);
+			int to = (int) ((long) (c + 1) * n / width);
+			int low = min[from];
+			int high = max[from];
+			for (int i = from + 1; i < to; i++) {
+				if (min[i] < low) low = min[i];
+				if (max[i] > high) high = max[i];
+			}
+			minOut[c] = low;
+			maxOut[c] = high;
+		}
+		return width;
+	}
+
+	// ----------- Getters & Setters ---------------
+
+	public int getNumSeries() {
+		return numSeries;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 *
+	 * @return number of steps each bucket covers
+	 */
+	public synchronized long getStride() {
+		return stride;
+	}
+
+	/**
+	 *
+	 * @return the step of the first sample since the last clear
+	 */
+	public synchronized long getFirstStep() {
+		return firstStep;
+	}
+
+	/**
+	 *
+	 * @return number of samples recorded since the last clear
+	 */
+	public synchronized long getNumSamples() {
+		return numSamples;
+	}
+}
@@ -0,0 +1,182 @@
+package swing;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+
+import model.ModelSnapshot;
+import model.PlantSnapshot;
+
+
+/**
+ * This class creates its own gui which has a relative position to the mainGUI.
+ * It shows trend charts of the reactor and the condenser and of the power output over
+ * the whole game, from the TrendHistory the mainGUI records.
+ */
+public class TrendsGUI {
+
+	// Indexes of the series of the history, see sample().
+	public final static int REACTOR_TEMPERATURE = 0;
+	public final static int CONDENSER_TEMPERATURE = 1;
+	public final static int REACTOR_PRESSURE = 2;
+	public final static int CONDENSER_PRESSURE = 3;
+	public final static int REACTOR_WATER = 4;
+	public final static int CONDENSER_WATER = 5;
+	public final static int POWER_OUTPUT = 6;
+	public final static int NUM_SERIES = 7;
+
+	// Buckets kept per series - the cost of painting a chart does not grow past this.
+	public final static int HISTORY_CAPACITY = 1024;
+
+	private final static Color REACTOR_COLOUR = new Color(255, 110, 40);
+	private final static Color CONDENSER_COLOUR = new Color(80, 160, 255);
+	private final static Color POWER_COLOUR = new Color(20, 220, 0);
+
+	//the main frame
+	private JFrame frame;
+
+	//reference to the main gui
+	private MainGUI mainGUI;
+
+	//the recorded history of the game
+	private TrendHistory history;
+
+	private TrendChart temperatureChart;
+	private TrendChart pressureChart;
+	private TrendChart waterChart;
+	private TrendChart powerChart;
+
+
+	/**
+	 * instantiates this class' gui and shows the frame.
+	 * @param mainGUI
+	 * @param history
+	 */
+	public TrendsGUI(MainGUI mainGUI, TrendHistory history)
+	{
+		this.mainGUI = mainGUI;
+		this.history = history;
+		initialize();
+		frame.setVisible(true);
+	}
+
+	/**
+	 * Initialise the contents of the frame: a chart for the temperatures, the pressures
+	 * and the water volumes of the reactor and the condenser, and one for the power output.
+	 */
+	private void initialize() {
+		frame = new JFrame("Trends");
+		frame.setBounds(mainGUI.getFrame().getX() + 60, mainGUI.getFrame().getY() + 60, 640, 480);
+		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+		String[] vessels = { "Reactor", "Condenser" };
+		Color[] vesselColours = { REACTOR_COLOUR, CONDENSER_COLOUR };
+		temperatureChart = new TrendChart("Temperature", history,
+				new int[] { REACTOR_TEMPERATURE, CONDENSER_TEMPERATURE }, vessels, vesselColours);
+		pressureChart = new TrendChart("Pressure", history,
+				new int[] { REACTOR_PRESSURE, CONDENSER_PRESSURE }, vessels, vesselColours);
+		waterChart = new TrendChart("Water volume", history,
+				new int[] { REACTOR_WATER, CONDENSER_WATER }, vessels, vesselColours);
+		powerChart = new TrendChart("Power output", history,
+				new int[] { POWER_OUTPUT }, new String[] { "Power" }, new Color[] { POWER_COLOUR });
+
+		JPanel panel = new JPanel(new GridLayout(2, 2, 2, 2));
+		panel.setBackground(Color.BLACK);
+		panel.add(temperatureChart);
+		panel.add(pressureChart);
+		panel.add(waterChart);
+		panel.add(powerChart);
+		frame.getContentPane().add(panel);
+	}
+
+	/**
+	 * Shows the history recorded so far, with the limits of the plant.
+	 *
+	 * @param snapshot the latest state of the game, may be null
+	 */
+	public void refresh(ModelSnapshot snapshot) {
+		if (snapshot != null) {
+			PlantSnapshot plant = snapshot.getPlant();
+			temperatureChart.setLimit(0, plant.getReactorMaxTemperature());
+			temperatureChart.setLimit(1, plant.getCondenserMaxTemperature());
+			pressureChart.setLimit(0, plant.getReactorMaxPressure());
+			pressureChart.setLimit(1, plant.getCondenserMaxPressure());
+			waterChart.setLimit(0, plant.getReactorMinSafeWaterVolume());
+		}
+		temperatureChart.repaint();
+		pressureChart.repaint();
+		waterChart.repaint();
+		powerChart.repaint();
+	}
+
+	/**
+	 *
+	 * @return true while the frame is open
+	 */
+	public boolean isShowing() {
+		return frame.isDisplayable();
+	}
+
+	/**
+	 * Brings the frame to the front.
+	 */
+	public void toFront() {
+		frame.toFront();
+	}
+
+	/**
+	 * Takes the values of the series from a plant.
+	 *
+	 * @param plant the plant
+	 * @return the values of the series, to record in the history
+	 */
+	public static int[] sample(PlantSnapshot plant) {
+		int[] values = new int[NUM_SERIES];
+		values[REACTOR_TEMPERATURE] = plant.getReactorTemperature();
+		values[CONDENSER_TEMPERATURE] = plant.getCondenserTemperature();
+		values[REACTOR_PRESSURE] = plant.getReactorPressure();
+		values[CONDENSER_PRESSURE] = plant.getCondenserPressure();
+		values[REACTOR_WATER] = plant.getReactorWaterVolume();
+		values[CONDENSER_WATER] = plant.getCondenserWaterVolume();
+		values[POWER_OUTPUT] = plant.getPowerOutput();
+		return values;
+	}
+
+	/**
+	 * Draws the icon of the button that opens the trends, in the style of the other
+	 * button icons.
+	 *
+	 * @return the icon
+	 */
+	public static ImageIcon createIcon() {
+		BufferedImage image = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(new Color(0x333333));
+			g.fillRect(0, 0, 40, 40);
+			g.setColor(new Color(0x292929));
+			g.drawRect(1, 1, 37, 37);
+			g.setColor(new Color(0x5f5f5f));
+			g.drawRect(2, 2, 35, 35);
+			g.setColor(new Color(0x999999));
+			g.fillRect(3, 3, 34, 34);
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setColor(new Color(0x666666));
+			g.setStroke(new BasicStroke(2));
+			g.drawLine(9, 9, 9, 31);
+			g.drawLine(9, 31, 31, 31);
+			g.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+			g.drawPolyline(new int[] { 12, 18, 23, 30 }, new int[] { 26, 18, 22, 11 }, 4);
+		} finally {
+			g.dispose();
+		}
+		return new ImageIcon(image);
+	}
+}
@@ -1,7 +1,11 @@
 package components;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
 import model.Plant;
 
 import org.junit.Before;
@@ -53,5 +57,98 @@ public class OperatingSoftwareTests {
 		assertEquals(50, OS.getPercentageLowered());
 	}
 	
+	//Tests that every command given before the queue is drained is kept, in order
+	@Test
+	public void testCommandsQueuedInOrder(){
+		OS.setPumpRpm(1, 10);
+		OS.setValve(2, false);
+		OS.setControlRods(30);
+		List<OperatingSoftware.Command> commands = OS.drainCommands();
+		assertEquals(3, commands.size());
+		assertEquals(OperatingSoftware.OperationRequest.SetPumpRpm, commands.get(0).getOperation());
+		assertEquals(10, commands.get(0).getRpm());
+		assertEquals(2, commands.get(1).getValveID());
+		assertEquals(30, commands.get(2).getPercentageLowered());
+		assertEquals(0, OS.getQueuedCommands());
+		assertTrue(OS.drainCommands().isEmpty());
+	}
 	
+	//Tests that a command given when the queue is full is refused
+	@Test
+	public void testFullQueueRefusesCommands(){
+		for (int i = 0; i < OperatingSoftware.COMMAND_QUEUE_CAPACITY; i++) {
+			assertTrue(OS.setPumpRpm(1, i));
+		}
+		assertFalse(OS.setPumpRpm(1, 1000));
+		assertEquals(OperatingSoftware.COMMAND_QUEUE_CAPACITY, OS.drainCommands().size());
+		assertTrue(OS.setPumpRpm(1, 1000));
+	}
+	
+	//Tests that a failed software corrupts each command on its own
+	@Test
+	public void testFailedSoftwareCorruptsEachCommand(){
+		OS.setOperational(false);
+		for (int i = 0; i < 20; i++) {
+			OS.setControlRods(50);
+		}
+		List<OperatingSoftware.Command> commands = OS.drainCommands();
+		// Only a command turned into "do nothing" is not stored (a 1% chance each).
+		assertTrue(commands.size() >= 15);
+		boolean corrupted = false;
+		for (OperatingSoftware.Command command : commands) {
+			corrupted |= command.getOperation() != OperatingSoftware.OperationRequest.SetControlRods
+					|| command.getPercentageLowered() != 50;
+		}
+		assertTrue(corrupted);
+	}
+	
+	//Tests that a failed software sends a corrupted pump rpm command to the last pump used
+	@Test
+	public void testFailedSoftwarePumpCommandsUseLastPump(){
+		OS.setPumpRpm(2, 10);
+		OS.drainCommands();
+		OS.setValve(1, true);
+		OS.drainCommands();
+		OS.setOperational(false);
+		for (int i = 0; i < 200; i++) {
+			OS.setValve(1, false);
+		}
+		int pumpCommands = 0;
+		for (OperatingSoftware.Command command : OS.drainCommands()) {
+			if (command.getOperation() == OperatingSoftware.OperationRequest.SetPumpRpm) {
+				assertEquals(2, command.getPumpID());
+				pumpCommands++;
+			}
+		}
+		assertTrue(pumpCommands > 0);
+	}
+	
+	//Tests that commands given by several threads at once are all stored
+	@Test
+	public void testCommandsFromManyThreads() throws InterruptedException{
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int pumpID = t + 1;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < OperatingSoftware.COMMAND_QUEUE_CAPACITY / 4; i++) {
+						OS.setPumpRpm(pumpID, i);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		int[] lastRpm = {-1, -1, -1, -1};
+		List<OperatingSoftware.Command> commands = OS.drainCommands();
+		assertEquals(OperatingSoftware.COMMAND_QUEUE_CAPACITY, commands.size());
+		for (OperatingSoftware.Command command : commands) {
+			// The commands of each thread stay in the order it gave them.
+			assertTrue(command.getRpm() > lastRpm[command.getPumpID() - 1]);
+			lastRpm[command.getPumpID() - 1] = command.getRpm();
+		}
+	}
 }
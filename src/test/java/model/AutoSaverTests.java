@@ -0,0 +1,89 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AutoSaverTests {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File file;
+	private AutoSaver autoSaver;
+	
+	@Before
+	public void setUp() throws IOException {
+		file = new File(folder.getRoot(), "save.dat");
+		autoSaver = new AutoSaver(file);
+	}
+	
+	@After
+	public void tearDown() throws InterruptedException {
+		autoSaver.close();
+	}
+	
+	@Test
+	public void writeAtomically_existingFile_replacedWithoutTempFiles() throws IOException {
+		GameSaveFormat.writeAtomically(file, new byte[] { 1, 2, 3 });
+		GameSaveFormat.writeAtomically(file, new byte[] { 4, 5 });
+		
+		assertArrayEquals(new byte[] { 4, 5 }, Files.readAllBytes(file.toPath()));
+		assertEquals(1, folder.getRoot().list().length);
+	}
+	
+	@Test
+	public void saveInBackground_manySnapshots_newestCommitted() throws IOException, InterruptedException {
+		for (byte i = 0; i < 100; i++) {
+			autoSaver.saveInBackground(new byte[] { i, i });
+		}
+		autoSaver.flush();
+		
+		assertArrayEquals(new byte[] { 99, 99 }, Files.readAllBytes(file.toPath()));
+		assertNull(autoSaver.getLastError());
+		assertEquals(1, folder.getRoot().list().length);
+	}
+	
+	@Test
+	public void save_afterBackgroundSnapshots_notOverwrittenByThem() throws IOException, InterruptedException {
+		for (byte i = 0; i < 50; i++) {
+			autoSaver.saveInBackground(new byte[] { i });
+		}
+		autoSaver.save(new byte[] { 100 });
+		autoSaver.flush();
+		
+		assertArrayEquals(new byte[] { 100 }, Files.readAllBytes(file.toPath()));
+	}
+	
+	@Test
+	public void saveInBackground_folderMissing_errorReported() throws InterruptedException {
+		AutoSaver broken = new AutoSaver(new File(new File(folder.getRoot(), "missing"), "save.dat"));
+		broken.saveInBackground(new byte[] { 1 });
+		broken.close();
+		
+		assertNotNull(broken.getLastError());
+	}
+	
+	@Test
+	public void savePlant_savedTwice_loadsSecondSave() throws IOException {
+		Plant plant = new Plant();
+		plant.newGame("Bob");
+		GameSaveFormat.savePlant(file, plant);
+		plant.setControlRods(77);
+		GameSaveFormat.savePlant(file, plant);
+		
+		assertEquals(77, GameSaveFormat.loadPlant(file).getControlRodsLevel());
+		assertEquals(1, folder.getRoot().list().length);
+	}
+}
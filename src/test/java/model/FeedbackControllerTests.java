@@ -0,0 +1,75 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import components.GameOverException;
+
+public class FeedbackControllerTests {
+
+	private Plant plant;
+
+	@Before
+	public void setUp() {
+		plant = new Plant();
+		plant.newGame("Bob");
+	}
+
+	@Test
+	public void update_measurementBelowSetpoint_outputIncreases() {
+		ControlLoop loop = new ControlLoop(100, 1, 0, 0, 0, 1000);
+		assertEquals(50, loop.update(50));
+	}
+
+	@Test
+	public void update_reverseActingMeasurementAboveSetpoint_outputIncreases() {
+		ControlLoop loop = new ControlLoop(100, 1, 0, 0, 0, 1000);
+		loop.setReverseActing(true);
+		assertEquals(50, loop.update(150));
+	}
+
+	@Test
+	public void update_largeError_outputIsClamped() {
+		ControlLoop loop = new ControlLoop(1000, 10, 1, 0, 0, 100);
+		assertEquals(100, loop.update(0));
+		assertEquals(0, new ControlLoop(0, 10, 1, 0, 0, 100).update(1000));
+	}
+
+	@Test
+	public void step_withController_reactorHeldAtSetpoint() throws GameOverException {
+		plant.setFeedbackController(new FeedbackController());
+		plant.step(5000);
+
+		assertFalse(plant.isGameOver());
+		assertEquals(FeedbackController.DEFAULT_REACTOR_TEMPERATURE, plant.getReactorTemperature(), 20);
+		assertTrue(plant.getReactorWaterVolume() > plant.getReactor().getMinSafeWaterVolume());
+		assertTrue(plant.getGenerator().getPowerOutput() > 0);
+	}
+
+	@Test
+	public void step_controlRodsLoopOnly_pumpsLeftUnderManualControl() throws GameOverException {
+		FeedbackController controller = new FeedbackController();
+		controller.setFeedPumpsLoop(null);
+		controller.setCoolantPumpLoop(null);
+		plant.setFeedbackController(controller);
+		plant.setPumpRpm(1, 123);
+		plant.step(10);
+
+		assertEquals(123, plant.getPumpRpm(1));
+	}
+
+	@Test
+	public void step_withController_pumpLoopsLimitedToPumpRpm() throws GameOverException {
+		FeedbackController controller = new FeedbackController();
+		controller.setFeedPumpsLoop(new ControlLoop(FeedbackController.DEFAULT_REACTOR_WATER_VOLUME, 0.5, 0.01, 0, 0, 800));
+		plant.setFeedbackController(controller);
+		plant.step(1);
+
+		assertEquals(800, controller.getFeedPumpsLoop().getMaxOutput());
+		assertEquals(plant.getCondenser().getCoolantPump().getMaxRpm(), controller.getCoolantPumpLoop().getMaxOutput());
+	}
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import components.GameOverException;
+
+/**
+ * Compares saving and loading a plant with Java serialization against GameSaveFormat.
+ * Everything happens in memory, so the numbers exclude disk I/O. Not a unit test - run it
+ * by hand with: java model.GameSaveFormatBenchmark [iterations]
+ * 
+ * @author Lamprey
+ */
+public class GameSaveFormatBenchmark {
+	
+	public static void main(String[] args) throws IOException, ClassNotFoundException, GameOverException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		Plant plant = new Plant();
+		plant.newGame("Benchmark");
+		plant.step(50);
+		plant.failPump(1);
+		plant.repairPump(1);
+		
+		byte[] serialized = serialize(plant);
+		byte[] binary = binary(plant);
+		System.out.println("Save size: serialization " + serialized.length + " bytes, GameSaveFormat "
+						   + binary.length + " bytes");
+		
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) serialize(plant);
+			long serializeSave = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) binary(plant);
+			long binarySave = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+			}
+			long serializeLoad = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(binary));
+				int version = GameSaveFormat.readHeader(in, GameSaveFormat.CONTENT_PLANT);
+				GameSaveFormat.readPlant(in, version, new Plant());
+			}
+			long binaryLoad = System.nanoTime() - start;
+			
+			System.out.printf("Round %d: save %.1f us vs %.1f us, load %.1f us vs %.1f us (serialization vs GameSaveFormat)%n",
+							  round + 1, micros(serializeSave, iterations), micros(binarySave, iterations),
+							  micros(serializeLoad, iterations), micros(binaryLoad, iterations));
+		}
+	}
+	
+	private static byte[] serialize(Plant plant) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(plant);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private static byte[] binary(Plant plant) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		GameSaveFormat.writeHeader(out, GameSaveFormat.CONTENT_PLANT);
+		GameSaveFormat.writePlant(out, plant);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private static double micros(long nanos, int iterations) {
+		return nanos / 1000.0 / iterations;
+	}
+}
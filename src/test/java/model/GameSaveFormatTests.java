@@ -0,0 +1,163 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.GameOverException;
+
+public class GameSaveFormatTests {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void loadPlant_savedMidGame_sameStateAsOriginal() throws IOException, GameOverException {
+		Plant original = new Plant();
+		original.newGame("Bob");
+		List<HighScore> highScores = new ArrayList<HighScore>();
+		highScores.add(new HighScore("Alice", 1200));
+		highScores.add(new HighScore("Bob", 800));
+		original.setHighScores(highScores);
+		original.step(20);
+		original.failPump(1);
+		original.repairPump(1);
+		original.setValve(2, false);
+		original.setControlRods(30);
+		
+		File file = folder.newFile("save.dat");
+		GameSaveFormat.savePlant(file, original);
+		Plant loaded = GameSaveFormat.loadPlant(file);
+		
+		assertEquals("Bob", loaded.getOperatorName());
+		assertEquals(2, loaded.getHighScores().size());
+		assertEquals("Alice", loaded.getHighScores().get(0).getName());
+		assertEquals(1200, loaded.getHighScores().get(0).getHighScore());
+		assertEquals(original.getScore(), loaded.getScore());
+		assertEquals(30, loaded.getControlRodsLevel());
+		assertFalse(loaded.isValveOpen(2));
+		assertFalse(loaded.isPumpOperational(1));
+		assertEquals(1, loaded.getBeingRepaired().size());
+		
+		original.step(10);
+		loaded.step(10);
+		assertEquals(original.getScore(), loaded.getScore());
+		assertEquals(original.getReactorTemperature(), loaded.getReactorTemperature());
+		assertEquals(original.getCondenserWaterVolume(), loaded.getCondenserWaterVolume());
+		assertTrue(loaded.isPumpOperational(1));
+	}
+	
+	@Test
+	public void loadPlant_javaSerializedSave_throwsIOException() throws IOException {
+		Plant original = new Plant();
+		original.newGame("Carol");
+		
+		File file = folder.newFile("save.ser");
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+		out.writeObject(original);
+		out.close();
+		
+		assertLoadFails(file);
+	}
+	
+	@Test
+	public void readLegacyHighScores_javaSerializedList_read() throws IOException {
+		List<HighScore> saved = new ArrayList<HighScore>();
+		saved.add(new HighScore("Alice", 300));
+		saved.add(new HighScore(null, 100));
+		File file = folder.newFile("highscores.ser");
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+		out.writeObject(saved);
+		out.close();
+		
+		FileInputStream in = new FileInputStream(file);
+		try {
+			List<HighScore> read = GameSaveFormat.readLegacyHighScores(in);
+			assertEquals(2, read.size());
+			assertEquals("Alice", read.get(0).getName());
+			assertEquals(300, read.get(0).getHighScore());
+			assertEquals(null, read.get(1).getName());
+		} finally {
+			in.close();
+		}
+	}
+	
+	@Test
+	public void readLegacyHighScores_otherClass_refused() throws IOException {
+		List<Object> saved = new ArrayList<Object>();
+		saved.add(new HighScore("Alice", 300));
+		saved.add(new java.util.Date());
+		File file = folder.newFile("highscores.ser");
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+		out.writeObject(saved);
+		out.close();
+		
+		FileInputStream in = new FileInputStream(file);
+		try {
+			GameSaveFormat.readLegacyHighScores(in);
+			fail("A Date should be refused");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("java.util.Date"));
+		} finally {
+			in.close();
+		}
+	}
+	
+	@Test
+	public void loadPlant_notASave_throwsIOException() throws IOException {
+		File file = folder.newFile("garbage.dat");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		out.writeInt(12345678);
+		out.writeInt(0);
+		out.close();
+		assertLoadFails(file);
+	}
+	
+	@Test
+	public void loadPlant_newerVersion_throwsIOException() throws IOException {
+		File file = folder.newFile("future.dat");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		out.writeInt(GameSaveFormat.MAGIC);
+		out.writeShort(GameSaveFormat.CURRENT_VERSION + 1);
+		out.writeByte(GameSaveFormat.CONTENT_PLANT);
+		out.close();
+		assertLoadFails(file);
+	}
+	
+	@Test
+	public void loadPlant_truncatedSave_throwsIOException() throws IOException {
+		Plant original = new Plant();
+		original.newGame("Dave");
+		File file = folder.newFile("truncated.dat");
+		GameSaveFormat.savePlant(file, original);
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 10);
+		raf.close();
+		assertLoadFails(file);
+	}
+	
+	private void assertLoadFails(File file) {
+		try {
+			GameSaveFormat.loadPlant(file);
+			fail("Expected an IOException.");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
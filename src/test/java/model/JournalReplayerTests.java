@@ -0,0 +1,211 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalReplayerTests {
+	
+	private final static long SEED = 42;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private MultiplayerModel model;
+	
+	@Before
+	public void setUp() {
+		model = new MultiplayerModel();
+		model.setAutosaveInterval(0);
+	}
+	
+	@Test
+	public void replayAll_singleplayerWithRandomFailures_sameStateAsOriginal() throws IOException {
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 60);
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		assertEquals(model.getJournal().getStep(), replayer.replayAll());
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void replayAll_multiplayer_sameStateAsOriginal() throws IOException {
+		model.newMultiplayerGame("Alice", "Bob", SEED);
+		play(model, 40);
+		model.failPump(1);
+		play(model, 10);
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		replayer.replayAll();
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void replayTo_earlierStep_matchesStateAtThatStep() throws IOException {
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 20);
+		byte[] atStep20 = model.snapshot();
+		play(model, 20);
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		replayer.replayAll();
+		assertEquals(20, replayer.replayTo(20));
+		assertArrayEquals(atStep20, replayer.getModel().snapshot());
+		assertEquals(40, replayer.replayTo(40));
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void replayAll_afterLoad_startsFromRestoredGame() throws IOException {
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 10);
+		model.getJournal().recordRestore(model.snapshot());
+		play(model, 10);
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		assertEquals(10, replayer.replayAll());
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void read_appendedIncrementally_sameJournal() throws IOException {
+		File file = folder.newFile("game.journal");
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 10);
+		model.getJournal().appendTo(file);
+		long firstSize = file.length();
+		play(model, 10);
+		model.getJournal().appendTo(file);
+		assertTrue(file.length() > firstSize);
+		
+		CommandJournal read = CommandJournal.read(file);
+		assertEquals(model.getJournal().getNumCommands(), read.getNumCommands());
+		assertEquals(20, read.getStep());
+		JournalReplayer replayer = new JournalReplayer(read);
+		replayer.replayAll();
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void read_tornLastEntry_dropped() throws IOException {
+		File file = folder.newFile("game.journal");
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 10);
+		model.getJournal().appendTo(file);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 2);
+		raf.close();
+		
+		CommandJournal read = CommandJournal.read(file);
+		assertEquals(model.getJournal().getNumCommands() - 1, read.getNumCommands());
+		assertEquals(9, read.getStep());
+	}
+	
+	@Test
+	public void seek_withKeyframes_matchesStateAtThatStep() throws IOException {
+		model.getJournal().setKeyframeInterval(10);
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 35);
+		byte[] atStep35 = model.snapshot();
+		play(model, 20);
+		assertEquals(5, model.getJournal().getNumKeyframes());
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		assertEquals(35, replayer.seek(35));
+		assertArrayEquals(atStep35, replayer.getModel().snapshot());
+		assertEquals(55, replayer.seek(55));
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+		assertEquals(35, replayer.seek(35));
+		assertArrayEquals(atStep35, replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void seek_journalReadFromFile_usesKeyframes() throws IOException {
+		File file = folder.newFile("game.journal");
+		model.getJournal().setKeyframeInterval(10);
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 25);
+		byte[] atStep25 = model.snapshot();
+		play(model, 5);
+		model.getJournal().appendTo(file);
+		
+		CommandJournal read = CommandJournal.read(file);
+		assertEquals(3, read.getNumKeyframes());
+		JournalReplayer replayer = new JournalReplayer(read);
+		assertEquals(25, replayer.seek(25));
+		assertArrayEquals(atStep25, replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void seek_noKeyframes_replaysFromStart() throws IOException {
+		model.getJournal().setKeyframeInterval(0);
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 20);
+		assertEquals(0, model.getJournal().getNumKeyframes());
+		
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		assertEquals(20, replayer.seek(20));
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void record_pastMaxSize_trimmedAndStillReplays() throws IOException {
+		File file = folder.newFile("game.journal");
+		model.getJournal().setKeyframeInterval(10);
+		model.getJournal().setMaxSize(8000);
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 150);
+		model.getJournal().appendTo(file);
+		play(model, 150);
+		model.getJournal().appendTo(file);
+		
+		CommandJournal journal = model.getJournal();
+		assertTrue(journal.size() <= 8000);
+		assertTrue(journal.getStep() < 300);
+		JournalReplayer replayer = new JournalReplayer(journal);
+		assertEquals(journal.getStep(), replayer.replayAll());
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+		
+		CommandJournal read = CommandJournal.read(file);
+		assertEquals(journal.getNumCommands(), read.getNumCommands());
+		replayer = new JournalReplayer(read);
+		replayer.replayAll();
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	@Test
+	public void record_pastMaxSizeWithoutKeyframes_bounded() throws IOException {
+		model.getJournal().setKeyframeInterval(0);
+		model.getJournal().setMaxSize(2000);
+		model.newSingleplayerGame("Bob", SEED);
+		play(model, 300);
+		
+		assertTrue(model.getJournal().size() <= 2000);
+		assertTrue(model.getJournal().getStep() < 300);
+		JournalReplayer replayer = new JournalReplayer(model.getJournal());
+		replayer.replayAll();
+		assertArrayEquals(model.snapshot(), replayer.getModel().snapshot());
+	}
+	
+	/**
+	 * Plays numSteps single steps, giving the plant some commands on the way.
+	 */
+	private void play(MultiplayerModel model, int numSteps) {
+		for (int i = 0; i < numSteps; i++) {
+			if (i % 7 == 0) model.setControlRods(40 + i % 30);
+			if (i % 11 == 0) model.setPumpRpm(1, 600 + i);
+			if (i % 13 == 0) model.setValve(1, i % 2 == 0);
+			model.step(1);
+		}
+	}
+}
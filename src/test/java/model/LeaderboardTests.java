@@ -0,0 +1,356 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LeaderboardTests {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void add_moreScoresThanCapacity_keepsBestInOrder() throws IOException {
+		Leaderboard leaderboard = new Leaderboard(3);
+		int[] scores = { 50, 10, 70, 30, 90, 20 };
+		for (int score : scores) {
+			leaderboard.add(new HighScore("P" + score, score));
+		}
+		
+		List<HighScore> highScores = leaderboard.getHighScores();
+		assertEquals(3, highScores.size());
+		assertEquals(90, highScores.get(0).getHighScore());
+		assertEquals(70, highScores.get(1).getHighScore());
+		assertEquals(50, highScores.get(2).getHighScore());
+	}
+	
+	@Test
+	public void add_equalScores_firstAddedRanksHigher() throws IOException {
+		Leaderboard leaderboard = new Leaderboard(2);
+		leaderboard.add(new HighScore("First", 100));
+		leaderboard.add(new HighScore("Second", 100));
+		
+		assertFalse(leaderboard.add(new HighScore("Third", 100)));
+		assertEquals("First", leaderboard.getHighScores().get(0).getName());
+		assertEquals("Second", leaderboard.getHighScores().get(1).getName());
+	}
+	
+	@Test
+	public void add_notPositiveOrTooLow_rejected() throws IOException {
+		Leaderboard leaderboard = new Leaderboard(1);
+		assertFalse(leaderboard.add(new HighScore("Zero", 0)));
+		assertTrue(leaderboard.add(new HighScore("Bob", 10)));
+		assertFalse(leaderboard.add(new HighScore("Low", 5)));
+		assertEquals(1, leaderboard.size());
+	}
+	
+	@Test
+	public void reopen_scoresAppended_sameLeaderboard() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		for (int i = 1; i <= 8; i++) {
+			leaderboard.add(new HighScore("P" + i, i * 10));
+		}
+		leaderboard.close();
+		
+		Leaderboard reopened = new Leaderboard(file, 5);
+		assertEquals(leaderboard.getHighScores().size(), reopened.getHighScores().size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(leaderboard.getHighScores().get(i).getName(), reopened.getHighScores().get(i).getName());
+		}
+		reopened.close();
+	}
+	
+	@Test
+	public void add_manyScores_logCompacted() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		for (int i = 1; i <= 1000; i++) {
+			leaderboard.add(new HighScore("Player", i));
+		}
+		leaderboard.close();
+		
+		// Never more than capacity * 4 + 1 records of 13 bytes, plus the header.
+		assertTrue(file.length() <= 14 + 21 * 13);
+		assertEquals(1000, new Leaderboard(file, 5).getHighScores().get(0).getHighScore());
+	}
+	
+	@Test
+	public void add_twoLeaderboardsSharingLog_scoresMerged() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard first = new Leaderboard(file, 3);
+		Leaderboard second = new Leaderboard(file, 3);
+		first.add(new HighScore("Alice", 30));
+		second.add(new HighScore("Bob", 20));
+		first.add(new HighScore("Carol", 10));
+		
+		// The second leaderboard knows Alice's and Carol's scores without a refresh,
+		// so it rejects a score that only beats nobody.
+		assertFalse(second.add(new HighScore("Dave", 5)));
+		second.refresh();
+		assertEquals(3, second.size());
+		assertEquals("Alice", second.getHighScores().get(0).getName());
+		first.refresh();
+		assertEquals("Bob", first.getHighScores().get(1).getName());
+		first.close();
+		second.close();
+	}
+	
+	@Test
+	public void refresh_otherLeaderboardCompacted_logReadAgain() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard writer = new Leaderboard(file, 2);
+		Leaderboard reader = new Leaderboard(file, 2);
+		for (int i = 1; i <= 50; i++) {
+			writer.add(new HighScore("P" + i, i));
+		}
+		reader.refresh();
+		assertEquals(50, reader.getHighScores().get(0).getHighScore());
+		assertEquals(49, reader.getHighScores().get(1).getHighScore());
+		writer.close();
+		reader.close();
+	}
+	
+	@Test
+	public void add_concurrentLeaderboards_noScoreLost() throws Exception {
+		final File file = new File(folder.getRoot(), Leaderboard.FILE);
+		final int numThreads = 4;
+		final int scoresPerThread = 200;
+		Thread[] threads = new Thread[numThreads];
+		final Exception[] failure = new Exception[1];
+		for (int t = 0; t < numThreads; t++) {
+			final int thread = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Leaderboard leaderboard = new Leaderboard(file, 10);
+						for (int i = 0; i < scoresPerThread; i++) {
+							leaderboard.add(new HighScore("T" + thread, i * numThreads + thread + 1));
+						}
+						leaderboard.close();
+					} catch (Exception e) {
+						failure[0] = e;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(null, failure[0]);
+		
+		List<HighScore> highScores = new Leaderboard(file, 10).getHighScores();
+		assertEquals(10, highScores.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(numThreads * scoresPerThread - i, highScores.get(i).getHighScore());
+		}
+	}
+	
+	@Test
+	public void open_tornLastRecord_dropped() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		leaderboard.add(new HighScore("Alice", 30));
+		leaderboard.close();
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 1, 0, 3, 'B' });
+		out.close();
+		
+		Leaderboard reopened = new Leaderboard(file, 5);
+		assertEquals(1, reopened.size());
+		reopened.add(new HighScore("Carol", 20));
+		reopened.close();
+		assertEquals(2, new Leaderboard(file, 5).size());
+	}
+	
+	@Test
+	public void migrateLegacy_javaSerializedScores_addedOnce() throws IOException {
+		File legacyFile = new File(folder.getRoot(), Leaderboard.LEGACY_FILE);
+		List<HighScore> saved = new ArrayList<HighScore>();
+		saved.add(new HighScore("Alice", 300));
+		saved.add(new HighScore("Bob", 100));
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacyFile));
+		out.writeObject(saved);
+		out.close();
+		
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		assertEquals(2, leaderboard.migrateLegacy(legacyFile));
+		assertEquals(0, leaderboard.migrateLegacy(legacyFile));
+		leaderboard.close();
+		
+		assertFalse(legacyFile.exists());
+		assertTrue(new File(legacyFile.getPath() + Leaderboard.MIGRATED_EXTENSION).exists());
+		List<HighScore> highScores = new Leaderboard(file, 5).getHighScores();
+		assertEquals(2, highScores.size());
+		assertEquals("Alice", highScores.get(0).getName());
+	}
+	
+	@Test
+	public void add_corruptLog_throwsAndScoreNotAdded() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 'n', 'o', 't', ' ', 'a', ' ', 'l', 'o', 'g' });
+		out.close();
+		
+		try {
+			leaderboard.add(new HighScore("Alice", 30));
+			fail("add() should throw on a corrupt log");
+		} catch (Leaderboard.ScoreNotSavedException e) {
+			fail("The score was reported as added");
+		} catch (IOException e) {
+			// Expected.
+		}
+		assertEquals(0, leaderboard.size());
+	}
+	
+	@Test
+	public void add_writeFailsInsideRecord_tornBytesCutOff() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		Leaderboard leaderboard = new Leaderboard(file, 5);
+		leaderboard.add(new HighScore("Alice", 30));
+		long size = file.length();
+		
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			leaderboard.appendRecord(new FailingChannel(channel), new HighScore("Bob", 25));
+			fail("appendRecord() should throw");
+		} catch (IOException e) {
+			// Expected.
+		} finally {
+			channel.close();
+		}
+		assertEquals(size, file.length());
+		
+		leaderboard.add(new HighScore("Carol", 20));
+		leaderboard.close();
+		List<HighScore> highScores = new Leaderboard(file, 5).getHighScores();
+		assertEquals(2, highScores.size());
+		assertEquals("Carol", highScores.get(1).getName());
+	}
+	
+	/**
+	 * A channel that writes the first two bytes it is given, then fails.
+	 */
+	private final static class FailingChannel extends FileChannel {
+		private final FileChannel channel;
+		private boolean written;
+		
+		FailingChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			if (written) throw new IOException("disk full");
+			written = true;
+			ByteBuffer part = src.duplicate();
+			part.limit(part.position() + 2);
+			int n = channel.write(part, position);
+			src.position(src.position() + n);
+			return n;
+		}
+		
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+		
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public long position() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public void force(boolean metaData) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		protected void implCloseChannel() throws IOException {
+		}
+	}
+}
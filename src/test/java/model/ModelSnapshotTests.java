@@ -0,0 +1,114 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelSnapshotTests {
+	
+	private MultiplayerModel model;
+	
+	@Before
+	public void setUp() {
+		model = new MultiplayerModel();
+		model.setAutosaveInterval(0);
+	}
+	
+	@Test
+	public void getSnapshot_beforeAnyGame_null() {
+		assertNull(model.getSnapshot());
+	}
+	
+	@Test
+	public void step_publishesNewVersion() {
+		model.newMultiplayerGame("Bob", "Alice", 1);
+		ModelSnapshot before = model.getSnapshot();
+		model.step(5);
+		ModelSnapshot after = model.getSnapshot();
+		
+		assertEquals(before.getVersion() + 1, after.getVersion());
+		assertEquals(model.getReactorTemperature(), after.getPlant().getReactorTemperature());
+		assertEquals(model.getCurrentPlayerScore(), after.getPlant().getScore());
+		assertEquals(model.getStepsLeftOfTurn(), after.getStepsLeftOfTurn());
+		assertEquals("Bob", after.getCurrentPlayerName());
+	}
+	
+	@Test
+	public void snapshot_laterCommands_doNotChangeIt() {
+		model.newMultiplayerGame("Bob", "Alice", 1);
+		ModelSnapshot snapshot = model.getSnapshot();
+		boolean valveOpen = snapshot.getPlant().isValveOpen(1);
+		int rpm = snapshot.getPlant().getPumpRpm(1);
+		
+		model.setValve(1, !valveOpen);
+		model.setPumpRpm(1, rpm + 100);
+		
+		assertEquals(valveOpen, snapshot.getPlant().isValveOpen(1));
+		assertEquals(rpm, snapshot.getPlant().getPumpRpm(1));
+		assertEquals(!valveOpen, model.getSnapshot().getPlant().isValveOpen(1));
+		assertEquals(rpm + 100, model.getSnapshot().getPlant().getPumpRpm(1));
+	}
+	
+	@Test
+	public void observer_seesSnapshotOfTheChange() {
+		model.newMultiplayerGame("Bob", "Alice", 1);
+		final AtomicReference<ModelSnapshot> seen = new AtomicReference<ModelSnapshot>();
+		model.addObserver(new Observer() {
+			@Override
+			public void update() {
+				seen.set(model.getSnapshot());
+			}
+		});
+		model.step(model.getStepsPerPlayer());
+		
+		assertSame(model.getSnapshot(), seen.get());
+		assertEquals(2, seen.get().getCurrentPlayerNumber());
+	}
+	
+	@Test
+	public void getSnapshot_readWhileStepping_consistent() throws InterruptedException {
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicReference<String> error = new AtomicReference<String>();
+		model.newMultiplayerGame("Bob", "Alice", 1);
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long lastVersion = 0;
+				while (!stop.get()) {
+					ModelSnapshot snapshot = model.getSnapshot();
+					PlantSnapshot plant = snapshot.getPlant();
+					if (snapshot.getVersion() < lastVersion) {
+						error.set("Version went back from " + lastVersion + " to " + snapshot.getVersion());
+					}
+					// The generator's output is derived from the turbine in the same step.
+					if (plant.getPowerOutput() != plant.getTurbineRpm() / 123) {
+						error.set("Torn snapshot at version " + snapshot.getVersion());
+					}
+					lastVersion = snapshot.getVersion();
+				}
+			}
+		});
+		reader.start();
+		for (int game = 0; game < 50; game++) {
+			model.newMultiplayerGame("Bob", "Alice", game);
+			for (int step = 0; step < model.getStepsPerPlayer(); step++) {
+				model.setPumpRpm(1, step * 10 % 1000);
+				model.step(1);
+			}
+		}
+		stop.set(true);
+		reader.join();
+		
+		assertNull(error.get(), error.get());
+		assertNotNull(model.getSnapshot());
+		assertTrue(model.getSnapshot().getVersion() > 50 * model.getStepsPerPlayer());
+	}
+}
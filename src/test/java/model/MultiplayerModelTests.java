@@ -0,0 +1,127 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiplayerModelTests {
+	
+	private MultiplayerModel model;
+	private RecordingObserver observer;
+	
+	@Before
+	public void setUp() {
+		model = new MultiplayerModel();
+		model.setAutosaveInterval(0);
+		model.newMultiplayerGame("Bob", "Alice", 1);
+		observer = new RecordingObserver();
+		model.addObserver(observer);
+	}
+	
+	@Test
+	public void step_notifiesOnceWithStepChanges() {
+		model.step(1);
+		
+		assertEquals(1, observer.changes.size());
+		int changes = observer.changes.get(0);
+		assertTrue((changes & ChangeObserver.REACTOR) != 0);
+		assertEquals(0, changes & ChangeObserver.PLAYER_SWAP);
+	}
+	
+	@Test
+	public void step_turbineFails_valvesAndControlRodsReported() {
+		model.newSingleplayerGame("Bob", 7);
+		observer.changes.clear();
+		for (int i = 0; i < 500 && model.getSnapshot().getPlant().isTurbineOperational(); i++) {
+			model.step(1);
+		}
+		
+		assertTrue(!model.getSnapshot().getPlant().isTurbineOperational());
+		int changes = observer.changes.get(observer.changes.size() - 1);
+		assertTrue((changes & ChangeObserver.VALVES) != 0);
+		assertTrue((changes & ChangeObserver.REACTOR) != 0);
+		assertTrue((changes & ChangeObserver.TURBINE) != 0);
+	}
+	
+	@Test
+	public void failTurbine_reportsValvesAndControlRods() {
+		model.step(10);
+		observer.changes.clear();
+		model.failTurbine();
+		
+		assertEquals(1, observer.changes.size());
+		assertEquals(ChangeObserver.TURBINE | ChangeObserver.VALVES | ChangeObserver.REACTOR,
+				(int) observer.changes.get(0));
+	}
+	
+	@Test
+	public void step_endingTurn_swapReportedInTheSameNotification() {
+		model.step(model.getStepsPerPlayer());
+		
+		assertEquals(1, observer.changes.size());
+		assertTrue((observer.changes.get(0) & ChangeObserver.PLAYER_SWAP) != 0);
+		assertEquals(2, model.getCurrentPlayerNumber());
+	}
+	
+	@Test
+	public void setValve_notifiesValvesOnly() {
+		model.setValve(1, false);
+		
+		assertEquals(1, observer.changes.size());
+		assertEquals(ChangeObserver.VALVES, (int) observer.changes.get(0));
+	}
+	
+	@Test
+	public void beginChanges_severalCommands_oneNotificationWithAllChanges() {
+		model.beginChanges();
+		model.setValve(1, false);
+		model.setPumpRpm(1, 500);
+		model.beginChanges();
+		model.setControlRods(20);
+		model.endChanges();
+		assertEquals(0, observer.changes.size());
+		model.endChanges();
+		
+		assertEquals(1, observer.changes.size());
+		assertEquals(ChangeObserver.VALVES | ChangeObserver.PUMPS | ChangeObserver.REACTOR, (int) observer.changes.get(0));
+	}
+	
+	@Test
+	public void notifyObservers_plainObserver_updated() {
+		final int[] updates = new int[1];
+		model.addObserver(new Observer() {
+			@Override
+			public void update() {
+				updates[0]++;
+			}
+		});
+		model.step(1);
+		model.setControlRods(10);
+		
+		assertEquals(2, updates[0]);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void endChanges_withoutBegin_throws() {
+		model.endChanges();
+	}
+	
+	private final static class RecordingObserver implements ChangeObserver {
+		final List<Integer> changes = new ArrayList<Integer>();
+		
+		@Override
+		public void update() {
+			update(ALL);
+		}
+		
+		@Override
+		public void update(int changes) {
+			this.changes.add(changes);
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MultiplayerPersistenceManagerTests {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private MultiplayerModel model;
+	private MultiplayerPersistenceManager persistence;
+	
+	@Before
+	public void setUp() {
+		model = new MultiplayerModel();
+		model.setAutosaveInterval(0);
+		model.newSingleplayerGame("Bob", 1);
+		persistence = new MultiplayerPersistenceManager(model, folder.getRoot());
+	}
+	
+	@Test
+	public void autosave_afterSave_savedGameNotOverwritten() throws IOException, InterruptedException {
+		model.step(5);
+		persistence.saveGame();
+		model.step(20);
+		persistence.autosave();
+		persistence.getAutoSaver().flush();
+		
+		persistence.loadGame();
+		assertEquals(5, model.getStepCount());
+	}
+	
+	@Test
+	public void loadGame_autosaveSlot_loadsAutosave() throws IOException, InterruptedException {
+		model.step(5);
+		persistence.saveGame();
+		model.step(20);
+		persistence.autosave();
+		persistence.getAutoSaver().flush();
+		
+		persistence.loadGame(MultiplayerPersistenceManager.AUTOSAVE_SLOT);
+		assertEquals(25, model.getStepCount());
+	}
+}
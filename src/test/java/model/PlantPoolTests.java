@@ -0,0 +1,145 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import components.GameOverException;
+
+public class PlantPoolTests {
+	
+	private PlantPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new PlantPool(2);
+	}
+	
+	@Test
+	public void reset_afterPlaying_sameStateAsNewPlant() {
+		Plant played = new Plant();
+		played.newGame("Bob");
+		play(played);
+		played.reset();
+		Plant fresh = new Plant();
+		fresh.newGame("Bob");
+		
+		assertSameState(fresh, played);
+		assertEquals("Bob", played.getOperatorName());
+	}
+	
+	@Test
+	public void reset_afterPlaying_sameEpisodeAsNewPlant() throws GameOverException {
+		Plant played = new Plant();
+		played.newGame("Bob");
+		play(played);
+		played.reset();
+		Plant fresh = new Plant();
+		fresh.newGame("Bob");
+		played.setControlRods(40);
+		fresh.setControlRods(40);
+		played.step(10);
+		fresh.step(10);
+		
+		assertSameState(fresh, played);
+	}
+	
+	@Test
+	public void acquire_afterRelease_returnsResetPlant() {
+		Plant plant = pool.acquire();
+		play(plant);
+		pool.release(plant);
+		
+		Plant reused = pool.acquire();
+		assertSame(plant, reused);
+		assertSameState(pool.acquire(), reused);
+	}
+	
+	@Test
+	public void release_poolFull_plantIsDropped() {
+		Plant first = pool.acquire();
+		Plant second = pool.acquire();
+		Plant third = pool.acquire();
+		pool.release(first);
+		pool.release(second);
+		pool.release(third);
+		
+		assertEquals(2, pool.size());
+		assertNotSame(third, pool.acquire());
+	}
+	
+	@Test
+	public void releaseAndAcquire_poolFilled_allocatesNothing() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		long thread = Thread.currentThread().getId();
+		Plant plant = pool.acquire();
+		play(plant);
+		for (int i = 0; i < 1000; i++) {
+			pool.release(plant);
+			plant = pool.acquire();
+		}
+		
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 1000; i++) {
+			pool.release(plant);
+			plant = pool.acquire();
+		}
+		assertEquals(0, threads.getThreadAllocatedBytes(thread) - before);
+	}
+	
+	/**
+	 * Plays the plant until the reactor is damaged, with a pump and the turbine failed
+	 * and under repair, some valves closed and the quench used.
+	 */
+	private void play(Plant plant) {
+		plant.setControlRods(0);
+		plant.setValve(2, false);
+		plant.setPumpRpm(2, 500);
+		plant.failPump(1);
+		plant.failTurbine();
+		plant.repairTurbine();
+		plant.quenchReactor();
+		try {
+			plant.step(30);
+		} catch (GameOverException e) {
+			// Fine, the state is checked after the reset.
+		}
+	}
+	
+	private void assertSameState(Plant expected, Plant actual) {
+		assertFalse(actual.isGameOver());
+		assertEquals(expected.getScore(), actual.getScore());
+		assertEquals(expected.getControlRodsLevel(), actual.getControlRodsLevel());
+		assertEquals(expected.getReactorTemperature(), actual.getReactorTemperature());
+		assertEquals(expected.getReactorPressure(), actual.getReactorPressure());
+		assertEquals(expected.getReactorWaterVolume(), actual.getReactorWaterVolume());
+		assertEquals(expected.getReactorHealth(), actual.getReactorHealth());
+		assertEquals(expected.getCondenserTemperature(), actual.getCondenserTemperature());
+		assertEquals(expected.getCondenserPressure(), actual.getCondenserPressure());
+		assertEquals(expected.getCondenserWaterVolume(), actual.getCondenserWaterVolume());
+		assertEquals(expected.getCondenserHealth(), actual.getCondenserHealth());
+		assertEquals(expected.isQuenchAvailable(), actual.isQuenchAvailable());
+		for (int id = 1; id <= 3; id++) {
+			assertEquals(expected.getPumpRpm(id), actual.getPumpRpm(id));
+			assertEquals(expected.isPumpOperational(id), actual.isPumpOperational(id));
+		}
+		for (int id = 1; id <= 2; id++) {
+			assertEquals(expected.isValveOpen(id), actual.isValveOpen(id));
+		}
+		assertEquals(expected.isTurbineOperational(), actual.isTurbineOperational());
+		assertEquals(expected.getTurbine().getFailureRate(), actual.getTurbine().getFailureRate());
+		assertEquals(expected.getGenerator().getPowerOutput(), actual.getGenerator().getPowerOutput());
+		assertTrue(actual.getFailedComponents().isEmpty());
+		assertTrue(actual.getBeingRepaired().isEmpty());
+	}
+}
@@ -0,0 +1,151 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.GameOverException;
+
+public class PlantStateArenaTests {
+	
+	private final static long SEED = 1234;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void plantRandom_sameSeed_sameNumbersAsRandom() {
+		Random expected = new Random(SEED);
+		PlantRandom actual = new PlantRandom(SEED);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(expected.nextInt(1000), actual.nextInt(1000));
+		}
+		assertEquals(expected.nextBoolean(), actual.nextBoolean());
+	}
+	
+	@Test
+	public void readState_writtenMidGame_continuesLikeOriginal() throws GameOverException {
+		Plant original = newPlant();
+		original.failPump(1);
+		original.repairPump(1);
+		original.setValve(2, false);
+		original.step(3);
+		ByteBuffer buffer = ByteBuffer.allocate(original.getStateSize());
+		original.writeState(buffer, 0);
+		
+		Plant copy = new Plant();
+		copy.readState(buffer, 0);
+		assertFalse(copy.isPumpOperational(1));
+		assertEquals(1, copy.getBeingRepaired().size());
+		assertFalse(copy.isValveOpen(2));
+		
+		stepUntilGameOver(original, 200);
+		stepUntilGameOver(copy, 200);
+		assertSameState(original, copy);
+	}
+	
+	@Test
+	public void stepAll_directArena_sameAsSteppingPlants() {
+		PlantStateArena arena = PlantStateArena.allocateDirect(3);
+		Plant[] plants = new Plant[3];
+		for (int i = 0; i < plants.length; i++) {
+			arena.reset(i, SEED + i, true);
+			plants[i] = newPlant();
+			plants[i].setSeed(SEED + i);
+			setControls(plants[i]);
+			arena.store(i, plants[i]);
+		}
+		for (int i = 0; i < 300; i++) {
+			arena.stepAll(1);
+			for (Plant plant : plants) {
+				stepUntilGameOver(plant, 1);
+			}
+		}
+		for (int i = 0; i < plants.length; i++) {
+			assertSameState(plants[i], arena.view(i));
+			assertEquals(plants[i].getScore(), arena.getScore(i));
+			assertEquals(plants[i].isGameOver(), arena.isGameOver(i));
+		}
+	}
+	
+	@Test
+	public void step_reactorOutOfControl_gameOver() {
+		PlantStateArena arena = PlantStateArena.allocateDirect(1);
+		Plant plant = arena.view(0);
+		plant.setControlRods(0);
+		arena.store(0, plant);
+		
+		assertTrue(arena.step(0, 1000));
+		assertTrue(arena.isGameOver(0));
+	}
+	
+	@Test
+	public void map_existingFile_plantsOutliveTheArena() throws IOException {
+		File file = new File(folder.getRoot(), "plants.arena");
+		PlantStateArena arena = PlantStateArena.map(file, 2);
+		arena.reset(1, SEED, false);
+		Plant plant = arena.view(1);
+		setControls(plant);
+		arena.store(1, plant);
+		arena.step(1, 20);
+		int score = arena.getScore(1);
+		arena.close();
+		
+		PlantStateArena reopened = PlantStateArena.map(file, 2);
+		assertTrue(score > 0);
+		assertEquals(score, reopened.getScore(1));
+		assertEquals(0, reopened.getScore(0));
+		assertEquals(60, reopened.view(1).getControlRodsLevel());
+		reopened.close();
+	}
+	
+	@Test(expected = IOException.class)
+	public void map_differentCapacity_throwsIOException() throws IOException {
+		File file = new File(folder.getRoot(), "plants.arena");
+		PlantStateArena.map(file, 2).close();
+		PlantStateArena.map(file, 3);
+	}
+	
+	private void stepUntilGameOver(Plant plant, int numSteps) {
+		try {
+			plant.step(numSteps);
+		} catch (GameOverException e) {
+			// Compared with the copy.
+		}
+	}
+	
+	private Plant newPlant() {
+		Plant plant = new Plant();
+		plant.newGame("Bob");
+		plant.setSeed(SEED);
+		plant.setRandomFailures(true);
+		setControls(plant);
+		return plant;
+	}
+	
+	private void setControls(Plant plant) {
+		plant.setControlRods(60);
+		plant.setPumpRpm(1, 400);
+		plant.setPumpRpm(2, 400);
+		plant.setPumpRpm(3, 800);
+	}
+	
+	private void assertSameState(Plant expected, Plant actual) {
+		ByteBuffer expectedState = ByteBuffer.allocate(expected.getStateSize());
+		ByteBuffer actualState = ByteBuffer.allocate(actual.getStateSize());
+		expected.writeState(expectedState, 0);
+		actual.writeState(actualState, 0);
+		assertEquals(expectedState, actualState);
+		assertEquals(expected.getScore(), actual.getScore());
+		assertEquals(expected.getReactorTemperature(), actual.getReactorTemperature());
+	}
+}
@@ -10,6 +10,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import components.Condenser;
+import components.ConnectorPipe;
 import components.PlantComponent;
 import components.Reactor;
 import components.Turbine;
@@ -39,6 +40,29 @@ public class PlantTests {
 		assertTrue(plant.getHighScores().size() == 1);
 	}
 	
+	@Test
+	public void getTopology_twoPlants_shareTopology() {
+		assertSame(plant.getTopology(), new Plant().getTopology());
+	}
+	
+	@Test
+	public void new_componentsWiredAsTopology() {
+		PlantTopology topology = plant.getTopology();
+		List<PlantComponent> components = plant.getPlantComponents();
+		
+		assertSame(plant.getReactor(), components.get(PlantTopology.REACTOR));
+		assertSame(plant.getCondenser().getCoolantPump(), components.get(PlantTopology.COOLANT_PUMP));
+		for (int i = 0; i < topology.getNumConnections(); i++) {
+			PlantComponent from = components.get(topology.getFrom(i));
+			PlantComponent to = components.get(topology.getTo(i));
+			if (from instanceof ConnectorPipe) {
+				assertTrue(((ConnectorPipe) from).getOutputs().contains(to));
+			} else {
+				assertSame(to, from.getOutput());
+			}
+		}
+	}
+	
 	//To be implemented soon.
 //	@Test 
 //	public void getHighScores_twoHighScores_returnsSortedHighScores() {
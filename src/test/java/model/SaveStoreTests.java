@@ -0,0 +1,120 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SaveStoreTests {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File storeFolder;
+	private SaveStore store;
+	
+	@Before
+	public void setUp() throws IOException {
+		storeFolder = new File(folder.getRoot(), "saves");
+		store = new SaveStore(storeFolder);
+	}
+	
+	@Test
+	public void list_severalSlots_mostRecentFirstWithMetadata() throws IOException {
+		store.save(info("alpha", 100), new byte[] { 1 });
+		store.save(info("beta", 300), new byte[] { 2 });
+		store.save(info("gamma", 200), new byte[] { 3 });
+		
+		List<SaveSlotInfo> slots = store.list();
+		assertEquals(3, slots.size());
+		assertEquals("beta", slots.get(0).getSlot());
+		assertEquals("gamma", slots.get(1).getSlot());
+		assertEquals("alpha", slots.get(2).getSlot());
+		assertEquals("Bob", slots.get(0).getPlayerOneName());
+		assertEquals(42, slots.get(0).getStepCount());
+	}
+	
+	@Test
+	public void open_savedSlot_returnsSave() throws IOException {
+		store.save(info("alpha", 100), new byte[] { 1, 2, 3 });
+		store.save(info("alpha", 200), new byte[] { 4, 5 });
+		
+		assertArrayEquals(new byte[] { 4, 5 }, store.open("alpha"));
+		assertEquals(1, store.list().size());
+		assertEquals(200, store.getInfo("alpha").getTimestamp());
+	}
+	
+	@Test(expected = FileNotFoundException.class)
+	public void open_emptySlot_throwsFileNotFoundException() throws IOException {
+		store.open("missing");
+	}
+	
+	@Test
+	public void list_reopenedStore_readsIndexOnly() throws IOException {
+		store.save(info("alpha", 100), new byte[] { 1 });
+		// Corrupt the slot file - listing must not need it.
+		GameSaveFormat.writeAtomically(store.getSlotFile("alpha"), new byte[] { 0 });
+		
+		SaveStore reopened = new SaveStore(storeFolder);
+		assertEquals(1, reopened.list().size());
+		assertEquals("alpha", reopened.list().get(0).getSlot());
+	}
+	
+	@Test
+	public void list_indexLost_rebuiltFromSlots() throws IOException {
+		store.save(info("alpha", 100), new byte[] { 1 });
+		store.save(info("beta", 200), new byte[] { 2 });
+		assertTrue(new File(storeFolder, SaveStore.INDEX_FILE).delete());
+		
+		SaveStore reopened = new SaveStore(storeFolder);
+		assertEquals(2, reopened.list().size());
+		assertEquals("beta", reopened.list().get(0).getSlot());
+		assertArrayEquals(new byte[] { 1 }, reopened.open("alpha"));
+	}
+	
+	@Test
+	public void delete_savedSlot_removedFromIndexAndDisk() throws IOException {
+		store.save(info("alpha", 100), new byte[] { 1 });
+		store.delete("alpha");
+		
+		assertFalse(store.contains("alpha"));
+		assertNull(store.getInfo("alpha"));
+		assertFalse(store.getSlotFile("alpha").exists());
+		assertEquals(0, new SaveStore(storeFolder).list().size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void getSlotFile_pathInName_throwsIllegalArgumentException() {
+		store.getSlotFile("../escape");
+	}
+	
+	@Test
+	public void autoSaver_storeSlot_savesWithMetadata() throws IOException, InterruptedException {
+		AutoSaver autoSaver = new AutoSaver(store, "auto");
+		autoSaver.saveInBackground(info("auto", 100), new byte[] { 7 });
+		autoSaver.close();
+		
+		assertArrayEquals(new byte[] { 7 }, store.open("auto"));
+		assertEquals(100, store.getInfo("auto").getTimestamp());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void autoSaver_otherSlot_throwsIllegalArgumentException() {
+		new AutoSaver(store, "auto").saveInBackground(info("other", 100), new byte[] { 7 });
+	}
+	
+	private SaveSlotInfo info(String slot, long timestamp) {
+		return new SaveSlotInfo(slot, false, "Bob", null, 1000, 0, 42, timestamp);
+	}
+}
@@ -0,0 +1,36 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exports a long live run in every format and reports time, size and heap use. Run it
+ * by hand with a small heap to see that memory does not grow with the run, i.e.
+ * java -Xmx16m model.TelemetryExportBenchmark [steps]
+ * 
+ * @author Lamprey
+ */
+public class TelemetryExportBenchmark {
+	
+	public static void main(String[] args) throws IOException {
+		long steps = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+		File file = File.createTempFile("export", ".out");
+		file.deleteOnExit();
+		for (TelemetryExporter.Format format : TelemetryExporter.Format.values()) {
+			for (boolean compress : new boolean[] { false, true }) {
+				Plant plant = new Plant();
+				plant.newGame("Benchmark");
+				plant.setSeed(42);
+				plant.setFeedbackController(new FeedbackController());
+				long start = System.nanoTime();
+				long rows = TelemetryExporter.exportLive(plant, steps, 1, file, format, compress);
+				long time = System.nanoTime() - start;
+				Runtime runtime = Runtime.getRuntime();
+				System.out.printf("%s%s: %d rows in %.1f s (%.0f ns/row), %d KB, heap %d MB of max %d MB%n",
+								  format, compress ? " + gzip" : "", rows, time / 1e9, (double) time / rows,
+								  file.length() / 1024, (runtime.totalMemory() - runtime.freeMemory()) >> 20,
+								  runtime.maxMemory() >> 20);
+			}
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.GameOverException;
+
+public class TelemetryExporterTests {
+	
+	private final static int STEPS = 5000;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File telemetry;
+	private List<int[]> recorded;
+	
+	@Before
+	public void setUp() throws IOException, InterruptedException, GameOverException {
+		telemetry = new File(folder.getRoot(), "run.tlm");
+		TelemetryRecorder recorder = new TelemetryRecorder(telemetry);
+		Plant plant = newPlant();
+		plant.setTelemetryRecorder(recorder);
+		for (int step = 0; step < STEPS; step += 500) {
+			plant.step(500);
+			recorder.flush();
+		}
+		recorder.close();
+		
+		recorded = new ArrayList<int[]>();
+		TelemetryReader reader = new TelemetryReader(telemetry);
+		while (reader.next()) {
+			for (int r = 0; r < reader.getRows(); r++) {
+				int[] row = new int[reader.getNumColumns()];
+				for (int c = 0; c < row.length; c++) row[c] = reader.get(c, r);
+				recorded.add(row);
+			}
+		}
+		reader.close();
+	}
+	
+	@Test
+	public void export_csv_linesMatchTelemetry() throws IOException {
+		File csv = new File(folder.getRoot(), "run.csv");
+		assertEquals(STEPS, TelemetryExporter.export(telemetry, csv, TelemetryExporter.Format.CSV, false));
+		
+		assertRowsEqual(recorded, readCsv(new FileInputStream(csv)));
+	}
+	
+	@Test
+	public void export_compressedColumnar_decodesToTelemetry() throws IOException {
+		File columnar = new File(folder.getRoot(), "run.r4cx.gz");
+		TelemetryExporter.export(telemetry, columnar, TelemetryExporter.Format.COLUMNAR, true);
+		
+		assertRowsEqual(recorded, readColumnar(new GZIPInputStream(new FileInputStream(columnar))));
+		assertTrue(columnar.length() < telemetry.length() / 4);
+	}
+	
+	@Test
+	public void exportLive_sameRunAsRecorded_sameRows() throws IOException {
+		File csv = new File(folder.getRoot(), "live.csv.gz");
+		long rows = TelemetryExporter.exportLive(newPlant(), STEPS, 1, csv, TelemetryExporter.Format.CSV, true);
+		
+		assertEquals(STEPS, rows);
+		assertRowsEqual(recorded, readCsv(new GZIPInputStream(new FileInputStream(csv))));
+	}
+	
+	@Test
+	public void exportLive_sampleInterval_everyNthStepExported() throws IOException {
+		File columnar = new File(folder.getRoot(), "live.r4cx");
+		TelemetryExporter.exportLive(newPlant(), STEPS, 100, columnar, TelemetryExporter.Format.COLUMNAR, false);
+		
+		List<int[]> rows = readColumnar(new FileInputStream(columnar));
+		assertEquals(STEPS / 100, rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			assertArrayEquals(recorded.get((i + 1) * 100 - 1), rows.get(i));
+		}
+	}
+	
+	@Test
+	public void write_extremeValues_roundTrip() throws IOException {
+		File csv = new File(folder.getRoot(), "extreme.csv");
+		File columnar = new File(folder.getRoot(), "extreme.r4cx");
+		List<int[]> rows = new ArrayList<int[]>();
+		rows.add(new int[] { Integer.MIN_VALUE, 0, -1 });
+		rows.add(new int[] { Integer.MAX_VALUE, 0, 1 });
+		for (File file : new File[] { csv, columnar }) {
+			TelemetryExporter.Format format = file == csv ? TelemetryExporter.Format.CSV : TelemetryExporter.Format.COLUMNAR;
+			TelemetryExporter exporter = new TelemetryExporter(file, format, false, new String[] { "a", "b", "c" });
+			for (int[] row : rows) exporter.write(row);
+			exporter.close();
+		}
+		
+		assertRowsEqual(rows, readCsv(new FileInputStream(csv)));
+		assertRowsEqual(rows, readColumnar(new FileInputStream(columnar)));
+	}
+	
+	private Plant newPlant() {
+		Plant plant = new Plant();
+		plant.newGame("Bob");
+		plant.setSeed(3);
+		plant.setFeedbackController(new FeedbackController());
+		return plant;
+	}
+	
+	private void assertRowsEqual(List<int[]> expected, List<int[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+	
+	private List<int[]> readCsv(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		List<int[]> rows = new ArrayList<int[]>();
+		try {
+			int numColumns = reader.readLine().split(",").length;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] values = line.split(",");
+				assertEquals(numColumns, values.length);
+				int[] row = new int[numColumns];
+				for (int c = 0; c < numColumns; c++) row[c] = Integer.parseInt(values[c]);
+				rows.add(row);
+			}
+		} finally {
+			reader.close();
+		}
+		return rows;
+	}
+	
+	/**
+	 * Decodes the columnar format from its description in TelemetryExporter.
+	 */
+	private List<int[]> readColumnar(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		List<int[]> rows = new ArrayList<int[]>();
+		try {
+			assertEquals(TelemetryExporter.MAGIC, in.readInt());
+			assertEquals(TelemetryExporter.VERSION, in.readShort());
+			int numColumns = in.readShort();
+			for (int c = 0; c < numColumns; c++) in.readUTF();
+			int blockRows;
+			while ((blockRows = in.readInt()) != 0) {
+				int[][] block = new int[blockRows][numColumns];
+				for (int c = 0; c < numColumns; c++) {
+					int width = in.readByte();
+					int base = in.readInt();
+					for (int r = 0; r < blockRows; r++) {
+						int stored = width == 0 ? 0 : width == 1 ? in.readUnsignedByte()
+											  : width == 2 ? in.readUnsignedShort() : in.readInt();
+						block[r][c] = base + stored;
+					}
+				}
+				for (int[] row : block) rows.add(row);
+			}
+			assertEquals(-1, in.read());
+		} finally {
+			in.close();
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import components.GameOverException;
+
+/**
+ * Compares answering a selective query over an archive of recorded runs with
+ * TelemetryQueryEngine against reading every segment with TelemetryReader. Not a unit
+ * test - run it by hand with: java model.TelemetryQueryBenchmark [runs] [steps]
+ * 
+ * @author Lamprey
+ */
+public class TelemetryQueryBenchmark {
+	
+	public static void main(String[] args) throws IOException, InterruptedException, GameOverException {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		List<File> files = new ArrayList<File>();
+		for (int run = 0; run < runs; run++) {
+			files.add(record(run, steps));
+		}
+		System.out.println("Recorded " + runs + " runs of " + steps + " steps, " + files.get(0).length() / 1024 + " KB each");
+		
+		// A rare event: the reactor running hot while valve 1 is closed.
+		TelemetryQuery query = new TelemetryQuery().greaterThan(TelemetryRecorder.REACTOR_TEMPERATURE, 900)
+												   .equalTo(TelemetryRecorder.VALVE_1_OPEN, 0);
+		TelemetryQueryEngine engine = new TelemetryQueryEngine();
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			long fullScanMatches = 0;
+			for (File file : files) {
+				TelemetryReader reader = new TelemetryReader(file);
+				while (reader.next()) {
+					for (int row = 0; row < reader.getRows(); row++) {
+						if (reader.get(TelemetryRecorder.REACTOR_TEMPERATURE, row) > 900
+							&& reader.get(TelemetryRecorder.VALVE_1_OPEN, row) == 0) fullScanMatches++;
+					}
+				}
+				reader.close();
+			}
+			long fullScan = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			TelemetryQueryResults results = engine.query(files, query);
+			long matches = 0;
+			while (results.next() != null) matches++;
+			long indexed = System.nanoTime() - start;
+			
+			System.out.printf("Round %d: full scan %.1f ms (%d matches), engine %.1f ms (%d matches, %d of %d segments skipped)%n",
+							  round + 1, fullScan / 1e6, fullScanMatches, indexed / 1e6, matches,
+							  results.getSkippedSegments(), results.getSkippedSegments() + results.getScannedSegments());
+		}
+		engine.close();
+		for (File file : files) file.delete();
+	}
+	
+	/**
+	 * Records a run that closes valve 1 for 2000 steps out of every 50000; the reactor
+	 * overheats shortly after each closing.
+	 */
+	private static File record(int run, int steps) throws IOException, InterruptedException, GameOverException {
+		File file = File.createTempFile("telemetry" + run, ".tlm");
+		file.deleteOnExit();
+		Plant plant = new Plant();
+		plant.newGame("Benchmark");
+		plant.setSeed(run);
+		plant.setFeedbackController(new FeedbackController());
+		TelemetryRecorder recorder = new TelemetryRecorder(file);
+		plant.setTelemetryRecorder(recorder);
+		for (int step = 0; step < steps; step += 1000) {
+			plant.setValve(1, step % 50000 >= 2000);
+			plant.step(1000);
+			recorder.flush();
+		}
+		recorder.close();
+		return file;
+	}
+}
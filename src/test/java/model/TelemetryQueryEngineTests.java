@@ -0,0 +1,156 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.GameOverException;
+
+public class TelemetryQueryEngineTests {
+	
+	private final static int RUNS = 4;
+	private final static int STEPS = 600;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private List<File> files;
+	private TelemetryQueryEngine engine;
+	
+	@Before
+	public void setUp() throws IOException, InterruptedException {
+		files = new ArrayList<File>();
+		for (int run = 0; run < RUNS; run++) {
+			files.add(record(run));
+		}
+		engine = new TelemetryQueryEngine(2, 16);
+	}
+	
+	@After
+	public void tearDown() throws InterruptedException {
+		engine.close();
+	}
+	
+	@Test
+	public void query_temperatureWhileValveClosed_sameStepsAsFullScan() throws IOException, InterruptedException {
+		int temperature = 690;
+		TelemetryQuery query = new TelemetryQuery().greaterThan(TelemetryRecorder.REACTOR_TEMPERATURE, temperature)
+												   .equalTo(TelemetryRecorder.VALVE_1_OPEN, 0);
+		
+		Set<String> expected = new HashSet<String>();
+		for (File file : files) {
+			TelemetryReader reader = new TelemetryReader(file);
+			while (reader.next()) {
+				for (int row = 0; row < reader.getRows(); row++) {
+					if (reader.get(TelemetryRecorder.REACTOR_TEMPERATURE, row) > temperature
+						&& reader.get(TelemetryRecorder.VALVE_1_OPEN, row) == 0) {
+						expected.add(file.getName() + "@" + reader.get(TelemetryRecorder.STEP, row));
+					}
+				}
+			}
+			reader.close();
+		}
+		
+		Set<String> found = new HashSet<String>();
+		TelemetryQueryResults results = engine.query(files, query);
+		TelemetryMatch match;
+		while ((match = results.next()) != null) {
+			assertEquals(match.getStep(), match.get(TelemetryRecorder.STEP));
+			assertEquals(0, match.get("valve1Open"));
+			assertTrue(found.add(match.getFile().getName() + "@" + match.getStep()));
+		}
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, found);
+		assertTrue(results.getSkippedSegments() > 0);
+	}
+	
+	@Test
+	public void query_impossibleCondition_everySegmentSkipped() throws IOException, InterruptedException {
+		TelemetryQueryResults results = engine.query(files, new TelemetryQuery().greaterThan(TelemetryRecorder.REACTOR_HEALTH, 100));
+		
+		assertNull(results.next());
+		assertEquals(0, results.getScannedSegments());
+		assertTrue(results.getSkippedSegments() >= RUNS);
+	}
+	
+	@Test
+	public void query_noConditions_everyStepMatches() throws IOException, InterruptedException {
+		TelemetryQueryResults results = engine.query(files, new TelemetryQuery());
+		int matches = 0;
+		while (results.next() != null) matches++;
+		
+		assertEquals(RUNS * STEPS, matches);
+	}
+	
+	@Test
+	public void query_unknownColumn_noMatches() throws IOException, InterruptedException {
+		TelemetryQueryResults results = engine.query(files, new TelemetryQuery().where("nonexistent", 0, 1));
+		
+		assertNull(results.next());
+	}
+	
+	@Test
+	public void query_missingFile_errorAfterOtherMatches() throws InterruptedException {
+		List<File> withMissing = new ArrayList<File>(files);
+		withMissing.add(new File(folder.getRoot(), "missing.tlm"));
+		TelemetryQueryResults results = engine.query(withMissing, new TelemetryQuery());
+		int matches = 0;
+		try {
+			while (results.next() != null) matches++;
+			fail("The missing file should be reported.");
+		} catch (IOException e) {
+			assertEquals(RUNS * STEPS, matches);
+		}
+	}
+	
+	@Test
+	public void close_beforeAllMatchesTaken_scanStops() throws IOException, InterruptedException {
+		TelemetryQueryResults results = engine.query(files, new TelemetryQuery());
+		results.next();
+		results.close();
+		
+		assertNull(results.next());
+		// The engine threads must not be stuck on the full queue.
+		engine.close();
+	}
+	
+	/**
+	 * Records a run in which valve 1 is closed for the middle third. The recorder is
+	 * flushed regularly so that no sample is dropped, whatever the thread scheduling.
+	 */
+	private File record(int run) throws IOException, InterruptedException {
+		File file = new File(folder.getRoot(), "run" + run + ".tlm");
+		Plant plant = new Plant();
+		plant.newGame("Run " + run);
+		plant.setSeed(run);
+		plant.setFeedbackController(new FeedbackController());
+		TelemetryRecorder recorder = new TelemetryRecorder(file, 1, 50, 4);
+		plant.setTelemetryRecorder(recorder);
+		try {
+			for (int step = 0; step < STEPS; step += 50) {
+				plant.setValve(1, step < STEPS / 3 || step >= 2 * STEPS / 3);
+				plant.step(50);
+				recorder.flush();
+			}
+		} catch (GameOverException e) {
+			fail("Run " + run + " ended early.");
+		}
+		recorder.close();
+		assertEquals(0, recorder.getDroppedRows());
+		return file;
+	}
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+
+import components.GameOverException;
+
+/**
+ * Measures what recording telemetry adds to a plant step: the same run is stepped without
+ * a recorder and with one sampling every step, and record() is timed on its own. Not a unit test - run it by hand with:
+ * java model.TelemetryRecorderBenchmark [steps]
+ * 
+ * @author Lamprey
+ */
+public class TelemetryRecorderBenchmark {
+	
+	public static void main(String[] args) throws IOException, InterruptedException, GameOverException {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		File file = File.createTempFile("telemetry", ".tlm");
+		file.deleteOnExit();
+		Plant plant = new Plant();
+		
+		for (int round = 0; round < 3; round++) {
+			long plain = run(plant, null, steps);
+			TelemetryRecorder recorder = new TelemetryRecorder(file);
+			long recorded = run(plant, recorder, steps);
+			recorder.close();
+			
+			// record() on its own, without the noise of the simulation around it.
+			recorder = new TelemetryRecorder(file);
+			long start = System.nanoTime();
+			for (int i = 0; i < steps; i++) recorder.record(plant);
+			long record = System.nanoTime() - start;
+			recorder.close();
+			System.out.printf("Round %d: step %.1f ns, step + record %.1f ns, record alone %.1f ns, %d samples dropped, file %d KB%n",
+							  round + 1, (double) plain / steps, (double) recorded / steps, (double) record / steps,
+							  recorder.getDroppedRows(), file.length() / 1024);
+		}
+	}
+	
+	private static long run(Plant plant, TelemetryRecorder recorder, int steps) throws GameOverException {
+		plant.newGame("Benchmark");
+		plant.setSeed(42);
+		plant.setFeedbackController(new FeedbackController());
+		plant.setTelemetryRecorder(recorder);
+		long start = System.nanoTime();
+		plant.step(steps);
+		long time = System.nanoTime() - start;
+		plant.setTelemetryRecorder(null);
+		return time;
+	}
+}
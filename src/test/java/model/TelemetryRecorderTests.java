@@ -0,0 +1,147 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.GameOverException;
+
+public class TelemetryRecorderTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private Plant plant;
+
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), "run.tlm");
+		plant = new Plant();
+		plant.newGame("Bob");
+		plant.setSeed(7);
+	}
+
+	@Test
+	public void record_manySegments_allStepsReadBack() throws IOException, InterruptedException, GameOverException {
+		TelemetryRecorder recorder = new TelemetryRecorder(file, 1, 16, 8);
+		plant.setTelemetryRecorder(recorder);
+		int[] temperatures = new int[100];
+		for (int i = 0; i < temperatures.length; i++) {
+			plant.step(1);
+			temperatures[i] = plant.getReactorTemperature();
+		}
+		plant.setTelemetryRecorder(null);
+		recorder.close();
+
+		assertNull(recorder.getLastError());
+		TelemetryReader reader = new TelemetryReader(file);
+		assertEquals(TelemetryRecorder.NUM_COLUMNS, reader.getNumColumns());
+		assertEquals(TelemetryRecorder.REACTOR_PRESSURE, reader.getColumn("reactorPressure"));
+		int step = 0;
+		while (reader.next()) {
+			assertEquals(step + 1, reader.getFirstStep());
+			for (int row = 0; row < reader.getRows(); row++) {
+				assertEquals(step + 1, reader.get(TelemetryRecorder.STEP, row));
+				assertEquals(temperatures[step], reader.get(TelemetryRecorder.REACTOR_TEMPERATURE, row));
+				step++;
+			}
+		}
+		reader.close();
+		assertEquals(temperatures.length, step);
+		assertEquals(0, recorder.getDroppedRows());
+	}
+
+	@Test
+	public void record_sampleInterval_everyNthStepRecorded() throws IOException, InterruptedException, GameOverException {
+		TelemetryRecorder recorder = new TelemetryRecorder(file, 10, 8, 2);
+		plant.setTelemetryRecorder(recorder);
+		plant.step(95);
+		recorder.close();
+
+		TelemetryReader reader = new TelemetryReader(file);
+		assertEquals(10, reader.getSampleInterval());
+		int rows = 0;
+		while (reader.next()) {
+			for (int row = 0; row < reader.getRows(); row++) {
+				rows++;
+				assertEquals(rows * 10 - 9, reader.get(TelemetryRecorder.STEP, row));
+			}
+		}
+		reader.close();
+		assertEquals(10, rows);
+		assertEquals(95, recorder.getStepCount());
+	}
+
+	@Test
+	public void record_gameOver_lastStepRecorded() throws IOException, InterruptedException {
+		TelemetryRecorder recorder = new TelemetryRecorder(file);
+		plant.setTelemetryRecorder(recorder);
+		plant.setControlRods(0);
+		plant.setPumpRpm(1, 0);
+		plant.setPumpRpm(2, 0);
+		int steps = 0;
+		try {
+			while (steps < 1000) {
+				steps++;
+				plant.step(1);
+			}
+		} catch (GameOverException e) {
+			// The reactor overheats.
+		}
+		assertTrue(plant.isGameOver());
+		plant.setTelemetryRecorder(null);
+		recorder.close();
+
+		TelemetryReader reader = new TelemetryReader(file);
+		assertTrue(reader.next());
+		int last = reader.getRows() - 1;
+		assertEquals(steps, reader.get(TelemetryRecorder.STEP, last));
+		assertEquals(plant.getReactor().getHealth(), reader.get(TelemetryRecorder.REACTOR_HEALTH, last));
+		reader.close();
+	}
+
+	@Test
+	public void flush_partialSegment_readableBeforeClose() throws IOException, InterruptedException, GameOverException {
+		TelemetryRecorder recorder = new TelemetryRecorder(file);
+		plant.setTelemetryRecorder(recorder);
+		plant.step(5);
+		recorder.flush();
+
+		TelemetryReader reader = new TelemetryReader(file);
+		assertTrue(reader.next());
+		assertEquals(5, reader.getRows());
+		assertEquals(plant.getScore(), reader.get(TelemetryRecorder.SCORE, 4));
+		assertEquals(plant.getPumpRpm(1), reader.get(TelemetryRecorder.PUMP_1_RPM, 4));
+		assertFalse(reader.next());
+		reader.close();
+		recorder.close();
+	}
+
+	@Test
+	public void next_tornSegment_endsTheFile() throws IOException, InterruptedException, GameOverException {
+		TelemetryRecorder recorder = new TelemetryRecorder(file, 1, 10, 2);
+		plant.setTelemetryRecorder(recorder);
+		plant.step(20);
+		recorder.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		TelemetryReader reader = new TelemetryReader(file);
+		assertTrue(reader.next());
+		assertEquals(10, reader.getRows());
+		assertFalse(reader.next());
+		reader.close();
+	}
+}
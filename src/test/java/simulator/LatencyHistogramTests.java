@@ -0,0 +1,52 @@
+package simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTests {
+	
+	@Test
+	public void getPercentile_empty_zero() {
+		assertEquals(0, new LatencyHistogram().getPercentile(99));
+	}
+	
+	@Test
+	public void getPercentile_uniform_within3Percent() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 100000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(100000000L, histogram.getPercentile(100));
+		assertEquals(50000000.0, histogram.getPercentile(50), 50000000 * 0.03);
+		assertEquals(99000000.0, histogram.getPercentile(99), 99000000 * 0.03);
+		assertTrue(histogram.getPercentile(50) >= 50000000L);
+	}
+	
+	@Test
+	public void getPercentile_smallValues_exact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(3);
+		histogram.record(7);
+		histogram.record(-5);
+		
+		assertEquals(0, histogram.getPercentile(0));
+		assertEquals(3, histogram.getPercentile(50));
+		assertEquals(7, histogram.getPercentile(100));
+	}
+	
+	@Test
+	public void reset_clearsEverything() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+		histogram.reset();
+		
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+}
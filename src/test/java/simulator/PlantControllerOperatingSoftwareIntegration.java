@@ -87,4 +87,19 @@ public class PlantControllerOperatingSoftwareIntegration {
 		controller.executeStoredCommand();
 		assertEquals(expected, plant.getBeingRepaired());
 	}
+	
+	@Test
+	public void testSeveralCommandsInOneStep(){
+		reactor.setControlRods(50);
+		pump.setRpm(0);
+		valve.setOpen(true);
+		OS.setControlRods(10);
+		OS.setPumpRpm(1, 20);
+		OS.setValve(1, false);
+		controller.executeStoredCommand();
+		assertEquals(10, reactor.getPercentageLowered());
+		assertEquals(20, pump.getRpm());
+		assertTrue(!valve.isOpen());
+		assertEquals(0, OS.getQueuedCommands());
+	}
 }
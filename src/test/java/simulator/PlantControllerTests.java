@@ -1,16 +1,22 @@
 package simulator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import model.HighScore;
+import model.Leaderboard;
 import model.Plant;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import components.RandomlyFailableComponent;
 import components.Pump;
@@ -18,6 +24,9 @@ import components.Valve;
 
 public class PlantControllerTests {
 	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
 	private PlantController controller;
 	private Plant model;
 
@@ -31,7 +40,7 @@ public class PlantControllerTests {
 	@Test
 	public void testLoadGame() {
 		
-		File f = new File("save.ser");
+		File f = new File(PlantController.SAVE_FILE);
 		if(f.exists()) {
 			f.delete();
 		}
@@ -63,9 +72,22 @@ public class PlantControllerTests {
 		
 	}
 	
+	@Test
+	public void testAddHighScoreCorruptLeaderboard() throws IOException {
+		File file = new File(folder.getRoot(), Leaderboard.FILE);
+		controller = new PlantController(model, new Leaderboard(file, Leaderboard.DEFAULT_CAPACITY));
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 'n', 'o', 't', ' ', 'a', ' ', 'l', 'o', 'g' });
+		out.close();
+		
+		assertFalse(controller.addHighScore(new HighScore("Bob", 2000)));
+	}
+	
 	@Test
 	public void testAddHighScore() {
 		
+		// A leaderboard of its own, so that scores of earlier runs do not interfere.
+		controller = new PlantController(model, new Leaderboard(Leaderboard.DEFAULT_CAPACITY));
 		model.setHighScores(new ArrayList<HighScore>());
 		
 		HighScore newHighScore = new HighScore("Bob", 2000);
@@ -0,0 +1,113 @@
+package simulator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlantEnvironmentTests {
+
+	private static final int NUM_PLANTS = 3;
+
+	private PlantEnvironment environment;
+	private float[] actions;
+	private float[] rewards;
+	private boolean[] dones;
+
+	@Before
+	public void setUp() {
+		environment = new PlantEnvironment(NUM_PLANTS);
+		environment.reset(42);
+		actions = new float[NUM_PLANTS * PlantEnvironment.ACTION_SIZE];
+		rewards = new float[NUM_PLANTS];
+		dones = new boolean[NUM_PLANTS];
+	}
+
+	@Test
+	public void step_actionsApplied_plantsFollowActions() {
+		int offset = PlantEnvironment.ACTION_SIZE; // second plant
+		actions[offset] = 40;
+		actions[offset + 1] = 250;
+		actions[offset + 4] = 1;
+		actions[offset + 5] = 0;
+		environment.step(actions, rewards, dones);
+
+		assertEquals(40, environment.getPlant(1).getControlRodsLevel());
+		assertEquals(250, environment.getPlant(1).getPumpRpm(1));
+		assertTrue(environment.getPlant(1).isValveOpen(1));
+		assertFalse(environment.getPlant(1).isValveOpen(2));
+	}
+
+	@Test
+	public void step_rewardIsScoreIncrease() {
+		for (int i = 0; i < NUM_PLANTS; i++) {
+			actions[i * PlantEnvironment.ACTION_SIZE + 4] = 1; // valve 1 open
+		}
+		for (int i = 0; i < 10; i++) {
+			environment.step(actions, rewards, dones);
+		}
+		int before = environment.getPlant(0).getScore();
+		environment.step(actions, rewards, dones);
+
+		assertEquals(environment.getPlant(0).getScore() - before, rewards[0], 0);
+	}
+
+	@Test
+	public void step_reactorOutOfControl_plantIsDone() {
+		// Control rods out, no water pumped into the reactor.
+		for (int i = 0; i < 1000 && !dones[0]; i++) {
+			environment.step(actions, rewards, dones);
+		}
+		assertTrue(dones[0]);
+		assertTrue(environment.getPlant(0).isGameOver());
+
+		environment.step(actions, rewards, dones);
+		assertTrue(dones[0]);
+		assertEquals(0, rewards[0], 0);
+	}
+
+	@Test
+	public void observe_floatArrayAndBuffer_sameObservations() {
+		environment.step(actions, rewards, dones);
+		float[] fromArray = new float[NUM_PLANTS * PlantEnvironment.OBSERVATION_SIZE];
+		environment.observe(fromArray);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(fromArray.length * 4).order(ByteOrder.nativeOrder());
+		environment.observe(buffer);
+		buffer.flip();
+		float[] fromBuffer = new float[fromArray.length];
+		buffer.asFloatBuffer().get(fromBuffer);
+
+		assertArrayEquals(fromArray, fromBuffer, 0);
+		assertEquals(environment.getPlant(0).getReactorTemperature(), fromArray[0], 0);
+	}
+
+	@Test
+	public void reset_sameSeed_sameEpisode() {
+		environment.setRandomFailures(true);
+		float[] first = runEpisode(7);
+		float[] second = runEpisode(7);
+
+		assertArrayEquals(first, second, 0);
+	}
+
+	private float[] runEpisode(long seed) {
+		environment.reset(seed);
+		for (int i = 0; i < NUM_PLANTS; i++) {
+			actions[i * PlantEnvironment.ACTION_SIZE] = 50;
+			actions[i * PlantEnvironment.ACTION_SIZE + 1] = 500;
+			actions[i * PlantEnvironment.ACTION_SIZE + 4] = 1;
+		}
+		for (int i = 0; i < 200; i++) {
+			environment.step(actions, rewards, dones);
+		}
+		float[] observations = new float[NUM_PLANTS * PlantEnvironment.OBSERVATION_SIZE];
+		environment.observe(observations);
+		return observations;
+	}
+}
@@ -0,0 +1,183 @@
+package simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import model.Leaderboard;
+import model.Plant;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RealTimeSchedulerTests {
+
+	private final static long MS = 1000000L;
+
+	private FakeClock clock;
+	private int ticks;
+	private int maxTicks;
+	private long tickNanos;
+	private long pausedUntil;
+	private long firstTickAt;
+	private RealTimeScheduler scheduler;
+
+	// Runs on the test thread with the fake clock: a tick takes tickNanos of its time.
+	private final RealTimeScheduler.Simulation simulation = new RealTimeScheduler.Simulation() {
+		@Override
+		public void tick() {
+			if (ticks == 0) firstTickAt = clock.now;
+			ticks++;
+			clock.now += tickNanos;
+		}
+
+		@Override
+		public boolean isPaused() {
+			return clock.now < pausedUntil;
+		}
+
+		@Override
+		public boolean isOver() {
+			return ticks >= maxTicks;
+		}
+
+		@Override
+		public void idle() {
+		}
+	};
+
+	@Before
+	public void setUp() {
+		clock = new FakeClock();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		if (scheduler != null) scheduler.close();
+	}
+
+	@Test
+	public void run_fixedRate_ticksAtRateWithoutDrift() {
+		maxTicks = 50;
+		tickNanos = 3 * MS;
+		scheduler = new RealTimeScheduler(simulation, 100, clock);
+		scheduler.run();
+
+		// Absolute deadlines: the time taken by the ticks does not add up.
+		assertEquals(50, scheduler.getTicks());
+		assertEquals(50 * 10 * MS + 3 * MS, clock.now);
+		assertEquals(0, scheduler.getMissedDeadlines());
+		assertTrue(scheduler.getLatencyPercentile(50) <= scheduler.getLatencyPercentile(99));
+		assertTrue(scheduler.getLatencyPercentile(99) <= 3 * MS);
+	}
+
+	@Test
+	public void run_paused_noTicksUntilResumed() {
+		maxTicks = 10;
+		pausedUntil = 1000 * MS;
+		scheduler = new RealTimeScheduler(simulation, 200, clock);
+		scheduler.run();
+
+		assertTrue("first tick at " + firstTickAt, firstTickAt >= pausedUntil);
+		// The time spent paused is not caught up.
+		assertEquals(9 * 5 * MS, clock.now - firstTickAt);
+		assertEquals(0, scheduler.getMissedDeadlines());
+		assertEquals(0, scheduler.getSkippedTicks());
+	}
+
+	@Test
+	public void run_ticksLongerThanPeriod_countsMissedDeadlinesAndSkips() {
+		maxTicks = 10;
+		tickNanos = 30 * MS;
+		scheduler = new RealTimeScheduler(simulation, 1000, clock);
+		scheduler.run();
+
+		// Every tick ends 29 deadlines late: the 29 lost ticks are skipped, not run in a burst.
+		assertEquals(10, scheduler.getMissedDeadlines());
+		assertEquals(10 * 29, scheduler.getSkippedTicks());
+		assertEquals(10 * 30 * MS, clock.now - firstTickAt);
+		assertTrue(scheduler.getLatencyPercentile(50) >= 29 * MS);
+	}
+
+	@Test
+	public void run_simulationOver_stops() {
+		maxTicks = 0;
+		scheduler = new RealTimeScheduler(simulation, 100, clock);
+		scheduler.run();
+
+		assertEquals(0, ticks);
+	}
+
+	@Test
+	public void startRealTime_plantController_stepsPlantAndHonoursPause() throws InterruptedException {
+		Plant plant = new Plant();
+		PlantController controller = new PlantController(plant, new Leaderboard(10));
+		controller.newGame("Bob");
+		scheduler = controller.startRealTime(200);
+		assertTrue(awaitTicks(scheduler));
+		controller.togglePaused();
+		// A tick running while the game was paused may still finish.
+		assertTrue(awaitNoTicks(scheduler));
+		int score = plant.getScore();
+		long ticksWhenPaused = scheduler.getTicks();
+		Thread.sleep(50);
+
+		assertTrue(ticksWhenPaused > 0);
+		assertEquals(ticksWhenPaused, scheduler.getTicks());
+		assertEquals(score, plant.getScore());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setTicksPerSecond_zero_throws() {
+		new RealTimeScheduler(simulation, 0);
+	}
+
+	/**
+	 * Waits for the first tick of a scheduler running on its own thread.
+	 */
+	private static boolean awaitTicks(RealTimeScheduler scheduler) throws InterruptedException {
+		long giveUp = System.currentTimeMillis() + 10000;
+		while (scheduler.getTicks() == 0) {
+			if (System.currentTimeMillis() > giveUp) return false;
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until a scheduler running on its own thread has not ticked for 20 periods.
+	 */
+	private static boolean awaitNoTicks(RealTimeScheduler scheduler) throws InterruptedException {
+		long giveUp = System.currentTimeMillis() + 10000;
+		long quiet = (long) (20000 / scheduler.getTicksPerSecond());
+		long last = scheduler.getTicks();
+		long lastChange = System.currentTimeMillis();
+		while (System.currentTimeMillis() - lastChange < quiet) {
+			if (System.currentTimeMillis() > giveUp) return false;
+			Thread.sleep(5);
+			long now = scheduler.getTicks();
+			if (now != last) {
+				last = now;
+				lastChange = System.currentTimeMillis();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A clock that only moves when the scheduler sleeps or the simulation ticks.
+	 */
+	private final static class FakeClock implements RealTimeScheduler.Clock {
+		long now;
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		@Override
+		public void sleep(Object blocker, long nanos) {
+			now += nanos;
+		}
+	}
+}
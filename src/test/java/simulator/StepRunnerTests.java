@@ -0,0 +1,245 @@
+package simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import model.MultiplayerModel;
+import model.Observer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StepRunnerTests {
+	
+	private MultiplayerModel model;
+	private Multiplayer2Controller controller;
+	private StepRunner runner;
+	private CountDownLatch finished;
+	private long stepsDone;
+	private boolean cancelled;
+	private Thread listenerThread;
+	
+	private final StepRunner.Listener listener = new StepRunner.Listener() {
+		@Override
+		public void progress(long stepsDone, long numSteps) {
+		}
+		
+		@Override
+		public void finished(long stepsDone, boolean cancelled) {
+			StepRunnerTests.this.stepsDone = stepsDone;
+			StepRunnerTests.this.cancelled = cancelled;
+			listenerThread = Thread.currentThread();
+			finished.countDown();
+		}
+	};
+	
+	@Before
+	public void setUp() {
+		model = new MultiplayerModel();
+		model.setAutosaveInterval(0);
+		controller = new Multiplayer2Controller(model);
+		controller.newMultiplayerGame("Bob", "Alice");
+		runner = new StepRunner(controller);
+		finished = new CountDownLatch(1);
+	}
+	
+	@After
+	public void tearDown() throws InterruptedException {
+		runner.close();
+	}
+	
+	@Test
+	public void start_batch_allStepsRunOnSimulationThread() throws InterruptedException {
+		assertTrue(runner.start(55, listener));
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertEquals(55, stepsDone);
+		assertFalse(cancelled);
+		assertEquals(controller.getStepsPerPlayer() - 55, controller.numberOfStepsUntilSwap());
+		assertTrue(listenerThread != Thread.currentThread());
+	}
+	
+	@Test
+	public void start_batchLongerThanTurn_stopsAtSwap() throws InterruptedException {
+		runner.start(1000000, listener);
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertEquals(controller.getStepsPerPlayer(), stepsDone);
+		assertEquals(2, controller.getCurrentPlayerNumber());
+		assertFalse(cancelled);
+	}
+	
+	@Test
+	public void cancel_duringBatch_stopsAfterCurrentChunk() throws InterruptedException {
+		// Cancels from the simulation thread after the third chunk, so the test is deterministic.
+		model.addObserver(new Observer() {
+			private int chunks;
+			
+			@Override
+			public void update() {
+				if (++chunks == 3) runner.cancel();
+			}
+		});
+		runner.start(80, listener);
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertEquals(3 * StepRunner.CHUNK_STEPS, stepsDone);
+		assertTrue(cancelled);
+	}
+	
+	@Test
+	public void start_whileRunning_refused() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		model.addObserver(new Observer() {
+			@Override
+			public void update() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue(runner.start(10, listener));
+		assertFalse(runner.start(10, null));
+		release.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertFalse(runner.isRunning());
+	}
+	
+	@Test
+	public void submit_manyThreads_allCommandsRunOnSimulationThread() throws Exception {
+		final int[] counter = new int[1];
+		final Thread[] simulationThread = new Thread[1];
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		final Callable<Integer> increment = new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				// Not synchronised - safe only because a single thread runs the commands.
+				simulationThread[0] = Thread.currentThread();
+				return ++counter[0];
+			}
+		};
+		Thread[] producers = new Thread[4];
+		for (int t = 0; t < producers.length; t++) {
+			producers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						Future<Integer> result = runner.submit(increment);
+						synchronized (results) {
+							results.add(result);
+						}
+					}
+				}
+			});
+			producers[t].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		boolean[] seen = new boolean[4001];
+		for (Future<Integer> result : results) {
+			int value = result.get(10, TimeUnit.SECONDS);
+			assertFalse(seen[value]);
+			seen[value] = true;
+		}
+		assertEquals(4000, runner.execute(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				assertSame(simulationThread[0], Thread.currentThread());
+				return counter[0];
+			}
+		}).intValue());
+	}
+	
+	@Test
+	public void submit_duringBatch_runsBetweenChunks() throws Exception {
+		model.addObserver(new Observer() {
+			private boolean submitted;
+			
+			@Override
+			public void update() {
+				if (!submitted) {
+					submitted = true;
+					runner.submit(new Runnable() {
+						@Override
+						public void run() {
+							controller.setControlRods(100);
+						}
+					});
+				}
+			}
+		});
+		runner.start(3 * StepRunner.CHUNK_STEPS, listener);
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertEquals(100, controller.getControlRodsLevel());
+		assertEquals(3 * StepRunner.CHUNK_STEPS, stepsDone);
+	}
+	
+	@Test(expected = IOException.class)
+	public void execute_commandFails_exceptionRethrown() throws IOException {
+		runner.execute(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				throw new IOException("disk full");
+			}
+		});
+	}
+	
+	@Test
+	public void startRealTime_paused_commandsStillRunAndCancelStops() throws Exception {
+		controller.togglePaused();
+		RealTimeScheduler scheduler = runner.startRealTime(100, listener);
+		assertTrue(scheduler != null);
+		assertFalse(runner.start(1, listener));
+		
+		Future<Integer> steps = runner.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return controller.numberOfStepsUntilSwap();
+			}
+		});
+		assertEquals(controller.getStepsPerPlayer(), (int) steps.get(1, TimeUnit.SECONDS));
+		
+		runner.submit(new Runnable() {
+			@Override
+			public void run() {
+				controller.togglePaused();
+			}
+		});
+		long giveUp = System.currentTimeMillis() + 10000;
+		while (scheduler.getTicks() == 0 && System.currentTimeMillis() < giveUp) {
+			Thread.sleep(5);
+		}
+		runner.cancel();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertTrue(cancelled);
+		assertTrue(stepsDone > 0);
+		assertEquals(scheduler.getTicks(), stepsDone);
+		assertEquals(controller.getStepsPerPlayer() - stepsDone, controller.numberOfStepsUntilSwap());
+	}
+	
+	@Test
+	public void startRealTime_multiplayer_stopsAtSwap() throws Exception {
+		assertTrue(runner.startRealTime(1000, listener) != null);
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		
+		assertFalse(cancelled);
+		assertEquals(controller.getStepsPerPlayer(), stepsDone);
+		assertEquals(2, controller.getCurrentPlayerNumber());
+	}
+}
@@ -0,0 +1,71 @@
+package swing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GaugeInterpolatorTests {
+	
+	private static final long MS = 1000000;
+	
+	private GaugeInterpolator gauges;
+	
+	@Before
+	public void setUp() {
+		gauges = new GaugeInterpolator(2);
+		gauges.jumpTo(new int[] {0, 100}, 0);
+	}
+	
+	@Test
+	public void jumpTo_valuesShownRightAway() {
+		assertEquals(0, gauges.get(0, 0), 0);
+		assertEquals(100, gauges.get(1, 0), 0);
+		assertFalse(gauges.isMoving(0));
+	}
+	
+	@Test
+	public void setTarget_movesOverTheIntervalBetweenStates() {
+		gauges.setTarget(new int[] {100, 0}, 100 * MS);
+		
+		assertEquals(0, gauges.get(0, 100 * MS), 0);
+		assertEquals(50, gauges.get(0, 150 * MS), 0.001);
+		assertEquals(50, gauges.get(1, 150 * MS), 0.001);
+		assertTrue(gauges.isMoving(150 * MS));
+		assertEquals(100, gauges.get(0, 200 * MS), 0);
+		assertFalse(gauges.isMoving(200 * MS));
+	}
+	
+	@Test
+	public void setTarget_duringMove_continuesFromValueShown() {
+		gauges.setTarget(new int[] {100, 100}, 100 * MS);
+		gauges.setTarget(new int[] {0, 100}, 150 * MS);
+		
+		assertEquals(50, gauges.get(0, 150 * MS), 0.001);
+		assertTrue(gauges.get(0, 160 * MS) < 50);
+	}
+	
+	@Test
+	public void setTarget_longPause_moveTakesAtMostMaxMove() {
+		gauges.setTarget(new int[] {100, 100}, 10000 * MS);
+		
+		assertEquals(100, gauges.get(0, (10000 + GaugeInterpolator.MAX_MOVE_MS) * MS), 0);
+	}
+	
+	@Test
+	public void setTarget_statesFasterThanFrames_latestShownWithinAFrame() {
+		for (int t = 1; t <= 100; t++) {
+			gauges.setTarget(new int[] {t, 100}, t * MS);
+		}
+		
+		// 1 ms between states: the gauge reaches the latest value well within a 16 ms frame.
+		assertEquals(100, gauges.get(0, 116 * MS), 0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void setTarget_wrongNumberOfValues_throws() {
+		gauges.setTarget(new int[] {1}, 0);
+	}
+}
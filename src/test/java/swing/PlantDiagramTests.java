@@ -0,0 +1,66 @@
+package swing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import model.Plant;
+import model.PlantSnapshot;
+import model.PlantTopology;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlantDiagramTests {
+	
+	private Plant plant;
+	private PlantDiagram diagram;
+	
+	@Before
+	public void setUp() {
+		plant = new Plant();
+		plant.newGame("Bob");
+		diagram = new PlantDiagram(new BufferedImage(PlantDiagram.WIDTH, PlantDiagram.HEIGHT, BufferedImage.TYPE_INT_RGB));
+	}
+	
+	@Test
+	public void setFlows_newGame_nothingFlows() {
+		diagram.setFlows(new PlantSnapshot(plant));
+		
+		assertFalse(diagram.isAnimating());
+	}
+	
+	@Test
+	public void setFlows_reactorRunning_animates() throws Exception {
+		plant.setControlRods(30);
+		plant.step(5);
+		PlantSnapshot snapshot = new PlantSnapshot(plant);
+		diagram.setFlows(snapshot);
+		
+		assertEquals(plant.getReactor().getFlowOut().getRate(), snapshot.getFlowRate(PlantTopology.REACTOR));
+		assertTrue(snapshot.getFlowRate(PlantTopology.REACTOR) > 0);
+		assertTrue(diagram.isAnimating());
+	}
+	
+	@Test
+	public void paint_gaugesAndFlows_paintsOffscreen() throws Exception {
+		plant.step(5);
+		diagram.setFlows(new PlantSnapshot(plant));
+		for (int gauge = 0; gauge < PlantDiagram.NUM_GAUGES; gauge++) {
+			diagram.setGauge(gauge, 150);
+		}
+		diagram.animate(1);
+		diagram.animate(50000000L);
+		
+		BufferedImage image = new BufferedImage(PlantDiagram.WIDTH, PlantDiagram.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		diagram.paint(g);
+		g.dispose();
+		
+		// A full reactor temperature gauge is red.
+		assertEquals(0xFF0000, image.getRGB(1000, 175) & 0xFFFFFF);
+	}
+}
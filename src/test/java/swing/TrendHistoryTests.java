@@ -0,0 +1,155 @@
+package swing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrendHistoryTests {
+
+	private static final int CAPACITY = 8;
+
+	private TrendHistory history;
+	private int[] min;
+	private int[] max;
+
+	@Before
+	public void setUp() {
+		history = new TrendHistory(2, CAPACITY);
+		min = new int[CAPACITY];
+		max = new int[CAPACITY];
+	}
+
+	@Test
+	public void record_belowCapacity_oneBucketPerSample() {
+		for (int i = 0; i < 5; i++) {
+			history.record(i, new int[] {i, 10 * i});
+		}
+
+		assertEquals(5, history.copy(1, min, max));
+		assertArrayEquals(new int[] {0, 10, 20, 30, 40}, Arrays.copyOf(max, 5));
+		assertEquals(1, history.getStride());
+	}
+
+	@Test
+	public void record_pastCapacity_bucketsMergedAndStrideDoubled() {
+		for (int i = 0; i < CAPACITY + 1; i++) {
+			history.record(i, new int[] {i, 0});
+		}
+
+		int n = history.copy(0, min, max);
+		assertEquals(CAPACITY / 2 + 1, n);
+		assertEquals(2, history.getStride());
+		assertArrayEquals(new int[] {0, 2, 4, 6, 8}, Arrays.copyOf(min, n));
+		assertArrayEquals(new int[] {1, 3, 5, 7, 8}, Arrays.copyOf(max, n));
+	}
+
+	@Test
+	public void record_longGame_bucketsBoundedAndExtremesKept() {
+		for (int i = 0; i < 100000; i++) {
+			int value = (i == 31337) ? 5000 : (i == 77777) ? -5000 : i % 100;
+			history.record(i, new int[] {value, 0});
+		}
+
+		int n = history.copy(0, min, max);
+		assertTrue(n <= CAPACITY);
+		assertEquals(100000, history.getNumSamples());
+		int highest = Integer.MIN_VALUE, lowest = Integer.MAX_VALUE;
+		for (int b = 0; b < n; b++) {
+			highest = Math.max(highest, max[b]);
+			lowest = Math.min(lowest, min[b]);
+		}
+		assertEquals(5000, highest);
+		assertEquals(-5000, lowest);
+	}
+
+	@Test
+	public void record_sparseSamples_stepsBetweenHoldLastValue() {
+		history.record(0, new int[] {1, 0});
+		history.record(3, new int[] {7, 0});
+
+		int n = history.copy(0, min, max);
+		assertEquals(4, n);
+		assertArrayEquals(new int[] {1, 1, 1, 7}, Arrays.copyOf(min, n));
+		assertArrayEquals(new int[] {1, 1, 1, 7}, Arrays.copyOf(max, n));
+	}
+
+	@Test
+	public void record_sameStep_oneBucket() {
+		history.record(5, new int[] {3, 0});
+		history.record(5, new int[] {-2, 0});
+
+		assertEquals(1, history.copy(0, min, max));
+		assertEquals(-2, min[0]);
+		assertEquals(3, max[0]);
+		assertEquals(5, history.getFirstStep());
+	}
+
+	@Test
+	public void record_sparseSamplesPastCapacity_strideCoversSteps() {
+		history.record(0, new int[] {0, 0});
+		history.record(100, new int[] {1, 0});
+
+		int n = history.copy(0, min, max);
+		assertEquals(16, history.getStride());
+		assertEquals(100 / 16 + 1, n);
+		assertEquals(1, max[n - 1]);
+	}
+
+	@Test
+	public void record_earlierStep_historyStartedAgain() {
+		for (int i = 0; i < 5; i++) {
+			history.record(i, new int[] {i, i});
+		}
+		history.record(0, new int[] {9, 9});
+
+		assertEquals(1, history.copy(0, min, max));
+		assertEquals(9, min[0]);
+		assertEquals(1, history.getNumSamples());
+	}
+
+	@Test
+	public void clear_forgetsEverySample() {
+		for (int i = 0; i < 20; i++) {
+			history.record(i, new int[] {i, i});
+		}
+		history.clear();
+
+		assertEquals(0, history.copy(0, min, max));
+		assertEquals(1, history.getStride());
+		assertEquals(0, history.getNumSamples());
+	}
+
+	@Test
+	public void downsample_moreBucketsThanColumns_minAndMaxPerColumn() {
+		int[] lows = {5, 1, 7, 3, 9, 2};
+		int[] highs = {6, 8, 7, 4, 9, 12};
+		int[] columnMin = new int[3];
+		int[] columnMax = new int[3];
+
+		assertEquals(3, TrendHistory.downsample(lows, highs, 6, 3, columnMin, columnMax));
+		assertArrayEquals(new int[] {1, 3, 2}, columnMin);
+		assertArrayEquals(new int[] {8, 7, 12}, columnMax);
+	}
+
+	@Test
+	public void downsample_fewerBucketsThanColumns_bucketsKept() {
+		int[] lows = {5, 1};
+		int[] highs = {6, 8};
+		int[] columnMin = new int[10];
+		int[] columnMax = new int[10];
+
+		assertEquals(2, TrendHistory.downsample(lows, highs, 2, 10, columnMin, columnMax));
+		assertEquals(1, columnMin[1]);
+		assertEquals(8, columnMax[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void constructor_oddCapacity_throws() {
+		new TrendHistory(1, 7);
+	}
+}